@@ -0,0 +1,147 @@
+package com.github.seykron.webjars;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.springframework.core.io.AbstractResource;
+
+/** A webjar file that is served as it is, i.e. a font, an image or a source
+ * map.
+ * <p>
+ * Assets are read straight from the jar entry, using a zip file that is
+ * opened once by the {@link AssetIndex}. The size, time and checksum are
+ * read from the jar central directory, so they are known without reading the
+ * content.
+ * </p>
+ */
+public class Asset extends AbstractResource {
+
+  /** Number of milliseconds in a second. */
+  private static final long MILLIS_PER_SECOND = 1000;
+
+  /** Jar file that contains the asset, it's never null. */
+  private final ZipFile zipFile;
+
+  /** Jar entry of the asset, it's never null. */
+  private final ZipEntry entry;
+
+  /** HTTP content type of the asset, it's never null or empty. */
+  private final String contentType;
+
+  /** Creates an asset.
+   *
+   * @param theZipFile Jar file that contains the asset. Cannot be null.
+   * @param theEntry Jar entry of the asset. Cannot be null.
+   * @param theContentType HTTP content type of the asset. Cannot be null or
+   *    empty.
+   */
+  Asset(final ZipFile theZipFile, final ZipEntry theEntry,
+      final String theContentType) {
+    Validate.notNull(theZipFile, "The zip file cannot be null.");
+    Validate.notNull(theEntry, "The entry cannot be null.");
+    Validate.notEmpty(theContentType,
+        "The content type cannot be null or empty.");
+
+    zipFile = theZipFile;
+    entry = theEntry;
+    contentType = theContentType;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getDescription() {
+    return "WebJar asset " + entry.getName() + " in " + zipFile.getName();
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return zipFile.getInputStream(entry);
+  }
+
+  /** Returns the entry size, it never reads the content.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public long contentLength() throws IOException {
+    if (entry.getSize() < 0) {
+      return super.contentLength();
+    }
+    return entry.getSize();
+  }
+
+  /** Returns the entry time, rounded to seconds, or -1 if the entry has no
+   * time.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public long lastModified() throws IOException {
+    if (entry.getTime() < 0) {
+      return -1;
+    }
+    return entry.getTime() / MILLIS_PER_SECOND * MILLIS_PER_SECOND;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getFilename() throws IllegalStateException {
+    return StringUtils.substringAfterLast(entry.getName(), "/");
+  }
+
+  /** Writes a range of this asset to an output stream.
+   * <p>
+   * Entries stored without compression are read from the range position.
+   * Compressed entries must be inflated from the start, but the skipped
+   * bytes are not written.
+   * </p>
+   *
+   * @param out Stream to write the range to. Cannot be null.
+   * @param offset Position of the first byte to write. Must be zero or
+   *    greater.
+   * @param length Number of bytes to write.
+   * @throws IOException if the asset cannot be read or written.
+   */
+  public void write(final OutputStream out, final long offset,
+      final long length) throws IOException {
+    Validate.notNull(out, "The output stream cannot be null.");
+
+    InputStream in = getInputStream();
+
+    try {
+      IOUtils.skipFully(in, offset);
+      IOUtils.copyLarge(in, out, 0, length);
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Returns the HTTP content type of this asset.
+   * @return A valid content type, never null or empty.
+   */
+  public String getContentType() {
+    return contentType;
+  }
+
+  /** Returns a strong entity tag for this asset. It's built from the entry
+   * checksum and size.
+   *
+   * @return A valid quoted entity tag, never null or empty.
+   */
+  public String getETag() {
+    return "\"" + Long.toHexString(entry.getCrc()) + "-"
+        + Long.toHexString(entry.getSize()) + "\"";
+  }
+}
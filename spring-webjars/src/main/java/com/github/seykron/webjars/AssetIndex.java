@@ -0,0 +1,233 @@
+package com.github.seykron.webjars;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+import org.springframework.util.ResourceUtils;
+
+/** Index of the webjar {@link Asset}s by request path.
+ * <p>
+ * The index is built once from the asset files recorded in the
+ * {@link DependencyGraph}. The jar of each webjar is located once through the
+ * class loader and opened, and its assets are looked up in the open jar file.
+ * Requests are then served from the open jar files, without searching the
+ * classpath.
+ * </p>
+ * <p>
+ * Assets that are not in a jar file, i.e. in an exploded directory, are not
+ * indexed.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class AssetIndex {
+
+  /** Directory of webjar resources within the jar files. */
+  private static final String RESOURCES_DIR = "META-INF/resources/";
+
+  /** Number of directories of a webjar root, webjars/name/version/. */
+  private static final int WEBJAR_DIR_DEPTH = 3;
+
+  /** Content type of files with an unknown extension. */
+  private static final String DEFAULT_CONTENT_TYPE =
+      "application/octet-stream";
+
+  /** Content types by lower case file extension, it's never null. */
+  private static final Map<String, String> CONTENT_TYPES =
+      new HashMap<String, String>();
+
+  static {
+    CONTENT_TYPES.put("png", "image/png");
+    CONTENT_TYPES.put("gif", "image/gif");
+    CONTENT_TYPES.put("jpg", "image/jpeg");
+    CONTENT_TYPES.put("jpeg", "image/jpeg");
+    CONTENT_TYPES.put("svg", "image/svg+xml");
+    CONTENT_TYPES.put("ico", "image/x-icon");
+    CONTENT_TYPES.put("webp", "image/webp");
+    CONTENT_TYPES.put("woff", "font/woff");
+    CONTENT_TYPES.put("woff2", "font/woff2");
+    CONTENT_TYPES.put("ttf", "font/ttf");
+    CONTENT_TYPES.put("otf", "font/otf");
+    CONTENT_TYPES.put("eot", "application/vnd.ms-fontobject");
+    CONTENT_TYPES.put("map", "application/json");
+    CONTENT_TYPES.put("json", "application/json");
+    CONTENT_TYPES.put("html", "text/html");
+    CONTENT_TYPES.put("htm", "text/html");
+    CONTENT_TYPES.put("txt", "text/plain");
+    CONTENT_TYPES.put("xml", "application/xml");
+    CONTENT_TYPES.put("swf", "application/x-shockwave-flash");
+  }
+
+  /** Open jar files by path, it's never null. */
+  private final Map<String, ZipFile> zipFiles =
+      new HashMap<String, ZipFile>();
+
+  /** Assets by request path, without the leading slash. It's never null. */
+  private final Map<String, Asset> assets = new HashMap<String, Asset>();
+
+  /** Creates an empty index.
+   */
+  public AssetIndex() {
+  }
+
+  /** Creates the index and opens the jar files of the assets.
+   *
+   * @param assetFiles Paths of the assets within the jar files, i.e.
+   *    META-INF/resources/webjars/foo/1.0/foo.png. Cannot be null.
+   * @param classLoader Class loader to locate the assets. Cannot be null.
+   */
+  public AssetIndex(final List<String> assetFiles,
+      final ClassLoader classLoader) {
+    Validate.notNull(assetFiles, "The asset files cannot be null.");
+    Validate.notNull(classLoader, "The class loader cannot be null.");
+
+    // Jar file of each webjar root directory, null if it's not in a jar.
+    Map<String, ZipFile> webJars = new HashMap<String, ZipFile>();
+
+    try {
+      for (String assetFile : assetFiles) {
+        if (!assetFile.startsWith(RESOURCES_DIR)) {
+          continue;
+        }
+
+        String webJarDirectory = getWebJarDirectory(assetFile);
+
+        if (!webJars.containsKey(webJarDirectory)) {
+          URL url = classLoader.getResource(assetFile);
+
+          if (url == null) {
+            // Missing asset, the webjar is resolved with the next one.
+            continue;
+          }
+          webJars.put(webJarDirectory, getZipFile(url));
+        }
+
+        ZipFile zipFile = webJars.get(webJarDirectory);
+        ZipEntry entry = null;
+
+        if (zipFile != null) {
+          entry = zipFile.getEntry(assetFile);
+        }
+        if (entry == null) {
+          continue;
+        }
+
+        Asset asset = new Asset(zipFile, entry, getContentType(assetFile));
+        assets.put(assetFile.substring(RESOURCES_DIR.length()), asset);
+      }
+    } catch (IOException cause) {
+      close();
+      throw new RuntimeException("Cannot open webjar assets.", cause);
+    }
+  }
+
+  /** Finds an asset by request path.
+   *
+   * @param path Request path, with or without the leading slash. Cannot be
+   *    null.
+   * @return The required asset, or null if it does not exist.
+   */
+  public Asset find(final String path) {
+    if (path.startsWith("/")) {
+      return assets.get(path.substring(1));
+    }
+    return assets.get(path);
+  }
+
+  /** Returns the number of indexed assets.
+   * @return The number of assets, always zero or greater.
+   */
+  public int size() {
+    return assets.size();
+  }
+
+  /** Closes all jar files. Assets cannot be read afterwards.
+   */
+  public void close() {
+    for (ZipFile zipFile : zipFiles.values()) {
+      try {
+        zipFile.close();
+      } catch (IOException cause) {
+        // Nothing to do, the file is discarded anyway.
+      }
+    }
+    zipFiles.clear();
+  }
+
+  /** Returns the open jar file that contains a resource.
+   *
+   * @param url Location of the resource. Cannot be null.
+   * @return The open jar file, or null if the resource is not in a jar file.
+   * @throws IOException if the jar file cannot be opened.
+   */
+  private ZipFile getZipFile(final URL url) throws IOException {
+    if (!ResourceUtils.isJarURL(url)) {
+      return null;
+    }
+    return getZipFile(ResourceUtils.getFile(
+        ResourceUtils.extractJarFileURL(url)));
+  }
+
+  /** Returns the root directory of the webjar an asset belongs to, i.e.
+   * META-INF/resources/webjars/foo/1.0/. All the files of a webjar are in the
+   * same jar file.
+   *
+   * @param assetFile Asset to get the directory for. Cannot be null.
+   * @return A valid directory ending with a slash, never null.
+   */
+  private static String getWebJarDirectory(final String assetFile) {
+    int end = RESOURCES_DIR.length();
+
+    for (int i = 0; i < WEBJAR_DIR_DEPTH; i++) {
+      int separator = assetFile.indexOf('/', end);
+
+      if (separator < 0) {
+        // Not within a webjar root, uses the asset directory.
+        return assetFile.substring(0, assetFile.lastIndexOf('/') + 1);
+      }
+      end = separator + 1;
+    }
+    return assetFile.substring(0, end);
+  }
+
+  /** Returns the open jar file for the specified file, opening it if
+   * required.
+   *
+   * @param file Jar file to open. Cannot be null.
+   * @return A valid zip file, never null.
+   * @throws IOException if the file cannot be opened.
+   */
+  private ZipFile getZipFile(final File file) throws IOException {
+    ZipFile zipFile = zipFiles.get(file.getAbsolutePath());
+
+    if (zipFile == null) {
+      zipFile = new ZipFile(file);
+      zipFiles.put(file.getAbsolutePath(), zipFile);
+    }
+    return zipFile;
+  }
+
+  /** Returns the content type of a file from its extension.
+   *
+   * @param file File to get the content type for. Cannot be null.
+   * @return A valid content type, never null or empty.
+   */
+  private static String getContentType(final String file) {
+    String contentType = CONTENT_TYPES.get(StringUtils.substringAfterLast(
+        file, ".").toLowerCase());
+
+    if (contentType == null) {
+      return DEFAULT_CONTENT_TYPE;
+    }
+    return contentType;
+  }
+}
@@ -0,0 +1,203 @@
+package com.github.seykron.webjars;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+
+/** Reads a dependency graph written by the <code>binary</code> format of the
+ * webjars-maven-plugin.
+ * <p>
+ * All numbers are big-endian. Strings are stored once in a string table and
+ * referenced by index everywhere else:
+ *   <pre>
+ *   int     magic, 'WJDG'
+ *   int     format version
+ *   int     number of strings, followed by each string:
+ *             int length, UTF-8 bytes
+ *   int     number of dependencies, followed by each dependency:
+ *             int id, int name, int version (string indexes)
+ *             int count, JavaScript files (string indexes)
+ *             int count, CSS files (string indexes)
+ *             int count, asset files (string indexes), since version 2
+ *             int count, dependencies (dependency indexes)
+ *             int count, file sizes (int file string index, long size)
+ *             int count, file dependencies, since version 3, each one:
+ *               int file (string index)
+ *               int count, required files (string indexes)
+ *   int     number of indexed paths, sorted by path, followed by each path:
+ *             int path (string index), int dependency index
+ *   </pre>
+ * The buffer is read sequentially, and it's usually a memory-mapped file.
+ * </p>
+ */
+final class BinaryDependencyGraphReader {
+
+  /** Magic number at the start of the binary format, 'WJDG'. */
+  static final int MAGIC = 0x574A4447;
+
+  /** Latest supported format version. */
+  static final int VERSION = 3;
+
+  /** First format version with asset files. */
+  private static final int ASSETS_VERSION = 2;
+
+  /** First format version with dependencies between files. */
+  private static final int FILE_DEPENDENCIES_VERSION = 3;
+
+  /** Charset of the strings in the string table. */
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  /** Buffer to read the graph from, it's never null. */
+  private final ByteBuffer buffer;
+
+  /** String table, it's never null after the header is read. */
+  private String[] strings;
+
+  /** Creates a reader.
+   *
+   * @param theBuffer Buffer to read the graph from, positioned at the magic
+   *    number. Cannot be null.
+   */
+  BinaryDependencyGraphReader(final ByteBuffer theBuffer) {
+    Validate.notNull(theBuffer, "The buffer cannot be null.");
+    buffer = theBuffer.duplicate();
+  }
+
+  /** Determines whether a buffer contains a graph in the binary format. It
+   * doesn't change the buffer position.
+   *
+   * @param buffer Buffer to check. Cannot be null.
+   * @return true if the buffer starts with the binary format magic number.
+   */
+  static boolean isBinary(final ByteBuffer buffer) {
+    Validate.notNull(buffer, "The buffer cannot be null.");
+    return buffer.remaining() >= (Integer.SIZE / Byte.SIZE)
+        && buffer.getInt(buffer.position()) == MAGIC;
+  }
+
+  /** Reads the dependency descriptors.
+   *
+   * @param index Map to add the indexed paths to, from path to dependency
+   *    id. Cannot be null.
+   * @return The dependency descriptors, never null.
+   */
+  List<DependencyDescriptor> read(final Map<String, String> index) {
+    Validate.notNull(index, "The index cannot be null.");
+    Validate.isTrue(buffer.getInt() == MAGIC, "Not a binary dependency graph.");
+
+    int version = buffer.getInt();
+    Validate.isTrue(version > 0 && version <= VERSION,
+        "Unsupported version: " + version);
+
+    strings = new String[buffer.getInt()];
+
+    for (int i = 0; i < strings.length; i++) {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      strings[i] = new String(bytes, CHARSET);
+    }
+
+    int dependencyCount = buffer.getInt();
+    String[] ids = new String[dependencyCount];
+    int[][] adjacency = new int[dependencyCount][];
+    List<DependencyDescriptor> descriptors =
+        new ArrayList<DependencyDescriptor>(dependencyCount);
+    List<String[]> attributes = new ArrayList<String[]>(dependencyCount);
+    List<List<String>> jsFiles = new ArrayList<List<String>>();
+    List<List<String>> cssFiles = new ArrayList<List<String>>();
+    List<List<String>> assetFiles = new ArrayList<List<String>>();
+    List<Map<String, Long>> fileSizes = new ArrayList<Map<String, Long>>();
+    List<Map<String, List<String>>> fileDependencies =
+        new ArrayList<Map<String, List<String>>>();
+
+    for (int i = 0; i < dependencyCount; i++) {
+      String id = string();
+      ids[i] = id;
+      attributes.add(new String[] {id, string(), string()});
+      jsFiles.add(strings());
+      cssFiles.add(strings());
+
+      if (version >= ASSETS_VERSION) {
+        assetFiles.add(strings());
+      } else {
+        assetFiles.add(new ArrayList<String>());
+      }
+
+      adjacency[i] = new int[buffer.getInt()];
+
+      for (int j = 0; j < adjacency[i].length; j++) {
+        adjacency[i][j] = buffer.getInt();
+      }
+
+      int sizeCount = buffer.getInt();
+      Map<String, Long> sizes = new HashMap<String, Long>();
+
+      for (int j = 0; j < sizeCount; j++) {
+        String file = string();
+        sizes.put(file, buffer.getLong());
+      }
+      fileSizes.add(sizes);
+
+      Map<String, List<String>> requires =
+          new HashMap<String, List<String>>();
+
+      if (version >= FILE_DEPENDENCIES_VERSION) {
+        int fileCount = buffer.getInt();
+
+        for (int j = 0; j < fileCount; j++) {
+          String file = string();
+          requires.put(file, strings());
+        }
+      }
+      fileDependencies.add(requires);
+    }
+
+    // Dependencies are referenced by index, so ids are resolved once all
+    // dependencies are read.
+    for (int i = 0; i < dependencyCount; i++) {
+      List<String> dependencies = new ArrayList<String>(adjacency[i].length);
+
+      for (int dependency : adjacency[i]) {
+        dependencies.add(ids[dependency]);
+      }
+
+      String[] attribute = attributes.get(i);
+      descriptors.add(new DependencyDescriptor(attribute[0], attribute[1],
+          attribute[2], jsFiles.get(i), cssFiles.get(i), assetFiles.get(i),
+          dependencies, fileSizes.get(i), fileDependencies.get(i)));
+    }
+
+    int pathCount = buffer.getInt();
+
+    for (int i = 0; i < pathCount; i++) {
+      String path = string();
+      index.put(path, ids[buffer.getInt()]);
+    }
+    return descriptors;
+  }
+
+  /** Reads a string reference.
+   * @return The referenced string, never null.
+   */
+  private String string() {
+    return strings[buffer.getInt()];
+  }
+
+  /** Reads a list of string references, preceded by its length.
+   * @return The referenced strings, never null.
+   */
+  private List<String> strings() {
+    int count = buffer.getInt();
+    List<String> result = new ArrayList<String>(count);
+
+    for (int i = 0; i < count; i++) {
+      result.add(string());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,98 @@
+package com.github.seykron.webjars;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang.Validate;
+
+/** Encodes content using brotli.
+ * <p>
+ * It delegates to <a href="https://github.com/hyperxpro/Brotli4j">Brotli4j</a>
+ * which must be in the classpath along with the native library for the
+ * current platform. It's accessed by reflection, so it's not a required
+ * dependency. Use {@link #isAvailable()} to check whether the encoder can be
+ * used.
+ * </p>
+ */
+public class BrotliContentEncoder implements ContentEncoder {
+
+  /** Extension of brotli encoded files. */
+  public static final String FILE_EXTENSION = ".br";
+
+  /** Name of the brotli content coding. */
+  public static final String NAME = "br";
+
+  /** Brotli4j native library loader class name. */
+  private static final String LOADER_CLASS =
+      "com.aayushatharva.brotli4j.Brotli4jLoader";
+
+  /** Brotli4j encoder class name. */
+  private static final String ENCODER_CLASS =
+      "com.aayushatharva.brotli4j.encoder.Encoder";
+
+  /** Brotli4j compress method, it's never null. */
+  private final Method compress;
+
+  /** Creates the brotli encoder.
+   * @throws IllegalStateException if brotli is not available.
+   */
+  public BrotliContentEncoder() {
+    if (!isAvailable()) {
+      throw new IllegalStateException("Brotli4j is not available.");
+    }
+
+    try {
+      compress = Class.forName(ENCODER_CLASS).getMethod("compress",
+          byte[].class);
+    } catch (Exception cause) {
+      throw new IllegalStateException("Cannot initialize brotli.", cause);
+    }
+  }
+
+  /** Determines whether the brotli encoder and its native library are
+   * available.
+   *
+   * @return true if brotli can be used, false otherwise.
+   */
+  public static boolean isAvailable() {
+    try {
+      Class<?> loader = Class.forName(LOADER_CLASS);
+      return (Boolean) loader.getMethod("isAvailable").invoke(null);
+    } catch (Exception cause) {
+      return false;
+    } catch (LinkageError cause) {
+      return false;
+    }
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getFileExtension() {
+    return FILE_EXTENSION;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public byte[] encode(final byte[] content) throws IOException {
+    Validate.notNull(content, "The content cannot be null.");
+
+    try {
+      return (byte[]) compress.invoke(null, (Object) content);
+    } catch (InvocationTargetException cause) {
+      throw new IOException("Cannot encode content.",
+          cause.getTargetException());
+    } catch (IllegalAccessException cause) {
+      throw new IllegalStateException("Cannot access brotli.", cause);
+    }
+  }
+}
@@ -0,0 +1,290 @@
+package com.github.seykron.webjars;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.springframework.core.io.AbstractResource;
+
+/** Materialized content of a {@link WebJarResource}.
+ * <p>
+ * The resource files are read and concatenated only once, when the bundle is
+ * created. Then the bundle is served from memory. A bundle may also hold
+ * encoded variants of the content, i.e. gzip, keyed by content coding name.
+ * </p>
+ * <p>
+ * The content may be held in heap arrays or in direct buffers. Direct
+ * buffers keep big bundles out of the garbage collected heap. Heap content is
+ * written to the output stream in a single call. Direct content is written
+ * through a channel that copies it in small heap chunks, so it's a storage
+ * option, it doesn't save copies when serving the bundle.
+ * </p>
+ */
+public class Bundle extends AbstractResource {
+
+  /** Resource this bundle was built from, it's never null. */
+  private final WebJarResource resource;
+
+  /** Bundle content, it's read through duplicates so the position never
+   * changes. It's never null. */
+  private final ByteBuffer content;
+
+  /** Encoded variants of the content by content coding, it's never null. */
+  private final Map<String, ByteBuffer> encodedContent;
+
+  /** Creates a bundle and sets the materialized content.
+   *
+   * @param theResource Resource this bundle was built from. Cannot be null.
+   * @param theContent Resource content. Cannot be null.
+   */
+  Bundle(final WebJarResource theResource, final byte[] theContent) {
+    this(theResource, ByteBuffer.wrap(theContent),
+        new HashMap<String, ByteBuffer>());
+  }
+
+  /** Creates a bundle and sets the materialized content and its encoded
+   * variants.
+   *
+   * @param theResource Resource this bundle was built from. Cannot be null.
+   * @param theContent Resource content. Cannot be null.
+   * @param theEncodedContent Encoded variants of the content, by content
+   *    coding name. Cannot be null.
+   */
+  Bundle(final WebJarResource theResource, final ByteBuffer theContent,
+      final Map<String, ByteBuffer> theEncodedContent) {
+    Validate.notNull(theResource, "The resource cannot be null.");
+    Validate.notNull(theContent, "The content cannot be null.");
+    Validate.notNull(theEncodedContent, "The encoded content cannot be null.");
+
+    resource = theResource;
+    content = theContent.duplicate();
+    encodedContent = new HashMap<String, ByteBuffer>();
+
+    for (Map.Entry<String, ByteBuffer> encoded
+        : theEncodedContent.entrySet()) {
+      encodedContent.put(encoded.getKey(), encoded.getValue().duplicate());
+    }
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getDescription() {
+    return "Bundle for WebJar " + resource.getId();
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return new BufferInputStream(content.duplicate());
+  }
+
+  /** Returns the bundle size, it never reads the content.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public long contentLength() throws IOException {
+    return content.remaining();
+  }
+
+  /** Returns the last modified time of the underlying resource.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public long lastModified() throws IOException {
+    return resource.lastModified();
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getFilename() throws IllegalStateException {
+    return resource.getFilename();
+  }
+
+  /** Returns the resource this bundle was built from.
+   * @return A valid resource, never null.
+   */
+  public WebJarResource getResource() {
+    return resource;
+  }
+
+  /** Returns the bundle size in bytes.
+   * @return The size of the bundle content.
+   */
+  public int size() {
+    return content.remaining();
+  }
+
+  /** Returns the memory retained by this bundle, including the encoded
+   * variants.
+   *
+   * @return The size of the content and all encoded variants, in bytes.
+   */
+  public long retainedSize() {
+    long retainedSize = content.remaining();
+
+    for (ByteBuffer encoded : encodedContent.values()) {
+      retainedSize += encoded.remaining();
+    }
+    return retainedSize;
+  }
+
+  /** Determines whether this bundle has a variant for the specified content
+   * coding.
+   *
+   * @param encoding Content coding name. Cannot be null.
+   * @return true if the encoded variant exists, false otherwise.
+   */
+  public boolean hasEncoding(final String encoding) {
+    return encodedContent.containsKey(encoding);
+  }
+
+  /** Returns the length of the specified variant.
+   *
+   * @param encoding Content coding name, or null for the plain content.
+   * @return The variant length in bytes.
+   */
+  public int getLength(final String encoding) {
+    return getContent(encoding).remaining();
+  }
+
+  /** Determines whether this bundle is held in direct buffers.
+   * @return true if the content is off the heap, false otherwise.
+   */
+  public boolean isDirect() {
+    return content.isDirect();
+  }
+
+  /** Writes the specified variant to an output stream. Heap content is
+   * written in a single call. Direct content is copied to the stream in
+   * heap chunks.
+   *
+   * @param encoding Content coding name, or null for the plain content.
+   * @param out Stream to write the variant to. Cannot be null.
+   * @throws IOException if the content cannot be written.
+   */
+  public void write(final String encoding, final OutputStream out)
+      throws IOException {
+    Validate.notNull(out, "The output stream cannot be null.");
+
+    write(encoding, out, 0, getLength(encoding));
+  }
+
+  /** Writes a range of the specified variant to an output stream. The range
+   * is read in place, no bytes before it are read.
+   *
+   * @param encoding Content coding name, or null for the plain content.
+   * @param out Stream to write the range to. Cannot be null.
+   * @param offset Position of the first byte to write. Must be zero or
+   *    greater.
+   * @param length Number of bytes to write. The range must be within the
+   *    variant.
+   * @throws IOException if the content cannot be written.
+   */
+  public void write(final String encoding, final OutputStream out,
+      final long offset, final long length) throws IOException {
+    Validate.notNull(out, "The output stream cannot be null.");
+
+    ByteBuffer buffer = getContent(encoding).duplicate();
+    Validate.isTrue(offset >= 0 && length >= 0
+        && offset + length <= buffer.remaining(), "Invalid range.");
+
+    buffer.position(buffer.position() + (int) offset);
+    buffer.limit(buffer.position() + (int) length);
+
+    if (buffer.hasArray()) {
+      out.write(buffer.array(), buffer.arrayOffset() + buffer.position(),
+          buffer.remaining());
+    } else {
+      Channels.newChannel(out).write(buffer);
+    }
+  }
+
+  /** Returns the content of the specified variant.
+   *
+   * @param encoding Content coding name, or null for the plain content.
+   * @return The variant content, never null. It must not be modified.
+   */
+  private ByteBuffer getContent(final String encoding) {
+    if (encoding == null) {
+      return content;
+    }
+
+    ByteBuffer encoded = encodedContent.get(encoding);
+    Validate.notNull(encoded, "Encoding not available: " + encoding);
+
+    return encoded;
+  }
+
+  /** Input stream that reads a buffer, it doesn't copy the content.
+   */
+  private static final class BufferInputStream extends InputStream {
+
+    /** Mask to read a byte as an unsigned value. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Buffer to read, it's never null. */
+    private final ByteBuffer buffer;
+
+    /** Creates the input stream.
+     * @param theBuffer Buffer to read. Cannot be null.
+     */
+    private BufferInputStream(final ByteBuffer theBuffer) {
+      buffer = theBuffer;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public int read() {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      return buffer.get() & BYTE_MASK;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public long skip(final long count) {
+      if (count <= 0) {
+        return 0;
+      }
+
+      int skipped = (int) Math.min(count, buffer.remaining());
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package com.github.seykron.webjars;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.springframework.core.io.Resource;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Keeps materialized {@link Bundle}s in memory.
+ * <p>
+ * Bundles are keyed by dependency id and {@link MediaType}, and they are
+ * built once the first time they are required. The cache is bounded by the
+ * total size of the bundles it holds: when it is exceeded, the least recently
+ * used bundles are evicted. A bundle bigger than the cache size is served but
+ * never retained.
+ * </p>
+ * <p>
+ * When the cache has {@link ContentEncoder}s, each bundle is encoded with all
+ * of them when it's built. Encoded variants count for the cache size.
+ * </p>
+ * <p>
+ * Bundles and encoded variants found in the {@link PrebuiltBundles} are read
+ * as they are instead of being built.
+ * </p>
+ * <p>
+ * Bundles may be kept in direct buffers, out of the garbage collected heap.
+ * It's an off-heap storage option for big bundles, not zero-copy serving:
+ * output streams only accept heap arrays, so direct content is still copied
+ * through the heap, in small chunks, each time it's written. Direct bundles
+ * still count for the cache size. Evicted direct buffers are only freed
+ * by the garbage collector, so the direct memory still allocated is tracked
+ * as well, and it never goes beyond the cache size: if it would, the bundle
+ * is kept in the heap instead.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class BundleCache {
+
+  /** Default load factor of the underlying map. */
+  private static final float LOAD_FACTOR = 0.75f;
+
+  /** Initial capacity of the underlying map. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Maximum size of all bundles in bytes, it's always zero or greater. */
+  private final long maxSize;
+
+  /** Encoders to build the bundle variants, it's never null. */
+  private final List<ContentEncoder> contentEncoders;
+
+  /** Bundles built at build time, it's never null. */
+  private final PrebuiltBundles prebuiltBundles;
+
+  /** Whether bundles are kept in direct buffers. */
+  private final boolean directBuffers;
+
+  /** Current size of all bundles in bytes, it's always zero or greater. */
+  private long size;
+
+  /** Direct buffers not freed yet, it's never null. */
+  private final Set<DirectBufferReference> directReferences =
+      new HashSet<DirectBufferReference>();
+
+  /** Queue of the direct buffers freed by the garbage collector, it's never
+   * null. */
+  private final ReferenceQueue<ByteBuffer> freedBuffers =
+      new ReferenceQueue<ByteBuffer>();
+
+  /** Size of the direct buffers not freed yet, in bytes. It's always zero or
+   * greater, and never greater than the maximum size. */
+  private long directSize;
+
+  /** Bundles in access order, eldest first. It's never null. */
+  private final Map<Key, Bundle> bundles = new LinkedHashMap<Key, Bundle>(
+      INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+  /** Creates a bundle cache.
+   *
+   * @param theMaxSize Maximum size of all cached bundles, in bytes. Must be
+   *    zero or greater.
+   */
+  public BundleCache(final long theMaxSize) {
+    this(theMaxSize, new ArrayList<ContentEncoder>());
+  }
+
+  /** Creates a bundle cache that keeps encoded variants of the bundles.
+   *
+   * @param theMaxSize Maximum size of all cached bundles, in bytes. Must be
+   *    zero or greater.
+   * @param theContentEncoders Encoders to build the bundle variants. Cannot
+   *    be null.
+   */
+  public BundleCache(final long theMaxSize,
+      final List<ContentEncoder> theContentEncoders) {
+    this(theMaxSize, theContentEncoders, new PrebuiltBundles());
+  }
+
+  /** Creates a bundle cache that keeps encoded variants of the bundles, and
+   * reads the available prebuilt bundles.
+   *
+   * @param theMaxSize Maximum size of all cached bundles, in bytes. Must be
+   *    zero or greater.
+   * @param theContentEncoders Encoders to build the bundle variants. Cannot
+   *    be null.
+   * @param thePrebuiltBundles Bundles built at build time. Cannot be null.
+   */
+  public BundleCache(final long theMaxSize,
+      final List<ContentEncoder> theContentEncoders,
+      final PrebuiltBundles thePrebuiltBundles) {
+    this(theMaxSize, theContentEncoders, thePrebuiltBundles, false);
+  }
+
+  /** Creates a bundle cache that keeps encoded variants of the bundles,
+   * reads the available prebuilt bundles, and optionally keeps the bundles
+   * in direct buffers.
+   *
+   * @param theMaxSize Maximum size of all cached bundles, in bytes. Must be
+   *    zero or greater.
+   * @param theContentEncoders Encoders to build the bundle variants. Cannot
+   *    be null.
+   * @param thePrebuiltBundles Bundles built at build time. Cannot be null.
+   * @param theDirectBuffers true to keep bundles in direct buffers, false to
+   *    keep them in the heap.
+   */
+  public BundleCache(final long theMaxSize,
+      final List<ContentEncoder> theContentEncoders,
+      final PrebuiltBundles thePrebuiltBundles,
+      final boolean theDirectBuffers) {
+    Validate.isTrue(theMaxSize >= 0, "The cache size cannot be negative.");
+    Validate.notNull(theContentEncoders,
+        "The content encoders cannot be null.");
+    Validate.notNull(thePrebuiltBundles,
+        "The prebuilt bundles cannot be null.");
+    maxSize = theMaxSize;
+    contentEncoders = new ArrayList<ContentEncoder>(theContentEncoders);
+    prebuiltBundles = thePrebuiltBundles;
+    directBuffers = theDirectBuffers;
+  }
+
+  /** Returns the bundle for the specified resource, building it if it's not
+   * cached yet.
+   *
+   * @param resource Resource to retrieve bundle for. Cannot be null.
+   * @return A valid bundle, never null.
+   */
+  public Bundle get(final WebJarResource resource) {
+    Validate.notNull(resource, "The resource cannot be null.");
+
+    Key key = new Key(resource.getId(), resource.getResourceFile(),
+        resource.getType());
+    Bundle bundle;
+
+    synchronized (this) {
+      bundle = bundles.get(key);
+    }
+    if (bundle != null) {
+      return bundle;
+    }
+
+    // Builds the bundle out of the lock, so slow builds don't block requests
+    // for other bundles. Concurrent builds of the same bundle are harmless,
+    // the first one wins.
+    bundle = build(resource);
+
+    synchronized (this) {
+      Bundle cached = bundles.get(key);
+
+      if (cached != null) {
+        return cached;
+      }
+      if (bundle.retainedSize() <= maxSize) {
+        bundles.put(key, bundle);
+        size += bundle.retainedSize();
+        evict();
+      }
+    }
+    return bundle;
+  }
+
+  /** Indicates whether this cache retains bundles.
+   * @return true if the maximum size is greater than zero, false otherwise.
+   */
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /** Returns the total size of cached bundles.
+   * @return The cache size in bytes, always zero or greater.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /** Returns the number of cached bundles.
+   * @return The number of bundles, always zero or greater.
+   */
+  public synchronized int getCount() {
+    return bundles.size();
+  }
+
+  /** Removes all bundles from the cache.
+   */
+  public synchronized void clear() {
+    bundles.clear();
+    size = 0;
+  }
+
+  /** Removes least recently used bundles until the cache size is below the
+   * maximum size. The caller must hold the lock.
+   */
+  private void evict() {
+    Iterator<Bundle> it = bundles.values().iterator();
+
+    while (size > maxSize && it.hasNext()) {
+      Bundle eldest = it.next();
+      size -= eldest.retainedSize();
+      it.remove();
+    }
+  }
+
+  /** Builds the bundle for the specified resource and all its encoded
+   * variants. Prebuilt content is used when it exists.
+   *
+   * @param resource Resource to build the bundle for. Cannot be null.
+   * @return A valid bundle, never null.
+   */
+  private Bundle build(final WebJarResource resource) {
+    Resource prebuilt = prebuiltBundles.find(resource, null);
+    byte[] content;
+
+    if (prebuilt != null) {
+      content = read(resource, prebuilt);
+    } else {
+      content = read(resource, resource);
+    }
+
+    Map<String, ByteBuffer> encodedContent =
+        new HashMap<String, ByteBuffer>();
+
+    for (ContentEncoder encoder : contentEncoders) {
+      Resource encoded = null;
+
+      if (prebuilt != null) {
+        encoded = prebuiltBundles.find(resource, encoder.getFileExtension());
+      }
+      try {
+        if (encoded != null) {
+          encodedContent.put(encoder.getName(),
+              store(read(resource, encoded)));
+        } else {
+          encodedContent.put(encoder.getName(),
+              store(encoder.encode(content)));
+        }
+      } catch (IOException cause) {
+        throw new RuntimeException("Cannot encode bundle for "
+            + resource.getId() + " using " + encoder.getName(), cause);
+      }
+    }
+    return new Bundle(resource, store(content), encodedContent);
+  }
+
+  /** Stores bundle content in a buffer, which is direct if this cache keeps
+   * bundles off the heap and the direct memory not freed yet has room for
+   * it.
+   *
+   * @param content Content to store. Cannot be null.
+   * @return A buffer with the content, never null.
+   */
+  private ByteBuffer store(final byte[] content) {
+    if (!directBuffers) {
+      return ByteBuffer.wrap(content);
+    }
+
+    synchronized (directReferences) {
+      DirectBufferReference freed = (DirectBufferReference) freedBuffers.poll();
+
+      while (freed != null) {
+        directReferences.remove(freed);
+        directSize -= freed.getSize();
+        freed = (DirectBufferReference) freedBuffers.poll();
+      }
+      if (directSize + content.length > maxSize) {
+        return ByteBuffer.wrap(content);
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+      buffer.put(content);
+      buffer.flip();
+      directReferences.add(new DirectBufferReference(buffer, freedBuffers));
+      directSize += content.length;
+      return buffer;
+    }
+  }
+
+  /** Returns the size of the direct buffers not freed yet.
+   * @return The size in bytes, always zero or greater.
+   */
+  long getDirectSize() {
+    synchronized (directReferences) {
+      return directSize;
+    }
+  }
+
+  /** Reads the full content of a bundle.
+   *
+   * @param resource Resource the bundle belongs to. Cannot be null.
+   * @param source Resource to read the content from. Cannot be null.
+   * @return The bundle content, never null.
+   */
+  private byte[] read(final WebJarResource resource, final Resource source) {
+    InputStream in = null;
+
+    try {
+      in = source.getInputStream();
+      return IOUtils.toByteArray(in);
+    } catch (IOException cause) {
+      throw new RuntimeException("Cannot build bundle for "
+          + resource.getId(), cause);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /** Cache key, it's a dependency id, an optional file and a media type.
+   */
+  private static final class Key {
+
+    /** Dependency id, it's never null. */
+    private final String id;
+
+    /** File of the bundle, or null for the whole dependency. */
+    private final String file;
+
+    /** Type of the bundle, it's never null. */
+    private final MediaType type;
+
+    /** Creates a cache key.
+     * @param theId Dependency id. Cannot be null.
+     * @param theFile File of the bundle, or null for the whole dependency.
+     * @param theType Type of the bundle. Cannot be null.
+     */
+    private Key(final String theId, final String theFile,
+        final MediaType theType) {
+      id = theId;
+      file = theFile;
+      type = theType;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public boolean equals(final Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return id.equals(key.id) && ObjectUtils.equals(file, key.file)
+          && type == key.type;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public int hashCode() {
+      return new HashCodeBuilder().append(id).append(file).append(type)
+          .toHashCode();
+    }
+  }
+
+  /** Reference enqueued once a direct buffer is garbage collected, which is
+   * when its memory is freed.
+   */
+  private static class DirectBufferReference
+      extends PhantomReference<ByteBuffer> {
+
+    /** Size of the buffer, in bytes. */
+    private final int bufferSize;
+
+    /** Creates a reference to a direct buffer.
+     *
+     * @param buffer Buffer to track. Cannot be null.
+     * @param queue Queue to enqueue the reference to. Cannot be null.
+     */
+    DirectBufferReference(final ByteBuffer buffer,
+        final ReferenceQueue<ByteBuffer> queue) {
+      super(buffer, queue);
+      bufferSize = buffer.capacity();
+    }
+
+    /** Returns the size of the buffer.
+     * @return The size in bytes, always zero or greater.
+     */
+    int getSize() {
+      return bufferSize;
+    }
+  }
+}
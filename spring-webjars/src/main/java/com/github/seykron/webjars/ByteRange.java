@@ -0,0 +1,195 @@
+package com.github.seykron.webjars;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/** A range of bytes requested through the HTTP <code>Range</code> header.
+ * <p>
+ * Only byte ranges are supported. Ranges are resolved against the full
+ * length of the representation, so suffix and open ranges become absolute
+ * ranges. Overlapping and adjacent ranges are merged, and headers with more
+ * than {@link #MAX_RANGES} ranges are ignored, so a request cannot make the
+ * server write the same bytes many times.
+ * </p>
+ * <p>
+ * This class is immutable.
+ * </p>
+ */
+final class ByteRange {
+
+  /** Prefix of byte range specifiers in the Range header. */
+  private static final String BYTES_UNIT = "bytes=";
+
+  /** Maximum number of ranges in a Range header. */
+  static final int MAX_RANGES = 16;
+
+  /** Orders ranges by their start position, it's never null. */
+  private static final Comparator<ByteRange> BY_START =
+      new Comparator<ByteRange>() {
+        /** {@inheritDoc}.
+         */
+        @Override
+        public int compare(final ByteRange range, final ByteRange other) {
+          if (range.start == other.start) {
+            return 0;
+          }
+          if (range.start < other.start) {
+            return -1;
+          }
+          return 1;
+        }
+      };
+
+  /** Position of the first byte, it's always zero or greater. */
+  private final long start;
+
+  /** Position of the last byte, inclusive. It's always equal to or greater
+   * than the start. */
+  private final long end;
+
+  /** Creates a byte range.
+   *
+   * @param theStart Position of the first byte. Must be zero or greater.
+   * @param theEnd Position of the last byte, inclusive. Must be equal to or
+   *    greater than the start.
+   */
+  ByteRange(final long theStart, final long theEnd) {
+    Validate.isTrue(theStart >= 0 && theEnd >= theStart, "Invalid range.");
+    start = theStart;
+    end = theEnd;
+  }
+
+  /** Parses the ranges of a Range header.
+   *
+   * @param header Range header value. It may be null.
+   * @param length Full length of the representation, in bytes. Must be zero
+   *    or greater.
+   * @return The satisfiable ranges, merged and sorted by position. It's
+   *    empty if no range can be satisfied, and null if the header is missing,
+   *    invalid or has too many ranges, so it must be ignored.
+   */
+  static List<ByteRange> parse(final String header, final long length) {
+    if (header == null || !header.startsWith(BYTES_UNIT)) {
+      return null;
+    }
+
+    String[] specs = StringUtils.split(header.substring(BYTES_UNIT.length()),
+        ',');
+
+    if (specs.length == 0 || specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<ByteRange> ranges = new ArrayList<ByteRange>();
+
+    for (String spec : specs) {
+      String trimmedSpec = spec.trim();
+      int separator = trimmedSpec.indexOf('-');
+
+      if (separator < 0) {
+        return null;
+      }
+
+      String first = trimmedSpec.substring(0, separator);
+      String last = trimmedSpec.substring(separator + 1);
+
+      if (!StringUtils.isNumeric(first) || !StringUtils.isNumeric(last)
+          || (first.length() == 0 && last.length() == 0)) {
+        return null;
+      }
+
+      try {
+        if (first.length() == 0) {
+          // Suffix range, the last bytes of the representation.
+          long suffix = Long.parseLong(last);
+
+          if (suffix > 0 && length > 0) {
+            ranges.add(new ByteRange(Math.max(0, length - suffix),
+                length - 1));
+          }
+          continue;
+        }
+
+        long rangeStart = Long.parseLong(first);
+        long rangeEnd = length - 1;
+
+        if (last.length() > 0) {
+          rangeEnd = Math.min(Long.parseLong(last), length - 1);
+
+          if (Long.parseLong(last) < rangeStart) {
+            return null;
+          }
+        }
+        if (rangeStart < length) {
+          ranges.add(new ByteRange(rangeStart, rangeEnd));
+        }
+      } catch (NumberFormatException cause) {
+        return null;
+      }
+    }
+    return merge(ranges);
+  }
+
+  /** Merges overlapping and adjacent ranges.
+   *
+   * @param ranges Ranges to merge. Cannot be null.
+   * @return The merged ranges, sorted by position. Never null.
+   */
+  private static List<ByteRange> merge(final List<ByteRange> ranges) {
+    Collections.sort(ranges, BY_START);
+
+    List<ByteRange> merged = new ArrayList<ByteRange>();
+    ByteRange current = null;
+
+    for (ByteRange range : ranges) {
+      if (current != null && range.start <= current.end + 1) {
+        current = new ByteRange(current.start, Math.max(current.end,
+            range.end));
+      } else {
+        if (current != null) {
+          merged.add(current);
+        }
+        current = range;
+      }
+    }
+    if (current != null) {
+      merged.add(current);
+    }
+    return merged;
+  }
+
+  /** Returns the position of the first byte.
+   * @return The start position, always zero or greater.
+   */
+  long getStart() {
+    return start;
+  }
+
+  /** Returns the position of the last byte, inclusive.
+   * @return The end position, always equal to or greater than the start.
+   */
+  long getEnd() {
+    return end;
+  }
+
+  /** Returns the number of bytes in this range.
+   * @return The range length, always greater than zero.
+   */
+  long getLength() {
+    return end - start + 1;
+  }
+
+  /** Returns the value of the Content-Range header for this range.
+   *
+   * @param length Full length of the representation, in bytes.
+   * @return A valid header value, never null or empty.
+   */
+  String toContentRange(final long length) {
+    return "bytes " + start + "-" + end + "/" + length;
+  }
+}
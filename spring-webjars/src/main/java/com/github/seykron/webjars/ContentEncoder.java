@@ -0,0 +1,34 @@
+package com.github.seykron.webjars;
+
+import java.io.IOException;
+
+/** Compresses bundles for a specific HTTP content coding.
+ * <p>
+ * Bundles are encoded once, when they're built, and the encoded variant is
+ * served to clients that accept the content coding.
+ * </p>
+ */
+public interface ContentEncoder {
+
+  /** Returns the HTTP content coding name, as used in the Accept-Encoding and
+   * Content-Encoding headers.
+   *
+   * @return A valid content coding name, i.e. gzip. Never null or empty.
+   */
+  String getName();
+
+  /** Returns the extension of files encoded with this content coding.
+   *
+   * @return A valid extension including the dot, i.e. .gz. Never null or
+   *    empty.
+   */
+  String getFileExtension();
+
+  /** Encodes the specified content.
+   *
+   * @param content Content to encode. Cannot be null.
+   * @return The encoded content, never null.
+   * @throws IOException if the content cannot be encoded.
+   */
+  byte[] encode(byte[] content) throws IOException;
+}
@@ -0,0 +1,283 @@
+package com.github.seykron.webjars;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/** Prepares the files of a CSS bundle, so they work from the bundle URL.
+ * <p>
+ * Files in a bundle come from different directories, but they are all
+ * served from the bundle directory. Relative <code>url(...)</code> and
+ * <code>@import</code> references are rewritten so they are relative to the
+ * bundle directory. Absolute, root-relative and data URLs are kept as they
+ * are.
+ * </p>
+ * <p>
+ * Imports without media queries are inlined, so a chain of stylesheets is
+ * loaded with a single request. Each file is included only once per bundle:
+ * files already inlined are skipped when they appear later in the bundle,
+ * and imports of files already included are removed. <code>@charset</code>
+ * rules are removed, since they are only valid at the start of a file. Files
+ * are read as UTF-8.
+ * </p>
+ * <p>
+ * A rewriter keeps the state of a single bundle, so it must not be reused.
+ * The webjars-maven-plugin rewrites prebuilt bundles with this class too.
+ * </p>
+ */
+public abstract class CssRewriter {
+
+  /** Charset of CSS files. */
+  public static final String CHARSET = "UTF-8";
+
+  /** Pattern of import rules and URLs. Imports have the quote, the URL and
+   * the media queries; URLs have the quote and the URL. */
+  private static final Pattern REFERENCE_PATTERN = Pattern.compile(
+      "@import\\s+(?:url\\(\\s*)?([\"']?)([^\"')\\s;]+)\\1\\s*\\)?\\s*"
+      + "([^;]*);|url\\(\\s*([\"']?)([^\"')]+?)\\4\\s*\\)");
+
+  /** Group of the quote of import rules. */
+  private static final int IMPORT_QUOTE_GROUP = 1;
+
+  /** Group of the URL of import rules. */
+  private static final int IMPORT_URL_GROUP = 2;
+
+  /** Group of the media queries of import rules. */
+  private static final int IMPORT_MEDIA_GROUP = 3;
+
+  /** Group of the quote of URLs. */
+  private static final int URL_QUOTE_GROUP = 4;
+
+  /** Group of the URL of URLs. */
+  private static final int URL_GROUP = 5;
+
+  /** Pattern of charset rules. */
+  private static final Pattern CHARSET_PATTERN = Pattern.compile(
+      "@charset\\s+[\"'][^\"']*[\"']\\s*;");
+
+  /** Pattern of URLs that are not relative: with scheme, protocol-relative,
+   * root-relative or fragment only. */
+  private static final Pattern ABSOLUTE_URL_PATTERN = Pattern.compile(
+      "^([a-zA-Z][a-zA-Z0-9+.-]*:|/|#).*");
+
+  /** Directory of the bundle, ending with a slash. It's never null. */
+  private final String baseDirectory;
+
+  /** Files already included in the bundle, it's never null. */
+  private final Set<String> included = new HashSet<String>();
+
+  /** Creates a rewriter for a bundle.
+   *
+   * @param theBaseDirectory Directory the bundle is served from, as a
+   *    classpath directory, i.e. META-INF/resources/webjars/foo/1.0/. Cannot
+   *    be null.
+   */
+  public CssRewriter(final String theBaseDirectory) {
+    Validate.notNull(theBaseDirectory, "The base directory cannot be null.");
+
+    if (theBaseDirectory.length() == 0 || theBaseDirectory.endsWith("/")) {
+      baseDirectory = theBaseDirectory;
+    } else {
+      baseDirectory = theBaseDirectory + "/";
+    }
+  }
+
+  /** Rewrites the next file of the bundle.
+   *
+   * @param file Classpath path of the file. Cannot be null.
+   * @return The rewritten content, or an empty string if the file was
+   *    already included. Never null.
+   * @throws IOException if the file cannot be read.
+   */
+  public String rewrite(final String file) throws IOException {
+    Validate.notNull(file, "The file cannot be null.");
+
+    if (!included.add(file)) {
+      return "";
+    }
+
+    String content = read(file);
+
+    if (content == null) {
+      throw new IOException("File not found: " + file);
+    }
+    return process(file, content);
+  }
+
+  /** Reads a file.
+   *
+   * @param file Classpath path of the file. Cannot be null.
+   * @return The file content, or null if it does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  protected abstract String read(String file) throws IOException;
+
+  /** Rewrites the references of a file and inlines its imports.
+   *
+   * @param file Classpath path of the file. Cannot be null.
+   * @param content File content. Cannot be null.
+   * @return The rewritten content, never null.
+   * @throws IOException if an imported file cannot be read.
+   */
+  private String process(final String file, final String content)
+      throws IOException {
+    Matcher matcher = REFERENCE_PATTERN.matcher(
+        CHARSET_PATTERN.matcher(content).replaceAll(""));
+    StringBuffer result = new StringBuffer();
+
+    while (matcher.find()) {
+      String replacement;
+
+      if (matcher.group(IMPORT_URL_GROUP) != null) {
+        replacement = processImport(file, matcher);
+      } else {
+        replacement = "url(" + matcher.group(URL_QUOTE_GROUP)
+            + rebase(file, matcher.group(URL_GROUP))
+            + matcher.group(URL_QUOTE_GROUP) + ")";
+      }
+      matcher.appendReplacement(result, Matcher.quoteReplacement(
+          replacement));
+    }
+    matcher.appendTail(result);
+    return result.toString();
+  }
+
+  /** Inlines an import rule, or rewrites its URL if it cannot be inlined.
+   *
+   * @param file Classpath path of the importing file. Cannot be null.
+   * @param matcher Matcher positioned at the import rule. Cannot be null.
+   * @return The replacement of the import rule, never null.
+   * @throws IOException if the imported file cannot be read.
+   */
+  private String processImport(final String file, final Matcher matcher)
+      throws IOException {
+    String url = matcher.group(IMPORT_URL_GROUP);
+    String media = matcher.group(IMPORT_MEDIA_GROUP).trim();
+
+    if (media.length() == 0 && isRelative(url)) {
+      String imported = resolve(file, url);
+
+      if (included.contains(imported)) {
+        return "";
+      }
+
+      String content = read(imported);
+
+      if (content != null) {
+        included.add(imported);
+        return process(imported, content);
+      }
+    }
+
+    String quote = matcher.group(IMPORT_QUOTE_GROUP);
+
+    if (quote.length() == 0) {
+      quote = "\"";
+    }
+    return StringUtils.strip("@import " + quote + rebase(file, url) + quote
+        + " " + media) + ";";
+  }
+
+  /** Rewrites a URL so it's relative to the bundle directory.
+   *
+   * @param file Classpath path of the file the URL belongs to. Cannot be
+   *    null.
+   * @param url URL to rewrite. Cannot be null.
+   * @return The rewritten URL, or the same URL if it's not relative.
+   */
+  private String rebase(final String file, final String url) {
+    if (!isRelative(url)) {
+      return url;
+    }
+
+    int suffixIndex = StringUtils.indexOfAny(url, "?#");
+    String path = url;
+    String suffix = "";
+
+    if (suffixIndex >= 0) {
+      path = url.substring(0, suffixIndex);
+      suffix = url.substring(suffixIndex);
+    }
+    if (path.length() == 0) {
+      return url;
+    }
+    return relativize(resolve(file, path)) + suffix;
+  }
+
+  /** Determines whether a URL is relative to the file it's declared in.
+   *
+   * @param url URL to check. Cannot be null.
+   * @return true if the URL is relative, false otherwise.
+   */
+  private static boolean isRelative(final String url) {
+    return url.length() > 0 && !ABSOLUTE_URL_PATTERN.matcher(url).matches();
+  }
+
+  /** Resolves a relative path against the directory of a file.
+   *
+   * @param file Classpath path of the file. Cannot be null.
+   * @param path Path relative to the file directory. Cannot be null.
+   * @return The normalized classpath path, never null.
+   */
+  public static String resolve(final String file, final String path) {
+    String directory = file.substring(0, file.lastIndexOf('/') + 1);
+    LinkedList<String> segments = new LinkedList<String>();
+
+    for (String segment : StringUtils.split(directory + path, '/')) {
+      if (segment.equals("..")) {
+        if (!segments.isEmpty()) {
+          segments.removeLast();
+        }
+      } else if (!segment.equals(".")) {
+        segments.add(segment);
+      }
+    }
+
+    String resolved = StringUtils.join(segments, '/');
+
+    if (path.endsWith("/")) {
+      resolved = resolved + "/";
+    }
+    return resolved;
+  }
+
+  /** Converts a classpath path to a path relative to the bundle directory.
+   *
+   * @param path Normalized classpath path. Cannot be null.
+   * @return The relative path, never null.
+   */
+  private String relativize(final String path) {
+    String[] base = StringUtils.split(baseDirectory, '/');
+    String[] target = StringUtils.split(path, '/');
+    int common = 0;
+
+    // The last segment of the target is the file name.
+    while (common < base.length && common < target.length - 1
+        && base[common].equals(target[common])) {
+      common += 1;
+    }
+
+    StringBuilder relative = new StringBuilder();
+
+    for (int i = common; i < base.length; i++) {
+      relative.append("../");
+    }
+    for (int i = common; i < target.length; i++) {
+      relative.append(target[i]);
+
+      if (i < target.length - 1) {
+        relative.append('/');
+      }
+    }
+    if (path.endsWith("/")) {
+      relative.append('/');
+    }
+    return relative.toString();
+  }
+}
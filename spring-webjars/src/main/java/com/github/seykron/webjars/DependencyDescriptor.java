@@ -0,0 +1,288 @@
+package com.github.seykron.webjars;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Describes a dependency in the {@link DependencyGraph}, regardless of the
+ * format the graph was read from.
+ * <p>
+ * This class is immutable.
+ * </p>
+ */
+public final class DependencyDescriptor {
+
+  /** Dependency unique id, it's never null or empty. */
+  private final String id;
+
+  /** Dependency name, it's never null or empty. */
+  private final String name;
+
+  /** Dependency version, it's never null or empty. */
+  private final String version;
+
+  /** Unmodifiable list of JavaScript files, it's never null. */
+  private final List<String> jsFiles;
+
+  /** Unmodifiable list of CSS files, it's never null. */
+  private final List<String> cssFiles;
+
+  /** Unmodifiable list of files that are neither JavaScript nor CSS, i.e.
+   * fonts and images. It's never null. */
+  private final List<String> assetFiles;
+
+  /** Unmodifiable list of ids of the immediate dependencies, it's never
+   * null. */
+  private final List<String> dependencies;
+
+  /** Unmodifiable map from file to size in bytes, for the files with a known
+   * size. It's never null. */
+  private final Map<String, Long> fileSizes;
+
+  /** Unmodifiable map from file to the files it requires, for the files
+   * with declared dependencies. It's never null. */
+  private final Map<String, List<String>> fileDependencies;
+
+  /** Creates a dependency descriptor.
+   *
+   * @param theId Dependency unique id. Cannot be null or empty.
+   * @param theName Dependency name. Cannot be null or empty.
+   * @param theVersion Dependency version. Cannot be null or empty.
+   * @param theJsFiles JavaScript files. Cannot be null.
+   * @param theCssFiles CSS files. Cannot be null.
+   * @param theDependencies Ids of the immediate dependencies. Cannot be null.
+   * @param theFileSizes Size of the files with a known size. Cannot be null.
+   */
+  public DependencyDescriptor(final String theId, final String theName,
+      final String theVersion, final List<String> theJsFiles,
+      final List<String> theCssFiles, final List<String> theDependencies,
+      final Map<String, Long> theFileSizes) {
+    this(theId, theName, theVersion, theJsFiles, theCssFiles,
+        new ArrayList<String>(), theDependencies, theFileSizes);
+  }
+
+  /** Creates a dependency descriptor with asset files.
+   *
+   * @param theId Dependency unique id. Cannot be null or empty.
+   * @param theName Dependency name. Cannot be null or empty.
+   * @param theVersion Dependency version. Cannot be null or empty.
+   * @param theJsFiles JavaScript files. Cannot be null.
+   * @param theCssFiles CSS files. Cannot be null.
+   * @param theAssetFiles Files that are neither JavaScript nor CSS. Cannot be
+   *    null.
+   * @param theDependencies Ids of the immediate dependencies. Cannot be null.
+   * @param theFileSizes Size of the files with a known size. Cannot be null.
+   */
+  public DependencyDescriptor(final String theId, final String theName,
+      final String theVersion, final List<String> theJsFiles,
+      final List<String> theCssFiles, final List<String> theAssetFiles,
+      final List<String> theDependencies,
+      final Map<String, Long> theFileSizes) {
+    this(theId, theName, theVersion, theJsFiles, theCssFiles, theAssetFiles,
+        theDependencies, theFileSizes, new HashMap<String, List<String>>());
+  }
+
+  /** Creates a dependency descriptor with asset files and dependencies
+   * between files.
+   *
+   * @param theId Dependency unique id. Cannot be null or empty.
+   * @param theName Dependency name. Cannot be null or empty.
+   * @param theVersion Dependency version. Cannot be null or empty.
+   * @param theJsFiles JavaScript files. Cannot be null.
+   * @param theCssFiles CSS files. Cannot be null.
+   * @param theAssetFiles Files that are neither JavaScript nor CSS. Cannot be
+   *    null.
+   * @param theDependencies Ids of the immediate dependencies. Cannot be null.
+   * @param theFileSizes Size of the files with a known size. Cannot be null.
+   * @param theFileDependencies Files required by each file, in load order.
+   *    Cannot be null.
+   */
+  public DependencyDescriptor(final String theId, final String theName,
+      final String theVersion, final List<String> theJsFiles,
+      final List<String> theCssFiles, final List<String> theAssetFiles,
+      final List<String> theDependencies,
+      final Map<String, Long> theFileSizes,
+      final Map<String, List<String>> theFileDependencies) {
+    Validate.notEmpty(theId, "The id cannot be null or empty.");
+    Validate.notEmpty(theName, "The name cannot be null or empty.");
+    Validate.notEmpty(theVersion, "The version cannot be null or empty.");
+    Validate.notNull(theJsFiles, "The JavaScript files cannot be null.");
+    Validate.notNull(theCssFiles, "The CSS files cannot be null.");
+    Validate.notNull(theAssetFiles, "The asset files cannot be null.");
+    Validate.notNull(theDependencies, "The dependencies cannot be null.");
+    Validate.notNull(theFileSizes, "The file sizes cannot be null.");
+    Validate.notNull(theFileDependencies,
+        "The file dependencies cannot be null.");
+
+    id = theId;
+    name = theName;
+    version = theVersion;
+    jsFiles = Collections.unmodifiableList(
+        new ArrayList<String>(theJsFiles));
+    cssFiles = Collections.unmodifiableList(
+        new ArrayList<String>(theCssFiles));
+    assetFiles = Collections.unmodifiableList(
+        new ArrayList<String>(theAssetFiles));
+    dependencies = Collections.unmodifiableList(
+        new ArrayList<String>(theDependencies));
+    fileSizes = Collections.unmodifiableMap(
+        new HashMap<String, Long>(theFileSizes));
+
+    Map<String, List<String>> requires = new HashMap<String, List<String>>();
+
+    for (Map.Entry<String, List<String>> file
+        : theFileDependencies.entrySet()) {
+      requires.put(file.getKey(), Collections.unmodifiableList(
+          new ArrayList<String>(file.getValue())));
+    }
+    fileDependencies = Collections.unmodifiableMap(requires);
+  }
+
+  /** Creates a dependency descriptor from its JSON representation, as
+   * written by the webjars-maven-plugin. Asset files and dependencies between
+   * files are optional.
+   *
+   * @param descriptor Dependency as JSON. Cannot be null.
+   * @return A valid descriptor, never null.
+   */
+  public static DependencyDescriptor fromJson(final JSONObject descriptor) {
+    Validate.notNull(descriptor, "The descriptor cannot be null.");
+
+    Map<String, Long> sizes = new HashMap<String, Long>();
+    JSONObject jsonSizes = descriptor.optJSONObject("sizes");
+
+    if (jsonSizes != null) {
+      for (Object file : jsonSizes.keySet()) {
+        sizes.put((String) file, jsonSizes.getLong((String) file));
+      }
+    }
+
+    List<String> assets = new ArrayList<String>();
+    JSONArray jsonAssets = descriptor.optJSONArray("assets");
+
+    if (jsonAssets != null) {
+      assets = asList(jsonAssets);
+    }
+
+    Map<String, List<String>> requires = new HashMap<String, List<String>>();
+    JSONObject jsonRequires = descriptor.optJSONObject("requires");
+
+    if (jsonRequires != null) {
+      for (Object file : jsonRequires.keySet()) {
+        requires.put((String) file,
+            asList(jsonRequires.getJSONArray((String) file)));
+      }
+    }
+
+    return new DependencyDescriptor(descriptor.getString("id"),
+        descriptor.getString("name"), descriptor.getString("version"),
+        asList(descriptor.getJSONArray("js")),
+        asList(descriptor.getJSONArray("css")), assets,
+        asList(descriptor.getJSONArray("dependencies")), sizes, requires);
+  }
+
+  /** Returns the dependency unique id.
+   * @return A valid id, never null or empty.
+   */
+  public String getId() {
+    return id;
+  }
+
+  /** Returns the dependency name.
+   * @return A valid name, never null or empty.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /** Returns the dependency version.
+   * @return A valid version, never null or empty.
+   */
+  public String getVersion() {
+    return version;
+  }
+
+  /** Returns the JavaScript files in this dependency.
+   * @return An unmodifiable list of files, never null.
+   */
+  public List<String> getJsFiles() {
+    return jsFiles;
+  }
+
+  /** Returns the CSS files in this dependency.
+   * @return An unmodifiable list of files, never null.
+   */
+  public List<String> getCssFiles() {
+    return cssFiles;
+  }
+
+  /** Returns the files of the specified type in this dependency.
+   *
+   * @param type Type of the required files. Cannot be null.
+   * @return An unmodifiable list of files, never null.
+   */
+  public List<String> getFiles(final MediaType type) {
+    Validate.notNull(type, "The type cannot be null.");
+
+    if (type == MediaType.CSS) {
+      return cssFiles;
+    }
+    return jsFiles;
+  }
+
+  /** Returns the files in this dependency that are neither JavaScript nor
+   * CSS, i.e. fonts, images or source maps.
+   *
+   * @return An unmodifiable list of files, never null.
+   */
+  public List<String> getAssetFiles() {
+    return assetFiles;
+  }
+
+  /** Returns the ids of the immediate dependencies.
+   * @return An unmodifiable list of ids, never null.
+   */
+  public List<String> getDependencies() {
+    return dependencies;
+  }
+
+  /** Returns the size of the files with a known size.
+   * @return An unmodifiable map from file to size in bytes, never null.
+   */
+  public Map<String, Long> getFileSizes() {
+    return fileSizes;
+  }
+
+  /** Returns the files required by each file of this dependency. Required
+   * files may belong to any dependency, and they're listed in the order they
+   * must be loaded.
+   *
+   * @return An unmodifiable map from file to required files, for the files
+   *    with declared dependencies. Never null.
+   */
+  public Map<String, List<String>> getFileDependencies() {
+    return fileDependencies;
+  }
+
+  /** Converts a {@link JSONArray} to a list of strings.
+   *
+   * @param array Array to convert. Cannot be null.
+   * @return The provided array as a list of Strings, never null.
+   */
+  private static List<String> asList(final JSONArray array) {
+    List<String> result = new ArrayList<String>(array.length());
+
+    for (int i = 0; i < array.length(); i++) {
+      result.add(array.getString(i));
+    }
+    return result;
+  }
+}
@@ -1,29 +1,426 @@
 package com.github.seykron.webjars;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
 import org.apache.commons.lang.Validate;
 import org.json.JSONObject;
 
 import com.github.seykron.webjars.WebJarResource.MediaType;
 
-/** Represents a WebJar dependency graph. It assumes default JSON-format.
+/** Represents a WebJar dependency graph. It's read from the default JSON
+ * format, or from the binary format through {@link #read(ByteBuffer, long)}.
+ * <p>
+ * A {@link WebJarResource} is built for each dependency and media type when
+ * the graph is created. Resources are immutable and shared, so lookups never
+ * create new objects.
+ * </p>
+ * <p>
+ * Once loaded, the graph is kept in a dense form. Dependencies are identified
+ * by ordinals, the position of their id in a sorted array, and files by
+ * their position in a sorted array of paths. Ids and paths are mapped to
+ * their position through hash indexes, so lookups never search the arrays.
+ * Resources only keep their ordinal, their lists are read from the graph.
+ * Dependency lists are stored in compressed sparse row form: the
+ * dependencies of ordinal <code>i</code> are
+ * <code>dependencyTargets[dependencyOffsets[i]]</code> to
+ * <code>dependencyTargets[dependencyOffsets[i + 1] - 1]</code>. File lists
+ * are ranges into a shared array of file references, the same way.
+ * </p>
+ * <p>
+ * Files may declare the files they require. These edges are kept the same
+ * way, by file index. A request for a file with declared dependencies is
+ * served by a resource that bundles only the file and the files it requires,
+ * see {@link #resolveFile(String, MediaType)}.
+ * </p>
  */
 public class DependencyGraph {
 
-  /** Index to lookup dependencies from files, it's never null. */
-  private final JSONObject index;
+  /** Number of milliseconds in a second. */
+  private static final long MILLIS_PER_SECOND = 1000;
 
-  /** Table with mappings from dependency id to dependency, it's never null. */
-  private final JSONObject table;
+  /** Directory of webjar resources within the jar files. */
+  private static final String RESOURCES_DIR = "META-INF/resources/";
 
-  /** Creates a dependency graph and sets the JSON data.
+  /** Time the graph was built, in milliseconds rounded to seconds, or -1 if
+   * it's unknown. */
+  private final long lastModified;
+
+  /** Digest of the graph descriptor content, or null if it's unknown. */
+  private final String digest;
+
+  /** Sorted dependency ids, the position is the dependency ordinal. It's
+   * never null. */
+  private final String[] ids;
+
+  /** Start of the dependencies of each ordinal in {@link #dependencyTargets},
+   * with an extra element for the end of the last one. It's never null. */
+  private final int[] dependencyOffsets;
+
+  /** Ordinals of the immediate dependencies of all dependencies, it's never
+   * null. */
+  private final int[] dependencyTargets;
+
+  /** Load order of the dependencies, it's never null. */
+  private final DependencyOrder dependencyOrder;
+
+  /** Ordinal of each dependency by id, it's never null. */
+  private final Map<String, Integer> ordinals;
+
+  /** Sorted distinct file paths, it's never null. */
+  private final String[] files;
+
+  /** Index in {@link #files} of each file by path, it's never null. */
+  private final Map<String, Integer> fileIndexes;
+
+  /** Sorted asset files of all dependencies, it's never null. */
+  private final String[] assetFiles;
+
+  /** Size in bytes of each file in {@link #files}, or -1 if it's unknown.
+   * It's never null. */
+  private final long[] fileSizes;
+
+  /** Start of the files of each ordinal in {@link #fileTargets}, by media
+   * type ordinal, with an extra element for the end of the last one. It's
+   * never null. */
+  private final int[][] fileOffsets;
+
+  /** Indexes in {@link #files} of the files of all dependencies, by media
+   * type ordinal. It's never null. */
+  private final int[][] fileTargets;
+
+  /** Start of the required files of each file in {@link #requireTargets},
+   * by file index, with an extra element for the end of the last one. It's
+   * never null. */
+  private final int[] requireOffsets;
+
+  /** Indexes in {@link #files} of the files required by all files, in load
+   * order. It's never null. */
+  private final int[] requireTargets;
+
+  /** Resources by request path, it's the path relative to the resources
+   * directory, without the leading slash. Resources are indexed by media
+   * type ordinal. Files with declared dependencies have their own resource
+   * in the slot of their media type. It's never null. */
+  private final Map<String, WebJarResource[]> requestPaths =
+      new HashMap<String, WebJarResource[]>();
+
+  /** Resources by media type ordinal and dependency ordinal, it's never
+   * null. */
+  private final WebJarResource[][] resources;
+
+  /** Creates a dependency graph and sets the JSON data. The graph is
+   * considered built at the current time.
    *
    * @param theDependencyGraph Dependency graph as JSON. Cannot be null.
    */
   public DependencyGraph(final JSONObject theDependencyGraph) {
-    Validate.notNull(theDependencyGraph,
-        "The dependency graph cannot be null.");
-    index = theDependencyGraph.getJSONObject("index");
-    table = theDependencyGraph.getJSONObject("table");
+    this(theDependencyGraph, System.currentTimeMillis());
+  }
+
+  /** Creates a dependency graph and sets the JSON data.
+   *
+   * @param theDependencyGraph Dependency graph as JSON. Cannot be null.
+   * @param theLastModified Time the graph was built, in milliseconds. It's
+   *    used as last modified time of all resources.
+   */
+  public DependencyGraph(final JSONObject theDependencyGraph,
+      final long theLastModified) {
+    this(theDependencyGraph, theLastModified, null);
+  }
+
+  /** Creates a dependency graph and sets the JSON data.
+   *
+   * @param theDependencyGraph Dependency graph as JSON. Cannot be null.
+   * @param theLastModified Time the graph was built, in milliseconds, or -1
+   *    if it's unknown. It's used as last modified time of all resources.
+   * @param theDigest Digest of the descriptor the graph was read from. It's
+   *    used to build the entity tags of all resources. May be null.
+   */
+  public DependencyGraph(final JSONObject theDependencyGraph,
+      final long theLastModified, final String theDigest) {
+    this(readIndex(theDependencyGraph), readTable(theDependencyGraph),
+        theLastModified, theDigest);
+  }
+
+  /** Creates a dependency graph from the dependency descriptors.
+   *
+   * @param index Map from file path to the id of the dependency that
+   *    contains the file. Cannot be null.
+   * @param descriptors Descriptors of all dependencies. Cannot be null.
+   * @param theLastModified Time the graph was built, in milliseconds, or -1
+   *    if it's unknown. It's used as last modified time of all resources.
+   * @param theDigest Digest of the descriptor the graph was read from. May be
+   *    null.
+   */
+  DependencyGraph(final Map<String, String> index,
+      final List<DependencyDescriptor> descriptors,
+      final long theLastModified, final String theDigest) {
+    Validate.notNull(index, "The index cannot be null.");
+    Validate.notNull(descriptors, "The descriptors cannot be null.");
+
+    if (theLastModified < 0) {
+      lastModified = -1;
+    } else {
+      // HTTP dates have seconds precision.
+      lastModified = theLastModified / MILLIS_PER_SECOND * MILLIS_PER_SECOND;
+    }
+    digest = theDigest;
+
+    int count = descriptors.size();
+    DependencyDescriptor[] table = new DependencyDescriptor[count];
+    ids = new String[count];
+
+    for (int i = 0; i < count; i++) {
+      ids[i] = descriptors.get(i).getId().intern();
+    }
+    Arrays.sort(ids);
+    ordinals = indexOf(ids);
+
+    for (DependencyDescriptor descriptor : descriptors) {
+      table[ordinal(descriptor.getId())] = descriptor;
+    }
+
+    // Dependency lists.
+    dependencyOffsets = new int[count + 1];
+
+    for (int i = 0; i < count; i++) {
+      dependencyOffsets[i + 1] = dependencyOffsets[i]
+          + table[i].getDependencies().size();
+    }
+    dependencyTargets = new int[dependencyOffsets[count]];
+
+    for (int i = 0; i < count; i++) {
+      int offset = dependencyOffsets[i];
+
+      for (String dependencyId : table[i].getDependencies()) {
+        dependencyTargets[offset++] = ordinal(dependencyId);
+      }
+    }
+
+    dependencyOrder = new DependencyOrder(ids, dependencyOffsets,
+        dependencyTargets);
+
+    // File lists.
+    TreeSet<String> allFiles = new TreeSet<String>();
+    TreeSet<String> allAssetFiles = new TreeSet<String>();
+    Map<String, List<String>> requires = new HashMap<String, List<String>>();
+
+    for (DependencyDescriptor descriptor : table) {
+      allFiles.addAll(descriptor.getJsFiles());
+      allFiles.addAll(descriptor.getCssFiles());
+      allFiles.addAll(descriptor.getFileSizes().keySet());
+      allAssetFiles.addAll(descriptor.getAssetFiles());
+
+      for (Map.Entry<String, List<String>> file
+          : descriptor.getFileDependencies().entrySet()) {
+        allFiles.add(file.getKey());
+        allFiles.addAll(file.getValue());
+        requires.put(file.getKey(), file.getValue());
+      }
+    }
+    assetFiles = allAssetFiles.toArray(new String[allAssetFiles.size()]);
+    files = allFiles.toArray(new String[allFiles.size()]);
+    fileIndexes = indexOf(files);
+    fileSizes = new long[files.length];
+    Arrays.fill(fileSizes, -1);
+
+    for (DependencyDescriptor descriptor : table) {
+      for (Map.Entry<String, Long> size
+          : descriptor.getFileSizes().entrySet()) {
+        fileSizes[fileIndexes.get(size.getKey())] = size.getValue();
+      }
+    }
+
+    requireOffsets = new int[files.length + 1];
+
+    for (int i = 0; i < files.length; i++) {
+      List<String> required = requires.get(files[i]);
+      requireOffsets[i + 1] = requireOffsets[i];
+
+      if (required != null) {
+        requireOffsets[i + 1] += required.size();
+      }
+    }
+    requireTargets = new int[requireOffsets[files.length]];
+
+    for (int i = 0; i < files.length; i++) {
+      List<String> required = requires.get(files[i]);
+
+      if (required != null) {
+        int offset = requireOffsets[i];
+
+        for (String file : required) {
+          requireTargets[offset++] = fileIndexes.get(file);
+        }
+      }
+    }
+
+    MediaType[] types = MediaType.values();
+    fileOffsets = new int[types.length][count + 1];
+    fileTargets = new int[types.length][];
+
+    for (MediaType type : types) {
+      int[] offsets = fileOffsets[type.ordinal()];
+
+      for (int i = 0; i < count; i++) {
+        offsets[i + 1] = offsets[i] + table[i].getFiles(type).size();
+      }
+
+      int[] targets = new int[offsets[count]];
+
+      for (int i = 0; i < count; i++) {
+        int offset = offsets[i];
+
+        for (String file : table[i].getFiles(type)) {
+          targets[offset++] = fileIndexes.get(file);
+        }
+      }
+      fileTargets[type.ordinal()] = targets;
+    }
+
+    resources = new WebJarResource[types.length][count];
+
+    for (MediaType type : types) {
+      BitSet building = new BitSet(count);
+
+      for (int i = 0; i < count; i++) {
+        build(i, type, table, building);
+      }
+    }
+
+    // Request path index.
+    Map<Integer, WebJarResource[]> resourcesByOrdinal =
+        new HashMap<Integer, WebJarResource[]>();
+
+    for (Map.Entry<String, String> entry : index.entrySet()) {
+      if (!entry.getKey().startsWith(RESOURCES_DIR)) {
+        continue;
+      }
+
+      int ordinal = ordinal(entry.getValue());
+      WebJarResource[] pathResources = resourcesByOrdinal.get(ordinal);
+
+      if (pathResources == null) {
+        pathResources = new WebJarResource[types.length];
+
+        for (MediaType type : types) {
+          pathResources[type.ordinal()] = resources[type.ordinal()][ordinal];
+        }
+        resourcesByOrdinal.put(ordinal, pathResources);
+      }
+
+      requestPaths.put(entry.getKey().substring(RESOURCES_DIR.length()),
+          pathResources);
+    }
+
+    for (DependencyDescriptor descriptor : table) {
+      for (String file : descriptor.getFileDependencies().keySet()) {
+        MediaType type = MediaType.forPath(file);
+
+        if (type == null || !file.startsWith(RESOURCES_DIR)) {
+          continue;
+        }
+
+        String path = file.substring(RESOURCES_DIR.length());
+        WebJarResource[] pathResources = requestPaths.get(path);
+
+        if (pathResources == null) {
+          pathResources = new WebJarResource[types.length];
+        } else {
+          pathResources = pathResources.clone();
+        }
+        pathResources[type.ordinal()] = new WebJarResource(this, descriptor,
+            type, file);
+        requestPaths.put(path, pathResources);
+      }
+    }
+  }
+
+  /** Reads a dependency graph in the binary format.
+   *
+   * @param buffer Buffer to read the graph from, usually a memory-mapped
+   *    file. Cannot be null.
+   * @param theLastModified Time the graph was built, in milliseconds.
+   * @return A valid dependency graph, never null.
+   */
+  public static DependencyGraph read(final ByteBuffer buffer,
+      final long theLastModified) {
+    return read(buffer, theLastModified, null);
+  }
+
+  /** Reads a dependency graph in the binary format.
+   *
+   * @param buffer Buffer to read the graph from, usually a memory-mapped
+   *    file. Cannot be null.
+   * @param theLastModified Time the graph was built, in milliseconds, or -1
+   *    if it's unknown.
+   * @param theDigest Digest of the buffer content. May be null.
+   * @return A valid dependency graph, never null.
+   */
+  public static DependencyGraph read(final ByteBuffer buffer,
+      final long theLastModified, final String theDigest) {
+    Map<String, String> index = new HashMap<String, String>();
+    List<DependencyDescriptor> descriptors =
+        new BinaryDependencyGraphReader(buffer).read(index);
+
+    return new DependencyGraph(index, descriptors, theLastModified,
+        theDigest);
+  }
+
+  /** Determines whether a buffer contains a dependency graph in the binary
+   * format. It does not change the buffer position.
+   *
+   * @param buffer Buffer to check. Cannot be null.
+   * @return true if it's the binary format, false otherwise.
+   */
+  public static boolean isBinary(final ByteBuffer buffer) {
+    return BinaryDependencyGraphReader.isBinary(buffer);
+  }
+
+  /** Returns the time this graph was built.
+   * @return The build time in milliseconds, rounded to seconds, or -1 if
+   *    it's unknown.
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  /** Returns the digest of the descriptor this graph was read from.
+   * @return The descriptor digest, or null if it's unknown.
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  /** Returns the size of a file, as recorded in the dependency graph.
+   *
+   * @param file Path of the required file. Cannot be null.
+   * @return The file size in bytes, or -1 if it's unknown.
+   */
+  public long getFileSize(final String file) {
+    Integer fileIndex = fileIndexes.get(file);
+
+    if (fileIndex == null) {
+      return -1;
+    }
+    return fileSizes[fileIndex];
+  }
+
+  /** Returns the files of all dependencies that are neither JavaScript nor
+   * CSS, i.e. fonts, images or source maps.
+   *
+   * @return An unmodifiable sorted list of file paths, never null.
+   */
+  public List<String> getAssetFiles() {
+    return Collections.unmodifiableList(Arrays.asList(assetFiles));
   }
 
   /** Searches for the specified dependency in the graph.
@@ -39,41 +436,278 @@ public class DependencyGraph {
         "The dependency id cannot be null or empty.");
     Validate.notNull(type, "The resource type cannot be null.");
 
-    WebJarResource resource = null;
-    JSONObject dependency = table.getJSONObject(dependencyId);
+    Integer ordinal = ordinals.get(dependencyId);
 
-    if (dependencyId.equalsIgnoreCase(dependency.getString("id"))) {
-      resource = new WebJarResource(this, dependency, type);
+    if (ordinal == null) {
+      return null;
     }
-
-    return resource;
+    return resources[type.ordinal()][ordinal];
   }
 
   /** Finds a dependency from a file path. It uses the following format:
    * <pre>
    * /webjars/${artifact-name}/${artifact-version}/${file-name}
    * </pre>
+   * <p>
+   * Request paths are indexed when the graph is created, so a path is
+   * resolved with a single lookup. If the path is a file with declared
+   * dependencies, the resource bundles only the file and the files it
+   * requires.
+   * </p>
    *
-   * @param thePath Required webjar path. Cannot be null or empty.
+   * @param path Required webjar path, with or without the leading slash.
+   *    Cannot be null or empty.
    * @param type Type of resource. Cannot be null.
    * @return The required dependency, or null if it does not exist.
    */
-  public WebJarResource findDependencyByPath(final String thePath,
+  public WebJarResource findDependencyByPath(final String path,
       final MediaType type) {
-    Validate.notEmpty(thePath, "The dependency path cannot be null or empty.");
+    Validate.notEmpty(path, "The dependency path cannot be null or empty.");
+
+    String key = path;
 
-    String path = thePath;
+    if (key.startsWith("/")) {
+      key = key.substring(1);
+    }
+
+    WebJarResource[] pathResources = requestPaths.get(key);
 
-    if (path.startsWith("/")) {
-      path = path.substring(1);
+    if (pathResources == null && key.endsWith("/")) {
+      pathResources = requestPaths.get(key.substring(0, key.length() - 1));
     }
-    if (path.endsWith("/")) {
-      path = path.substring(0, path.length() - 1);
+    if (pathResources == null) {
+      return null;
     }
-    path = "META-INF/resources/" + path;
+    return pathResources[type.ordinal()];
+  }
 
-    Validate.isTrue(index.has(path), "File not found: " + thePath);
+  /** Resolves the files of the specified dependency and all its transitive
+   * dependencies, in the order they must be loaded.
+   * <p>
+   * Dependencies are sorted topologically, so every file comes after the
+   * files it depends on. A dependency reachable through several paths
+   * contributes its files only once. See {@link DependencyOrder}.
+   * </p>
+   *
+   * @param dependencyId Id of the root dependency. Cannot be null or empty.
+   * @param type Type of files to resolve. Cannot be null.
+   * @return The list of files to bundle, never null.
+   * @throws IllegalStateException if there is a circular dependency.
+   */
+  public List<String> resolveFiles(final String dependencyId,
+      final MediaType type) {
+    Validate.notEmpty(dependencyId,
+        "The dependency id cannot be null or empty.");
+    Validate.notNull(type, "The resource type cannot be null.");
+
+    List<String> result = new ArrayList<String>();
+    BitSet added = new BitSet(files.length);
+    int[] offsets = fileOffsets[type.ordinal()];
+    int[] targets = fileTargets[type.ordinal()];
+
+    for (int ordinal : dependencyOrder.sort(ordinal(dependencyId))) {
+      for (int i = offsets[ordinal]; i < offsets[ordinal + 1]; i++) {
+        if (!added.get(targets[i])) {
+          added.set(targets[i]);
+          result.add(files[targets[i]]);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** Resolves a file and the files it requires, transitively, in the order
+   * they must be loaded.
+   * <p>
+   * Required files come before the files that require them, and the
+   * specified file is the last one. Only files of the specified type are
+   * returned, but requirements are followed through files of any type.
+   * </p>
+   *
+   * @param file Classpath path of the file. Cannot be null or empty.
+   * @param type Type of files to resolve. Cannot be null.
+   * @return The list of files to bundle, never null.
+   * @throws IllegalStateException if there is a circular dependency.
+   */
+  public List<String> resolveFile(final String file, final MediaType type) {
+    Validate.notEmpty(file, "The file cannot be null or empty.");
+    Validate.notNull(type, "The resource type cannot be null.");
+
+    List<String> result = new ArrayList<String>();
+    Integer fileIndex = fileIndexes.get(file);
 
-    return findDependencyById(index.getString(path), type);
+    if (fileIndex == null) {
+      if (MediaType.forPath(file) == type) {
+        result.add(file);
+      }
+      return result;
+    }
+    visitFile(fileIndex, type, new BitSet(files.length),
+        new BitSet(files.length), result);
+
+    return result;
+  }
+
+  /** Builds the resource for the specified dependency, building its
+   * dependencies first.
+   *
+   * @param ordinal Ordinal of the dependency to build.
+   * @param type Type of resource. Cannot be null.
+   * @param table Descriptors by ordinal. Cannot be null.
+   * @param building Ordinals of the dependencies being built. Cannot be null.
+   */
+  private void build(final int ordinal, final MediaType type,
+      final DependencyDescriptor[] table, final BitSet building) {
+    WebJarResource[] typeResources = resources[type.ordinal()];
+
+    if (typeResources[ordinal] != null) {
+      return;
+    }
+    if (building.get(ordinal)) {
+      throw new IllegalStateException("Circular dependency: "
+          + ids[ordinal]);
+    }
+    building.set(ordinal);
+
+    for (int i = dependencyOffsets[ordinal];
+        i < dependencyOffsets[ordinal + 1]; i++) {
+      build(dependencyTargets[i], type, table, building);
+    }
+
+    typeResources[ordinal] = new WebJarResource(this, table[ordinal], type);
+    building.clear(ordinal);
+  }
+
+  /** Visits a file in depth-first order, adding it after the files it
+   * requires.
+   *
+   * @param fileIndex Index of the file to visit.
+   * @param type Type of the files to add. Cannot be null.
+   * @param visited Indexes of the files already visited. Cannot be null.
+   * @param path Indexes of the files being visited. Cannot be null.
+   * @param result Resolved files. Cannot be null.
+   */
+  private void visitFile(final int fileIndex, final MediaType type,
+      final BitSet visited, final BitSet path, final List<String> result) {
+    if (visited.get(fileIndex)) {
+      return;
+    }
+    if (path.get(fileIndex)) {
+      throw new IllegalStateException("Circular dependency: "
+          + files[fileIndex]);
+    }
+    path.set(fileIndex);
+
+    for (int i = requireOffsets[fileIndex];
+        i < requireOffsets[fileIndex + 1]; i++) {
+      visitFile(requireTargets[i], type, visited, path, result);
+    }
+    if (MediaType.forPath(files[fileIndex]) == type) {
+      result.add(files[fileIndex]);
+    }
+
+    path.clear(fileIndex);
+    visited.set(fileIndex);
+  }
+
+  /** Returns the files of a type in a dependency, excluding the files of
+   * its dependencies.
+   *
+   * @param ordinal Ordinal of the dependency.
+   * @param type Type of the files. Cannot be null.
+   * @return A new list of files, never null.
+   */
+  List<String> getFiles(final int ordinal, final MediaType type) {
+    int[] offsets = fileOffsets[type.ordinal()];
+    int[] targets = fileTargets[type.ordinal()];
+    List<String> result = new ArrayList<String>(offsets[ordinal + 1]
+        - offsets[ordinal]);
+
+    for (int i = offsets[ordinal]; i < offsets[ordinal + 1]; i++) {
+      result.add(files[targets[i]]);
+    }
+    return result;
+  }
+
+  /** Returns the resources of the immediate dependencies of a dependency.
+   *
+   * @param ordinal Ordinal of the dependency.
+   * @param type Type of the resources. Cannot be null.
+   * @return A new list of resources, never null.
+   */
+  List<WebJarResource> getDependencies(final int ordinal,
+      final MediaType type) {
+    List<WebJarResource> result = new ArrayList<WebJarResource>(
+        dependencyOffsets[ordinal + 1] - dependencyOffsets[ordinal]);
+
+    for (int i = dependencyOffsets[ordinal];
+        i < dependencyOffsets[ordinal + 1]; i++) {
+      result.add(resources[type.ordinal()][dependencyTargets[i]]);
+    }
+    return result;
+  }
+
+  /** Returns the ordinal of a dependency.
+   *
+   * @param dependencyId Id of the required dependency. Cannot be null.
+   * @return The dependency ordinal.
+   */
+  int ordinal(final String dependencyId) {
+    Integer ordinal = ordinals.get(dependencyId);
+    Validate.notNull(ordinal, "Dependency not found: " + dependencyId);
+    return ordinal;
+  }
+
+  /** Indexes the position of each value of an array.
+   *
+   * @param values Distinct values to index. Cannot be null.
+   * @return The position of each value, never null.
+   */
+  private static Map<String, Integer> indexOf(final String[] values) {
+    Map<String, Integer> index = new HashMap<String, Integer>(
+        values.length * 2);
+
+    for (int i = 0; i < values.length; i++) {
+      index.put(values[i], i);
+    }
+    return index;
+  }
+
+  /** Reads the file index of a graph in JSON format.
+   *
+   * @param dependencyGraph Dependency graph as JSON. Cannot be null.
+   * @return Map from file path to dependency id, never null.
+   */
+  private static Map<String, String> readIndex(
+      final JSONObject dependencyGraph) {
+    Validate.notNull(dependencyGraph, "The dependency graph cannot be null.");
+
+    JSONObject jsonIndex = dependencyGraph.getJSONObject("index");
+    Map<String, String> index = new HashMap<String, String>();
+
+    for (Object path : jsonIndex.keySet()) {
+      index.put((String) path, jsonIndex.getString((String) path));
+    }
+    return index;
+  }
+
+  /** Reads the dependency descriptors of a graph in JSON format.
+   *
+   * @param dependencyGraph Dependency graph as JSON. Cannot be null.
+   * @return The dependency descriptors, never null.
+   */
+  private static List<DependencyDescriptor> readTable(
+      final JSONObject dependencyGraph) {
+    Validate.notNull(dependencyGraph, "The dependency graph cannot be null.");
+
+    JSONObject jsonTable = dependencyGraph.getJSONObject("table");
+    List<DependencyDescriptor> descriptors =
+        new ArrayList<DependencyDescriptor>();
+
+    for (Object dependencyId : jsonTable.keySet()) {
+      descriptors.add(DependencyDescriptor.fromJson(
+          jsonTable.getJSONObject((String) dependencyId)));
+    }
+    return descriptors;
   }
 }
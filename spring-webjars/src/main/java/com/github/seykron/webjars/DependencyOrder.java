@@ -0,0 +1,116 @@
+package com.github.seykron.webjars;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.commons.lang.Validate;
+
+/** Sorts the dependencies of a graph in the order they must be loaded.
+ * <p>
+ * Dependencies are identified by ordinals, from zero to the number of
+ * dependencies. Immediate dependencies are given in compressed sparse row
+ * form: the dependencies of ordinal <code>i</code> are
+ * <code>targets[offsets[i]]</code> to <code>targets[offsets[i + 1] - 1]</code>.
+ * </p>
+ * <p>
+ * It's shared by the {@link DependencyGraph} and the maven plugin, so bundles
+ * written at build time have the files in the same order as the bundles
+ * built on request.
+ * </p>
+ * <p>
+ * This class is immutable.
+ * </p>
+ */
+public final class DependencyOrder {
+
+  /** Dependency ids by ordinal, for error messages. It's never null. */
+  private final String[] ids;
+
+  /** Start of the dependencies of each ordinal in {@link #targets}, with an
+   * extra element for the end of the last one. It's never null. */
+  private final int[] offsets;
+
+  /** Ordinals of the immediate dependencies of all dependencies, it's never
+   * null. */
+  private final int[] targets;
+
+  /** Creates the order of a dependency graph. Arrays are not copied, they
+   * must not change after this call.
+   *
+   * @param theIds Dependency ids by ordinal. Cannot be null.
+   * @param theOffsets Start of the dependencies of each ordinal in the
+   *    targets, with an extra element for the end of the last one. Cannot be
+   *    null.
+   * @param theTargets Ordinals of the immediate dependencies of all
+   *    dependencies. Cannot be null.
+   */
+  public DependencyOrder(final String[] theIds, final int[] theOffsets,
+      final int[] theTargets) {
+    Validate.notNull(theIds, "The ids cannot be null.");
+    Validate.notNull(theOffsets, "The offsets cannot be null.");
+    Validate.notNull(theTargets, "The targets cannot be null.");
+    Validate.isTrue(theOffsets.length == theIds.length + 1,
+        "There must be one offset for each id, plus the end.");
+    ids = theIds;
+    offsets = theOffsets;
+    targets = theTargets;
+  }
+
+  /** Sorts a dependency and all its transitive dependencies topologically.
+   * <p>
+   * Dependencies are visited in depth-first order, so every dependency comes
+   * after its own dependencies, in the order they're declared. A dependency
+   * reachable through several paths is listed only once, and the root is
+   * always the last one.
+   * </p>
+   *
+   * @param root Ordinal of the root dependency.
+   * @return The ordinals in load order, never null.
+   * @throws IllegalStateException if there is a circular dependency.
+   */
+  public int[] sort(final int root) {
+    Validate.isTrue(root >= 0 && root < ids.length,
+        "The ordinal is out of range: " + root);
+
+    int[] result = new int[ids.length];
+    int count = visit(root, new BitSet(ids.length), new BitSet(ids.length),
+        result, 0);
+
+    return Arrays.copyOf(result, count);
+  }
+
+  /** Visits a dependency in depth-first order, adding it after its
+   * dependencies.
+   *
+   * @param ordinal Ordinal of the dependency to visit.
+   * @param visited Ordinals of the dependencies already added. Cannot be
+   *    null.
+   * @param path Ordinals of the dependencies being visited. Cannot be null.
+   * @param result Ordinals added so far. Cannot be null.
+   * @param count Number of ordinals added so far.
+   * @return The number of ordinals added, including this dependency.
+   */
+  private int visit(final int ordinal, final BitSet visited,
+      final BitSet path, final int[] result, final int count) {
+    if (visited.get(ordinal)) {
+      return count;
+    }
+    if (path.get(ordinal)) {
+      throw new IllegalStateException("Circular dependency: "
+          + ids[ordinal]);
+    }
+    path.set(ordinal);
+
+    int added = count;
+
+    for (int i = offsets[ordinal]; i < offsets[ordinal + 1]; i++) {
+      added = visit(targets[i], visited, path, result, added);
+    }
+    result[added] = ordinal;
+
+    path.clear(ordinal);
+    visited.set(ordinal);
+
+    return added + 1;
+  }
+}
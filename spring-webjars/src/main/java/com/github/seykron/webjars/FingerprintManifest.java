@@ -0,0 +1,107 @@
+package com.github.seykron.webjars;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.json.JSONObject;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Content hashes of the bundles, as written by the webjars-maven-plugin.
+ * <p>
+ * The manifest is a JSON object that maps each dependency id to the hash of
+ * its bundles, by type. Minified bundles have their own hash, keyed by the
+ * minified bundle extension:
+ *   <pre>
+ *   {
+ *     'org.webjars:jquery-ui:jar:1.8.0': {
+ *       js: '0cc175b9c0f1b6a831c399e269772661',
+ *       'min.js': '4a8a08f09d37b73795649038408b5f33',
+ *       css: '92eb5ffee6ae2fec3ad71c777531578f',
+ *       'min.css': '8277e0910d750195b448797616e091ad'
+ *     }
+ *   }
+ *   </pre>
+ * It's written next to the dependency graph descriptor, and its name is the
+ * descriptor name followed by {@link #SUFFIX}.
+ * </p>
+ */
+public class FingerprintManifest {
+
+  /** Suffix of the manifest name, after the dependency graph descriptor. */
+  public static final String SUFFIX = ".fingerprints";
+
+  /** Bundle fingerprints by type and dependency id, it's never null. */
+  private final Map<MediaType, Map<String, String>> fingerprints =
+      new HashMap<MediaType, Map<String, String>>();
+
+  /** Minified bundle fingerprints by type and dependency id, it's never
+   * null. */
+  private final Map<MediaType, Map<String, String>> minifiedFingerprints =
+      new HashMap<MediaType, Map<String, String>>();
+
+  /** Creates an empty manifest, no bundle has a fingerprint.
+   */
+  public FingerprintManifest() {
+    this(new JSONObject());
+  }
+
+  /** Creates a manifest and reads the fingerprints.
+   *
+   * @param manifest Manifest as JSON. Cannot be null.
+   */
+  public FingerprintManifest(final JSONObject manifest) {
+    Validate.notNull(manifest, "The manifest cannot be null.");
+
+    for (MediaType type : MediaType.values()) {
+      String key = type.name().toLowerCase();
+
+      fingerprints.put(type, read(manifest, key));
+      minifiedFingerprints.put(type, read(manifest,
+          PrebuiltBundles.MINIFIED_VARIANT + key));
+    }
+  }
+
+  /** Reads the fingerprints of one kind of bundle.
+   *
+   * @param manifest Manifest as JSON. Cannot be null.
+   * @param key Key of the fingerprints within each dependency. Cannot be
+   *    null.
+   * @return The fingerprints by dependency id, never null.
+   */
+  private static Map<String, String> read(final JSONObject manifest,
+      final String key) {
+    Map<String, String> keyFingerprints = new HashMap<String, String>();
+
+    for (Object dependencyId : manifest.keySet()) {
+      JSONObject dependency = manifest.getJSONObject((String) dependencyId);
+
+      if (dependency.has(key)) {
+        keyFingerprints.put((String) dependencyId, dependency.getString(key));
+      }
+    }
+    return keyFingerprints;
+  }
+
+  /** Returns the fingerprint of a bundle.
+   *
+   * @param resource Resource to get the fingerprint for. Cannot be null.
+   * @param minified Whether the minified bundle is served.
+   * @return The hash of the served bundle content, or null if it's not in
+   *    the manifest. Resources of a single file are never fingerprinted.
+   */
+  public String getFingerprint(final WebJarResource resource,
+      final boolean minified) {
+    Validate.notNull(resource, "The resource cannot be null.");
+
+    if (resource.getResourceFile() != null) {
+      return null;
+    }
+    if (minified) {
+      return minifiedFingerprints.get(resource.getType()).get(
+          resource.getId());
+    }
+    return fingerprints.get(resource.getType()).get(resource.getId());
+  }
+}
@@ -0,0 +1,68 @@
+package com.github.seykron.webjars;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.Validate;
+
+/** Encodes content using gzip at the best compression level.
+ * <p>
+ * Compression is slow at this level, but it is paid only once per bundle.
+ * </p>
+ */
+public class GzipContentEncoder implements ContentEncoder {
+
+  /** Extension of gzip encoded files. */
+  public static final String FILE_EXTENSION = ".gz";
+
+  /** Name of the gzip content coding. */
+  public static final String NAME = "gzip";
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getFileExtension() {
+    return FILE_EXTENSION;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public byte[] encode(final byte[] content) throws IOException {
+    Validate.notNull(content, "The content cannot be null.");
+
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    OutputStream out = new BestCompressionOutputStream(encoded);
+
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+    return encoded.toByteArray();
+  }
+
+  /** Gzip stream that uses the best compression level.
+   */
+  private static class BestCompressionOutputStream extends GZIPOutputStream {
+
+    /** Creates the gzip stream.
+     * @param out Stream to write compressed data. Cannot be null.
+     * @throws IOException if the gzip header cannot be written.
+     */
+    BestCompressionOutputStream(final OutputStream out) throws IOException {
+      super(out);
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package com.github.seykron.webjars;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.Validate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+/** Locates bundles built by the <code>build-bundles</code> goal of the
+ * webjars-maven-plugin.
+ * <p>
+ * Prebuilt bundles are classpath resources with the following layout, where
+ * the encoded variants are optional:
+ *   <pre>
+ *   ${location}/${artifact-name}/${artifact-version}/bundle.js
+ *   ${location}/${artifact-name}/${artifact-version}/bundle.js.gz
+ *   </pre>
+ * The outcome of each lookup is remembered, so the classpath is searched only
+ * once per bundle.
+ * </p>
+ * <p>
+ * The plugin may also write minified bundles, named
+ * <code>bundle.min.js</code>. They're served instead of the regular bundles
+ * if minified bundles are enabled, usually in production. Regular bundles
+ * and their encoded variants are served if a bundle has no minified copy.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class PrebuiltBundles {
+
+  /** Default classpath location of prebuilt bundles. */
+  public static final String DEFAULT_LOCATION = "META-INF/webjars-bundles";
+
+  /** Variant prefix of the extension of minified bundles. */
+  static final String MINIFIED_VARIANT = "min.";
+
+  /** Classpath location of the bundles, it's never null or empty. */
+  private final String location;
+
+  /** Whether minified bundles are preferred. */
+  private final boolean minified;
+
+  /** Bundles already looked up by path. Bundles that don't exist are mapped
+   * to the missing bundle marker. It's never null. */
+  private final ConcurrentMap<String, Resource> bundles =
+      new ConcurrentHashMap<String, Resource>();
+
+  /** Marker for bundles that don't exist, it's never null. */
+  private final Resource missing = new ClassPathResource("");
+
+  /** Creates a locator for the default location.
+   */
+  public PrebuiltBundles() {
+    this(DEFAULT_LOCATION);
+  }
+
+  /** Creates a locator for prebuilt bundles.
+   *
+   * @param theLocation Classpath location of the bundles. Cannot be null or
+   *    empty.
+   */
+  public PrebuiltBundles(final String theLocation) {
+    this(theLocation, false);
+  }
+
+  /** Creates a locator for prebuilt bundles.
+   *
+   * @param theLocation Classpath location of the bundles. Cannot be null or
+   *    empty.
+   * @param theMinified Whether to find minified bundles first.
+   */
+  public PrebuiltBundles(final String theLocation,
+      final boolean theMinified) {
+    Validate.notEmpty(theLocation, "The location cannot be null or empty.");
+
+    String path = theLocation;
+
+    if (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+    if (!path.endsWith("/")) {
+      path = path + "/";
+    }
+    location = path;
+    minified = theMinified;
+  }
+
+  /** Finds the prebuilt bundle for a resource.
+   *
+   * @param resource Resource to find the bundle for. Cannot be null.
+   * @param extension Extension of the encoded variant, i.e. .gz, or null for
+   *    the plain bundle.
+   * @return The bundle, or null if it was not prebuilt.
+   */
+  public Resource find(final WebJarResource resource, final String extension) {
+    Validate.notNull(resource, "The resource cannot be null.");
+
+    // Bundles are prebuilt per dependency, never per file.
+    if (resource.getResourceFile() != null) {
+      return null;
+    }
+
+    // Encoded variants must have the same content as the plain bundle, so
+    // the minified variants are used only if the plain bundle is minified.
+    if (isMinified(resource)) {
+      return find(getPath(resource, MINIFIED_VARIANT, extension));
+    }
+    return find(getPath(resource, "", extension));
+  }
+
+  /** Determines whether the minified bundle of a resource is served.
+   *
+   * @param resource Resource to check. Cannot be null.
+   * @return true if minified bundles are enabled and the resource has a
+   *    prebuilt minified bundle, false otherwise.
+   */
+  public boolean isMinified(final WebJarResource resource) {
+    Validate.notNull(resource, "The resource cannot be null.");
+
+    return minified && resource.getResourceFile() == null
+        && find(getPath(resource, MINIFIED_VARIANT, null)) != null;
+  }
+
+  /** Returns the classpath path of a bundle.
+   *
+   * @param resource Resource to get the bundle path for. Cannot be null.
+   * @param variant Variant prefix of the extension, i.e. min., or an empty
+   *    string for regular bundles. Cannot be null.
+   * @param extension Extension of the encoded variant, or null for the plain
+   *    bundle.
+   * @return A valid path, never null or empty.
+   */
+  private String getPath(final WebJarResource resource, final String variant,
+      final String extension) {
+    StringBuilder path = new StringBuilder(location)
+      .append(resource.getName()).append("/")
+      .append(resource.getVersion()).append("/bundle.").append(variant)
+      .append(resource.getType().name().toLowerCase());
+
+    if (extension != null) {
+      path.append(extension);
+    }
+    return path.toString();
+  }
+
+  /** Finds a bundle by classpath path, remembering the outcome.
+   *
+   * @param key Classpath path of the bundle. Cannot be null.
+   * @return The bundle, or null if it does not exist.
+   */
+  private Resource find(final String key) {
+    Resource bundle = bundles.get(key);
+
+    if (bundle == null) {
+      bundle = load(key);
+
+      if (!bundle.exists()) {
+        bundle = missing;
+      }
+      bundles.putIfAbsent(key, bundle);
+    }
+    if (bundle == missing) {
+      return null;
+    }
+    return bundle;
+  }
+
+  /** Loads a resource from the classpath.
+   *
+   * @param path Resource path. Cannot be null or empty.
+   * @return A valid resource, never null.
+   */
+  Resource load(final String path) {
+    return new ClassPathResource(path,
+        Thread.currentThread().getContextClassLoader());
+  }
+}
@@ -1,16 +1,22 @@
 package com.github.seykron.webjars;
 
 import java.io.ByteArrayInputStream;
-import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.Validate;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.springframework.core.io.AbstractResource;
 import org.springframework.core.io.ClassPathResource;
@@ -20,12 +26,43 @@ import org.springframework.core.io.Resource;
  * <p>
  * It uses the thread's class loader to retrieve resources from the classpath.
  * </p>
+ * <p>
+ * Resources are immutable, they're built by the {@link DependencyGraph} and
+ * shared between requests. They don't keep file lists, which are read from
+ * the graph when they're required.
+ * </p>
+ * <p>
+ * CSS bundles are served from the directory of the first stylesheet of the
+ * dependency, or from the dependency root directory if it has no
+ * stylesheets. Relative references of all files are rewritten to work from
+ * there, and imports are inlined. See {@link CssRewriter}.
+ * </p>
+ * <p>
+ * A resource may also represent a single file with declared dependencies
+ * between files. In that case the bundle has only the file and the files it
+ * requires, and it's served from the file directory.
+ * </p>
  */
 public class WebJarResource extends AbstractResource {
 
+  /** Charset used to compute the entity tag. */
+  private static final String CHARSET = "UTF-8";
+
+  /** Radix to print the entity tag digest. */
+  private static final int HEX_RADIX = 16;
+
+  /** Classpath directory of webjars. */
+  private static final String WEBJARS_DIR = "META-INF/resources/webjars/";
+
+  /** Bytes written after each file of a bundle. */
+  private static final byte[] SEPARATOR = {'\n'};
+
   /** Dependency graph this resource belongs to, it's never null. */
   private final DependencyGraph dependencyGraph;
 
+  /** Ordinal of the dependency in the graph. */
+  private final int ordinal;
+
   /** Dependency unique id, it's never null or empty. */
   private final String id;
 
@@ -35,18 +72,28 @@ public class WebJarResource extends AbstractResource {
   /** Dependency version, it's never null or empty. */
   private final String version;
 
-  /** List of JavaScript files in this dependency, it's never null. */
-  private final List<String> jsFiles;
+  /** Type of resource, it's never null. */
+  private final MediaType type;
+
+  /** File represented by this resource, or null if it represents the whole
+   * dependency. */
+  private final String resourceFile;
 
-  /** List of CSS files in this dependency, it's never null. */
-  private final List<String> cssFiles;
+  /** File CSS bundles are served as, the file represented by this resource
+   * or the first stylesheet of the dependency. It's null if the dependency
+   * has no stylesheets. */
+  private final String bundleFile;
 
-  /** Resource dependencies, it's never null. */
-  private final List<WebJarResource> dependencies =
-      new LinkedList<WebJarResource>();
+  /** Strong entity tag of this resource, it's never null or empty. */
+  private final String eTag;
 
-  /** Type of resource, it's never null. */
-  private final MediaType type;
+  /** Bundle length in bytes. It's computed from the file sizes in the
+   * descriptor or recorded on the first build; it's -1 if not known yet. */
+  private volatile long length;
+
+  /** CRC-32 checksum of the bundle. It's recorded on the first build; it's -1
+   * if not known yet. */
+  private volatile long checksum = -1;
 
   /** Creates a web jar resource and sets the related descriptor.
    * @param theDependencyGraph Graph with resolved webjar dependencies. Cannot
@@ -58,6 +105,35 @@ public class WebJarResource extends AbstractResource {
   WebJarResource(final DependencyGraph theDependencyGraph,
       final JSONObject resourceDescriptor,
       final MediaType theType) {
+    this(theDependencyGraph, DependencyDescriptor.fromJson(resourceDescriptor),
+        theType);
+  }
+
+  /** Creates a web jar resource and sets the related descriptor.
+   * @param theDependencyGraph Graph with resolved webjar dependencies. Cannot
+   *    be null.
+   * @param resourceDescriptor Descriptor of the dependency represented by
+   *    this resource. Cannot be null.
+   * @param theType Type of resource. Cannot be null.
+   */
+  WebJarResource(final DependencyGraph theDependencyGraph,
+      final DependencyDescriptor resourceDescriptor,
+      final MediaType theType) {
+    this(theDependencyGraph, resourceDescriptor, theType, null);
+  }
+
+  /** Creates a web jar resource for a single file of a dependency.
+   * @param theDependencyGraph Graph with resolved webjar dependencies. Cannot
+   *    be null.
+   * @param resourceDescriptor Descriptor of the dependency the file belongs
+   *    to. Cannot be null.
+   * @param theType Type of resource. Cannot be null.
+   * @param theFile Classpath path of the file, or null to represent the
+   *    whole dependency.
+   */
+  WebJarResource(final DependencyGraph theDependencyGraph,
+      final DependencyDescriptor resourceDescriptor,
+      final MediaType theType, final String theFile) {
     Validate.notNull(theDependencyGraph,
         "The dependency graph cannot be null.");
     Validate.notNull(resourceDescriptor,
@@ -66,21 +142,22 @@ public class WebJarResource extends AbstractResource {
 
     dependencyGraph = theDependencyGraph;
 
-    id = resourceDescriptor.getString("id");
-    name = resourceDescriptor.getString("name");
-    version = resourceDescriptor.getString("version");
-    jsFiles = asList(resourceDescriptor.getJSONArray("js"));
-    cssFiles = asList(resourceDescriptor.getJSONArray("css"));
+    id = resourceDescriptor.getId();
+    ordinal = dependencyGraph.ordinal(id);
+    name = resourceDescriptor.getName();
+    version = resourceDescriptor.getVersion();
     type = theType;
+    resourceFile = theFile;
 
-    JSONArray jsonDependencies = resourceDescriptor
-        .getJSONArray("dependencies");
-    for (int i = 0; i < jsonDependencies.length(); i++) {
-      WebJarResource dependency = dependencyGraph
-          .findDependencyById(jsonDependencies.getString(i), type);
-
-      dependencies.add(dependency);
+    if (resourceFile == null && !resourceDescriptor.getCssFiles().isEmpty()) {
+      bundleFile = resourceDescriptor.getCssFiles().get(0);
+    } else {
+      bundleFile = resourceFile;
     }
+
+    List<String> bundleFiles = getBundleFiles();
+    eTag = computeETag(bundleFiles);
+    length = computeLength(bundleFiles);
   }
 
   /** {@inheritDoc}.
@@ -90,22 +167,87 @@ public class WebJarResource extends AbstractResource {
     return "Resource to load files from WebJars";
   }
 
-  /** {@inheritDoc}.
+  /** Reads the files of this resource and all its dependencies, in
+   * dependency order. Shared dependencies are read only once.
+   * <p>
+   * Files are streamed as raw bytes, each one followed by a new line. Files
+   * are opened one at a time, when the previous file is exhausted, so the
+   * bundle is never held in memory. CSS files are rewritten one at a time to
+   * work from the bundle directory.
+   * </p>
+   * <p>
+   * {@inheritDoc}
+   * </p>
    */
   @Override
   public InputStream getInputStream() throws IOException {
-    StringBuilder buffer = new StringBuilder();
+    return new BundleInputStream(new SequenceInputStream(new BundleStreams()));
+  }
 
-    for (WebJarResource dependency : dependencies) {
-      buffer.append(read(dependency));
+  /** Returns the bundle length. It's known from the descriptor or from a
+   * previous build, in which case the bundle is not read. Otherwise the bundle
+   * is read once to compute the length.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public long contentLength() throws IOException {
+    if (length < 0) {
+      return super.contentLength();
     }
+    return length;
+  }
+
+  /** Returns the bundle length, if it is already known. It never reads the
+   * bundle.
+   *
+   * @return The bundle length in bytes, or -1 if it is not known yet.
+   */
+  public long getKnownLength() {
+    return length;
+  }
+
+  /** Returns the CRC-32 checksum of the bundle, if it was already built. It
+   * never reads the bundle.
+   *
+   * @return The bundle checksum, or -1 if it is not known yet.
+   */
+  public long getChecksum() {
+    return checksum;
+  }
 
-    for (String file : jsFiles) {
-      Resource resource = loadResource(file);
-      buffer.append(read(resource));
+  /** Returns the classpath directory CSS bundles are served from. It's the
+   * directory of the file if this resource represents a single file, the
+   * directory of the first stylesheet of this dependency, or the dependency
+   * root directory if it has no stylesheets.
+   *
+   * @return A valid directory ending with a slash, never null or empty.
+   */
+  public String getBundleDirectory() {
+    if (bundleFile == null) {
+      return WEBJARS_DIR + name + "/" + version + "/";
     }
+    return bundleFile.substring(0, bundleFile.lastIndexOf('/') + 1);
+  }
 
-    return new ByteArrayInputStream(buffer.toString().getBytes());
+  /** Returns the file CSS bundles are served as. It's the file this
+   * resource represents, or the first stylesheet of this dependency.
+   *
+   * @return The classpath path of the file, or null if this resource
+   *    represents a dependency with no stylesheets.
+   */
+  public String getBundleFile() {
+    return bundleFile;
+  }
+
+  /** Returns the file represented by this resource.
+   *
+   * @return The classpath path of the file, or null if this resource
+   *    represents the whole dependency.
+   */
+  public String getResourceFile() {
+    return resourceFile;
   }
 
   /** Returns the resource unique id.
@@ -129,29 +271,44 @@ public class WebJarResource extends AbstractResource {
     return version;
   }
 
-  /** Returns an unmodifiable list of JavaScript files included in this
-   * resource.
+  /** Returns the JavaScript files of this dependency. The list is read
+   * from the dependency graph on each call.
    *
-   * @return A valid list of files, never null.
+   * @return A new list of files, never null.
    */
   public List<String> getJsFiles() {
-    return Collections.unmodifiableList(jsFiles);
+    return dependencyGraph.getFiles(ordinal, MediaType.JS);
   }
 
-  /** Returns an unmodifiable list of CSS files included in this resource.
+  /** Returns the CSS files of this dependency. The list is read from the
+   * dependency graph on each call.
    *
-   * @return A valid list of files, never null.
+   * @return A new list of files, never null.
    */
   public List<String> getCssFiles() {
-    return Collections.unmodifiableList(cssFiles);
+    return dependencyGraph.getFiles(ordinal, MediaType.CSS);
   }
 
-  /** Returns an unmodifiable list of dependencies for this resource.
+  /** Returns the dependencies of this resource. The list is read from the
+   * dependency graph on each call.
    *
-   * @return A valid list of dependencies, never null.
+   * @return A new list of dependencies, never null.
    */
   public List<WebJarResource> getDependencies() {
-    return Collections.unmodifiableList(dependencies);
+    return dependencyGraph.getDependencies(ordinal, type);
+  }
+
+  /** Returns the files to bundle. It includes the files of all transitive
+   * dependencies, in the order they must be loaded. The files are resolved
+   * from the dependency graph on each call.
+   *
+   * @return A new list of files, never null.
+   */
+  public List<String> getBundleFiles() {
+    if (resourceFile == null) {
+      return dependencyGraph.resolveFiles(id, type);
+    }
+    return dependencyGraph.resolveFile(resourceFile, type);
   }
 
   /** Returns the resource type.
@@ -161,39 +318,93 @@ public class WebJarResource extends AbstractResource {
     return type;
   }
 
-  /** Returns the dependency name and extension.
+  /** Returns the dependency name and extension, or the name of the file
+   * represented by this resource.
+   *
    * @return A valid filename, never null or empty.
    * @throws IllegalStateException if name cannot be resolved.
    */
   @Override
   public String getFilename() throws IllegalStateException {
+    if (resourceFile != null) {
+      return resourceFile.substring(resourceFile.lastIndexOf('/') + 1);
+    }
     return name + "." + type.name().toLowerCase();
   }
 
-  /** {@inheritDoc}
+  /** Returns the time the dependency graph was built. It does not access
+   * the file system.
+   *
+   * @return The last modified time, in milliseconds rounded to seconds, or
+   *    -1 if it's unknown.
    */
   @Override
-  protected File getFileForLastModifiedCheck() throws IOException {
-    // TODO(seykron): implement eviction strategy.
-    File file = new File(".");
-    file.setLastModified(System.currentTimeMillis());
+  public long lastModified() {
+    return dependencyGraph.getLastModified();
+  }
 
-    return file;
+  /** Returns the strong entity tag of this resource. It's derived from the
+   * dependency graph build time and descriptor digest and from the bundle
+   * files, so it's known without reading the bundle. Bundles are built only
+   * from the files recorded in the graph, so the same graph always yields
+   * the same bytes and the tag can validate byte ranges.
+   *
+   * @return A valid strong entity tag, never null or empty.
+   */
+  public String getETag() {
+    return eTag;
   }
 
-  /** Converts a {@link JSONArray} to a list of strings.
+  /** Computes the bundle length from the file sizes in the dependency graph.
    *
-   * @param theArray Array to convert. Cannot be null.
-   * @return The provided array as a list of Strings, never null.
+   * @param bundleFiles Files to bundle. Cannot be null.
+   * @return The bundle length, or -1 if the size of any file is unknown or
+   *    the files are rewritten.
    */
-  private List<String> asList(final JSONArray theArray) {
-    List<String> result = new LinkedList<String>();
+  private long computeLength(final List<String> bundleFiles) {
+    if (type == MediaType.CSS) {
+      return -1;
+    }
 
-    for (int i = 0; i < theArray.length(); i++) {
-      result.add(theArray.getString(i));
+    long bundleLength = 0;
+
+    for (String file : bundleFiles) {
+      long size = dependencyGraph.getFileSize(file);
+
+      if (size < 0) {
+        return -1;
+      }
+      bundleLength += size + SEPARATOR.length;
     }
+    return bundleLength;
+  }
 
-    return result;
+  /** Computes the entity tag of this resource.
+   *
+   * @param bundleFiles Files to bundle. Cannot be null.
+   * @return A valid strong entity tag, never null or empty.
+   */
+  private String computeETag(final List<String> bundleFiles) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      digest.update(String.valueOf(dependencyGraph.getLastModified())
+          .getBytes(CHARSET));
+
+      if (dependencyGraph.getDigest() != null) {
+        digest.update(dependencyGraph.getDigest().getBytes(CHARSET));
+      }
+      digest.update(type.name().getBytes(CHARSET));
+
+      for (String file : bundleFiles) {
+        digest.update(file.getBytes(CHARSET));
+      }
+      return "\"" + new BigInteger(1, digest.digest()).toString(HEX_RADIX)
+          + "\"";
+    } catch (NoSuchAlgorithmException cause) {
+      throw new IllegalStateException("MD5 is not supported.", cause);
+    } catch (UnsupportedEncodingException cause) {
+      throw new IllegalStateException(CHARSET + " is not supported.", cause);
+    }
   }
 
   /** Loads a resource from the specified classpath.
@@ -206,21 +417,131 @@ public class WebJarResource extends AbstractResource {
         Thread.currentThread().getContextClassLoader());
   }
 
-  /** Reads the specified resource and returns content as array of bytes.
-   * @param resource Resource to read. Cannot be null.
-   * @return The resource content, as bytes, never null.
+  /** Stream that records the bundle length and checksum once it's read to
+   * the end.
    */
-  private String read(final Resource resource) {
-    InputStream in = null;
+  private class BundleInputStream extends CheckedInputStream {
 
-    try {
-      in = resource.getInputStream();
+    /** Number of bytes read so far. */
+    private long count;
+
+    /** Creates a bundle stream.
+     * @param in Stream to read the bundle from. Cannot be null.
+     */
+    BundleInputStream(final InputStream in) {
+      super(in, new CRC32());
+    }
 
-      return IOUtils.toString(in);
-    } catch (IOException cause) {
-      throw new RuntimeException("Cannot read resource", cause);
-    } finally {
-      IOUtils.closeQuietly(in);
+    /** {@inheritDoc}.
+     */
+    @Override
+    public int read() throws IOException {
+      int data = super.read();
+
+      if (data == -1) {
+        record();
+      } else {
+        count += 1;
+      }
+      return data;
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public int read(final byte[] buffer, final int offset, final int len)
+        throws IOException {
+      int read = super.read(buffer, offset, len);
+
+      if (read == -1) {
+        record();
+      } else {
+        count += read;
+      }
+      return read;
+    }
+
+    /** Records the bundle length and checksum.
+     */
+    private void record() {
+      length = count;
+      checksum = getChecksum().getValue();
+    }
+  }
+
+  /** Lazily opens the streams of the bundle files, with a separator after
+   * each file.
+   */
+  private class BundleStreams implements Enumeration<InputStream> {
+
+    /** Files to open, it's never null. */
+    private final Iterator<String> files = getBundleFiles().iterator();
+
+    /** Indicates whether the next stream is a separator. */
+    private boolean separator = false;
+
+    /** Rewrites CSS files, it's null for other types. */
+    private final CssRewriter cssRewriter = createCssRewriter();
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public boolean hasMoreElements() {
+      return separator || files.hasNext();
+    }
+
+    /** {@inheritDoc}.
+     */
+    @Override
+    public InputStream nextElement() {
+      if (separator) {
+        separator = false;
+        return new ByteArrayInputStream(SEPARATOR);
+      }
+
+      String file = files.next();
+      separator = true;
+
+      try {
+        if (cssRewriter != null) {
+          return new ByteArrayInputStream(cssRewriter.rewrite(file)
+              .getBytes(CssRewriter.CHARSET));
+        }
+        return loadResource(file).getInputStream();
+      } catch (IOException cause) {
+        throw new RuntimeException("Cannot read resource: " + file, cause);
+      }
+    }
+
+    /** Creates the rewriter for CSS bundles. It reads files with
+     * {@link WebJarResource#loadResource(String)}.
+     *
+     * @return A new rewriter, or null if this is not a CSS bundle.
+     */
+    private CssRewriter createCssRewriter() {
+      if (type != MediaType.CSS) {
+        return null;
+      }
+      return new CssRewriter(getBundleDirectory()) {
+        /** {@inheritDoc}.
+         */
+        @Override
+        protected String read(final String file) throws IOException {
+          Resource resource = loadResource(file);
+          InputStream in;
+
+          try {
+            in = resource.getInputStream();
+          } catch (FileNotFoundException cause) {
+            return null;
+          }
+          try {
+            return IOUtils.toString(in, CHARSET);
+          } finally {
+            in.close();
+          }
+        }
+      };
     }
   }
 
@@ -228,9 +549,56 @@ public class WebJarResource extends AbstractResource {
    */
   public enum MediaType {
     /** Javascript resource. */
-    JS,
+    JS("application/javascript", ".js"),
 
     /** CSS resource. */
-    CSS
+    CSS("text/css", ".css");
+
+    /** All media types, it's never null. */
+    private static final MediaType[] TYPES = values();
+
+    /** HTTP content type of this media type, it's never null or empty. */
+    private final String contentType;
+
+    /** File extension of this media type, including the dot. It's never null
+     * or empty. */
+    private final String extension;
+
+    /** Creates a media type.
+     * @param theContentType HTTP content type. Cannot be null or empty.
+     * @param theExtension File extension, including the dot. Cannot be null
+     *    or empty.
+     */
+    private MediaType(final String theContentType,
+        final String theExtension) {
+      contentType = theContentType;
+      extension = theExtension;
+    }
+
+    /** Returns the media type of a file from its extension. The extension
+     * is case insensitive.
+     *
+     * @param path Path of the file. Cannot be null.
+     * @return The media type, or null if the extension is not a known media
+     *    type.
+     */
+    public static MediaType forPath(final String path) {
+      for (MediaType type : TYPES) {
+        int offset = path.length() - type.extension.length();
+
+        if (offset > 0 && path.regionMatches(true, offset, type.extension, 0,
+            type.extension.length())) {
+          return type;
+        }
+      }
+      return null;
+    }
+
+    /** Returns the HTTP content type of this media type.
+     * @return A valid content type, never null or empty.
+     */
+    public String getContentType() {
+      return contentType;
+    }
   }
 }
@@ -1,13 +1,34 @@
 package com.github.seykron.webjars;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.net.JarURLConnection;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.json.JSONObject;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
@@ -18,11 +39,103 @@ import com.github.seykron.webjars.WebJarResource.MediaType;
 
 /** Request handler that serves static content from WebJars.
  * <p>
- * It resolves dependencies if required.
+ * It resolves dependencies if required. Bundles are built once and kept in a
+ * {@link BundleCache}.
+ * </p>
+ * <p>
+ * Bundles have a strong entity tag and a stable last modified time, the time
+ * the dependency graph was built. If that time is unknown, bundles are only
+ * validated by their entity tag. Conditional requests are answered before
+ * building the bundle.
+ * </p>
+ * <p>
+ * Cached bundles are also kept compressed by the configured
+ * {@link ContentEncoder}s, and the compressed variant is served to clients
+ * that accept it.
+ * </p>
+ * <p>
+ * Bundles built by the <code>build-bundles</code> goal of the
+ * webjars-maven-plugin are served as they are, including their gzip copies,
+ * so they're not built at runtime. See {@link PrebuiltBundles}.
+ * </p>
+ * <p>
+ * If there is a {@link FingerprintManifest} next to the dependency graph
+ * descriptor, bundles can also be requested with their content hash before
+ * the extension, i.e. <code>jquery.0cc175b9c0f1b6a831c399e269772661.js</code>.
+ * Since the content of a fingerprinted path never changes, it's served with
+ * an immutable cache policy of one year. Use {@link #getFingerprintedPath}
+ * to build these paths.
+ * </p>
+ * <p>
+ * Relative URLs in CSS bundles are rewritten to work from the bundle
+ * directory, see {@link WebJarResource#getBundleDirectory()}. Since browsers
+ * resolve them against the requested URL, CSS bundles requested from any
+ * other directory are redirected to the path of the bundle stylesheet.
+ * {@link #getFingerprintedPath} already returns that path.
+ * </p>
+ * <p>
+ * Other webjar files, like fonts, images and source maps, are served as they
+ * are from an {@link AssetIndex} built at startup. The jar files are opened
+ * once and closed when the handler is destroyed.
+ * </p>
+ * <p>
+ * Cached bundles and assets support single and multiple byte ranges, with
+ * <code>If-Range</code> validation. Each range is read from its position.
+ * Ranges are not supported when the bundle cache is disabled.
+ * </p>
+ * <p>
+ * Paths that are not webjar resources are served by the parent handler from
+ * the configured locations. Finding out that a path is not a webjar resource
+ * takes a single lookup in the dependency graph, so misses are cheap.
  * </p>
  */
 public class WebJarsRequestHandler extends ResourceHttpRequestHandler
-  implements InitializingBean {
+  implements InitializingBean, DisposableBean {
+
+  /** HTTP HEAD method name. */
+  private static final String METHOD_HEAD = "HEAD";
+
+  /** Prefix of weak entity tags. */
+  private static final String WEAK_ETAG_PREFIX = "W/";
+
+  /** Radix to print the descriptor digest. */
+  private static final int HEX_RADIX = 16;
+
+  /** Charset of the JSON dependency graph descriptor. */
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  /** Entity tag suffix of minified bundles. */
+  private static final String MINIFIED_ETAG = "min";
+
+  /** Cache policy of fingerprinted bundles. */
+  private static final String IMMUTABLE_CACHE_CONTROL =
+      "public, max-age=31536000, immutable";
+
+  /** Pattern of fingerprinted paths; groups are the path without extension,
+   * the fingerprint and the extension. */
+  private static final Pattern FINGERPRINT_PATTERN =
+      Pattern.compile("^(.+)\\.([0-9a-f]{32})(\\.[^./]+)$");
+
+  /** Group of the path without extension in {@link #FINGERPRINT_PATTERN}. */
+  private static final int PATH_GROUP = 1;
+
+  /** Group of the fingerprint in {@link #FINGERPRINT_PATTERN}. */
+  private static final int FINGERPRINT_GROUP = 2;
+
+  /** Group of the extension in {@link #FINGERPRINT_PATTERN}. */
+  private static final int EXTENSION_GROUP = 3;
+
+  /** Boundary of multipart byte range responses. */
+  private static final String BOUNDARY = "WEBJARS_BYTERANGES";
+
+  /** Charset of the headers of multipart byte range responses. */
+  private static final String HEADER_CHARSET = "ISO-8859-1";
+
+  /** Directory of webjar resources in the classpath. */
+  private static final String RESOURCES_DIR = "META-INF/resources/";
+
+  /** Default maximum size of the bundle cache, in bytes. */
+  private static final long DEFAULT_BUNDLE_CACHE_SIZE = 16 * 1024 * 1024;
 
   /** Descriptor to read webjars dependencies, it's never null or empty. */
   private final String dependencyGraphDescriptor;
@@ -30,6 +143,35 @@ public class WebJarsRequestHandler extends ResourceHttpRequestHandler
   /** Resolved dependency graph, it's never null after properties set. */
   private DependencyGraph dependencyGraph;
 
+  /** Content hashes of the bundles, it's never null after properties set. */
+  private FingerprintManifest fingerprintManifest;
+
+  /** Webjar files served as they are, it's never null. */
+  private AssetIndex assetIndex = new AssetIndex();
+
+  /** Maximum size of the bundle cache, in bytes. */
+  private long bundleCacheSize = DEFAULT_BUNDLE_CACHE_SIZE;
+
+  /** Encoders to build compressed bundle variants, in order of preference.
+   * It's never null. */
+  private List<ContentEncoder> contentEncoders = createDefaultEncoders();
+
+  /** Bundles built at build time, it's never null. */
+  private PrebuiltBundles prebuiltBundles = new PrebuiltBundles();
+
+  /** Classpath location of prebuilt bundles, it's never null or empty. */
+  private String bundlesLocation = PrebuiltBundles.DEFAULT_LOCATION;
+
+  /** Whether minified prebuilt bundles are served. */
+  private boolean minified;
+
+  /** Cache of materialized bundles, it's never null. */
+  private BundleCache bundleCache = new BundleCache(bundleCacheSize,
+      contentEncoders, prebuiltBundles);
+
+  /** Whether cached bundles are kept in direct buffers. */
+  private boolean directBuffers;
+
   /** Creates the request handler and sets the dependency graph descriptor.
    *
    * @param theDependencyGraphDescriptor Descriptor to read webjars
@@ -42,7 +184,97 @@ public class WebJarsRequestHandler extends ResourceHttpRequestHandler
     dependencyGraphDescriptor = theDependencyGraphDescriptor;
   }
 
-  /** Reads the dependency graph descriptor.
+  /** Sets the maximum size of the bundle cache. When the size is exceeded,
+   * least recently used bundles are evicted. Default is 16 MB.
+   * <p>
+   * A size of zero disables the cache: bundles are streamed from the
+   * underlying files on each request, using a small buffer.
+   * </p>
+   *
+   * @param maxSize Maximum size of all cached bundles, in bytes. Must be zero
+   *    or greater.
+   */
+  public void setBundleCacheSize(final long maxSize) {
+    bundleCacheSize = maxSize;
+    bundleCache = new BundleCache(bundleCacheSize, contentEncoders,
+        prebuiltBundles, directBuffers);
+  }
+
+  /** Sets the encoders used to build compressed variants of the bundles, in
+   * order of preference. Encoded variants are built once, along with the
+   * bundle, and served to clients that accept the content coding. They are
+   * not available if the bundle cache is disabled.
+   * <p>
+   * Default encoders are brotli, if {@link BrotliContentEncoder#isAvailable()
+   * available}, and gzip.
+   * </p>
+   *
+   * @param theContentEncoders Encoders to build bundle variants. Cannot be
+   *    null, it may be empty to disable compression.
+   */
+  public void setContentEncoders(
+      final List<ContentEncoder> theContentEncoders) {
+    Validate.notNull(theContentEncoders,
+        "The content encoders cannot be null.");
+    contentEncoders = new ArrayList<ContentEncoder>(theContentEncoders);
+    bundleCache = new BundleCache(bundleCacheSize, contentEncoders,
+        prebuiltBundles, directBuffers);
+  }
+
+  /** Sets whether cached bundles are kept in direct buffers, out of the
+   * garbage collected heap. It's useful with big bundles, since they're not
+   * copied by the garbage collector. Default is false.
+   * <p>
+   * Direct buffers are bounded by the JVM maximum direct memory size, so it
+   * must be greater than the bundle cache size. Direct memory not freed yet
+   * by the garbage collector never goes beyond the bundle cache size, bundles
+   * are kept in the heap instead.
+   * </p>
+   *
+   * @param theDirectBuffers true to keep bundles in direct buffers.
+   */
+  public void setDirectBuffers(final boolean theDirectBuffers) {
+    directBuffers = theDirectBuffers;
+    bundleCache = new BundleCache(bundleCacheSize, contentEncoders,
+        prebuiltBundles, directBuffers);
+  }
+
+  /** Sets the classpath location of the bundles built by the
+   * <code>build-bundles</code> goal of the webjars-maven-plugin. Default is
+   * {@link PrebuiltBundles#DEFAULT_LOCATION}.
+   *
+   * @param location Classpath location of prebuilt bundles. Cannot be null
+   *    or empty.
+   */
+  public void setBundlesLocation(final String location) {
+    bundlesLocation = location;
+    prebuiltBundles = new PrebuiltBundles(bundlesLocation, minified);
+    bundleCache = new BundleCache(bundleCacheSize, contentEncoders,
+        prebuiltBundles, directBuffers);
+  }
+
+  /** Sets whether to serve the minified bundles written by the
+   * <code>build-bundles</code> goal when <code>minify</code> is enabled.
+   * It's usually enabled in production, and disabled during development to
+   * serve readable bundles. Default is false.
+   *
+   * @param theMinified true to serve minified bundles when they exist.
+   */
+  public void setMinified(final boolean theMinified) {
+    minified = theMinified;
+    prebuiltBundles = new PrebuiltBundles(bundlesLocation, minified);
+    bundleCache = new BundleCache(bundleCacheSize, contentEncoders,
+        prebuiltBundles, directBuffers);
+  }
+
+  /** Reads the dependency graph descriptor and the fingerprint manifest, if
+   * it exists, and opens the jar files of the assets. The descriptor last
+   * modified time is used as last modified time of all bundles, and the
+   * descriptor digest to build their entity tags.
+   * <p>
+   * The descriptor may be either in JSON or in binary format. It's
+   * memory-mapped if it's a file.
+   * </p>
    * <p>
    * {@inheritDoc}
    * </p>
@@ -50,13 +282,241 @@ public class WebJarsRequestHandler extends ResourceHttpRequestHandler
   @Override
   public void afterPropertiesSet() throws Exception {
     Resource resource = new ClassPathResource(dependencyGraphDescriptor);
-    InputStream in = resource.getInputStream();
 
     try {
-      dependencyGraph = new DependencyGraph(
-          new JSONObject(IOUtils.toString(in)));
+      ByteBuffer descriptor = readDescriptor(resource);
+      String digest = digest(descriptor);
+
+      if (DependencyGraph.isBinary(descriptor)) {
+        dependencyGraph = DependencyGraph.read(descriptor,
+            getLastModified(resource), digest);
+      } else {
+        dependencyGraph = new DependencyGraph(new JSONObject(
+            CHARSET.decode(descriptor).toString()), getLastModified(resource),
+            digest);
+      }
     } catch (Exception cause) {
       throw new RuntimeException("Cannot create dependency graph.", cause);
+    }
+
+    fingerprintManifest = new FingerprintManifest();
+    Resource manifest = new ClassPathResource(dependencyGraphDescriptor
+        + FingerprintManifest.SUFFIX);
+
+    if (manifest.exists()) {
+      InputStream in = manifest.getInputStream();
+
+      try {
+        fingerprintManifest = new FingerprintManifest(
+            new JSONObject(IOUtils.toString(in)));
+      } catch (Exception cause) {
+        throw new RuntimeException("Cannot read fingerprint manifest.", cause);
+      } finally {
+        in.close();
+      }
+    }
+    assetIndex.close();
+    assetIndex = new AssetIndex(dependencyGraph.getAssetFiles(),
+        Thread.currentThread().getContextClassLoader());
+  }
+
+  /** Closes the jar files of the assets.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public void destroy() {
+    assetIndex.close();
+  }
+
+  /** Returns the fingerprinted version of a path, if the required bundle has
+   * a fingerprint. The content hash is inserted before the file extension.
+   *
+   * @param path Path of a webjar file, relative to the handler mapping; i.e.
+   *    /webjars/jquery/2.1.0-2/jquery.js. Cannot be null or empty.
+   * @return The fingerprinted path, or the same path if it's not a webjar
+   *    file or the bundle has no fingerprint. Never null.
+   */
+  public String getFingerprintedPath(final String path) {
+    Validate.notEmpty(path, "The path cannot be null or empty.");
+
+    WebJarResource resource = findResource(path);
+    String fingerprint = null;
+
+    if (resource != null) {
+      fingerprint = getFingerprint(resource);
+    }
+    if (fingerprint == null) {
+      return path;
+    }
+    return fingerprint(getBundlePath(path, resource), fingerprint);
+  }
+
+  /** Inserts a fingerprint before the extension of a path.
+   *
+   * @param path Path to fingerprint. Cannot be null.
+   * @param fingerprint Fingerprint to insert. Cannot be null.
+   * @return The fingerprinted path, never null.
+   */
+  private static String fingerprint(final String path,
+      final String fingerprint) {
+    int extensionIndex = path.lastIndexOf('.');
+    return path.substring(0, extensionIndex) + "." + fingerprint
+        + path.substring(extensionIndex);
+  }
+
+  /** Returns the path a bundle must be requested from, so relative URLs in
+   * CSS bundles resolve against the bundle directory. It's the path of the
+   * file the resource represents, or of the first stylesheet of the
+   * dependency.
+   *
+   * @param path Required path, relative to the handler mapping. Cannot be
+   *    null.
+   * @param resource Resource of the required path. Cannot be null.
+   * @return The bundle path, with a leading slash if the required path has
+   *    one. It's the required path if it's not a CSS bundle, or if it is
+   *    already in the bundle directory. Never null.
+   */
+  private String getBundlePath(final String path,
+      final WebJarResource resource) {
+    String bundleFile = resource.getBundleFile();
+
+    if (resource.getType() != MediaType.CSS || bundleFile == null
+        || !bundleFile.startsWith(RESOURCES_DIR)) {
+      return path;
+    }
+
+    String requestDirectory = RESOURCES_DIR + StringUtils.removeStart(
+        path.substring(0, path.lastIndexOf('/') + 1), "/");
+
+    if (requestDirectory.equals(resource.getBundleDirectory())) {
+      return path;
+    }
+
+    String bundlePath = bundleFile.substring(RESOURCES_DIR.length());
+
+    if (path.startsWith("/")) {
+      return "/" + bundlePath;
+    }
+    return bundlePath;
+  }
+
+  /** Serves webjar resources and assets. Conditional requests are answered
+   * using the resource entity tag and last modified time, without building
+   * the bundle. Any other resource is served by the parent handler.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  public void handleRequest(final HttpServletRequest request,
+      final HttpServletResponse response) throws ServletException,
+      IOException {
+    String path = getPath(request);
+    WebJarResource webJarResource = findResource(path);
+
+    if (webJarResource == null) {
+      Asset asset = assetIndex.find(path);
+
+      if (asset != null) {
+        handleAsset(request, response, asset);
+      } else {
+        super.handleRequest(request, response);
+      }
+      return;
+    }
+
+    String bundlePath = getBundlePath(path, webJarResource);
+
+    if (!bundlePath.equals(path) && request.getRequestURI().endsWith(path)) {
+      if (isFingerprinted(path, webJarResource)) {
+        bundlePath = fingerprint(bundlePath,
+            getFingerprint(webJarResource));
+      }
+
+      String uri = request.getRequestURI();
+      response.sendRedirect(uri.substring(0, uri.length() - path.length())
+          + bundlePath);
+      return;
+    }
+
+    checkAndPrepare(request, response, true);
+
+    if (isFingerprinted(path, webJarResource)) {
+      response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+    }
+
+    List<ContentEncoder> encoders = getContentEncoders(webJarResource);
+    ContentEncoder encoder = null;
+    String encoding = null;
+
+    if (!encoders.isEmpty()) {
+      encoder = negotiateEncoding(request, encoders);
+      response.setHeader("Vary", "Accept-Encoding");
+    }
+    if (encoder != null) {
+      encoding = encoder.getName();
+    }
+
+    String eTag = getETag(webJarResource, encoding);
+    response.setHeader("ETag", eTag);
+    setLastModified(response, webJarResource.lastModified());
+
+    if (isNotModified(request, eTag, webJarResource.lastModified())) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    String contentType = webJarResource.getType().getContentType();
+    response.setContentType(contentType);
+
+    if (bundleCache.isEnabled()) {
+      final Bundle bundle = bundleCache.get(webJarResource);
+      final String bundleEncoding = encoding;
+
+      if (encoding != null) {
+        response.setHeader("Content-Encoding", encoding);
+      }
+      writeContent(request, response, eTag, webJarResource.lastModified(),
+          bundle.getLength(encoding), contentType, new ContentWriter() {
+            /** {@inheritDoc}.
+             */
+            @Override
+            public void write(final OutputStream out, final long offset,
+                final long length) throws IOException {
+              bundle.write(bundleEncoding, out, offset, length);
+            }
+          });
+      return;
+    }
+
+    // In streaming mode, the length is known if the descriptor has the file
+    // sizes or the bundle was already read.
+    Resource source = webJarResource;
+    Resource prebuilt = prebuiltBundles.find(webJarResource, null);
+    long length = webJarResource.getKnownLength();
+
+    if (encoder != null) {
+      source = prebuiltBundles.find(webJarResource,
+          encoder.getFileExtension());
+      length = source.contentLength();
+      response.setHeader("Content-Encoding", encoding);
+    } else if (prebuilt != null) {
+      source = prebuilt;
+      length = source.contentLength();
+    }
+    if (length >= 0) {
+      setContentLength(response, length);
+    }
+    if (METHOD_HEAD.equals(request.getMethod())) {
+      return;
+    }
+
+    InputStream in = source.getInputStream();
+
+    try {
+      IOUtils.copy(in, response.getOutputStream());
     } finally {
       in.close();
     }
@@ -69,19 +529,557 @@ public class WebJarsRequestHandler extends ResourceHttpRequestHandler
    */
   @Override
   protected Resource getResource(final HttpServletRequest request) {
+    WebJarResource webJarResource = findResource(getPath(request));
+    Resource result = null;
+
+    if (webJarResource != null) {
+      result = materialize(webJarResource);
+    } else {
+      result = assetIndex.find(getPath(request));
+    }
+    if (result == null) {
+      result = super.getResource(request);
+    }
+    return result;
+  }
+
+  /** Serves a webjar asset straight from its jar file.
+   *
+   * @param request Current request. Cannot be null.
+   * @param response Current response. Cannot be null.
+   * @param asset Asset to serve. Cannot be null.
+   * @throws ServletException if the request method is not supported.
+   * @throws IOException if the asset cannot be read or written.
+   */
+  private void handleAsset(final HttpServletRequest request,
+      final HttpServletResponse response, final Asset asset)
+      throws ServletException, IOException {
+    checkAndPrepare(request, response, true);
+
+    String eTag = asset.getETag();
+    response.setHeader("ETag", eTag);
+    setLastModified(response, asset.lastModified());
+
+    if (isNotModified(request, eTag, asset.lastModified())) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    writeContent(request, response, eTag, asset.lastModified(),
+        asset.contentLength(), asset.getContentType(), new ContentWriter() {
+          /** {@inheritDoc}.
+           */
+          @Override
+          public void write(final OutputStream out, final long offset,
+              final long length) throws IOException {
+            asset.write(out, offset, length);
+          }
+        });
+  }
+
+  /** Writes content that supports byte ranges. The full content is written
+   * if there is no valid Range header, if the If-Range validator doesn't
+   * match, or if the ranges are not smaller than the full content. A single
+   * range is written as it is, and multiple ranges are written as a
+   * <code>multipart/byteranges</code> body.
+   *
+   * @param request Current request. Cannot be null.
+   * @param response Current response. Cannot be null.
+   * @param eTag Current entity tag of the content. Cannot be null.
+   * @param lastModified Last modified time of the content, or -1 if it's
+   *    unknown.
+   * @param length Full length of the content, in bytes.
+   * @param contentType HTTP content type of the content. Cannot be null.
+   * @param writer Writes ranges of the content. Cannot be null.
+   * @throws IOException if the content cannot be written.
+   */
+  private void writeContent(final HttpServletRequest request,
+      final HttpServletResponse response, final String eTag,
+      final long lastModified, final long length, final String contentType,
+      final ContentWriter writer) throws IOException {
+    response.setHeader("Accept-Ranges", "bytes");
+    response.setContentType(contentType);
+
+    List<ByteRange> ranges = null;
+    boolean head = METHOD_HEAD.equals(request.getMethod());
+
+    if (isRangeValid(request, eTag, lastModified)) {
+      ranges = ByteRange.parse(request.getHeader("Range"), length);
+    }
+    if (ranges != null && ranges.isEmpty()) {
+      response.setHeader("Content-Range", "bytes */" + length);
+      response.setStatus(
+          HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+    if (ranges == null || (ranges.size() == 1
+        && ranges.get(0).getLength() == length)) {
+      setContentLength(response, length);
+
+      if (!head) {
+        writer.write(response.getOutputStream(), 0, length);
+      }
+      return;
+    }
+
+    if (ranges.size() == 1) {
+      ByteRange range = ranges.get(0);
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader("Content-Range", range.toContentRange(length));
+      setContentLength(response, range.getLength());
+
+      if (!head) {
+        writer.write(response.getOutputStream(), range.getStart(),
+            range.getLength());
+      }
+      return;
+    }
+
+    // Part headers are built first, so the body length is known.
+    List<byte[]> partHeaders = new ArrayList<byte[]>();
+    byte[] end = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(HEADER_CHARSET);
+    long bodyLength = end.length;
+
+    for (ByteRange range : ranges) {
+      byte[] partHeader = ("\r\n--" + BOUNDARY + "\r\nContent-Type: "
+          + contentType + "\r\nContent-Range: "
+          + range.toContentRange(length) + "\r\n\r\n")
+          .getBytes(HEADER_CHARSET);
+      partHeaders.add(partHeader);
+      bodyLength += partHeader.length + range.getLength();
+    }
+
+    if (bodyLength >= length) {
+      // The parts are not smaller than the full content.
+      setContentLength(response, length);
+
+      if (!head) {
+        writer.write(response.getOutputStream(), 0, length);
+      }
+      return;
+    }
+
+    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    response.setContentType("multipart/byteranges; boundary=" + BOUNDARY);
+    setContentLength(response, bodyLength);
+
+    if (head) {
+      return;
+    }
+
+    OutputStream out = response.getOutputStream();
+
+    for (int i = 0; i < ranges.size(); i++) {
+      out.write(partHeaders.get(i));
+      writer.write(out, ranges.get(i).getStart(), ranges.get(i).getLength());
+    }
+    out.write(end);
+  }
+
+  /** Determines whether the Range header must be honoured. It's the case if
+   * there is no If-Range header, or if it matches the current entity tag or
+   * last modified time. Entity tags are compared with the strong comparison
+   * function, so weak entity tags never match.
+   *
+   * @param request Current request. Cannot be null.
+   * @param eTag Current entity tag of the content. Cannot be null.
+   * @param lastModified Last modified time of the content, or -1 if it's
+   *    unknown.
+   * @return true if ranges must be served, false to serve the full content.
+   */
+  private boolean isRangeValid(final HttpServletRequest request,
+      final String eTag, final long lastModified) {
+    String ifRange = request.getHeader("If-Range");
+
+    if (ifRange == null) {
+      return true;
+    }
+    if (ifRange.startsWith("\"") || ifRange.startsWith(WEAK_ETAG_PREFIX)) {
+      return !eTag.startsWith(WEAK_ETAG_PREFIX) && ifRange.equals(eTag);
+    }
+    if (lastModified < 0) {
+      return false;
+    }
+    try {
+      return request.getDateHeader("If-Range") == lastModified;
+    } catch (IllegalArgumentException cause) {
+      return false;
+    }
+  }
+
+  /** Sets the Content-Length header, that may not fit in an int.
+   *
+   * @param response Current response. Cannot be null.
+   * @param length Content length, in bytes.
+   */
+  private void setContentLength(final HttpServletResponse response,
+      final long length) {
+    response.setHeader("Content-Length", Long.toString(length));
+  }
+
+  /** Returns the required path, relative to the handler mapping.
+   *
+   * @param request Current request. Cannot be null.
+   * @return A valid path, never null or empty.
+   */
+  private String getPath(final HttpServletRequest request) {
     String path = (String) request.getAttribute(HandlerMapping
         .PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
     Validate.notEmpty(path, "Invalid request, not path info available.");
+    return path;
+  }
+
+  /** Looks up the webjar resource for the specified path. Fingerprinted paths
+   * are resolved if the fingerprint is the current one. It never builds the
+   * bundle.
+   *
+   * @param path Required path. Cannot be null or empty.
+   * @return The required resource, or null if it is not a webjar resource.
+   */
+  private WebJarResource findResource(final String path) {
+    Matcher matcher = FINGERPRINT_PATTERN.matcher(path);
 
-    String typeName = StringUtils.substringAfterLast(path, ".");
-    Validate.notEmpty(typeName, "Unknown file type: " + path);
+    if (matcher.matches()) {
+      WebJarResource resource = lookupResource(matcher.group(PATH_GROUP)
+          + matcher.group(EXTENSION_GROUP));
 
-    MediaType type = MediaType.valueOf(typeName.toUpperCase());
-    Resource result = dependencyGraph.findDependencyByPath(path, type);
+      if (resource != null && matcher.group(FINGERPRINT_GROUP).equals(
+          getFingerprint(resource))) {
+        return resource;
+      }
+    }
+    return lookupResource(path);
+  }
 
-    if (result == null) {
-      result = super.getResource(request);
+  /** Returns the fingerprint of the bundle served for a resource, the
+   * minified bundle if it's served instead of the regular one.
+   *
+   * @param resource Resource to get the fingerprint for. Cannot be null.
+   * @return The fingerprint, or null if the bundle has no fingerprint.
+   */
+  private String getFingerprint(final WebJarResource resource) {
+    return fingerprintManifest.getFingerprint(resource,
+        prebuiltBundles.isMinified(resource));
+  }
+
+  /** Determines whether a path has the current fingerprint of a resource.
+   *
+   * @param path Required path. Cannot be null.
+   * @param resource Resource the path belongs to. Cannot be null.
+   * @return true if the path is fingerprinted, false otherwise.
+   */
+  private boolean isFingerprinted(final String path,
+      final WebJarResource resource) {
+    Matcher matcher = FINGERPRINT_PATTERN.matcher(path);
+
+    return matcher.matches() && matcher.group(FINGERPRINT_GROUP).equals(
+        getFingerprint(resource));
+  }
+
+  /** Looks up the webjar resource for a plain, not fingerprinted, path.
+   *
+   * @param path Required path. Cannot be null or empty.
+   * @return The required resource, or null if it is not a webjar resource.
+   */
+  private WebJarResource lookupResource(final String path) {
+    MediaType type = MediaType.forPath(path);
+
+    if (type == null) {
+      return null;
+    }
+    return dependencyGraph.findDependencyByPath(path, type);
+  }
+
+  /** Returns the resource to read the bundle content from. It's the cached
+   * bundle, or the resource itself if the cache is disabled.
+   *
+   * @param webJarResource Resource to materialize. Cannot be null.
+   * @return A valid resource, never null.
+   */
+  private Resource materialize(final WebJarResource webJarResource) {
+    Resource result = webJarResource;
+
+    if (bundleCache.isEnabled()) {
+      result = bundleCache.get(webJarResource);
     }
     return result;
   }
+
+  /** Returns the encoders that can serve the specified resource. When the
+   * cache is enabled all encoders are available, otherwise only those with a
+   * prebuilt variant of the resource.
+   *
+   * @param resource Resource to serve. Cannot be null.
+   * @return A valid list of encoders in order of preference, never null.
+   */
+  private List<ContentEncoder> getContentEncoders(
+      final WebJarResource resource) {
+    if (bundleCache.isEnabled()) {
+      return contentEncoders;
+    }
+
+    List<ContentEncoder> encoders = new ArrayList<ContentEncoder>();
+
+    for (ContentEncoder encoder : contentEncoders) {
+      if (prebuiltBundles.find(resource, encoder.getFileExtension()) != null) {
+        encoders.add(encoder);
+      }
+    }
+    return encoders;
+  }
+
+  /** Selects the content coding for the response, according to the
+   * Accept-Encoding request header. The encoding with the highest quality
+   * wins, ties are resolved by the order of the encoders.
+   *
+   * @param request Current request. Cannot be null.
+   * @param encoders Available encoders, in order of preference. Cannot be
+   *    null.
+   * @return The encoder for the selected content coding, or null to send
+   *    plain content.
+   */
+  private ContentEncoder negotiateEncoding(final HttpServletRequest request,
+      final List<ContentEncoder> encoders) {
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    Map<String, Float> accepted = new HashMap<String, Float>();
+
+    for (String coding : StringUtils.split(acceptEncoding, ',')) {
+      String name = StringUtils.substringBefore(coding, ";").trim()
+          .toLowerCase();
+      float quality = 1;
+      String parameter = StringUtils.substringAfter(coding, ";").trim();
+
+      if (parameter.startsWith("q=")) {
+        try {
+          quality = Float.parseFloat(parameter.substring(2).trim());
+        } catch (NumberFormatException cause) {
+          quality = 0;
+        }
+      }
+      accepted.put(name, quality);
+    }
+
+    ContentEncoder selected = null;
+    float bestQuality = 0;
+
+    for (ContentEncoder encoder : encoders) {
+      Float quality = accepted.get(encoder.getName());
+
+      if (quality == null) {
+        quality = accepted.get("*");
+      }
+      if (quality != null && quality > bestQuality) {
+        selected = encoder;
+        bestQuality = quality;
+      }
+    }
+    return selected;
+  }
+
+  /** Returns the entity tag of a resource variant. The minified bundle and
+   * each encoded variant have their own entity tag.
+   *
+   * @param resource Resource to get the entity tag for. Cannot be null.
+   * @param encoding Content coding of the variant, or null for plain content.
+   * @return A valid entity tag, never null.
+   */
+  private String getETag(final WebJarResource resource,
+      final String encoding) {
+    String eTag = resource.getETag();
+    String suffix = "";
+
+    if (prebuiltBundles.isMinified(resource)) {
+      suffix = "-" + MINIFIED_ETAG;
+    }
+    if (encoding != null) {
+      suffix = suffix + "-" + encoding;
+    }
+    if (suffix.length() > 0) {
+      eTag = eTag.substring(0, eTag.length() - 1) + suffix + "\"";
+    }
+    return eTag;
+  }
+
+  /** Determines whether the client already has the current version of the
+   * required resource. If-None-Match takes precedence over
+   * If-Modified-Since, that's ignored if the last modified time is unknown.
+   *
+   * @param request Current request. Cannot be null.
+   * @param eTag Current entity tag of the resource. Cannot be null.
+   * @param lastModified Last modified time of the resource, or -1 if it's
+   *    unknown.
+   * @return true if the resource was not modified, false otherwise.
+   */
+  private boolean isNotModified(final HttpServletRequest request,
+      final String eTag, final long lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+
+    if (ifNoneMatch != null) {
+      return matchesETag(ifNoneMatch, eTag);
+    }
+    if (lastModified < 0) {
+      return false;
+    }
+
+    long ifModifiedSince;
+
+    try {
+      ifModifiedSince = request.getDateHeader("If-Modified-Since");
+    } catch (IllegalArgumentException cause) {
+      return false;
+    }
+    return ifModifiedSince != -1 && ifModifiedSince >= lastModified;
+  }
+
+  /** Determines whether an If-None-Match header matches an entity tag. It uses
+   * the weak comparison function, as required for If-None-Match.
+   *
+   * @param header Header value, list of entity tags. Cannot be null.
+   * @param eTag Current entity tag. Cannot be null.
+   * @return true if any entity tag in the header matches, false otherwise.
+   */
+  private boolean matchesETag(final String header, final String eTag) {
+    String opaqueTag = StringUtils.removeStart(eTag, WEAK_ETAG_PREFIX);
+
+    for (String candidate : StringUtils.split(header, ',')) {
+      String tag = StringUtils.removeStart(candidate.trim(),
+          WEAK_ETAG_PREFIX);
+
+      if (tag.equals("*") || tag.equals(opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Creates the default content encoders.
+   * @return A valid list of encoders, never null.
+   */
+  private static List<ContentEncoder> createDefaultEncoders() {
+    List<ContentEncoder> encoders = new ArrayList<ContentEncoder>();
+
+    if (BrotliContentEncoder.isAvailable()) {
+      encoders.add(new BrotliContentEncoder());
+    }
+    encoders.add(new GzipContentEncoder());
+
+    return encoders;
+  }
+
+  /** Reads the dependency graph descriptor. Files are memory-mapped, any
+   * other resource, i.e. packaged within a jar, is read into memory.
+   *
+   * @param resource Descriptor to read. Cannot be null.
+   * @return A buffer with the descriptor content, never null.
+   * @throws IOException if the descriptor cannot be read.
+   */
+  private ByteBuffer readDescriptor(final Resource resource)
+      throws IOException {
+    File file = null;
+
+    try {
+      file = resource.getFile();
+    } catch (IOException cause) {
+      // It's not a file, i.e. packaged within a jar.
+      file = null;
+    }
+
+    if (file != null) {
+      RandomAccessFile descriptor = new RandomAccessFile(file, "r");
+
+      try {
+        // The mapping is valid after the file is closed.
+        return descriptor.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+            descriptor.length());
+      } finally {
+        descriptor.close();
+      }
+    }
+
+    InputStream in = resource.getInputStream();
+
+    try {
+      return ByteBuffer.wrap(IOUtils.toByteArray(in));
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Returns the time the dependency graph descriptor was built. It's the
+   * time of the jar entry if the descriptor is packaged within a jar, so it's
+   * the same in every node that runs the same artifact and it doesn't change
+   * on restarts. Otherwise it's the time of the file.
+   *
+   * @param resource Descriptor to check. Cannot be null.
+   * @return The descriptor build time, or -1 if it cannot be determined.
+   */
+  private long getLastModified(final Resource resource) {
+    long lastModified;
+
+    try {
+      URLConnection connection = resource.getURL().openConnection();
+
+      if (connection instanceof JarURLConnection) {
+        lastModified = ((JarURLConnection) connection).getJarEntry()
+          .getTime();
+      } else {
+        lastModified = resource.lastModified();
+      }
+    } catch (IOException cause) {
+      lastModified = -1;
+    }
+    // Both jar entries and files report 0 or less if the time is unknown.
+    if (lastModified <= 0) {
+      return -1;
+    }
+    return lastModified;
+  }
+
+  /** Computes the digest of the dependency graph descriptor content. It does
+   * not change the buffer position.
+   *
+   * @param descriptor Descriptor content. Cannot be null.
+   * @return The MD5 digest in hexadecimal, never null or empty.
+   */
+  private static String digest(final ByteBuffer descriptor) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      digest.update(descriptor.duplicate());
+      return new BigInteger(1, digest.digest()).toString(HEX_RADIX);
+    } catch (NoSuchAlgorithmException cause) {
+      throw new IllegalStateException("MD5 is not supported.", cause);
+    }
+  }
+
+  /** Sets the Last-Modified header, if the last modified time is known.
+   *
+   * @param response Current response. Cannot be null.
+   * @param lastModified Last modified time of the content, or -1 if it's
+   *    unknown.
+   */
+  private void setLastModified(final HttpServletResponse response,
+      final long lastModified) {
+    if (lastModified >= 0) {
+      response.setDateHeader("Last-Modified", lastModified);
+    }
+  }
+
+  /** Writes ranges of some content.
+   */
+  private interface ContentWriter {
+
+    /** Writes a range of the content.
+     *
+     * @param out Stream to write the range to. Cannot be null.
+     * @param offset Position of the first byte to write.
+     * @param length Number of bytes to write.
+     * @throws IOException if the content cannot be read or written.
+     */
+    void write(OutputStream out, long offset, long length) throws IOException;
+  }
 }
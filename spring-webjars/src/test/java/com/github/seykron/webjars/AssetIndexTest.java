@@ -0,0 +1,97 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link AssetIndex} class.
+ */
+public class AssetIndexTest {
+
+  private File jar;
+
+  private AssetIndex assetIndex;
+
+  private int lookups;
+
+  @Before
+  public void setUp() throws Exception {
+    jar = File.createTempFile("assets", ".jar");
+    ClassLoader jarClassLoader = TestJarFile.create(jar,
+        "META-INF/resources/webjars/foo/1.0/foo.png", "png",
+        "META-INF/resources/webjars/foo/1.0/fonts/foo.WOFF", "woff",
+        "META-INF/resources/webjars/foo/1.0/foo.bar", "bar");
+    ClassLoader classLoader = new ClassLoader(jarClassLoader) {
+      @Override
+      public URL getResource(final String name) {
+        lookups += 1;
+        return super.getResource(name);
+      }
+    };
+
+    assetIndex = new AssetIndex(Arrays.asList(
+        "META-INF/resources/webjars/foo/1.0/missing.js",
+        "META-INF/resources/webjars/foo/1.0/foo.png",
+        "META-INF/resources/webjars/foo/1.0/fonts/foo.WOFF",
+        "META-INF/resources/webjars/foo/1.0/foo.bar",
+        "META-INF/resources/webjars/foo/1.0/missing.png"), classLoader);
+  }
+
+  @After
+  public void tearDown() {
+    assetIndex.close();
+    jar.delete();
+  }
+
+  @Test
+  public void find() throws Exception {
+    Asset asset = assetIndex.find("/webjars/foo/1.0/foo.png");
+
+    assertThat(assetIndex.size(), is(3));
+    assertThat(assetIndex.find("webjars/foo/1.0/foo.png"),
+        is(sameInstance(asset)));
+    assertThat(asset.getContentType(), is("image/png"));
+    assertThat(asset.contentLength(), is(3L));
+    assertThat(asset.getFilename(), is("foo.png"));
+    assertThat(asset.lastModified() % 1000, is(0L));
+    assertThat(asset.getETag(), is(assetIndex.find("webjars/foo/1.0/foo.png")
+        .getETag()));
+    assertThat(asset.getETag(), is(not(assetIndex.find(
+        "webjars/foo/1.0/foo.bar").getETag())));
+
+    InputStream in = asset.getInputStream();
+    assertThat(IOUtils.toString(in), is("png"));
+    in.close();
+  }
+
+  @Test
+  public void create_lookupsPerWebJar() {
+    // The missing file, and the first asset to locate the jar.
+    assertThat(lookups, is(2));
+  }
+
+  @Test
+  public void find_contentTypes() {
+    assertThat(assetIndex.find("/webjars/foo/1.0/fonts/foo.WOFF")
+        .getContentType(), is("font/woff"));
+    assertThat(assetIndex.find("/webjars/foo/1.0/foo.bar").getContentType(),
+        is("application/octet-stream"));
+  }
+
+  @Test
+  public void find_notFound() {
+    assertThat(assetIndex.find("/webjars/foo/1.0/missing.png"),
+        is(nullValue()));
+    assertThat(new AssetIndex().find("/webjars/foo/1.0/foo.png"),
+        is(nullValue()));
+  }
+}
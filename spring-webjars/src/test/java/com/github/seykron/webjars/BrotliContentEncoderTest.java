@@ -0,0 +1,22 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/** Tests the {@link BrotliContentEncoder} class.
+ */
+public class BrotliContentEncoderTest {
+
+  @Test
+  public void isAvailable() {
+    // Brotli4j is not a dependency of this project.
+    assertThat(BrotliContentEncoder.isAvailable(), is(false));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void newInstance_notAvailable() {
+    new BrotliContentEncoder();
+  }
+}
@@ -0,0 +1,174 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Tests the {@link BundleCache} class.
+ */
+public class BundleCacheTest {
+
+  private DependencyGraph dependencyGraph;
+
+  @Before
+  public void setUp() throws Exception {
+    ClassLoader classLoader = new TestClassLoader();
+    JSONObject jsonDependencyGraph = new JSONObject(IOUtils.toString(classLoader
+        .getResource("com/github/seykron/webjars/deps.js")));
+    dependencyGraph = new DependencyGraph(jsonDependencyGraph);
+
+    Thread.currentThread().setContextClassLoader(classLoader);
+  }
+
+  @Test
+  public void get() throws IOException {
+    BundleCache cache = new BundleCache(1024);
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+
+    Bundle bundle = cache.get(resource);
+    InputStream in = bundle.getInputStream();
+
+    assertThat(IOUtils.toString(in),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+    assertThat(bundle.contentLength(),
+        is((long) (TestClassLoader.TEST_DATA.length() + 1) * 5));
+    assertThat(cache.get(resource), is(sameInstance(bundle)));
+    assertThat(cache.getCount(), is(1));
+    assertThat(cache.getSize(), is(bundle.contentLength()));
+    in.close();
+  }
+
+  @Test
+  public void get_evict() {
+    WebJarResource jasmineJquery = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+    WebJarResource jasmine = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine:jar:1.2.0", MediaType.JS);
+    int jasmineSize = (TestClassLoader.TEST_DATA.length() + 1) * 2;
+    BundleCache cache = new BundleCache(jasmineSize);
+
+    cache.get(jasmine);
+    assertThat(cache.getCount(), is(1));
+
+    // Bigger than the cache, it's not retained.
+    cache.get(jasmineJquery);
+    assertThat(cache.getCount(), is(1));
+    assertThat(cache.getSize(), is((long) jasmineSize));
+
+    cache.clear();
+    assertThat(cache.getCount(), is(0));
+    assertThat(cache.getSize(), is(0L));
+  }
+
+  @Test
+  public void get_evictLeastRecentlyUsed() {
+    WebJarResource jasmine = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine:jar:1.2.0", MediaType.JS);
+    WebJarResource jquery = dependencyGraph.findDependencyById(
+        "org.webjars:jquery:jar:1.8.2", MediaType.JS);
+    WebJarResource reporters = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.JS);
+    BundleCache cache = new BundleCache(
+        (TestClassLoader.TEST_DATA.length() + 1) * 6);
+
+    Bundle jasmineBundle = cache.get(jasmine);
+    Bundle jqueryBundle = cache.get(jquery);
+    assertThat(cache.get(jasmine), is(sameInstance(jasmineBundle)));
+
+    // Needs 6 items, jquery is the least recently used.
+    cache.get(reporters);
+    assertThat(cache.getCount(), is(1));
+    assertThat(cache.get(jquery), is(not(sameInstance(jqueryBundle))));
+  }
+
+  @Test
+  public void get_encoded() throws IOException {
+    List<ContentEncoder> encoders = new ArrayList<ContentEncoder>();
+    encoders.add(new GzipContentEncoder());
+    BundleCache cache = new BundleCache(1024, encoders);
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+
+    Bundle bundle = cache.get(resource);
+
+    assertThat(bundle.hasEncoding("gzip"), is(true));
+    assertThat(bundle.hasEncoding("br"), is(false));
+    assertThat(cache.getSize(), is(bundle.retainedSize()));
+    assertThat(bundle.retainedSize(),
+        is((long) bundle.size() + bundle.getLength("gzip")));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bundle.write("gzip", out);
+    assertThat(IOUtils.toString(new GZIPInputStream(
+        new ByteArrayInputStream(out.toByteArray()))),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+  }
+
+  @Test
+  public void get_direct() throws IOException {
+    List<ContentEncoder> encoders = new ArrayList<ContentEncoder>();
+    encoders.add(new GzipContentEncoder());
+    BundleCache cache = new BundleCache(1024, encoders,
+        new PrebuiltBundles(), true);
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+    String content = StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5);
+
+    Bundle bundle = cache.get(resource);
+
+    assertThat(bundle.isDirect(), is(true));
+    assertThat(bundle.size(), is(content.length()));
+    assertThat(cache.getSize(), is(bundle.retainedSize()));
+
+    InputStream in = bundle.getInputStream();
+    assertThat(in.skip(1), is(1L));
+    assertThat(IOUtils.toString(in), is(content.substring(1)));
+    in.close();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    bundle.write(null, out);
+    bundle.write(null, out);
+    assertThat(out.toString("UTF-8"), is(content + content));
+
+    out = new ByteArrayOutputStream();
+    bundle.write("gzip", out);
+    assertThat(IOUtils.toString(new GZIPInputStream(
+        new ByteArrayInputStream(out.toByteArray()))), is(content));
+  }
+
+  @Test
+  public void get_directBounded() throws IOException {
+    BundleCache cache = new BundleCache(100, new ArrayList<ContentEncoder>(),
+        new PrebuiltBundles(), true);
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+
+    Bundle bundle = cache.get(resource);
+    assertThat(bundle.isDirect(), is(true));
+    assertThat(cache.getDirectSize(), is(75L));
+
+    // The evicted bundle is still referenced, so its memory is not freed.
+    cache.clear();
+    Bundle rebuilt = cache.get(resource);
+
+    assertThat(rebuilt.isDirect(), is(false));
+    assertThat(cache.getDirectSize(), is(75L));
+    assertThat(bundle.size(), is(rebuilt.size()));
+  }
+}
@@ -0,0 +1,75 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/** Tests the {@link ByteRange} class.
+ */
+public class ByteRangeTest {
+
+  @Test
+  public void parse() {
+    List<ByteRange> ranges = ByteRange.parse("bytes=-5, 0-9, 20-30",
+        100);
+
+    assertThat(ranges.size(), is(3));
+    assertRange(ranges.get(0), 0, 9);
+    assertRange(ranges.get(1), 20, 30);
+    assertRange(ranges.get(2), 95, 99);
+    assertThat(ranges.get(0).getLength(), is(10L));
+    assertThat(ranges.get(0).toContentRange(100), is("bytes 0-9/100"));
+    assertRange(ByteRange.parse("bytes=20-", 100).get(0), 20, 99);
+    assertRange(ByteRange.parse("bytes=5-200", 100).get(0), 5, 99);
+  }
+
+  @Test
+  public void parse_merge() {
+    List<ByteRange> ranges = ByteRange.parse(
+        "bytes=0-9, 5-14, 15-19, 30-39, 0-0, 35-", 100);
+
+    assertThat(ranges.size(), is(2));
+    assertRange(ranges.get(0), 0, 19);
+    assertRange(ranges.get(1), 30, 99);
+  }
+
+  @Test
+  public void parse_tooManyRanges() {
+    StringBuilder header = new StringBuilder("bytes=0-0");
+
+    for (int i = 1; i < ByteRange.MAX_RANGES; i++) {
+      header.append(",").append(i * 2).append("-").append(i * 2);
+    }
+    assertThat(ByteRange.parse(header.toString(), 100).size(),
+        is(ByteRange.MAX_RANGES));
+    assertThat(ByteRange.parse(header.append(",99-99").toString(), 100),
+        is(nullValue()));
+  }
+
+  @Test
+  public void parse_unsatisfiable() {
+    assertThat(ByteRange.parse("bytes=100-", 100).isEmpty(), is(true));
+    assertThat(ByteRange.parse("bytes=-0", 100).isEmpty(), is(true));
+    assertRange(ByteRange.parse("bytes=-500", 100).get(0), 0, 99);
+  }
+
+  @Test
+  public void parse_invalid() {
+    assertThat(ByteRange.parse(null, 100), is(nullValue()));
+    assertThat(ByteRange.parse("items=0-9", 100), is(nullValue()));
+    assertThat(ByteRange.parse("bytes=", 100), is(nullValue()));
+    assertThat(ByteRange.parse("bytes=9-0", 100), is(nullValue()));
+    assertThat(ByteRange.parse("bytes=a-b", 100), is(nullValue()));
+    assertThat(ByteRange.parse("bytes=-", 100), is(nullValue()));
+    assertThat(ByteRange.parse("bytes=5", 100), is(nullValue()));
+  }
+
+  private void assertRange(final ByteRange range, final long start,
+      final long end) {
+    assertThat(range.getStart(), is(start));
+    assertThat(range.getEnd(), is(end));
+  }
+}
@@ -0,0 +1,105 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link CssRewriter} class.
+ */
+public class CssRewriterTest {
+
+  private static final String BASE = "META-INF/resources/webjars/app/1.0/css/";
+
+  private Map<String, String> files;
+
+  private CssRewriter rewriter;
+
+  @Before
+  public void setUp() {
+    files = new HashMap<String, String>();
+    rewriter = new CssRewriter(BASE) {
+      @Override
+      protected String read(final String file) throws IOException {
+        return files.get(file);
+      }
+    };
+  }
+
+  @Test
+  public void rewrite() throws IOException {
+    files.put("META-INF/resources/webjars/ui/2.0/themes/base/ui.css",
+        "@charset \"UTF-8\";\n"
+        + ".a { background: url(images/a.png); }\n"
+        + ".b { background: url( '../../icons/b.png?v=1#x' ); }\n"
+        + ".c { background: url(\"data:image/png;base64,AAAA\"); }\n"
+        + ".d { background: url(/static/d.png); }\n"
+        + ".e { background: url(http://example.com/e.png); }\n"
+        + ".f { behavior: url(#default); }\n");
+
+    assertThat(rewriter.rewrite(
+        "META-INF/resources/webjars/ui/2.0/themes/base/ui.css"), is("\n"
+        + ".a { background: url(../../../ui/2.0/themes/base/images/a.png); }\n"
+        + ".b { background: url('../../../ui/2.0/icons/b.png?v=1#x'); }\n"
+        + ".c { background: url(\"data:image/png;base64,AAAA\"); }\n"
+        + ".d { background: url(/static/d.png); }\n"
+        + ".e { background: url(http://example.com/e.png); }\n"
+        + ".f { behavior: url(#default); }\n"));
+  }
+
+  @Test
+  public void rewrite_sameDirectory() throws IOException {
+    files.put(BASE + "app.css", ".a { background: url(../img/a.png); }");
+
+    assertThat(rewriter.rewrite(BASE + "app.css"),
+        is(".a { background: url(../img/a.png); }"));
+  }
+
+  @Test
+  public void rewrite_import() throws IOException {
+    files.put(BASE + "app.css", "@import 'base/core.css';\n"
+        + "@import url(\"base/print.css\") print;\n"
+        + "@import url(http://example.com/font.css);\n"
+        + ".app {}");
+    files.put(BASE + "base/core.css", "@import \"reset.css\";\n"
+        + ".core { background: url(core.png); }");
+    files.put(BASE + "base/reset.css", ".reset {}");
+    files.put(BASE + "base/print.css", ".print {}");
+
+    assertThat(rewriter.rewrite(BASE + "app.css"), is(".reset {}\n"
+        + ".core { background: url(base/core.png); }\n"
+        + "@import \"base/print.css\" print;\n"
+        + "@import \"http://example.com/font.css\";\n"
+        + ".app {}"));
+
+    // Files already inlined are not included again.
+    assertThat(rewriter.rewrite(BASE + "base/core.css"), is(""));
+    assertThat(rewriter.rewrite(BASE + "base/print.css"), is(".print {}"));
+  }
+
+  @Test
+  public void rewrite_importIncluded() throws IOException {
+    files.put(BASE + "reset.css", ".reset {}");
+    files.put(BASE + "app.css", "@import 'reset.css';\n.app {}");
+
+    assertThat(rewriter.rewrite(BASE + "reset.css"), is(".reset {}"));
+    assertThat(rewriter.rewrite(BASE + "app.css"), is("\n.app {}"));
+  }
+
+  @Test(expected = IOException.class)
+  public void rewrite_notFound() throws IOException {
+    rewriter.rewrite(BASE + "missing.css");
+  }
+
+  @Test
+  public void resolve() {
+    assertThat(CssRewriter.resolve("a/b/c.css", "../d/./e.png"),
+        is("a/d/e.png"));
+    assertThat(CssRewriter.resolve("c.css", "e.png"), is("e.png"));
+  }
+}
@@ -0,0 +1,66 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Tests the {@link DependencyDescriptor} class.
+ */
+public class DependencyDescriptorTest {
+
+  @Test
+  public void fromJson() {
+    JSONObject json = new JSONObject();
+    json.put("id", "org.webjars:jquery-ui:jar:1.8.0");
+    json.put("name", "jquery-ui");
+    json.put("version", "1.8.0");
+    json.put("js", new JSONArray(Arrays.asList("ui.js")));
+    json.put("css", new JSONArray(Arrays.asList("ui.css")));
+    json.put("assets", new JSONArray(Arrays.asList("ui.png")));
+    json.put("dependencies", new JSONArray(Arrays.asList(
+        "org.webjars:jquery:jar:1.10.2")));
+    json.put("sizes", new JSONObject().put("ui.js", 1024L));
+    json.put("requires", new JSONObject().put("ui.js",
+        new JSONArray(Arrays.asList("jquery.js"))));
+
+    DependencyDescriptor descriptor = DependencyDescriptor.fromJson(json);
+
+    assertThat(descriptor.getId(), is("org.webjars:jquery-ui:jar:1.8.0"));
+    assertThat(descriptor.getName(), is("jquery-ui"));
+    assertThat(descriptor.getVersion(), is("1.8.0"));
+    assertThat(descriptor.getFiles(MediaType.JS),
+        is(Arrays.asList("ui.js")));
+    assertThat(descriptor.getFiles(MediaType.CSS),
+        is(Arrays.asList("ui.css")));
+    assertThat(descriptor.getAssetFiles(), is(Arrays.asList("ui.png")));
+    assertThat(descriptor.getDependencies(),
+        is(Arrays.asList("org.webjars:jquery:jar:1.10.2")));
+    assertThat(descriptor.getFileSizes().get("ui.js"), is(1024L));
+    assertThat(descriptor.getFileDependencies().get("ui.js"),
+        is(Arrays.asList("jquery.js")));
+  }
+
+  @Test
+  public void fromJson_noSizes() {
+    JSONObject json = new JSONObject();
+    json.put("id", "org.webjars:jquery:jar:1.10.2");
+    json.put("name", "jquery");
+    json.put("version", "1.10.2");
+    json.put("js", new JSONArray());
+    json.put("css", new JSONArray());
+    json.put("dependencies", new JSONArray());
+
+    DependencyDescriptor descriptor = DependencyDescriptor.fromJson(json);
+
+    assertThat(descriptor.getFileSizes().isEmpty(), is(true));
+    assertThat(descriptor.getAssetFiles().isEmpty(), is(true));
+    assertThat(descriptor.getFileDependencies().isEmpty(), is(true));
+  }
+}
@@ -3,7 +3,12 @@ package com.github.seykron.webjars;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,10 +38,212 @@ public class DependencyGraphTest {
     assertThat(resource.getName(), is("jasmine-jquery"));
   }
 
+  @Test
+  public void findDependencyById_shared() {
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+    WebJarResource jasmine = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine:jar:1.2.0", MediaType.JS);
+
+    assertThat(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS),
+        is(sameInstance(resource)));
+    assertThat(resource.getDependencies().contains(jasmine), is(true));
+    assertThat(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.CSS),
+        is(not(sameInstance(resource))));
+    assertThat(dependencyGraph.findDependencyById("foo", MediaType.JS),
+        is(nullValue()));
+  }
+
   @Test
   public void findDependencyByPath() {
     WebJarResource resource = dependencyGraph.findDependencyByPath(
         "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js", MediaType.JS);
     assertThat(resource.getName(), is("jasmine-jquery"));
   }
+
+  @Test
+  public void findDependencyByPath_notFound() {
+    assertThat(dependencyGraph.findDependencyByPath(
+        "/webjars/foo/1.0/foo.js", MediaType.JS), is(nullValue()));
+  }
+
+  @Test
+  public void findDependencyByPath_relative() {
+    WebJarResource resource = dependencyGraph.findDependencyByPath(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js", MediaType.JS);
+
+    assertThat(dependencyGraph.findDependencyByPath(
+        "webjars/jasmine-jquery/1.4.2/jasmine-jquery.js", MediaType.JS),
+        is(sameInstance(resource)));
+    assertThat(dependencyGraph.findDependencyByPath(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js/", MediaType.JS),
+        is(sameInstance(resource)));
+  }
+
+  @Test
+  public void resolveFiles() {
+    List<String> files = dependencyGraph.resolveFiles(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+    assertThat(files, is(Arrays.asList(
+        "META-INF/resources/webjars/jquery/1.8.2/jquery.min.js",
+        "META-INF/resources/webjars/jquery/1.8.2/jquery.js",
+        "META-INF/resources/webjars/jasmine/1.2.0/jasmine.js",
+        "META-INF/resources/webjars/jasmine/1.2.0/jasmine-html.js",
+        "META-INF/resources/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js")));
+
+    files = dependencyGraph.resolveFiles(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.CSS);
+    assertThat(files, is(Arrays.asList(
+        "META-INF/resources/webjars/jasmine/1.2.0/jasmine.css")));
+  }
+
+  @Test
+  public void resolveFiles_diamond() {
+    JSONObject table = new JSONObject();
+    table.put("app", createDescriptor("app", "plugin-a", "plugin-b"));
+    table.put("plugin-a", createDescriptor("plugin-a", "jquery"));
+    table.put("plugin-b", createDescriptor("plugin-b", "jquery"));
+    table.put("jquery", createDescriptor("jquery"));
+
+    DependencyGraph graph = new DependencyGraph(createGraph(table));
+
+    assertThat(graph.resolveFiles("app", MediaType.JS), is(Arrays.asList(
+        "jquery.js", "plugin-a.js", "plugin-b.js", "app.js")));
+  }
+
+  @Test
+  public void resolveFile() {
+    JSONObject table = new JSONObject();
+    table.put("ui", createDescriptor("ui", "jquery")
+        .put("requires", new JSONObject()
+            .put("ui.dialog.js", new JSONArray(Arrays.asList(
+                "ui.widget.js", "ui.dialog.css")))
+            .put("ui.widget.js", new JSONArray(Arrays.asList("jquery.js")))));
+    table.put("jquery", createDescriptor("jquery"));
+
+    DependencyGraph graph = new DependencyGraph(createGraph(table));
+
+    assertThat(graph.resolveFile("ui.dialog.js", MediaType.JS),
+        is(Arrays.asList("jquery.js", "ui.widget.js", "ui.dialog.js")));
+    assertThat(graph.resolveFile("ui.dialog.js", MediaType.CSS),
+        is(Arrays.asList("ui.dialog.css")));
+    assertThat(graph.resolveFile("ui.js", MediaType.JS),
+        is(Arrays.asList("ui.js")));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void resolveFile_circular() {
+    JSONObject table = new JSONObject();
+    table.put("ui", createDescriptor("ui")
+        .put("requires", new JSONObject()
+            .put("a.js", new JSONArray(Arrays.asList("b.js")))
+            .put("b.js", new JSONArray(Arrays.asList("a.js")))));
+
+    new DependencyGraph(createGraph(table)).resolveFile("a.js", MediaType.JS);
+  }
+
+  @Test
+  public void findDependencyByPath_file() {
+    String dir = "META-INF/resources/webjars/ui/1.0/";
+    JSONObject table = new JSONObject();
+    table.put("ui", createDescriptor("ui")
+        .put("requires", new JSONObject()
+            .put(dir + "dialog.js", new JSONArray(Arrays.asList(
+                dir + "widget.js")))));
+    JSONObject jsonGraph = createGraph(table);
+    jsonGraph.getJSONObject("index").put(dir + "dialog.js", "ui")
+        .put(dir + "widget.js", "ui");
+
+    DependencyGraph graph = new DependencyGraph(jsonGraph);
+    WebJarResource resource = graph.findDependencyByPath(
+        "/webjars/ui/1.0/dialog.js", MediaType.JS);
+
+    assertThat(resource.getResourceFile(), is(dir + "dialog.js"));
+    assertThat(resource.getFilename(), is("dialog.js"));
+    assertThat(resource.getBundleFiles(), is(Arrays.asList(dir + "widget.js",
+        dir + "dialog.js")));
+    assertThat(graph.findDependencyByPath("webjars/ui/1.0/dialog.js",
+        MediaType.JS), is(sameInstance(resource)));
+    assertThat(graph.findDependencyByPath("/webjars/ui/1.0/widget.js",
+        MediaType.JS), is(sameInstance(graph.findDependencyById("ui",
+            MediaType.JS))));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void newInstance_circular() {
+    JSONObject table = new JSONObject();
+    table.put("app", createDescriptor("app", "plugin"));
+    table.put("plugin", createDescriptor("plugin", "jquery"));
+    table.put("jquery", createDescriptor("jquery", "app"));
+
+    new DependencyGraph(createGraph(table));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void newInstance_missingDependency() {
+    JSONObject table = new JSONObject();
+    table.put("app", createDescriptor("app", "jquery"));
+
+    new DependencyGraph(createGraph(table));
+  }
+
+  @Test
+  public void getFileSize_unknown() {
+    assertThat(dependencyGraph.getFileSize("foo.js"), is(-1L));
+  }
+
+  @Test
+  public void read_binary() throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap(IOUtils.toByteArray(getClass()
+        .getResourceAsStream("deps.bin")));
+    JSONObject jsonDependencyGraph = new JSONObject(IOUtils.toString(
+        getClass().getResourceAsStream("deps.js")));
+
+    assertThat(DependencyGraph.isBinary(buffer), is(true));
+    assertThat(DependencyGraph.isBinary(ByteBuffer.wrap(
+        jsonDependencyGraph.toString().getBytes("UTF-8"))), is(false));
+
+    DependencyGraph binaryGraph = DependencyGraph.read(buffer, 1000L);
+    DependencyGraph jsonGraph = new DependencyGraph(jsonDependencyGraph,
+        1000L);
+
+    for (Object dependencyId : jsonDependencyGraph.getJSONObject("table")
+        .keySet()) {
+      for (MediaType type : MediaType.values()) {
+        WebJarResource expected = jsonGraph.findDependencyById(
+            (String) dependencyId, type);
+        WebJarResource resource = binaryGraph.findDependencyById(
+            (String) dependencyId, type);
+
+        assertThat(resource.getName(), is(expected.getName()));
+        assertThat(resource.getVersion(), is(expected.getVersion()));
+        assertThat(resource.getBundleFiles(), is(expected.getBundleFiles()));
+        assertThat(resource.getETag(), is(expected.getETag()));
+      }
+    }
+    assertThat(binaryGraph.findDependencyByPath(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js", MediaType.JS)
+        .getName(), is("jasmine-jquery"));
+  }
+
+  private JSONObject createGraph(final JSONObject table) {
+    JSONObject graph = new JSONObject();
+    graph.put("index", new JSONObject());
+    graph.put("table", table);
+    return graph;
+  }
+
+  private JSONObject createDescriptor(final String id,
+      final String... dependencies) {
+    JSONObject descriptor = new JSONObject();
+    descriptor.put("id", id);
+    descriptor.put("name", id);
+    descriptor.put("version", "1.0");
+    descriptor.put("js", new JSONArray(Arrays.asList(id + ".js")));
+    descriptor.put("css", new JSONArray());
+    descriptor.put("dependencies", new JSONArray(Arrays.asList(dependencies)));
+    return descriptor;
+  }
 }
@@ -0,0 +1,31 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/** Tests the {@link DependencyOrder} class.
+ */
+public class DependencyOrderTest {
+
+  @Test
+  public void sort() {
+    // 0 -> 1 -> 3, 0 -> 2 -> 3
+    DependencyOrder order = new DependencyOrder(
+        new String[] {"app", "ui", "theme", "jquery"},
+        new int[] {0, 2, 3, 4, 4}, new int[] {1, 2, 3, 3});
+
+    assertThat(order.sort(0), is(new int[] {3, 1, 2, 0}));
+    assertThat(order.sort(2), is(new int[] {3, 2}));
+    assertThat(order.sort(3), is(new int[] {3}));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void sort_circular() {
+    DependencyOrder order = new DependencyOrder(new String[] {"a", "b"},
+        new int[] {0, 1, 2}, new int[] {1, 0});
+
+    order.sort(0);
+  }
+}
@@ -0,0 +1,62 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Tests the {@link FingerprintManifest} class.
+ */
+public class FingerprintManifestTest {
+
+  /** Fingerprint of the prebuilt jasmine-reporters bundle. */
+  static final String REGULAR_FINGERPRINT =
+      "6fdeda35493c4df60a4e29ba87aaf61b";
+
+  /** Fingerprint of the prebuilt minified jasmine-reporters bundle. */
+  static final String MINIFIED_FINGERPRINT =
+      "712dcac5d8dc94ba39d8b8b173b3fe9a";
+
+  @Test
+  public void getFingerprint() throws Exception {
+    DependencyGraph dependencyGraph = new DependencyGraph(new JSONObject(
+        IOUtils.toString(getClass().getResourceAsStream("deps.js"))));
+    FingerprintManifest manifest = new FingerprintManifest(new JSONObject(
+        IOUtils.toString(getClass().getResourceAsStream(
+            "deps.js" + FingerprintManifest.SUFFIX))));
+
+    assertThat(manifest.getFingerprint(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS), false),
+        is("46309e18142d892cc80231026b452e93"));
+    assertThat(manifest.getFingerprint(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS), true),
+        is(nullValue()));
+    assertThat(manifest.getFingerprint(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.CSS), false),
+        is(nullValue()));
+    assertThat(manifest.getFingerprint(dependencyGraph.findDependencyById(
+        "org.webjars:jquery:jar:1.8.2", MediaType.JS), false),
+        is(nullValue()));
+    assertThat(manifest.getFingerprint(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.JS), false),
+        is(REGULAR_FINGERPRINT));
+    assertThat(manifest.getFingerprint(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.JS), true),
+        is(MINIFIED_FINGERPRINT));
+  }
+
+  @Test
+  public void getFingerprint_empty() throws Exception {
+    DependencyGraph dependencyGraph = new DependencyGraph(new JSONObject(
+        IOUtils.toString(getClass().getResourceAsStream("deps.js"))));
+
+    assertThat(new FingerprintManifest().getFingerprint(
+        dependencyGraph.findDependencyById(
+            "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS), false),
+        is(nullValue()));
+  }
+}
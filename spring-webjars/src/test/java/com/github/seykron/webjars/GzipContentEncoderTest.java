@@ -0,0 +1,30 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+/** Tests the {@link GzipContentEncoder} class.
+ */
+public class GzipContentEncoderTest {
+
+  @Test
+  public void encode() throws Exception {
+    GzipContentEncoder encoder = new GzipContentEncoder();
+    byte[] content = StringUtils.repeat(TestClassLoader.TEST_DATA, 100)
+        .getBytes("UTF-8");
+
+    byte[] encoded = encoder.encode(content);
+
+    assertThat(encoder.getName(), is("gzip"));
+    assertThat(encoded.length < content.length, is(true));
+    assertThat(IOUtils.toByteArray(new GZIPInputStream(
+        new ByteArrayInputStream(encoded))), is(content));
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.seykron.webjars;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+
+import com.github.seykron.webjars.WebJarResource.MediaType;
+
+/** Tests the {@link PrebuiltBundles} class.
+ */
+public class PrebuiltBundlesTest {
+
+  static final String BUNDLES_LOCATION = "/com/github/seykron/webjars/bundles";
+
+  private DependencyGraph dependencyGraph;
+
+  @Before
+  public void setUp() throws Exception {
+    dependencyGraph = new DependencyGraph(new JSONObject(
+        IOUtils.toString(getClass().getResourceAsStream("deps.js"))));
+  }
+
+  @Test
+  public void find() throws Exception {
+    PrebuiltBundles prebuiltBundles = new PrebuiltBundles(BUNDLES_LOCATION);
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.JS);
+
+    Resource bundle = prebuiltBundles.find(resource, null);
+
+    assertThat(bundle, is(notNullValue()));
+    assertThat(IOUtils.toString(bundle.getInputStream()),
+        is("prebuilt bundle\n"));
+    assertThat(prebuiltBundles.find(resource, ".gz"), is(notNullValue()));
+    assertThat(prebuiltBundles.find(resource, ".br"), is(nullValue()));
+  }
+
+  @Test
+  public void find_minified() throws Exception {
+    PrebuiltBundles prebuiltBundles = new PrebuiltBundles(BUNDLES_LOCATION,
+        true);
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.JS);
+
+    assertThat(IOUtils.toString(prebuiltBundles.find(resource, null)
+        .getInputStream()), is("minified bundle\n"));
+    assertThat(IOUtils.toString(new PrebuiltBundles(BUNDLES_LOCATION)
+        .find(resource, null).getInputStream()), is("prebuilt bundle\n"));
+
+    // The regular gzip copy does not match the minified bundle.
+    assertThat(prebuiltBundles.find(resource, ".gz"), is(nullValue()));
+  }
+
+  @Test
+  public void find_missing() {
+    PrebuiltBundles prebuiltBundles = new PrebuiltBundles(BUNDLES_LOCATION);
+
+    assertThat(prebuiltBundles.find(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.CSS), null),
+        is(nullValue()));
+    assertThat(prebuiltBundles.find(dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS), null),
+        is(nullValue()));
+  }
+
+  @Test
+  public void find_defaultLocation() {
+    PrebuiltBundles prebuiltBundles = new PrebuiltBundles();
+    WebJarResource resource = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-reporters:jar:0.2.1", MediaType.JS);
+
+    assertThat(prebuiltBundles.find(resource, null), is(nullValue()));
+  }
+}
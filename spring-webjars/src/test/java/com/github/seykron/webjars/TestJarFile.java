@@ -0,0 +1,44 @@
+package com.github.seykron.webjars;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/** Creates real jar files and class loaders to read them.
+ */
+public final class TestJarFile {
+
+  /** Utility class, do not instantiate.
+   */
+  private TestJarFile() {
+  }
+
+  /** Creates a jar file with the specified entries.
+   *
+   * @param jar Jar file to write. Cannot be null.
+   * @param entries Pairs of entry name and content. Cannot be null.
+   * @return A class loader that reads the jar file before the current
+   *    context class loader, never null.
+   * @throws IOException if the jar file cannot be written.
+   */
+  public static ClassLoader create(final File jar, final String... entries)
+      throws IOException {
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+
+    try {
+      for (int i = 0; i < entries.length; i += 2) {
+        out.putNextEntry(new JarEntry(entries[i]));
+        out.write(entries[i + 1].getBytes("UTF-8"));
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return new URLClassLoader(new URL[] {jar.toURI().toURL() },
+        Thread.currentThread().getContextClassLoader());
+  }
+}
@@ -5,12 +5,17 @@ import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 
 import com.github.seykron.webjars.WebJarResource.MediaType;
 
@@ -24,10 +29,12 @@ public class WebJarResourceTest {
 
   private JSONObject dependencyDescriptor;
 
+  private JSONObject jsonDependencyGraph;
+
   @Before
   public void setUp() throws Exception {
     ClassLoader classLoader = new TestClassLoader();
-    JSONObject jsonDependencyGraph = new JSONObject(IOUtils.toString(classLoader
+    jsonDependencyGraph = new JSONObject(IOUtils.toString(classLoader
         .getResource("com/github/seykron/webjars/deps.js")));
     dependencyGraph = new DependencyGraph(jsonDependencyGraph);
 
@@ -65,7 +72,112 @@ public class WebJarResourceTest {
         dependencyDescriptor, MediaType.JS);
     InputStream in = resource.getInputStream();
     assertThat(IOUtils.toString(in),
-        is(StringUtils.repeat(TestClassLoader.TEST_DATA, 5)));
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
     in.close();
   }
+
+  @Test
+  public void getInputStream_rawBytes() throws IOException {
+    final byte[] content = "var s = 'se\u00f1al';".getBytes("UTF-8");
+
+    resource = new WebJarResource(dependencyGraph,
+        dependencyDescriptor, MediaType.JS) {
+      @Override
+      Resource loadResource(final String path) {
+        return new ByteArrayResource(content);
+      }
+    };
+    InputStream in = resource.getInputStream();
+    byte[] bundle = IOUtils.toByteArray(in);
+    in.close();
+
+    assertThat(bundle.length, is((content.length + 1) * 5));
+    assertThat(Arrays.copyOf(bundle, content.length), is(content));
+  }
+
+  @Test
+  public void lastModified() {
+    DependencyGraph graph = new DependencyGraph(
+        new JSONObject(jsonDependencyGraph.toString()), 1234567L);
+    WebJarResource jasmineJquery = graph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+
+    assertThat(jasmineJquery.lastModified(), is(1234000L));
+    assertThat(jasmineJquery.getETag().matches("^\".+\"$"), is(true));
+    assertThat(jasmineJquery.getETag(), is(not(graph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.CSS).getETag())));
+  }
+
+  @Test
+  public void lastModified_unknown() {
+    DependencyGraph graph = new DependencyGraph(
+        new JSONObject(jsonDependencyGraph.toString()), -1, "a");
+    WebJarResource jasmineJquery = graph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+
+    assertThat(jasmineJquery.lastModified(), is(-1L));
+    assertThat(jasmineJquery.getETag(), is(not(new DependencyGraph(
+        new JSONObject(jsonDependencyGraph.toString()), -1, "b")
+        .findDependencyById("org.webjars:jasmine-jquery:jar:1.4.2",
+            MediaType.JS).getETag())));
+  }
+
+  @Test
+  public void contentLength_fromDescriptor() throws IOException {
+    JSONObject jsonTable = jsonDependencyGraph.getJSONObject("table");
+
+    for (Object dependencyId : jsonTable.keySet()) {
+      JSONObject jsonDependency = jsonTable
+          .getJSONObject((String) dependencyId);
+      JSONObject sizes = new JSONObject();
+
+      JSONArray files = jsonDependency.getJSONArray("js");
+
+      for (int i = 0; i < files.length(); i++) {
+        sizes.put(files.getString(i), TestClassLoader.TEST_DATA.length());
+      }
+      jsonDependency.put("sizes", sizes);
+    }
+
+    WebJarResource jasmineJquery = new DependencyGraph(jsonDependencyGraph)
+        .findDependencyById("org.webjars:jasmine-jquery:jar:1.4.2",
+            MediaType.JS);
+
+    assertThat(jasmineJquery.getKnownLength(),
+        is((TestClassLoader.TEST_DATA.length() + 1) * 5L));
+    assertThat(jasmineJquery.contentLength(),
+        is((TestClassLoader.TEST_DATA.length() + 1) * 5L));
+    assertThat(jasmineJquery.getChecksum(), is(-1L));
+  }
+
+  @Test
+  public void contentLength_firstBuild() throws IOException {
+    WebJarResource jasmineJquery = dependencyGraph.findDependencyById(
+        "org.webjars:jasmine-jquery:jar:1.4.2", MediaType.JS);
+
+    assertThat(jasmineJquery.getKnownLength(), is(-1L));
+    assertThat(jasmineJquery.getChecksum(), is(-1L));
+
+    InputStream in = jasmineJquery.getInputStream();
+    byte[] content = IOUtils.toByteArray(in);
+    in.close();
+
+    CRC32 crc = new CRC32();
+    crc.update(content);
+
+    assertThat(jasmineJquery.getKnownLength(), is((long) content.length));
+    assertThat(jasmineJquery.contentLength(), is((long) content.length));
+    assertThat(jasmineJquery.getChecksum(), is(crc.getValue()));
+  }
+
+  @Test
+  public void mediaType_forPath() {
+    assertThat(MediaType.forPath("/webjars/jquery/1.8.2/jquery.js"),
+        is(MediaType.JS));
+    assertThat(MediaType.forPath("/webjars/jasmine/1.2.0/jasmine.CSS"),
+        is(MediaType.CSS));
+    assertThat(MediaType.forPath("/webjars/jasmine/1.2.0/logo.png"),
+        is(nullValue()));
+    assertThat(MediaType.forPath(".js"), is(nullValue()));
+  }
 }
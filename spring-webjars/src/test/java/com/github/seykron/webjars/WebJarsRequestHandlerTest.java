@@ -3,15 +3,30 @@ package com.github.seykron.webjars;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.support.StaticWebApplicationContext;
 import org.springframework.web.servlet.HandlerMapping;
 
 /** Tests the {@link WebJarsRequestHandler} class.
@@ -37,7 +52,742 @@ public class WebJarsRequestHandlerTest {
     InputStream in = resource.getInputStream();
 
     assertThat(IOUtils.toString(in),
-        is(StringUtils.repeat(TestClassLoader.TEST_DATA, 5)));
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
     in.close();
   }
+
+  @Test
+  public void getResource_cached() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE,
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    Resource resource = handler.getResource(request);
+
+    assertThat(resource, is(Bundle.class));
+    assertThat(handler.getResource(request), is(sameInstance(resource)));
+  }
+
+  @Test
+  public void getResource_streaming() throws IOException {
+    handler.setBundleCacheSize(0);
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE,
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    Resource resource = handler.getResource(request);
+
+    assertThat(resource, is(WebJarResource.class));
+
+    InputStream in = resource.getInputStream();
+    assertThat(IOUtils.toString(in),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+    in.close();
+  }
+
+  @Test
+  public void handleRequest() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getContentType(), is("application/javascript"));
+    assertThat(response.getHeader("ETag"), is(notNullValue()));
+    assertThat(response.getHeader("Last-Modified"), is(notNullValue()));
+    assertThat(response.getContentAsString(),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+    assertThat(getContentLength(response),
+        is(response.getContentAsByteArray().length));
+  }
+
+  @Test
+  public void handleRequest_directBuffers() throws Exception {
+    handler.setDirectBuffers(true);
+
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(((Bundle) handler.getResource(request)).isDirect(), is(true));
+    assertThat(response.getContentAsString(),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+  }
+
+  @Test
+  public void handleRequest_range() throws Exception {
+    String content = StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5);
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=9-13");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(206));
+    assertThat(response.getHeader("Accept-Ranges"), is((Object) "bytes"));
+    assertThat(response.getHeader("Content-Range"),
+        is((Object) ("bytes 9-13/" + content.length())));
+    assertThat(getContentLength(response), is(5));
+    assertThat(response.getContentAsString(), is(content.substring(9, 14)));
+  }
+
+  @Test
+  public void handleRequest_multipleRanges() throws Exception {
+    String content = StringUtils.repeat("0123456789", 100);
+    String descriptor = "{index: {}, table: {'org.webjars:foo:jar:1.0': {"
+        + "id: 'org.webjars:foo:jar:1.0', name: 'foo', version: '1.0',"
+        + "js: [], css: [], dependencies: [],"
+        + "assets: ['META-INF/resources/webjars/foo/1.0/foo.txt']}}}";
+    File jar = File.createTempFile("assets", ".jar");
+    ClassLoader contextClassLoader = Thread.currentThread()
+        .getContextClassLoader();
+
+    try {
+      Thread.currentThread().setContextClassLoader(TestJarFile.create(jar,
+          "assets/deps.js", descriptor,
+          "META-INF/resources/webjars/foo/1.0/foo.txt", content));
+      handler = new WebJarsRequestHandler("assets/deps.js");
+      handler.afterPropertiesSet();
+
+      MockHttpServletRequest request = createRequest(
+          "/webjars/foo/1.0/foo.txt");
+      request.addHeader("Range", "bytes=-3,0-7,4-9");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+
+      handler.handleRequest(request, response);
+
+      String body = "\r\n--WEBJARS_BYTERANGES\r\n"
+          + "Content-Type: text/plain\r\n"
+          + "Content-Range: bytes 0-9/1000\r\n\r\n"
+          + content.substring(0, 10)
+          + "\r\n--WEBJARS_BYTERANGES\r\n"
+          + "Content-Type: text/plain\r\n"
+          + "Content-Range: bytes 997-999/1000\r\n\r\n"
+          + content.substring(997)
+          + "\r\n--WEBJARS_BYTERANGES--\r\n";
+
+      assertThat(response.getStatus(), is(206));
+      assertThat(response.getContentType(),
+          is("multipart/byteranges; boundary=WEBJARS_BYTERANGES"));
+      assertThat(response.getContentAsString(), is(body));
+      assertThat(getContentLength(response), is(body.length()));
+    } finally {
+      handler.destroy();
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+      jar.delete();
+    }
+  }
+
+  @Test
+  public void handleRequest_rangesCoverContent() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=0-40,30-");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(getContentLength(response), is(75));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=0-0,2-2,4-4");
+    response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    // Three parts are bigger than the full content.
+    assertThat(response.getStatus(), is(200));
+    assertThat(getContentLength(response), is(75));
+  }
+
+  @Test
+  public void handleRequest_rangeNotSatisfiable() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=1000-");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(416));
+    assertThat(response.getHeader("Content-Range"), is((Object) "bytes */75"));
+    assertThat(response.getContentAsString(), is(""));
+  }
+
+  @Test
+  public void handleRequest_ifRange() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+    String eTag = (String) response.getHeader("ETag");
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=0-3");
+    request.addHeader("If-Range", response.getHeader("Last-Modified"));
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(206));
+    assertThat(response.getContentAsString(), is("func"));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=0-3");
+    request.addHeader("If-Range", eTag);
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(eTag.startsWith("\""), is(true));
+    assertThat(response.getStatus(), is(206));
+    assertThat(response.getContentAsString(), is("func"));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=0-3");
+    request.addHeader("If-Range", "\"stale\"");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(getContentLength(response), is(75));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Range", "bytes=0-3");
+    request.addHeader("If-Range", new Date(0));
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+  }
+
+  @Test
+  public void handleRequest_ifNoneMatch() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+    String eTag = (String) response.getHeader("ETag");
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("If-None-Match", "\"foo\", " + eTag);
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(304));
+    assertThat(response.getContentAsByteArray().length, is(0));
+    assertThat(response.getHeader("ETag"), is((Object) eTag));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("If-None-Match", "\"foo\"");
+    request.addHeader("If-Modified-Since", new Date());
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+  }
+
+  @Test
+  public void handleRequest_ifModifiedSince() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("If-Modified-Since", new Date());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(304));
+    assertThat(response.getContentAsByteArray().length, is(0));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("If-Modified-Since", new Date(0));
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+  }
+
+  @Test
+  public void handleRequest_head() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.setMethod("HEAD");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(getContentLength(response), is(not(0)));
+    assertThat(response.getContentAsByteArray().length, is(0));
+  }
+
+  @Test
+  public void handleRequest_gzip() throws Exception {
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Accept-Encoding", "deflate, gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getHeader("Content-Encoding"), is((Object) "gzip"));
+    assertThat(response.getHeader("Vary"), is((Object) "Accept-Encoding"));
+    assertThat(getContentLength(response),
+        is(response.getContentAsByteArray().length));
+    assertThat(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(
+        response.getContentAsByteArray()))),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+    String gzipETag = (String) response.getHeader("ETag");
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Accept-Encoding", "gzip;q=0, identity");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Content-Encoding"), is(nullValue()));
+    assertThat(response.getHeader("Vary"), is((Object) "Accept-Encoding"));
+    assertThat(response.getHeader("ETag"), is(not((Object) gzipETag)));
+    assertThat(response.getContentAsString(),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Accept-Encoding", "gzip");
+    request.addHeader("If-None-Match", gzipETag);
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(304));
+  }
+
+  @Test
+  public void handleRequest_noEncoders() throws Exception {
+    handler.setContentEncoders(new ArrayList<ContentEncoder>());
+
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Accept-Encoding", "gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Content-Encoding"), is(nullValue()));
+    assertThat(response.getHeader("Vary"), is(nullValue()));
+  }
+
+  @Test
+  public void handleRequest_prebuilt() throws Exception {
+    handler.setBundlesLocation(PrebuiltBundlesTest.BUNDLES_LOCATION);
+
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-reporters/0.2.1/load_reporters.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getContentAsString(), is("prebuilt bundle\n"));
+
+    request = createRequest(
+        "/webjars/jasmine-reporters/0.2.1/load_reporters.js");
+    request.addHeader("Accept-Encoding", "gzip");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Content-Encoding"), is((Object) "gzip"));
+    assertThat(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(
+        response.getContentAsByteArray()))), is("prebuilt bundle\n"));
+  }
+
+  @Test
+  public void handleRequest_prebuiltStreaming() throws Exception {
+    handler.setBundleCacheSize(0);
+    handler.setBundlesLocation(PrebuiltBundlesTest.BUNDLES_LOCATION);
+
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-reporters/0.2.1/load_reporters.js");
+    request.addHeader("Accept-Encoding", "gzip");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Content-Encoding"), is((Object) "gzip"));
+    assertThat(response.getHeader("Vary"), is((Object) "Accept-Encoding"));
+    assertThat(getContentLength(response),
+        is(response.getContentAsByteArray().length));
+    assertThat(IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(
+        response.getContentAsByteArray()))), is("prebuilt bundle\n"));
+
+    request = createRequest(
+        "/webjars/jasmine-reporters/0.2.1/load_reporters.js");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Content-Encoding"), is(nullValue()));
+    assertThat(response.getContentAsString(), is("prebuilt bundle\n"));
+    assertThat(getContentLength(response), is(16));
+
+    // Not prebuilt, so it cannot be compressed in streaming mode.
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    request.addHeader("Accept-Encoding", "gzip");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Content-Encoding"), is(nullValue()));
+    assertThat(response.getHeader("Vary"), is(nullValue()));
+  }
+
+  @Test
+  public void handleRequest_fingerprinted() throws Exception {
+    String path = handler.getFingerprintedPath(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+
+    assertThat(path, is("/webjars/jasmine-jquery/1.4.2/"
+        + "jasmine-jquery.46309e18142d892cc80231026b452e93.js"));
+
+    MockHttpServletRequest request = createRequest(path);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getHeader("Cache-Control"),
+        is((Object) "public, max-age=31536000, immutable"));
+    assertThat(response.getContentAsString(),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+
+    request = createRequest("/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getHeader("Cache-Control"), is(nullValue()));
+  }
+
+  @Test
+  public void handleRequest_fingerprintedMinified() throws Exception {
+    handler.setBundlesLocation(PrebuiltBundlesTest.BUNDLES_LOCATION);
+
+    String path = "/webjars/jasmine-reporters/0.2.1/load_reporters.js";
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    assertThat(handler.getFingerprintedPath(path), is("/webjars/"
+        + "jasmine-reporters/0.2.1/load_reporters."
+        + FingerprintManifestTest.REGULAR_FINGERPRINT + ".js"));
+    handler.handleRequest(createRequest(path), response);
+    String eTag = (String) response.getHeader("ETag");
+
+    handler.setMinified(true);
+    String minifiedPath = handler.getFingerprintedPath(path);
+
+    assertThat(minifiedPath, is("/webjars/jasmine-reporters/0.2.1/"
+        + "load_reporters." + FingerprintManifestTest.MINIFIED_FINGERPRINT
+        + ".js"));
+
+    response = new MockHttpServletResponse();
+    handler.handleRequest(createRequest(minifiedPath), response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getContentAsString(), is("minified bundle\n"));
+    assertThat(response.getHeader("ETag"), is((Object) (eTag.substring(0,
+        eTag.length() - 1) + "-min\"")));
+  }
+
+  @Test
+  public void getFingerprintedPath_notFingerprinted() throws Exception {
+    assertThat(handler.getFingerprintedPath(
+        "/webjars/jquery/1.8.2/jquery.js"),
+        is("/webjars/jquery/1.8.2/jquery.js"));
+  }
+
+  @Test
+  public void handleRequest_binaryDescriptor() throws Exception {
+    handler = new WebJarsRequestHandler(
+        "/com/github/seykron/webjars/deps.bin");
+    handler.afterPropertiesSet();
+
+    MockHttpServletRequest request = createRequest(
+        "/webjars/jasmine-jquery/1.4.2/jasmine-jquery.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getContentAsString(),
+        is(StringUtils.repeat(TestClassLoader.TEST_DATA + "\n", 5)));
+  }
+
+  @Test
+  public void handleRequest_notWebJar() throws Exception {
+    setLocation("/com/github/seykron/webjars/");
+
+    MockHttpServletRequest request = createRequest("/deps.js.fingerprints");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(200));
+    assertThat(response.getContentAsString(), is(IOUtils.toString(
+        getClass().getResourceAsStream("deps.js.fingerprints"))));
+
+    request = createRequest("/webjars/foo/1.0/foo.js");
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(404));
+  }
+
+  @Test
+  public void handleRequest_staleFingerprint() throws Exception {
+    setLocation("/com/github/seykron/webjars/");
+
+    MockHttpServletRequest request = createRequest("/webjars/jasmine-jquery/"
+        + "1.4.2/jasmine-jquery.0cc175b9c0f1b6a831c399e269772661.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(404));
+
+    response = new MockHttpServletResponse();
+    handler.handleRequest(request, response);
+
+    assertThat(response.getStatus(), is(404));
+  }
+
+  @Test
+  public void handleRequest_cssRedirect() throws Exception {
+    String descriptor = "{index: {"
+        + "'META-INF/resources/webjars/foo/1.0/css/a.css': 'foo',"
+        + "'META-INF/resources/webjars/foo/1.0/themes/b.css': 'foo'},"
+        + "table: {'foo': {id: 'foo', name: 'foo', version: '1.0', js: [],"
+        + "css: ['META-INF/resources/webjars/foo/1.0/css/a.css',"
+        + "'META-INF/resources/webjars/foo/1.0/themes/b.css'],"
+        + "dependencies: []}}}";
+    File jar = File.createTempFile("css", ".jar");
+    ClassLoader contextClassLoader = Thread.currentThread()
+        .getContextClassLoader();
+
+    try {
+      Thread.currentThread().setContextClassLoader(TestJarFile.create(jar,
+          "assets/deps.js", descriptor,
+          "META-INF/resources/webjars/foo/1.0/css/a.css", "a {}",
+          "META-INF/resources/webjars/foo/1.0/themes/b.css",
+          "b { background: url(b.png); }"));
+      handler = new WebJarsRequestHandler("assets/deps.js");
+      handler.afterPropertiesSet();
+
+      // URLs are rebased to css/, so the bundle is only served from there.
+      MockHttpServletRequest request = createRequest(
+          "/webjars/foo/1.0/themes/b.css");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getRedirectedUrl(),
+          is("/lib/webjars/foo/1.0/css/a.css"));
+
+      request = createRequest("/webjars/foo/1.0/css/a.css");
+      response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(200));
+      assertThat(response.getContentAsString(),
+          is("a {}\nb { background: url(../themes/b.png); }\n"));
+    } finally {
+      handler.destroy();
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+      jar.delete();
+    }
+  }
+
+  @Test
+  public void handleRequest_lastModified() throws Exception {
+    String descriptor = "{index: {'META-INF/resources/webjars/foo/1.0/foo.js':"
+        + "'org.webjars:foo:jar:1.0'}, table: {'org.webjars:foo:jar:1.0': {"
+        + "id: 'org.webjars:foo:jar:1.0', name: 'foo', version: '1.0',"
+        + "js: ['META-INF/resources/webjars/foo/1.0/foo.js'], css: [],"
+        + "dependencies: []}}}";
+    File jar = File.createTempFile("descriptor", ".jar");
+    ClassLoader contextClassLoader = Thread.currentThread()
+        .getContextClassLoader();
+
+    try {
+      Thread.currentThread().setContextClassLoader(TestJarFile.create(jar,
+          "assets/deps.js", descriptor,
+          "META-INF/resources/webjars/foo/1.0/foo.js", "foo"));
+      // The jar file time changes on each deployment, the entry time not.
+      assertThat(jar.setLastModified(System.currentTimeMillis() + 60000),
+          is(true));
+
+      JarFile jarFile = new JarFile(jar);
+      long entryTime = jarFile.getEntry("assets/deps.js").getTime();
+      jarFile.close();
+
+      handler = new WebJarsRequestHandler("assets/deps.js");
+      handler.afterPropertiesSet();
+
+      MockHttpServletRequest request = createRequest(
+          "/webjars/foo/1.0/foo.js");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(200));
+      assertThat(response.getHeader("Last-Modified"),
+          is((Object) (entryTime / 1000 * 1000)));
+    } finally {
+      handler.destroy();
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+      jar.delete();
+    }
+  }
+
+  @Test
+  public void handleRequest_unknownLastModified() throws Exception {
+    final String descriptor = "{index: {'META-INF/resources/webjars/foo/1.0/"
+        + "foo.js': 'org.webjars:foo:jar:1.0'}, table: {"
+        + "'org.webjars:foo:jar:1.0': {id: 'org.webjars:foo:jar:1.0',"
+        + "name: 'foo', version: '1.0',"
+        + "js: ['META-INF/resources/webjars/foo/1.0/foo.js'], css: [],"
+        + "dependencies: []}}}";
+    final URLStreamHandler streamHandler = new URLStreamHandler() {
+      @Override
+      protected URLConnection openConnection(final URL url) {
+        return new URLConnection(url) {
+          @Override
+          public void connect() {
+          }
+
+          @Override
+          public InputStream getInputStream() {
+            return new ByteArrayInputStream(descriptor.getBytes());
+          }
+        };
+      }
+    };
+    ClassLoader contextClassLoader = Thread.currentThread()
+        .getContextClassLoader();
+
+    try {
+      // Neither a file nor a jar entry, so the build time is unknown.
+      Thread.currentThread().setContextClassLoader(new TestClassLoader() {
+        @Override
+        public URL getResource(final String name) {
+          if (name.equals("assets/deps.js")) {
+            try {
+              return new URL("test", null, 0, name, streamHandler);
+            } catch (MalformedURLException cause) {
+              throw new IllegalStateException(cause);
+            }
+          }
+          return super.getResource(name);
+        }
+      });
+      handler = new WebJarsRequestHandler("assets/deps.js");
+      handler.afterPropertiesSet();
+
+      MockHttpServletRequest request = createRequest(
+          "/webjars/foo/1.0/foo.js");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+      String eTag = (String) response.getHeader("ETag");
+
+      assertThat(response.getStatus(), is(200));
+      assertThat(response.getHeader("Last-Modified"), is(nullValue()));
+      assertThat(eTag, is(not(nullValue())));
+
+      request = createRequest("/webjars/foo/1.0/foo.js");
+      request.addHeader("If-Modified-Since", new Date());
+      response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(200));
+
+      request = createRequest("/webjars/foo/1.0/foo.js");
+      request.addHeader("If-None-Match", eTag);
+      response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(304));
+    } finally {
+      handler.destroy();
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  @Test
+  public void handleRequest_asset() throws Exception {
+    String descriptor = "{index: {}, table: {'org.webjars:foo:jar:1.0': {"
+        + "id: 'org.webjars:foo:jar:1.0', name: 'foo', version: '1.0',"
+        + "js: [], css: [], dependencies: [],"
+        + "assets: ['META-INF/resources/webjars/foo/1.0/foo.png']}}}";
+    File jar = File.createTempFile("assets", ".jar");
+    ClassLoader contextClassLoader = Thread.currentThread()
+        .getContextClassLoader();
+
+    try {
+      Thread.currentThread().setContextClassLoader(TestJarFile.create(jar,
+          "assets/deps.js", descriptor,
+          "META-INF/resources/webjars/foo/1.0/foo.png", "png"));
+      handler = new WebJarsRequestHandler("assets/deps.js");
+      handler.afterPropertiesSet();
+
+      MockHttpServletRequest request = createRequest(
+          "/webjars/foo/1.0/foo.png");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(200));
+      assertThat(response.getContentType(), is("image/png"));
+      assertThat(getContentLength(response), is(3));
+      assertThat(response.getContentAsString(), is("png"));
+
+      String eTag = (String) response.getHeader("ETag");
+      request = createRequest("/webjars/foo/1.0/foo.png");
+      request.addHeader("If-None-Match", eTag);
+      response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(304));
+
+      request = createRequest("/webjars/foo/1.0/foo.png");
+      request.addHeader("Range", "bytes=1-");
+      response = new MockHttpServletResponse();
+      handler.handleRequest(request, response);
+
+      assertThat(response.getStatus(), is(206));
+      assertThat(response.getHeader("Content-Range"),
+          is((Object) "bytes 1-2/3"));
+      assertThat(response.getContentAsString(), is("ng"));
+    } finally {
+      handler.destroy();
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+      jar.delete();
+    }
+  }
+
+  private int getContentLength(final MockHttpServletResponse response) {
+    return Integer.parseInt((String) response.getHeader("Content-Length"));
+  }
+
+  private void setLocation(final String location) {
+    StaticWebApplicationContext context = new StaticWebApplicationContext();
+    context.setServletContext(new MockServletContext());
+    context.refresh();
+    handler.setApplicationContext(context);
+
+    List<Resource> locations = new ArrayList<Resource>();
+    locations.add(new ClassPathResource(location));
+    handler.setLocations(locations);
+  }
+
+  private MockHttpServletRequest createRequest(final String path) {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET",
+        "/lib" + path);
+    request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE,
+        path);
+    return request;
+  }
 }
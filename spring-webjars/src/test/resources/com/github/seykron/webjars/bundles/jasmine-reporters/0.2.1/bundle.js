@@ -0,0 +1 @@
+prebuilt bundle
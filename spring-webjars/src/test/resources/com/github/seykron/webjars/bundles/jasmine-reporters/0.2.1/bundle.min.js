@@ -0,0 +1 @@
+minified bundle
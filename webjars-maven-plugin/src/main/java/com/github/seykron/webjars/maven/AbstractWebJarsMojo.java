@@ -0,0 +1,206 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/** Base class for mojos that work on the WebJars dependency graph.
+ */
+public abstract class AbstractWebJarsMojo extends AbstractMojo {
+
+  /** Maven's artifact resolver. */
+  @Component
+  private ArtifactResolver artifactResolver;
+
+  /** Provides some metadata operations, like querying the remote repository for
+   * a list of versions available for an artifact.
+   */
+  @Component
+  private ArtifactMetadataSource metadataSource;
+
+  /** Specifies the repository used for artifact handling.
+   */
+  @Parameter(defaultValue = "${localRepository}")
+  private ArtifactRepository localRepository;
+
+  /** The Maven project object, used to generate a classloader to access the
+   * classpath resources from the project.
+   *
+   * Injected by maven. This is never null.
+   */
+  @Component
+  private MavenProject project;
+
+  /** Whether to bundle the minified variant of files that have both a
+   * regular and a minified variant, i.e. jquery.min.js instead of jquery.js.
+   * It's usually set by environment through build profiles. Default is
+   * false.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean preferMinified;
+
+  /** Names of the directories whose files are never bundled. Default is
+   * {@link VariantPolicy#DEFAULT_EXCLUDED_DIRECTORIES}, which excludes
+   * tests, sources and locales. It may be null.
+   */
+  @Parameter
+  private List<String> excludedDirectories;
+
+  /** Files required by each file, in addition to the ones declared in the
+   * webjars. The name is the classpath path of a file, and the value is the
+   * comma-separated list of classpath paths of the files it requires, in the
+   * order they must be loaded. It may be null.
+   */
+  @Parameter
+  private Properties fileDependencies;
+
+  /** Maximum number of jar files scanned at the same time. Default is the
+   * number of available processors.
+   */
+  @Parameter
+  private int scanThreads;
+
+  /** Directory to keep the scan results of webjars between builds, so
+   * unchanged jar files are not scanned again. It may be shared by several
+   * projects. Default is <code>target/webjars-scan-cache</code>.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/webjars-scan-cache")
+  private File scanCacheDirectory;
+
+  /** Whether to keep the scan results of webjars between builds. Default is
+   * true.
+   */
+  @Parameter(defaultValue = "true")
+  private boolean scanCache;
+
+  /** Version of this plugin, a new version may build a different graph from
+   * the same inputs. Injected by maven.
+   */
+  @Parameter(defaultValue = "${plugin.version}", readonly = true)
+  private String pluginVersion;
+
+  /** Creates the dependency graph builder.
+   * @return A valid graph builder, never null.
+   */
+  DependencyGraphBuilder createGraphBuilder() {
+    VariantPolicy variantPolicy = createVariantPolicy();
+    DependencyGraphBuilder builder = new DependencyGraphBuilder(
+        artifactResolver, metadataSource, localRepository, project,
+        variantPolicy);
+    builder.setFileDependencies(getFileDependencies());
+    builder.setLog(getLog());
+
+    if (scanCache && scanCacheDirectory != null) {
+      builder.setScanCache(new ScanCache(scanCacheDirectory, variantPolicy));
+    }
+
+    if (scanThreads > 0) {
+      builder.setScanThreads(scanThreads);
+    }
+    return builder;
+  }
+
+  /** Describes the inputs of the dependency graph: the plugin version, the
+   * configuration that changes the graph, the direct webjar dependencies,
+   * and every resolved webjar with the size and last modified time of its jar
+   * file. Equal descriptions produce the same graph.
+   *
+   * @return A valid description, one input per line, never null.
+   */
+  String describeInputs() {
+    StringBuilder inputs = new StringBuilder()
+      .append("pluginVersion=").append(pluginVersion).append('\n')
+      .append("variantPolicy=").append(createVariantPolicy().getSignature())
+      .append('\n')
+      .append("fileDependencies=").append(getFileDependencies())
+      .append('\n');
+
+    Set<String> directDependencies = new TreeSet<String>();
+
+    for (Object artifactObj : project.getDependencyArtifacts()) {
+      Artifact artifact = (Artifact) artifactObj;
+
+      if (isWebJar(artifact)) {
+        directDependencies.add(artifact.getId());
+      }
+    }
+    inputs.append("dependencies=").append(directDependencies).append('\n');
+
+    Map<String, File> webJars = new TreeMap<String, File>();
+
+    for (Object artifactObj : project.getArtifacts()) {
+      Artifact artifact = (Artifact) artifactObj;
+
+      if (isWebJar(artifact)) {
+        webJars.put(artifact.getId(), artifact.getFile());
+      }
+    }
+    for (Map.Entry<String, File> webJar : webJars.entrySet()) {
+      inputs.append(webJar.getKey());
+
+      if (webJar.getValue() != null) {
+        inputs.append(' ').append(webJar.getValue().length()).append(' ')
+          .append(webJar.getValue().lastModified());
+      }
+      inputs.append('\n');
+    }
+    return inputs.toString();
+  }
+
+  /** Determines whether an artifact is a webjar.
+   *
+   * @param artifact Artifact to check. Cannot be null.
+   * @return true if it belongs to the webjars group, false otherwise.
+   */
+  private static boolean isWebJar(final Artifact artifact) {
+    return artifact.getGroupId().equalsIgnoreCase(
+        DependencyGraphBuilder.WEBJARS_GROUP_ID);
+  }
+
+  /** Returns the configured dependencies between files.
+   * @return A valid map from file to the files it requires, never null.
+   */
+  Map<String, List<String>> getFileDependencies() {
+    Map<String, List<String>> result = new TreeMap<String, List<String>>();
+
+    if (fileDependencies == null) {
+      return result;
+    }
+    for (String file : fileDependencies.stringPropertyNames()) {
+      List<String> requiredFiles = new ArrayList<String>();
+
+      for (String requiredFile : StringUtils.split(
+          fileDependencies.getProperty(file), ',')) {
+        requiredFiles.add(StringUtils.removeStart(requiredFile.trim(), "/"));
+      }
+      result.put(StringUtils.removeStart(file.trim(), "/"), requiredFiles);
+    }
+    return result;
+  }
+
+  /** Creates the policy to select the files of each dependency.
+   * @return A valid policy, never null.
+   */
+  VariantPolicy createVariantPolicy() {
+    if (excludedDirectories == null) {
+      return new VariantPolicy(preferMinified,
+          VariantPolicy.DEFAULT_EXCLUDED_DIRECTORIES);
+    }
+    return new VariantPolicy(preferMinified, excludedDirectories);
+  }
+}
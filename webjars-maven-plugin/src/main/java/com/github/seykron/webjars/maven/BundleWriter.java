@@ -0,0 +1,504 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.seykron.webjars.CssRewriter;
+import com.github.seykron.webjars.DependencyOrder;
+
+/** Writes the bundles of a dependency graph to a directory.
+ * <p>
+ * There is a JavaScript and a CSS bundle for each dependency, with the files
+ * of the dependency and all its transitive dependencies in the order they
+ * must be loaded. Dependencies are sorted by the same {@link DependencyOrder}
+ * the runtime uses, and each file is followed by a new line, so bundles are
+ * exactly what the runtime would build. The jar file of each dependency is
+ * opened once, and closed by {@link #close()}. Bundles are written with the
+ * following layout, along with a gzip copy:
+ *   <pre>
+ *   ${artifact-name}/${artifact-version}/bundle.js
+ *   ${artifact-name}/${artifact-version}/bundle.js.gz
+ *   ${artifact-name}/${artifact-version}/bundle.css
+ *   ${artifact-name}/${artifact-version}/bundle.css.gz
+ *   </pre>
+ * Empty bundles are not written.
+ * </p>
+ * <p>
+ * CSS files are rewritten to work from the bundle directory, and their
+ * imports are inlined. See {@link CssRewriter}.
+ * </p>
+ * <p>
+ * If minification is enabled, a minified copy of each bundle is written as
+ * <code>bundle.min.js</code> and <code>bundle.min.css</code>, also with a gzip
+ * copy, and the sizes of all variants are written to a report in the output
+ * directory. See {@link Minifier}.
+ * </p>
+ */
+public class BundleWriter {
+
+  /** Bytes written after each file of a bundle. */
+  private static final byte[] SEPARATOR = {'\n'};
+
+  /** Classpath directory of webjars. */
+  private static final String WEBJARS_DIR = "META-INF/resources/webjars/";
+
+  /** Extension of the gzip copies. */
+  private static final String GZIP_EXTENSION = ".gz";
+
+  /** Name of the minification report, within the output directory. */
+  static final String REPORT_FILE = "minification-report.txt";
+
+  /** Scale of the size ratios in the report. */
+  private static final int PERCENT = 100;
+
+  /** Dependency graph to write bundles for, it's never null. */
+  private final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+
+  /** Dependencies by ordinal, including the ones that are only referenced
+   * by other dependencies. It's never null. */
+  private final List<DependencyInfo> dependencies =
+      new ArrayList<DependencyInfo>();
+
+  /** Ordinal of each dependency by id, it's never null. */
+  private final Map<String, Integer> ordinals =
+      new HashMap<String, Integer>();
+
+  /** Load order of the dependencies, it's never null. */
+  private final DependencyOrder dependencyOrder;
+
+  /** Content of the files already read, by file name. It's never null. */
+  private final Map<String, byte[]> fileContents =
+      new HashMap<String, byte[]>();
+
+  /** Jar files opened so far, by dependency id. It's never null. */
+  private final Map<String, JarFile> jarFiles =
+      new HashMap<String, JarFile>();
+
+  /** Whether to write minified copies of the bundles. */
+  private final boolean minify;
+
+  /** Creates a bundle writer for the specified graph.
+   *
+   * @param theDependencyGraph Dependency graph to write bundles for. Cannot
+   *    be null.
+   */
+  public BundleWriter(
+      final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph) {
+    this(theDependencyGraph, false);
+  }
+
+  /** Creates a bundle writer for the specified graph.
+   *
+   * @param theDependencyGraph Dependency graph to write bundles for. Cannot
+   *    be null.
+   * @param theMinify Whether to write minified copies of the bundles.
+   * @throws IllegalStateException if there is a circular dependency.
+   */
+  public BundleWriter(
+      final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph,
+      final boolean theMinify) {
+    Validate.notNull(theDependencyGraph,
+        "The dependency graph cannot be null.");
+    dependencyGraph = theDependencyGraph;
+    minify = theMinify;
+
+    for (DependencyInfo dependency : dependencyGraph.keySet()) {
+      addDependency(dependency);
+    }
+    for (List<DependencyInfo> children : dependencyGraph.values()) {
+      for (DependencyInfo child : children) {
+        addDependency(child);
+      }
+    }
+
+    // Dependencies that are only referenced have no dependencies.
+    int[] offsets = new int[dependencies.size() + 1];
+    List<Integer> targets = new ArrayList<Integer>();
+    String[] ids = new String[dependencies.size()];
+
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = dependencies.get(i).getId();
+      List<DependencyInfo> children = dependencyGraph.get(
+          dependencies.get(i));
+
+      if (children != null) {
+        for (DependencyInfo child : children) {
+          targets.add(ordinals.get(child.getId()));
+        }
+      }
+      offsets[i + 1] = targets.size();
+    }
+
+    int[] targetOrdinals = new int[targets.size()];
+
+    for (int i = 0; i < targetOrdinals.length; i++) {
+      targetOrdinals[i] = targets.get(i);
+    }
+    dependencyOrder = new DependencyOrder(ids, offsets, targetOrdinals);
+  }
+
+  /** Assigns the next ordinal to a dependency, if it has no ordinal yet.
+   *
+   * @param dependency Dependency to add. Cannot be null.
+   */
+  private void addDependency(final DependencyInfo dependency) {
+    if (!ordinals.containsKey(dependency.getId())) {
+      ordinals.put(dependency.getId(), dependencies.size());
+      dependencies.add(dependency);
+    }
+  }
+
+  /** Writes the bundles of all dependencies in the graph.
+   *
+   * @param outputDirectory Directory to write bundles to. It's created if it
+   *    does not exist. Cannot be null.
+   * @return The written bundles, relative to the output directory, and their
+   *    content. Never null.
+   * @throws IOException if any bundle cannot be written.
+   */
+  public Map<String, byte[]> write(final File outputDirectory)
+      throws IOException {
+    Validate.notNull(outputDirectory, "The output directory cannot be null.");
+
+    Map<String, byte[]> bundles = new LinkedHashMap<String, byte[]>();
+    StringBuilder report = new StringBuilder();
+
+    try {
+      for (DependencyInfo dependency : dependencyGraph.keySet()) {
+        for (FileType type : FileType.values()) {
+          byte[] content = build(dependency, type);
+
+          if (content.length == 0) {
+            continue;
+          }
+
+          String path = getBundlePath(dependency, type, false);
+          write(outputDirectory, path, content);
+          bundles.put(path, content);
+
+          if (minify) {
+            String minifiedPath = getBundlePath(dependency, type, true);
+            byte[] minified = type.minify(content);
+            write(outputDirectory, minifiedPath, minified);
+            bundles.put(minifiedPath, minified);
+            report.append(path).append(' ').append(content.length)
+              .append(" -> ").append(minified.length).append(" bytes (")
+              .append(ratio(minified.length, content.length))
+              .append("%)\n");
+          }
+        }
+      }
+    } finally {
+      close();
+    }
+    if (minify) {
+      write(new File(outputDirectory, REPORT_FILE),
+          report.toString().getBytes(CssRewriter.CHARSET), false);
+    }
+    return bundles;
+  }
+
+  /** Writes a bundle and its gzip copy.
+   *
+   * @param outputDirectory Directory to write the bundle to. Cannot be null.
+   * @param path Path of the bundle, relative to the output directory. Cannot
+   *    be null.
+   * @param content Content of the bundle. Cannot be null.
+   * @throws IOException if the bundle cannot be written.
+   */
+  private void write(final File outputDirectory, final String path,
+      final byte[] content) throws IOException {
+    write(new File(outputDirectory, path), content, false);
+    write(new File(outputDirectory, path + GZIP_EXTENSION), content, true);
+  }
+
+  /** Returns the size of a minified bundle relative to the original size.
+   *
+   * @param size Size of the minified bundle.
+   * @param originalSize Size of the original bundle, greater than zero.
+   * @return The percentage of the original size, rounded down.
+   */
+  private static long ratio(final long size, final long originalSize) {
+    return size * PERCENT / originalSize;
+  }
+
+  /** Returns the path of a bundle, relative to the output directory.
+   *
+   * @param dependency Dependency the bundle belongs to. Cannot be null.
+   * @param type Type of bundle. Cannot be null.
+   * @param minified Whether it's the minified copy of the bundle.
+   * @return A valid path, never null or empty.
+   */
+  static String getBundlePath(final DependencyInfo dependency,
+      final FileType type, final boolean minified) {
+    StringBuilder path = new StringBuilder(dependency.getName())
+      .append("/").append(dependency.getVersion()).append("/bundle.");
+
+    if (minified) {
+      path.append("min.");
+    }
+    return path.append(type.getExtension()).toString();
+  }
+
+  /** Builds the content of a bundle.
+   *
+   * @param dependency Root dependency of the bundle. Cannot be null.
+   * @param type Type of bundle. Cannot be null.
+   * @return The bundle content, never null.
+   * @throws IOException if any file cannot be read.
+   */
+  byte[] build(final DependencyInfo dependency, final FileType type)
+      throws IOException {
+    Map<String, DependencyInfo> files =
+        new LinkedHashMap<String, DependencyInfo>();
+
+    for (int ordinal : dependencyOrder.sort(ordinals.get(
+        dependency.getId()))) {
+      DependencyInfo bundled = dependencies.get(ordinal);
+
+      for (String file : type.getFiles(bundled)) {
+        if (!files.containsKey(file)) {
+          files.put(file, bundled);
+        }
+      }
+    }
+
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    CssRewriter cssRewriter = null;
+
+    if (type == FileType.CSS) {
+      cssRewriter = createCssRewriter(dependency, files);
+    }
+
+    for (Map.Entry<String, DependencyInfo> file : files.entrySet()) {
+      if (cssRewriter != null) {
+        content.write(cssRewriter.rewrite(file.getKey()).getBytes(
+            CssRewriter.CHARSET));
+      } else {
+        content.write(readFile(file.getValue(), file.getKey()));
+      }
+      content.write(SEPARATOR);
+    }
+    return content.toByteArray();
+  }
+
+  /** Returns the classpath directory the CSS bundle of a dependency is
+   * served from. It's the directory of its first stylesheet, or the
+   * dependency root directory if it has no stylesheets.
+   *
+   * @param dependency Dependency to get the directory for. Cannot be null.
+   * @return A valid directory ending with a slash, never null or empty.
+   */
+  static String getBundleDirectory(final DependencyInfo dependency) {
+    if (dependency.getCssFiles().isEmpty()) {
+      return WEBJARS_DIR + dependency.getName() + "/"
+          + dependency.getVersion() + "/";
+    }
+
+    String file = dependency.getCssFiles().get(0);
+    return file.substring(0, file.lastIndexOf('/') + 1);
+  }
+
+  /** Creates the rewriter for a CSS bundle. Imported files are searched in
+   * the dependencies of the bundle.
+   *
+   * @param dependency Root dependency of the bundle. Cannot be null.
+   * @param files Files of the bundle and the dependency they belong to.
+   *    Cannot be null.
+   * @return A valid rewriter, never null.
+   */
+  private CssRewriter createCssRewriter(final DependencyInfo dependency,
+      final Map<String, DependencyInfo> files) {
+    final Set<DependencyInfo> bundleDependencies =
+        new LinkedHashSet<DependencyInfo>(files.values());
+
+    return new CssRewriter(getBundleDirectory(dependency)) {
+      /** {@inheritDoc}.
+       */
+      @Override
+      protected String read(final String file) throws IOException {
+        for (DependencyInfo candidate : bundleDependencies) {
+          try {
+            return new String(readFile(candidate, file), CHARSET);
+          } catch (IOException cause) {
+            // Not in this dependency, tries the next one.
+            continue;
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  /** Reads a file from a dependency. Files are read only once, since the
+   * same dependency is usually part of several bundles, and the jar file of
+   * the dependency is kept open until this writer is closed.
+   *
+   * @param dependency Dependency the file belongs to. Cannot be null.
+   * @param file File to read. Cannot be null.
+   * @return The file content, never null.
+   * @throws IOException if the file cannot be read.
+   */
+  private byte[] readFile(final DependencyInfo dependency, final String file)
+      throws IOException {
+    byte[] content = fileContents.get(file);
+
+    if (content == null) {
+      JarFile jarFile = jarFiles.get(dependency.getId());
+
+      if (jarFile == null) {
+        jarFile = dependency.getJarFile();
+        jarFiles.put(dependency.getId(), jarFile);
+      }
+      content = dependency.readFile(jarFile, file);
+      fileContents.put(file, content);
+    }
+    return content;
+  }
+
+  /** Closes the jar files opened to build bundles and discards the files
+   * read so far. Bundles can still be built after closing this writer, jar
+   * files are opened again when they are needed.
+   */
+  void close() {
+    for (JarFile jarFile : jarFiles.values()) {
+      try {
+        jarFile.close();
+      } catch (IOException cause) {
+        // The file was only read, there is nothing to recover.
+        continue;
+      }
+    }
+    jarFiles.clear();
+    fileContents.clear();
+  }
+
+  /** Writes content to a file, creating parent directories if required.
+   *
+   * @param file File to write. Cannot be null.
+   * @param content Content to write. Cannot be null.
+   * @param gzip Whether to compress the content using gzip.
+   * @throws IOException if the file cannot be written.
+   */
+  private void write(final File file, final byte[] content,
+      final boolean gzip) throws IOException {
+    File parent = file.getParentFile();
+
+    if (!parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Cannot create directory " + parent);
+    }
+
+    OutputStream out = new FileOutputStream(file);
+
+    try {
+      if (gzip) {
+        out = new BestCompressionOutputStream(out);
+      }
+      out.write(content);
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Types of bundles.
+   */
+  enum FileType {
+
+    /** JavaScript bundle. */
+    JS("js") {
+      @Override
+      List<String> getFiles(final DependencyInfo dependency) {
+        return dependency.getJsFiles();
+      }
+
+      @Override
+      String minify(final String content) {
+        return Minifier.minifyJs(content);
+      }
+    },
+
+    /** CSS bundle. */
+    CSS("css") {
+      @Override
+      List<String> getFiles(final DependencyInfo dependency) {
+        return dependency.getCssFiles();
+      }
+
+      @Override
+      String minify(final String content) {
+        return Minifier.minifyCss(content);
+      }
+    };
+
+    /** Bundle file extension, it's never null or empty. */
+    private final String extension;
+
+    /** Creates a file type.
+     * @param theExtension Bundle file extension. Cannot be null or empty.
+     */
+    private FileType(final String theExtension) {
+      extension = theExtension;
+    }
+
+    /** Returns the bundle file extension.
+     * @return A valid extension, without the dot. Never null or empty.
+     */
+    String getExtension() {
+      return extension;
+    }
+
+    /** Returns the files of this type in the specified dependency.
+     *
+     * @param dependency Dependency to get files from. Cannot be null.
+     * @return A valid list of files, never null.
+     */
+    abstract List<String> getFiles(final DependencyInfo dependency);
+
+    /** Minifies a bundle of this type.
+     *
+     * @param content Bundle content. Cannot be null.
+     * @return The minified content, never null.
+     */
+    abstract String minify(final String content);
+
+    /** Minifies an encoded bundle of this type.
+     *
+     * @param content Bundle content, in the bundle charset. Cannot be null.
+     * @return The minified content in the bundle charset, never null.
+     * @throws IOException if the charset is not supported.
+     */
+    byte[] minify(final byte[] content) throws IOException {
+      return minify(new String(content, CssRewriter.CHARSET))
+          .getBytes(CssRewriter.CHARSET);
+    }
+  }
+
+  /** Gzip stream that uses the best compression level.
+   */
+  private static class BestCompressionOutputStream extends GZIPOutputStream {
+
+    /** Creates the gzip stream.
+     * @param out Stream to write compressed data. Cannot be null.
+     * @throws IOException if the gzip header cannot be written.
+     */
+    BestCompressionOutputStream(final OutputStream out) throws IOException {
+      super(out);
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/** Builds the JavaScript and CSS bundles of all WebJars using a
+ * {@link BundleWriter}.
+ * <p>
+ * Bundles are written to the classpath, where the request handler serves them
+ * instead of building them at runtime.
+ * </p>
+ */
+@Mojo(name = "build-bundles",
+  defaultPhase = LifecyclePhase.PROCESS_RESOURCES,
+  requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class BundlesMojo extends AbstractWebJarsMojo {
+
+  /** Directory to write bundles to, it's never null. It must match the
+   * bundles location of the request handler.
+   */
+  @Parameter(defaultValue =
+      "${project.build.outputDirectory}/META-INF/webjars-bundles")
+  private File outputDirectory;
+
+  /** Whether to write minified copies of the bundles. The request handler
+   * serves them if it's configured to serve minified bundles.
+   */
+  @Parameter(defaultValue = "false")
+  private boolean minify;
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public void execute() throws MojoExecutionException {
+    try {
+      DependencyGraphBuilder builder = createGraphBuilder();
+      Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+      dependencyGraph = builder.create();
+
+      Map<String, byte[]> bundles = createWriter(dependencyGraph)
+          .write(outputDirectory);
+
+      getLog().info("Wrote " + bundles.size() + " bundles to "
+          + outputDirectory);
+
+      if (minify) {
+        getLog().info("Minification report written to " + new File(
+            outputDirectory, BundleWriter.REPORT_FILE));
+      }
+    } catch (IOException cause) {
+      throw new MojoExecutionException("Error executing bundles mojo",
+          cause);
+    }
+  }
+
+  /** Creates the writer to write the bundles.
+   *
+   * @param dependencyGraph Dependency graph to write bundles for. Cannot be
+   *    null.
+   * @return The bundle writer, never null.
+   */
+  BundleWriter createWriter(
+      final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph) {
+    return new BundleWriter(dependencyGraph, minify);
+  }
+}
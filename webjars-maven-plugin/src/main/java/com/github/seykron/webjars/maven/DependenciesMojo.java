@@ -1,96 +1,374 @@
 package com.github.seykron.webjars.maven;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
-import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.artifact.resolver.ArtifactResolver;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.commons.lang.Validate;
 import org.apache.maven.plugin.MojoExecutionException;
 
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
+
+import com.github.seykron.webjars.FingerprintManifest;
 
 /** Builds the WebJars dependency tree using a
- * {@link JsonDependencyGraphWriter}.
+ * {@link JsonDependencyGraphWriter}, or a {@link BinaryDependencyGraphWriter}
+ * if the format is <code>binary</code>.
+ * <p>
+ * It also writes a fingerprint manifest next to the dependency tree, using a
+ * {@link FingerprintManifestWriter}. The manifest file name is the output
+ * file name followed by {@link FingerprintManifest#SUFFIX}, where the
+ * runtime looks for it.
+ * </p>
+ * <p>
+ * The inputs of the graph are recorded after each execution, see
+ * {@link #describeInputs()}. If they didn't change and the output files
+ * exist, the mojo does nothing. Otherwise the graph is built again, but the
+ * output files are only written if their content changed, so their last
+ * modified time changes only when the graph does. Output files are streamed
+ * to a temporary file next to them and compared chunk by chunk, so they're
+ * never held in memory.
+ * </p>
  */
 @Mojo(name = "build-dependencies",
   defaultPhase = LifecyclePhase.PROCESS_RESOURCES,
   requiresDependencyResolution = ResolutionScope.RUNTIME)
-public class DependenciesMojo extends AbstractMojo {
+public class DependenciesMojo extends AbstractWebJarsMojo {
 
-  /** Maven's artifact resolver. */
-  @Component
-  private ArtifactResolver artifactResolver;
+  /** JSON dependency graph format. */
+  public static final String FORMAT_JSON = "json";
 
-  /** Provides some metadata operations, like querying the remote repository for
-   * a list of versions available for an artifact.
-   */
-  @Component
-  private ArtifactMetadataSource metadataSource;
+  /** Binary dependency graph format. */
+  public static final String FORMAT_BINARY = "binary";
 
-  /** Specifies the repository used for artifact handling.
-   */
-  @Parameter(defaultValue = "${localRepository}")
-  private ArtifactRepository localRepository;
+  /** Suffix of the file with the recorded inputs, within the state
+   * directory. */
+  private static final String INPUTS_SUFFIX = ".inputs";
 
-  /** The Maven project object, used to generate a classloader to access the
-   * classpath resources from the project.
-   *
-   * Injected by maven. This is never null.
-   */
-  @Component
-  private MavenProject project;
+  /** Charset of the recorded inputs. */
+  private static final String CHARSET = "UTF-8";
+
+  /** Size of the chunks to compare output files, in bytes. */
+  private static final int CHUNK_SIZE = 8192;
+
+  /** Radix to print the content hash of the output files. */
+  private static final int HEX_RADIX = 16;
 
   /** File to write dependencies graph, it's never null.
    */
   @Parameter(required = true)
   private File outputFile;
 
+  /** Format of the dependency graph, either <code>json</code> or
+   * <code>binary</code>. Default is json.
+   */
+  @Parameter(defaultValue = FORMAT_JSON)
+  private String format = FORMAT_JSON;
+
+  /** Whether to write the fingerprint manifest. Default is true.
+   */
+  @Parameter(defaultValue = "true")
+  private boolean fingerprint = true;
+
+  /** Directory to record the inputs of each execution, so the next execution
+   * can be skipped if they didn't change. Default is
+   * <code>target/webjars-state</code>.
+   */
+  @Parameter(defaultValue = "${project.build.directory}/webjars-state")
+  private File stateDirectory;
+
   /** {@inheritDoc}.
    */
   @Override
   public void execute() throws MojoExecutionException {
+    File manifestFile = new File(outputFile.getPath()
+        + FingerprintManifest.SUFFIX);
+    File inputsFile = null;
+    String inputs = null;
+
     try {
+      if (stateDirectory != null) {
+        inputsFile = new File(stateDirectory, outputFile.getName()
+            + INPUTS_SUFFIX);
+        inputs = describeInputs() + describeFormat() + "fingerprint="
+            + fingerprint + "\noutputFile=" + outputFile.getAbsolutePath()
+            + "\n";
+
+        if (isUpToDate(inputsFile, inputs, manifestFile)) {
+          getLog().info("Dependency graph is up to date: " + outputFile);
+          return;
+        }
+      }
+
       DependencyGraphBuilder builder = createGraphBuilder();
-      Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+      final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
       dependencyGraph = builder.create();
 
-      DependencyGraphWriter writer = createWriter(dependencyGraph);
-      Writer fileWriter = new FileWriter(outputFile);
-      writer.write(fileWriter);
-      fileWriter.close();
+      writeIfChanged(outputFile, new FileContent() {
+        /** {@inheritDoc}.
+         */
+        @Override
+        public void write(final OutputStream out) {
+          createWriter(dependencyGraph).write(out);
+        }
+      });
+
+      if (fingerprint) {
+        writeIfChanged(manifestFile, new FileContent() {
+          /** {@inheritDoc}.
+           */
+          @Override
+          public void write(final OutputStream out) {
+            createManifestWriter(dependencyGraph).write(out);
+          }
+        });
+      }
+      if (inputsFile != null) {
+        final byte[] inputsContent = (inputs + describeOutputs(manifestFile))
+            .getBytes(CHARSET);
+
+        stateDirectory.mkdirs();
+        writeIfChanged(inputsFile, new FileContent() {
+          /** {@inheritDoc}.
+           */
+          @Override
+          public void write(final OutputStream out) throws IOException {
+            out.write(inputsContent);
+          }
+        });
+      }
     } catch (IOException cause) {
       throw new MojoExecutionException("Error executing dependencies mojo",
           cause);
     }
   }
 
-  /** Creates the writer to write the dependency graph, it is designed for
-   * extension.
+  /** Describes the format of the dependency graph by the name and version
+   * of the selected writer, so the graph is written again if either changes.
+   *
+   * @return A valid description, one property per line, never null.
+   */
+  private String describeFormat() {
+    DependencyGraphWriter writer = createWriter(
+        new HashMap<DependencyInfo, List<DependencyInfo>>());
+
+    return "format=" + writer.getFormatName() + "\nformatVersion="
+        + writer.getFormatVersion() + "\n";
+  }
+
+  /** Determines whether the output files are up to date.
+   *
+   * @param inputsFile File with the inputs of the last execution. Cannot be
+   *    null.
+   * @param inputs Inputs of the current execution. Cannot be null.
+   * @param manifestFile Fingerprint manifest file. Cannot be null.
+   * @return true if the inputs didn't change and the output files exist and
+   *    are the ones written by the last execution, false otherwise.
+   * @throws IOException if the inputs or the output files cannot be read.
+   */
+  private boolean isUpToDate(final File inputsFile, final String inputs,
+      final File manifestFile) throws IOException {
+    if (!inputsFile.exists() || !outputFile.exists()
+        || (fingerprint && !manifestFile.exists())) {
+      return false;
+    }
+    return Arrays.equals(readFile(inputsFile),
+        (inputs + describeOutputs(manifestFile)).getBytes(CHARSET));
+  }
+
+  /** Describes the current output files by their content hash, so output
+   * files changed by anything else than this mojo are written again.
+   *
+   * @param manifestFile Fingerprint manifest file. Cannot be null.
+   * @return A valid description, one output per line, never null.
+   * @throws IOException if the output files cannot be read.
+   */
+  private String describeOutputs(final File manifestFile) throws IOException {
+    String outputs = "outputHash=" + hash(outputFile) + "\n";
+
+    if (fingerprint) {
+      outputs = outputs + "manifestHash=" + hash(manifestFile) + "\n";
+    }
+    return outputs;
+  }
+
+  /** Computes the content hash of a file. The file is read chunk by chunk.
+   *
+   * @param file File to hash. Cannot be null.
+   * @return The MD5 of the file content, never null.
+   * @throws IOException if the file cannot be read.
+   */
+  private static String hash(final File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int length = in.read(chunk);
+
+      while (length >= 0) {
+        digest.update(chunk, 0, length);
+        length = in.read(chunk);
+      }
+      return new BigInteger(1, digest.digest()).toString(HEX_RADIX);
+    } catch (NoSuchAlgorithmException cause) {
+      throw new IllegalStateException("MD5 is not supported.", cause);
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Writes a file, unless it already has the specified content. An
+   * unchanged file keeps its last modified time.
+   * <p>
+   * The content is written to a temporary file in the same directory, which
+   * then replaces the file if the content changed, or it's discarded
+   * otherwise.
+   * </p>
+   *
+   * @param file File to write. Cannot be null.
+   * @param content Content to write. Cannot be null.
+   * @throws IOException if the file cannot be read or written.
+   */
+  private static void writeIfChanged(final File file,
+      final FileContent content) throws IOException {
+    File tempFile = File.createTempFile(file.getName(), ".tmp",
+        file.getAbsoluteFile().getParentFile());
+
+    try {
+      OutputStream out = new BufferedOutputStream(
+          new FileOutputStream(tempFile));
+
+      try {
+        content.write(out);
+        out.close();
+      } finally {
+        IOUtil.close(out);
+      }
+
+      if (file.exists() && file.length() == tempFile.length()
+          && contentEquals(file, tempFile)) {
+        return;
+      }
+      if (!tempFile.renameTo(file)) {
+        file.delete();
+
+        if (!tempFile.renameTo(file)) {
+          throw new IOException("Cannot replace file: " + file);
+        }
+      }
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  /** Determines whether two files have the same content. Files are compared
+   * chunk by chunk, they're never read in full.
+   *
+   * @param file File to compare. Cannot be null.
+   * @param otherFile File to compare to. Cannot be null.
+   * @return true if both files have the same content, false otherwise.
+   * @throws IOException if the files cannot be read.
+   */
+  private static boolean contentEquals(final File file, final File otherFile)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    DataInputStream otherIn = null;
+
+    try {
+      otherIn = new DataInputStream(new FileInputStream(otherFile));
+
+      byte[] chunk = new byte[CHUNK_SIZE];
+      byte[] otherChunk = new byte[CHUNK_SIZE];
+      int length = in.read(chunk);
+
+      while (length > 0) {
+        otherIn.readFully(otherChunk, 0, length);
+
+        for (int i = 0; i < length; i++) {
+          if (chunk[i] != otherChunk[i]) {
+            return false;
+          }
+        }
+        length = in.read(chunk);
+      }
+      return otherIn.read() < 0;
+    } catch (EOFException cause) {
+      return false;
+    } finally {
+      IOUtil.close(in);
+      IOUtil.close(otherIn);
+    }
+  }
+
+  /** Reads the content of a file.
+   *
+   * @param file File to read. Cannot be null.
+   * @return The file content, never null.
+   * @throws IOException if the file cannot be read.
+   */
+  private static byte[] readFile(final File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+
+    try {
+      return IOUtil.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Creates the writer to write the dependency graph according to the
+   * configured format, it is designed for extension.
    *
    * @param dependencyGraph Dependency graph to write. Cannot be null.
    * @return The dependency writer, never null.
    */
   protected DependencyGraphWriter createWriter(
       final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph) {
+    if (FORMAT_BINARY.equalsIgnoreCase(format)) {
+      return new BinaryDependencyGraphWriter(dependencyGraph);
+    }
+    Validate.isTrue(FORMAT_JSON.equalsIgnoreCase(format),
+        "Unknown dependency graph format: " + format);
     return new JsonDependencyGraphWriter(dependencyGraph);
   }
 
-  /** Creates the dependency graph builder.
-   * @return A valid graph builder, never null.
+  /** Creates the writer to write the fingerprint manifest.
+   *
+   * @param dependencyGraph Dependency graph to write. Cannot be null.
+   * @return The manifest writer, never null.
    */
-  DependencyGraphBuilder createGraphBuilder() {
-    return new DependencyGraphBuilder(artifactResolver, metadataSource,
-        localRepository, project);
+  FingerprintManifestWriter createManifestWriter(
+      final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph) {
+    return new FingerprintManifestWriter(dependencyGraph);
+  }
+
+  /** Content of an output file.
+   */
+  private interface FileContent {
+
+    /** Writes the content.
+     *
+     * @param out Stream to write the content to. Cannot be null.
+     * @throws IOException if the content cannot be written.
+     */
+    void write(final OutputStream out) throws IOException;
   }
 }
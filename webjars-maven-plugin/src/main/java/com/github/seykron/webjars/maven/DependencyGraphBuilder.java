@@ -1,28 +1,61 @@
 package com.github.seykron.webjars.maven;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang.Validate;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.metadata.ResolutionGroup;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.project.MavenProject;
 
 /** Builds the Webjars dependency graph.
+ * <p>
+ * Dependencies are taken from the tree maven already resolved for the
+ * project: the tree is traversed once, and the metadata of each artifact is
+ * retrieved at most once to know its direct dependencies. Webjars maven did
+ * not resolve are resolved on their own. Transitive dependencies are listed
+ * in load order, dependencies first. Then the jar file of every distinct
+ * webjar is scanned once. Jar files are scanned in parallel by a bounded pool
+ * of threads, and the results are merged in artifact order, so the graph is
+ * always the same regardless of the scanning order. The graph is sorted by
+ * dependency id.
+ * </p>
+ * <p>
+ * If a {@link ScanCache} is set, jar files scanned by a previous build are
+ * not read again, unless they changed.
+ * </p>
+ * <p>
+ * Dependencies between files declared in the configuration are added to the
+ * dependency that contains the file, and they replace the ones declared in
+ * the webjar.
+ * </p>
  */
 public class DependencyGraphBuilder {
 
   /** Webjars maven group id. */
-  private static final String WEBJARS_GROUP_ID = "org.webjars";
+  static final String WEBJARS_GROUP_ID = "org.webjars";
 
   /** Dependencies resolver; it's never null.
    */
@@ -41,11 +74,29 @@ public class DependencyGraphBuilder {
    */
   private MavenProject project;
 
+  /** Policy to select the files of each dependency; it's never null. */
+  private VariantPolicy variantPolicy = new VariantPolicy();
+
   /** Cache for dependencies, it's never null. It's cleared when a new
    * dependency graph is created. */
   private Map<String, DependencyInfo> dependencyCache =
       new HashMap<String, DependencyInfo>();
 
+  /** Files required by each file, as classpath paths. It's never null. */
+  private Map<String, List<String>> fileDependencies =
+      new HashMap<String, List<String>>();
+
+  /** Maximum number of jar files scanned at the same time, it's always
+   * greater than zero. */
+  private int scanThreads = Runtime.getRuntime().availableProcessors();
+
+  /** Cache of scan results between builds, it's null to scan all jar
+   * files. */
+  private ScanCache scanCache;
+
+  /** Log to report configuration problems, it's never null. */
+  private Log log = new SystemStreamLog();
+
   /** Default constructor for testing purposes, do not use.
    */
   DependencyGraphBuilder() {
@@ -63,6 +114,24 @@ public class DependencyGraphBuilder {
       final ArtifactMetadataSource theMetadataSource,
       final ArtifactRepository theLocalRepository,
       final MavenProject theProject) {
+    this(theArtifactResolver, theMetadataSource, theLocalRepository,
+        theProject, new VariantPolicy());
+  }
+
+  /** Creates a new maven class loader builder.
+   *
+   * @param theArtifactResolver Resolver to download dependencies. Cannot be
+   *    null.
+   * @param theMetadataSource Provides artifacts metadata. Cannot be null.
+   * @param theLocalRepository Maven local repository. Cannot be null.
+   * @param theProject The reference maven project. Cannot be null.
+   * @param theVariantPolicy Policy to select the files of each dependency.
+   *    Cannot be null.
+   */
+  public DependencyGraphBuilder(final ArtifactResolver theArtifactResolver,
+      final ArtifactMetadataSource theMetadataSource,
+      final ArtifactRepository theLocalRepository,
+      final MavenProject theProject, final VariantPolicy theVariantPolicy) {
     Validate.notNull(theArtifactResolver,
         "The artifact resolver cannot be null.");
     Validate.notNull(theMetadataSource,
@@ -71,50 +140,142 @@ public class DependencyGraphBuilder {
         "The local repository cannot be null.");
     Validate.notNull(theProject,
         "The maven project cannot be null.");
+    Validate.notNull(theVariantPolicy,
+        "The variant policy cannot be null.");
 
     artifactResolver = theArtifactResolver;
     metadataSource = theMetadataSource;
     project = theProject;
     localRepository = theLocalRepository;
+    variantPolicy = theVariantPolicy;
+  }
+
+  /** Sets the dependencies between files, in addition to the ones declared
+   * in the webjars.
+   *
+   * @param theFileDependencies Files required by each file, as classpath
+   *    paths. Cannot be null.
+   */
+  public void setFileDependencies(
+      final Map<String, List<String>> theFileDependencies) {
+    Validate.notNull(theFileDependencies,
+        "The file dependencies cannot be null.");
+    fileDependencies = theFileDependencies;
+  }
+
+  /** Sets the maximum number of jar files scanned at the same time. Default
+   * is the number of available processors.
+   *
+   * @param theScanThreads Number of threads to scan jar files. Must be
+   *    greater than zero.
+   */
+  public void setScanThreads(final int theScanThreads) {
+    Validate.isTrue(theScanThreads > 0,
+        "The number of scan threads must be greater than zero.");
+    scanThreads = theScanThreads;
+  }
+
+  /** Sets the cache of scan results between builds.
+   *
+   * @param theScanCache Cache of scan results, or null to scan all jar
+   *    files.
+   */
+  public void setScanCache(final ScanCache theScanCache) {
+    scanCache = theScanCache;
+  }
+
+  /** Sets the log to report configuration problems. Default is the standard
+   * output.
+   *
+   * @param theLog Log to report problems. Cannot be null.
+   */
+  public void setLog(final Log theLog) {
+    Validate.notNull(theLog, "The log cannot be null.");
+    log = theLog;
   }
 
   /** Builds the class loader using the current configuration.
    * @return Returns a valid class loader. Never returns null.
    */
-  @SuppressWarnings({ "unchecked", "rawtypes" })
   public Map<DependencyInfo, List<DependencyInfo>> create() {
     Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
 
-    dependencyGraph = new HashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
 
     try {
+      // Direct dependencies and their transitive dependencies, sorted by id.
+      Map<String, Artifact> roots = new TreeMap<String, Artifact>();
+      Map<String, List<Artifact>> children =
+          new HashMap<String, List<Artifact>>();
+      Map<String, Artifact> artifactsToScan = new TreeMap<String, Artifact>();
+
+      // Artifacts already resolved by maven, and the direct dependencies of
+      // each one, shared by all roots.
+      Map<String, Artifact> resolvedArtifacts = getResolvedArtifacts();
+      Map<String, List<Artifact>> edges =
+          new HashMap<String, List<Artifact>>();
+
       Set<Artifact> artifacts = new HashSet<Artifact>();
-      artifacts.addAll(project.getDependencyArtifacts());
 
-      for (Artifact artifact : artifacts) {
-        if (artifact.getGroupId().equalsIgnoreCase(WEBJARS_GROUP_ID)) {
-          Set artifactsToResolve = new HashSet(Arrays.asList(artifact));
-          ArtifactResolutionResult result;
+      for (Object artifactObj : project.getDependencyArtifacts()) {
+        artifacts.add((Artifact) artifactObj);
+      }
+
+      for (Artifact directArtifact : artifacts) {
+        if (directArtifact.getGroupId().equalsIgnoreCase(WEBJARS_GROUP_ID)) {
+          Artifact artifact = null;
 
-          result = artifactResolver.resolveTransitively(artifactsToResolve,
-              project.getArtifact(), localRepository,
-              project.getRemoteArtifactRepositories(), metadataSource,
-              artifact.getDependencyFilter());
+          if (!resolvedArtifacts.isEmpty()) {
+            artifact = resolvedArtifacts.get(
+                directArtifact.getDependencyConflictId());
+          }
+
+          List<Artifact> dependencies;
+
+          if (artifact == null || artifact.getFile() == null) {
+            artifact = directArtifact;
+            dependencies = resolveTransitively(artifact);
+          } else {
+            dependencies = new LinkedList<Artifact>();
+            collectDependencies(artifact, directArtifact.getDependencyFilter(),
+                resolvedArtifacts, edges, new HashSet<String>(), dependencies);
+            // The root is the last one in post-order.
+            dependencies.remove(dependencies.size() - 1);
+          }
 
-          List<DependencyInfo> dependencies = new LinkedList<DependencyInfo>();
+          String artifactId = artifact.getArtifactId();
 
-          for (Object dependencyArtifactObj : result.getArtifacts()) {
-            Artifact dependencyArtifact = (Artifact) dependencyArtifactObj;
+          List<Artifact> childArtifacts = new LinkedList<Artifact>();
 
-            if (!dependencyArtifact.getArtifactId()
-                .equals(artifact.getArtifactId())) {
-              dependencies.add(getDependency(dependencyArtifact));
+          for (Artifact dependencyArtifact : dependencies) {
+            String dependencyId = dependencyArtifact.getArtifactId();
+
+            if (!dependencyId.equals(artifactId)) {
+              childArtifacts.add(dependencyArtifact);
+
+              if (!artifactsToScan.containsKey(dependencyId)) {
+                artifactsToScan.put(dependencyId, dependencyArtifact);
+              }
             }
           }
 
-          dependencyGraph.put(getDependency(artifact), dependencies);
+          roots.put(artifactId, artifact);
+          children.put(artifactId, childArtifacts);
+          artifactsToScan.put(artifactId, artifact);
         }
       }
+
+      scan(artifactsToScan);
+
+      for (Map.Entry<String, Artifact> root : roots.entrySet()) {
+        List<DependencyInfo> dependencies = new LinkedList<DependencyInfo>();
+
+        for (Artifact dependency : children.get(root.getKey())) {
+          dependencies.add(dependencyCache.get(dependency.getArtifactId()));
+        }
+        dependencyGraph.put(dependencyCache.get(root.getKey()), dependencies);
+      }
+      addFileDependencies();
     } catch (Exception ex) {
       throw new RuntimeException("Cannot resolve the artifact.", ex);
     } finally {
@@ -124,25 +285,262 @@ public class DependencyGraphBuilder {
     return dependencyGraph;
   }
 
-  /** Retrieves the dependency for the specified artifact from the cache or
-   * creates it if it does not exist.
+  /** Returns the artifacts maven already resolved for the project, including
+   * transitive dependencies.
    *
-   * @param artifact Artifact related to the required dependency.
+   * @return The resolved artifacts by dependency conflict id, never null. It's
+   *    empty if the project dependencies were not resolved.
+   */
+  private Map<String, Artifact> getResolvedArtifacts() {
+    Map<String, Artifact> resolvedArtifacts = new HashMap<String, Artifact>();
+
+    if (project.getArtifacts() == null) {
+      return resolvedArtifacts;
+    }
+    for (Object artifactObj : project.getArtifacts()) {
+      Artifact artifact = (Artifact) artifactObj;
+      resolvedArtifacts.put(artifact.getDependencyConflictId(), artifact);
+    }
+    return resolvedArtifacts;
+  }
+
+  /** Adds the transitive dependencies of a resolved artifact, and the
+   * artifact itself, in post-order: dependencies are always added before
+   * the artifacts that require them.
+   *
+   * @param artifact Resolved artifact to visit. Cannot be null.
+   * @param filter Filter of the direct dependency the artifact was reached
+   *    from, null to include all dependencies.
+   * @param resolvedArtifacts Artifacts resolved for the project, by
+   *    dependency conflict id. Cannot be null.
+   * @param edges Direct dependencies of the artifacts visited so far, by
+   *    dependency conflict id. Cannot be null.
+   * @param visited Conflict ids of the artifacts visited from the same root.
    *    Cannot be null.
-   * @return Returns the required dependency, never null.
+   * @param result List to add the artifacts to. Cannot be null.
+   * @throws Exception if the artifact metadata cannot be retrieved.
    */
-  private DependencyInfo getDependency(final Artifact artifact) {
-    if (!dependencyCache.containsKey(artifact.getArtifactId())) {
-      Dependency dependency = new Dependency();
-      dependency.setArtifactId(artifact.getId());
-      // WARNING: may be deprecated.
-      dependency.setSystemPath(artifact.getFile().getAbsolutePath());
+  private void collectDependencies(final Artifact artifact,
+      final ArtifactFilter filter,
+      final Map<String, Artifact> resolvedArtifacts,
+      final Map<String, List<Artifact>> edges, final Set<String> visited,
+      final List<Artifact> result) throws Exception {
+    if (!visited.add(artifact.getDependencyConflictId())) {
+      return;
+    }
+    for (Artifact dependency
+        : getDirectDependencies(artifact, resolvedArtifacts, edges)) {
+      if (filter == null || filter.include(dependency)) {
+        collectDependencies(dependency, filter, resolvedArtifacts, edges,
+            visited, result);
+      }
+    }
+    result.add(artifact);
+  }
 
-      DependencyInfo info = createDependencyInfo(dependency);
+  /** Returns the direct dependencies of a resolved artifact. The metadata of
+   * each artifact is retrieved once, and the declared dependencies are
+   * mapped to the versions maven resolved for the project. Test, provided and
+   * optional dependencies are not included, neither are the dependencies
+   * maven left out.
+   *
+   * @param artifact Resolved artifact. Cannot be null.
+   * @param resolvedArtifacts Artifacts resolved for the project, by
+   *    dependency conflict id. Cannot be null.
+   * @param edges Direct dependencies of the artifacts visited so far, by
+   *    dependency conflict id. Cannot be null.
+   * @return The resolved direct dependencies, never null.
+   * @throws Exception if the artifact metadata cannot be retrieved.
+   */
+  private List<Artifact> getDirectDependencies(final Artifact artifact,
+      final Map<String, Artifact> resolvedArtifacts,
+      final Map<String, List<Artifact>> edges) throws Exception {
+    List<Artifact> dependencies = edges.get(
+        artifact.getDependencyConflictId());
+
+    if (dependencies != null) {
+      return dependencies;
+    }
+
+    dependencies = new ArrayList<Artifact>();
+
+    ResolutionGroup group = metadataSource.retrieve(artifact,
+        localRepository, project.getRemoteArtifactRepositories());
+
+    if (group != null && group.getArtifacts() != null) {
+      for (Object declaredObj : group.getArtifacts()) {
+        Artifact declared = (Artifact) declaredObj;
+        Artifact dependency = resolvedArtifacts.get(
+            declared.getDependencyConflictId());
+
+        if (dependency != null && !declared.isOptional()
+            && !Artifact.SCOPE_TEST.equals(declared.getScope())
+            && !Artifact.SCOPE_PROVIDED.equals(declared.getScope())) {
+          dependencies.add(dependency);
+        }
+      }
+    }
+    edges.put(artifact.getDependencyConflictId(), dependencies);
+
+    return dependencies;
+  }
+
+  /** Resolves the transitive dependencies of an artifact that maven did not
+   * resolve for the project.
+   *
+   * @param artifact Artifact to resolve. Cannot be null.
+   * @return The transitive dependencies, including the artifact itself.
+   *    Never null.
+   * @throws Exception if the dependencies cannot be resolved.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private List<Artifact> resolveTransitively(final Artifact artifact)
+      throws Exception {
+    Set artifactsToResolve = new HashSet(Arrays.asList(artifact));
+    ArtifactResolutionResult result;
+
+    result = artifactResolver.resolveTransitively(artifactsToResolve,
+        project.getArtifact(), localRepository,
+        project.getRemoteArtifactRepositories(), metadataSource,
+        artifact.getDependencyFilter());
+
+    List<Artifact> dependencies = new LinkedList<Artifact>();
+
+    for (Object dependencyArtifactObj : result.getArtifacts()) {
+      dependencies.add((Artifact) dependencyArtifactObj);
+    }
+    return dependencies;
+  }
+
+  /** Scans the jar files of the specified artifacts and adds them to the
+   * dependency cache. Jar files are scanned in parallel, but the cache is
+   * filled in artifact order. Results in the scan cache are not scanned
+   * again.
+   *
+   * @param artifacts Artifacts to scan, by artifact id. Cannot be null.
+   * @throws Exception if any jar file cannot be scanned.
+   */
+  private void scan(final Map<String, Artifact> artifacts) throws Exception {
+    Map<String, Dependency> dependencies =
+        new LinkedHashMap<String, Dependency>();
+
+    for (Map.Entry<String, Artifact> artifact : artifacts.entrySet()) {
+      Dependency dependency = createDependency(artifact.getValue());
+      DependencyInfo cached = null;
+
+      if (scanCache != null) {
+        cached = scanCache.get(dependency);
+      }
+      if (cached == null) {
+        dependencies.put(artifact.getKey(), dependency);
+      } else {
+        dependencyCache.put(artifact.getKey(), cached);
+      }
+    }
+
+    int threads = Math.min(scanThreads, dependencies.size());
+
+    if (threads <= 1) {
+      for (Map.Entry<String, Dependency> dependency
+          : dependencies.entrySet()) {
+        addScanResult(dependency.getKey(), dependency.getValue(),
+            createDependencyInfo(dependency.getValue()));
+      }
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    try {
+      Map<String, Future<DependencyInfo>> results =
+          new LinkedHashMap<String, Future<DependencyInfo>>();
+
+      for (Map.Entry<String, Dependency> entry : dependencies.entrySet()) {
+        final Dependency dependency = entry.getValue();
+
+        results.put(entry.getKey(), executor.submit(
+            new Callable<DependencyInfo>() {
+              /** {@inheritDoc}.
+               */
+              @Override
+              public DependencyInfo call() {
+                return createDependencyInfo(dependency);
+              }
+            }));
+      }
+      for (Map.Entry<String, Future<DependencyInfo>> result
+          : results.entrySet()) {
+        try {
+          addScanResult(result.getKey(), dependencies.get(result.getKey()),
+              result.getValue().get());
+        } catch (ExecutionException cause) {
+          throw new RuntimeException("Cannot scan dependency "
+              + result.getKey(), cause.getCause());
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Adds the result of a jar scan to the dependency cache, and to the scan
+   * cache if there is one. It must be called before the configured
+   * dependencies between files are added.
+   *
+   * @param artifactId Id of the scanned artifact. Cannot be null.
+   * @param dependency Scanned dependency. Cannot be null.
+   * @param dependencyInfo Scan result. Cannot be null.
+   */
+  private void addScanResult(final String artifactId,
+      final Dependency dependency, final DependencyInfo dependencyInfo) {
+    dependencyCache.put(artifactId, dependencyInfo);
 
-      dependencyCache.put(artifact.getArtifactId(), info);
+    if (scanCache != null) {
+      scanCache.put(dependency, dependencyInfo);
     }
-    return dependencyCache.get(artifact.getArtifactId());
+  }
+
+  /** Adds the configured dependencies between files to the dependencies
+   * that contain the files. It warns about the configured files that are not
+   * selected in any dependency.
+   */
+  private void addFileDependencies() {
+    if (fileDependencies.isEmpty()) {
+      return;
+    }
+    Set<String> unmatchedFiles = new TreeSet<String>(
+        fileDependencies.keySet());
+
+    for (DependencyInfo dependency : dependencyCache.values()) {
+      List<String> files = new ArrayList<String>(dependency.getJsFiles());
+      files.addAll(dependency.getCssFiles());
+
+      for (String file : files) {
+        List<String> requiredFiles = fileDependencies.get(file);
+
+        if (requiredFiles != null) {
+          dependency.getFileDependencies().put(file, requiredFiles);
+          unmatchedFiles.remove(file);
+        }
+      }
+    }
+    for (String file : unmatchedFiles) {
+      log.warn("File dependencies are configured for " + file
+          + ", but it is not a selected file of any webjar.");
+    }
+  }
+
+  /** Creates the maven dependency for the specified artifact.
+   *
+   * @param artifact Artifact to create the dependency for. Cannot be null.
+   * @return A valid dependency, never null.
+   */
+  private Dependency createDependency(final Artifact artifact) {
+    Dependency dependency = new Dependency();
+    dependency.setArtifactId(artifact.getId());
+    // WARNING: may be deprecated.
+    dependency.setSystemPath(artifact.getFile().getAbsolutePath());
+    return dependency;
   }
 
   /** Creates the dependency information for the specified dependency.
@@ -150,6 +548,6 @@ public class DependencyGraphBuilder {
    * @return A valid info, never null.
    */
   DependencyInfo createDependencyInfo(final Dependency dependency) {
-    return new DependencyInfo(dependency);
+    return new DependencyInfo(dependency, variantPolicy);
   }
 }
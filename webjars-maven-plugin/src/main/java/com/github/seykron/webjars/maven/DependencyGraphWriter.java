@@ -1,28 +1,47 @@
 package com.github.seykron.webjars.maven;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.Validate;
+import org.codehaus.plexus.util.IOUtil;
 
 /** Writes a dependency graph to a specific format.
+ * <p>
+ * Formats are written to byte streams. Textual formats extend
+ * {@link TextDependencyGraphWriter}, which can also write to character
+ * streams.
+ * </p>
  */
 public abstract class DependencyGraphWriter {
 
   /** Dependency graph to write, it's never null. */
   private Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
 
-  /** Writes the dependency graph using the specified writer.
+  /** Writes the dependency graph to the specified stream.
    *
    * @param theDependencyGraph Dependency graph to write. Cannot be null.
-   * @param writer Writer to write dependency. Cannot be null.
+   * @param out Stream to write dependency graph. Cannot be null.
    * @throws IOException if the graph cannot be written.
    */
   protected abstract void write(
       final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph,
-      final Writer writer) throws IOException;
+      final OutputStream out) throws IOException;
+
+  /** Returns the name of the format written by this writer.
+   *
+   * @return A valid format name, never null or empty.
+   */
+  public abstract String getFormatName();
+
+  /** Returns the version of the format written by this writer. It changes
+   * each time the structure of the format changes.
+   *
+   * @return The format version.
+   */
+  public abstract int getFormatVersion();
 
   /** Constructs a dependency writer and sets the graph to write.
    *
@@ -35,19 +54,29 @@ public abstract class DependencyGraphWriter {
     dependencyGraph = theDependencyGraph;
   }
 
-  /** Writes the dependency graph using the specified writer. It closes the
-   * writer.
+  /** Writes the dependency graph to the specified stream. It closes the
+   * stream, even if the graph cannot be written.
    *
-   * @param writer Writer to write the dependency graph. Cannot be null.
+   * @param out Stream to write the dependency graph. Cannot be null.
    */
-  public void write(final Writer writer) {
-    Validate.notNull(writer, "The writer cannot be null.");
+  public void write(final OutputStream out) {
+    Validate.notNull(out, "The output stream cannot be null.");
 
     try {
-      write(dependencyGraph, writer);
-      writer.close();
+      write(dependencyGraph, out);
+      out.close();
     } catch (Exception cause) {
       throw new RuntimeException("Cannot write dependency graph.", cause);
+    } finally {
+      IOUtil.close(out);
     }
   }
+
+  /** Returns the dependency graph to write.
+   *
+   * @return A valid graph, never null.
+   */
+  protected Map<DependencyInfo, List<DependencyInfo>> getDependencyGraph() {
+    return dependencyGraph;
+  }
 }
@@ -1,9 +1,17 @@
 package com.github.seykron.webjars.maven;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Enumeration;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -11,8 +19,38 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.lang.Validate;
 import org.apache.maven.model.Dependency;
+import org.codehaus.plexus.util.IOUtil;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.github.seykron.webjars.CssRewriter;
 
 /** Extracts files related to a dependency.
+ * <p>
+ * Files are listed from the jar central directory, see {@link ZipDirectory},
+ * along with their size, compressed size and checksum. The jar content is
+ * only read if there are file dependencies descriptors, and the jar is
+ * opened once to read all of them.
+ * </p>
+ * <p>
+ * Only one variant of each JavaScript and CSS file is extracted, according
+ * to a {@link VariantPolicy}. The other variants are kept apart, so they can
+ * still be requested.
+ * </p>
+ * <p>
+ * Dependencies between files are read from the
+ * {@link #FILE_DEPENDENCIES_DESCRIPTOR} files in the jar. Each descriptor is
+ * a JSON object that maps a file to the files it requires, all of them
+ * relative to the descriptor directory:
+ *   <pre>
+ *   {
+ *     'ui/dialog.js': ['ui/widget.js', 'ui/dialog.css'],
+ *     'ui/widget.js': ['/META-INF/resources/webjars/jquery/2.0/jquery.js']
+ *   }
+ *   </pre>
+ * Paths starting with a slash are classpath paths, so a file may require
+ * files of other dependencies.
+ * </p>
  */
 public class DependencyInfo {
 
@@ -22,6 +60,16 @@ public class DependencyInfo {
   private static final Pattern INFO_PATTERN =
       Pattern.compile("^.+:(.+):.+:(.+)$");
 
+  /** Name of the descriptors of dependencies between files. */
+  public static final String FILE_DEPENDENCIES_DESCRIPTOR =
+      "file-dependencies.json";
+
+  /** Directory of the files served by webjars within the jar file. */
+  private static final String WEBJARS_DIR = "META-INF/resources/webjars/";
+
+  /** Charset of the file dependencies descriptors. */
+  private static final String CHARSET = "UTF-8";
+
   /** Dependency to extract files from, it's never null.  */
   private final Dependency dependency;
 
@@ -31,6 +79,33 @@ public class DependencyInfo {
   /** List of javascript files in this dependency, it's never null.. */
   private final List<String> jsFiles = new LinkedList<String>();
 
+  /** JavaScript and CSS files not selected by the variant policy because
+   * another variant of the same file was selected, in jar order. It's never
+   * null. */
+  private final List<String> variantFiles = new LinkedList<String>();
+
+  /** List of files served by webjars that are neither CSS nor javascript,
+   * i.e. fonts and images. It's never null. */
+  private final List<String> assetFiles = new LinkedList<String>();
+
+  /** Size in bytes of the CSS, javascript and asset files, if known. It's
+   * never null. */
+  private final Map<String, Long> fileSizes = new LinkedHashMap<String, Long>();
+
+  /** CRC-32 checksum of the CSS, javascript and asset files. It's never
+   * null. */
+  private final Map<String, Long> fileChecksums =
+      new LinkedHashMap<String, Long>();
+
+  /** Compressed size in bytes of the CSS, javascript and asset files within
+   * the jar file. It's never null. */
+  private final Map<String, Long> fileCompressedSizes =
+      new LinkedHashMap<String, Long>();
+
+  /** Files required by each file, as classpath paths. It's never null. */
+  private final Map<String, List<String>> fileDependencies =
+      new TreeMap<String, List<String>>();
+
   /** Dependency name, it's never null or empty. */
   private String name;
 
@@ -42,10 +117,58 @@ public class DependencyInfo {
    * @param theDependency Dependency to read. Cannot be null.
    */
   public DependencyInfo(final Dependency theDependency) {
+    this(theDependency, new VariantPolicy());
+  }
+
+  /** Creates a reader for the specified dependency.
+   *
+   * @param theDependency Dependency to read. Cannot be null.
+   * @param theVariantPolicy Policy to select the JavaScript and CSS files.
+   *    Cannot be null.
+   */
+  public DependencyInfo(final Dependency theDependency,
+      final VariantPolicy theVariantPolicy) {
     Validate.notNull(theDependency, "The dependency cannot be null.");
+    Validate.notNull(theVariantPolicy, "The variant policy cannot be null.");
     dependency = theDependency;
 
-    readFiles();
+    readFiles(theVariantPolicy);
+    parseInfo();
+  }
+
+  /** Restores a dependency from a previous scan, without reading the jar
+   * file.
+   *
+   * @param theDependency Dependency the scan belongs to. Cannot be null.
+   * @param scan Scan result, as returned by {@link #toJson()}. Cannot be
+   *    null.
+   */
+  DependencyInfo(final Dependency theDependency, final JSONObject scan) {
+    Validate.notNull(theDependency, "The dependency cannot be null.");
+    Validate.notNull(scan, "The scan result cannot be null.");
+    dependency = theDependency;
+
+    addAll(jsFiles, scan.getJSONArray("js"));
+    addAll(cssFiles, scan.getJSONArray("css"));
+    addAll(assetFiles, scan.getJSONArray("assets"));
+    addAll(variantFiles, scan.getJSONArray("variants"));
+
+    JSONArray jsonFiles = scan.getJSONArray("files");
+
+    for (int i = 0; i < jsonFiles.length(); i++) {
+      JSONArray file = jsonFiles.getJSONArray(i);
+      fileSizes.put(file.getString(0), file.getLong(1));
+      fileChecksums.put(file.getString(0), file.getLong(2));
+      fileCompressedSizes.put(file.getString(0), file.getLong(3));
+    }
+
+    JSONObject jsonRequires = scan.getJSONObject("requires");
+
+    for (Object file : jsonRequires.keySet()) {
+      List<String> required = new ArrayList<String>();
+      addAll(required, jsonRequires.getJSONArray((String) file));
+      fileDependencies.put((String) file, required);
+    }
     parseInfo();
   }
 
@@ -84,6 +207,141 @@ public class DependencyInfo {
     return jsFiles;
   }
 
+  /** Returns the JavaScript and CSS files that were not selected because
+   * another variant of the same file was selected, i.e.
+   * <code>jquery.min.js</code> when <code>jquery.js</code> is selected.
+   * Excluded files are not included.
+   *
+   * @return A valid list of files, in jar order. Never null.
+   */
+  public List<String> getVariantFiles() {
+    return variantFiles;
+  }
+
+  /** Returns the list of files served by webjars that are neither CSS nor
+   * JavaScript, i.e. fonts, images or source maps.
+   *
+   * @return A valid list of files, never null.
+   */
+  public List<String> getAssetFiles() {
+    return assetFiles;
+  }
+
+  /** Returns the size of CSS, JavaScript and asset files in this dependency.
+   * Files with unknown size are not included.
+   *
+   * @return A valid map from file name to size in bytes, never null.
+   */
+  public Map<String, Long> getFileSizes() {
+    return fileSizes;
+  }
+
+  /** Returns the CRC-32 checksum of the CSS, JavaScript and asset files in
+   * this dependency, as recorded in the jar file.
+   *
+   * @return A valid map from file name to checksum, never null.
+   */
+  public Map<String, Long> getFileChecksums() {
+    return fileChecksums;
+  }
+
+  /** Returns the compressed size of the CSS, JavaScript and asset files in
+   * this dependency, as recorded in the jar file.
+   *
+   * @return A valid map from file name to size in bytes, never null.
+   */
+  public Map<String, Long> getFileCompressedSizes() {
+    return fileCompressedSizes;
+  }
+
+  /** Returns the files required by each file of this dependency, in the
+   * order they must be loaded. Files without dependencies are not included.
+   *
+   * @return A valid map from file to the files it requires, sorted by file.
+   *    Never null.
+   */
+  public Map<String, List<String>> getFileDependencies() {
+    return fileDependencies;
+  }
+
+  /** Returns the scan result of this dependency, so it can be restored
+   * without reading the jar file again.
+   * <p>
+   * Files with size and checksum are written as <code>[file, size,
+   * checksum, compressed size]</code> arrays, in the same order they're in
+   * the jar.
+   * </p>
+   *
+   * @return The scan result as JSON, never null.
+   */
+  JSONObject toJson() {
+    JSONObject scan = new JSONObject();
+    scan.put("js", new JSONArray(jsFiles));
+    scan.put("css", new JSONArray(cssFiles));
+    scan.put("assets", new JSONArray(assetFiles));
+    scan.put("variants", new JSONArray(variantFiles));
+
+    JSONArray jsonFiles = new JSONArray();
+
+    for (Map.Entry<String, Long> size : fileSizes.entrySet()) {
+      jsonFiles.put(new JSONArray().put(size.getKey()).put(size.getValue())
+          .put(fileChecksums.get(size.getKey()))
+          .put(fileCompressedSizes.get(size.getKey())));
+    }
+    scan.put("files", jsonFiles);
+
+    JSONObject requires = new JSONObject();
+
+    for (Map.Entry<String, List<String>> file : fileDependencies.entrySet()) {
+      requires.put(file.getKey(), new JSONArray(file.getValue()));
+    }
+    scan.put("requires", requires);
+    return scan;
+  }
+
+  /** Reads the content of a file in this dependency.
+   *
+   * @param file Name of the file to read. Cannot be null.
+   * @return The file content, never null.
+   * @throws IOException if the file does not exist or cannot be read.
+   */
+  public byte[] readFile(final String file) throws IOException {
+    Validate.notNull(file, "The file cannot be null.");
+
+    JarFile jarFile = getJarFile();
+
+    try {
+      return readFile(jarFile, file);
+    } finally {
+      jarFile.close();
+    }
+  }
+
+  /** Reads the content of a file from the open jar file of this dependency.
+   *
+   * @param jarFile Jar file of this dependency. It's not closed. Cannot be
+   *    null.
+   * @param file Name of the file to read. Cannot be null.
+   * @return The file content, never null.
+   * @throws IOException if the file does not exist or cannot be read.
+   */
+  byte[] readFile(final JarFile jarFile, final String file)
+      throws IOException {
+    JarEntry entry = jarFile.getJarEntry(file);
+
+    if (entry == null) {
+      throw new IOException("File not found in " + getId() + ": " + file);
+    }
+
+    InputStream in = jarFile.getInputStream(entry);
+
+    try {
+      return IOUtil.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
   /** Returns the dependency jar file.
    *
    * @return A valid JAR file, never null.
@@ -93,35 +351,163 @@ public class DependencyInfo {
     return new JarFile(dependency.getSystemPath());
   }
 
+  /** Returns the central directory of the dependency jar file.
+   *
+   * @return A cursor before the first entry, never null.
+   * @throws IOException if the file cannot be read.
+   */
+  ZipDirectory getZipDirectory() throws IOException {
+    return ZipDirectory.read(new File(dependency.getSystemPath()));
+  }
+
   /** Reads the dependency file and extracts containing files.
+   *
+   * @param variantPolicy Policy to select the JavaScript and CSS files.
+   *    Cannot be null.
    */
-  private void readFiles() {
-    JarFile jarFile = null;
+  private void readFiles(final VariantPolicy variantPolicy) {
+    List<String> cssVariants = new LinkedList<String>();
+    List<String> jsVariants = new LinkedList<String>();
+    Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+    Map<String, Long> checksums = new LinkedHashMap<String, Long>();
+    Map<String, Long> compressedSizes = new LinkedHashMap<String, Long>();
+    List<String> descriptors = new LinkedList<String>();
 
     try {
-      jarFile = getJarFile();
+      ZipDirectory entries = getZipDirectory();
 
-      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.next()) {
+        String file;
 
-      while (entries.hasMoreElements()) {
-        JarEntry jarEntry = entries.nextElement();
-
-        if (jarEntry.getName().toLowerCase().endsWith(".css")) {
-          cssFiles.add(jarEntry.getName());
-        } else if (jarEntry.getName().toLowerCase().endsWith(".js")) {
-          jsFiles.add(jarEntry.getName());
+        if (entries.isDirectory()) {
+          continue;
+        } else if (entries.nameEndsWith(".css", true)) {
+          file = entries.getName();
+          cssVariants.add(file);
+        } else if (entries.nameEndsWith(".js", true)) {
+          file = entries.getName();
+          jsVariants.add(file);
+        } else if (entries.nameEndsWith(FILE_DEPENDENCIES_DESCRIPTOR, false)) {
+          if (isFileDependenciesDescriptor(entries.getName())) {
+            descriptors.add(entries.getName());
+          }
+          continue;
+        } else if (entries.nameStartsWith(WEBJARS_DIR)) {
+          file = entries.getName();
+          assetFiles.add(file);
+        } else {
+          continue;
         }
+        sizes.put(file, entries.getSize());
+        checksums.put(file, entries.getCrc());
+        compressedSizes.put(file, entries.getCompressedSize());
       }
-    } catch (IOException cause) {
-      throw new RuntimeException("Cannot extract files from dependency", cause);
-    } finally {
-      if (jarFile != null) {
+
+      if (!descriptors.isEmpty()) {
+        JarFile jarFile = getJarFile();
+
         try {
+          for (String descriptor : descriptors) {
+            readFileDependencies(jarFile, descriptor);
+          }
+        } finally {
           jarFile.close();
-        } catch (IOException cause) {
-          throw new RuntimeException(cause);
         }
       }
+
+      cssFiles.addAll(variantPolicy.select(cssVariants));
+      jsFiles.addAll(variantPolicy.select(jsVariants));
+
+      // Sizes are kept only for the selected files, in jar order.
+      Set<String> rejected = new HashSet<String>(cssVariants);
+      rejected.addAll(jsVariants);
+
+      for (String file : cssFiles) {
+        rejected.remove(file);
+      }
+      for (String file : jsFiles) {
+        rejected.remove(file);
+      }
+
+      for (Map.Entry<String, Long> size : sizes.entrySet()) {
+        if (rejected.contains(size.getKey())) {
+          if (!variantPolicy.isExcluded(size.getKey())) {
+            variantFiles.add(size.getKey());
+          }
+        } else {
+          fileSizes.put(size.getKey(), size.getValue());
+          fileChecksums.put(size.getKey(), checksums.get(size.getKey()));
+          fileCompressedSizes.put(size.getKey(),
+              compressedSizes.get(size.getKey()));
+        }
+      }
+    } catch (IOException cause) {
+      throw new RuntimeException("Cannot extract files from dependency", cause);
+    }
+  }
+
+  /** Determines whether a jar entry is a file dependencies descriptor.
+   *
+   * @param entryName Name of the entry. Cannot be null.
+   * @return true if it's a descriptor, false otherwise.
+   */
+  private static boolean isFileDependenciesDescriptor(final String entryName) {
+    return entryName.equals(FILE_DEPENDENCIES_DESCRIPTOR)
+        || entryName.endsWith("/" + FILE_DEPENDENCIES_DESCRIPTOR);
+  }
+
+  /** Reads the dependencies between files from a descriptor.
+   *
+   * @param jarFile Jar file of this dependency. Cannot be null.
+   * @param descriptor Name of the descriptor entry. Cannot be null.
+   * @throws IOException if the descriptor cannot be read.
+   */
+  private void readFileDependencies(final JarFile jarFile,
+      final String descriptor) throws IOException {
+    JSONObject json = new JSONObject(new String(readFile(jarFile,
+        descriptor), CHARSET));
+
+    Set<String> keys = new TreeSet<String>();
+
+    for (Object key : json.keySet()) {
+      keys.add((String) key);
+    }
+    for (String key : keys) {
+      JSONArray jsonRequired = json.getJSONArray(key);
+      List<String> required = new ArrayList<String>();
+
+      for (int i = 0; i < jsonRequired.length(); i++) {
+        required.add(resolvePath(descriptor,
+            jsonRequired.getString(i)));
+      }
+      fileDependencies.put(resolvePath(descriptor, key),
+          required);
+    }
+  }
+
+  /** Resolves a path declared in a file dependencies descriptor.
+   *
+   * @param descriptor Path of the descriptor. Cannot be null.
+   * @param path Path relative to the descriptor directory, or a classpath
+   *    path if it starts with a slash. Cannot be null.
+   * @return The classpath path, never null.
+   */
+  private static String resolvePath(final String descriptor,
+      final String path) {
+    if (path.startsWith("/")) {
+      return path.substring(1);
+    }
+    return CssRewriter.resolve(descriptor, path);
+  }
+
+  /** Adds the strings of a JSON array to a list.
+   *
+   * @param list List to add the strings to. Cannot be null.
+   * @param array Array of strings. Cannot be null.
+   */
+  private static void addAll(final List<String> list, final JSONArray array) {
+    for (int i = 0; i < array.length(); i++) {
+      list.add(array.getString(i));
     }
   }
 
@@ -0,0 +1,156 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.codehaus.plexus.util.IOUtil;
+import org.json.JSONObject;
+
+import com.github.seykron.webjars.maven.BundleWriter.FileType;
+
+/** Writes the content hash of every bundle in a dependency graph.
+ * <p>
+ * Bundles are built exactly as the runtime builds them, and the hash is the
+ * MD5 of the bundle content. The minified copies written by the
+ * <code>build-bundles</code> goal are served instead of the regular bundles
+ * when the runtime is configured so, and they have their own hash, keyed by
+ * the minified bundle extension. The manifest has the following format,
+ * bundles with no files are not included:
+ *   <pre>
+ *   {
+ *     'org.webjars:jquery-ui:jar:1.8.0': {
+ *       js: '0cc175b9c0f1b6a831c399e269772661',
+ *       'min.js': '4a8a08f09d37b73795649038408b5f33',
+ *       css: '92eb5ffee6ae2fec3ad71c777531578f',
+ *       'min.css': '8277e0910d750195b448797616e091ad'
+ *     }
+ *   }
+ *   </pre>
+ * </p>
+ */
+public class FingerprintManifestWriter {
+
+  /** Prefix of the key of minified bundle hashes, before the extension. */
+  static final String MINIFIED_PREFIX = "min.";
+
+  /** Charset of the manifest. */
+  private static final String CHARSET = "UTF-8";
+
+  /** Radix to print the content hash. */
+  private static final int HEX_RADIX = 16;
+
+  /** Length of the printed content hash. */
+  private static final int HASH_LENGTH = 32;
+
+  /** Dependency graph to write the bundles of, it's never null. */
+  private final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+
+  /** Constructs a manifest writer and sets the graph to write.
+   *
+   * @param theDependencyGraph Dependency graph to write. Cannot be null.
+   */
+  public FingerprintManifestWriter(
+      final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph) {
+    Validate.notNull(theDependencyGraph,
+        "The dependency graph cannot be null.");
+    dependencyGraph = theDependencyGraph;
+  }
+
+  /** Writes the manifest using the specified writer. It closes the writer,
+   * even if the manifest cannot be written.
+   *
+   * @param writer Writer to write the manifest. Cannot be null.
+   */
+  public void write(final Writer writer) {
+    Validate.notNull(writer, "The writer cannot be null.");
+
+    try {
+      writeManifest(writer);
+      writer.close();
+    } catch (Exception cause) {
+      throw new RuntimeException("Cannot write fingerprint manifest.", cause);
+    } finally {
+      IOUtil.close(writer);
+    }
+  }
+
+  /** Writes the manifest to the specified stream as UTF-8. It closes the
+   * stream, even if the manifest cannot be written.
+   *
+   * @param out Stream to write the manifest. Cannot be null.
+   */
+  public void write(final OutputStream out) {
+    Validate.notNull(out, "The output stream cannot be null.");
+
+    try {
+      write(new OutputStreamWriter(out, CHARSET));
+    } catch (IOException cause) {
+      throw new RuntimeException("Cannot write fingerprint manifest.", cause);
+    } finally {
+      IOUtil.close(out);
+    }
+  }
+
+  /** Writes the fingerprint of the bundles according to the format specified
+   * in the class documentation.
+   *
+   * @param writer Writer to write the manifest. Cannot be null.
+   * @throws IOException if the manifest cannot be written.
+   */
+  private void writeManifest(final Writer writer) throws IOException {
+    BundleWriter bundleWriter = new BundleWriter(dependencyGraph);
+    JSONObject manifest = new JSONObject();
+
+    try {
+      for (DependencyInfo dependency : dependencyGraph.keySet()) {
+        JSONObject fingerprints = new JSONObject();
+
+        for (FileType type : FileType.values()) {
+          byte[] content = bundleWriter.build(dependency, type);
+
+          if (content.length > 0) {
+            fingerprints.put(type.getExtension(), fingerprint(content));
+            fingerprints.put(MINIFIED_PREFIX + type.getExtension(),
+                fingerprint(type.minify(content)));
+          }
+        }
+        if (fingerprints.length() > 0) {
+          manifest.put(dependency.getId(), fingerprints);
+        }
+      }
+    } finally {
+      bundleWriter.close();
+    }
+    writer.write(manifest.toString());
+  }
+
+  /** Computes the fingerprint of a bundle.
+   *
+   * @param content Bundle content. Cannot be null.
+   * @return The MD5 of the content as 32 hexadecimal digits, never null.
+   */
+  static String fingerprint(final byte[] content) {
+    Validate.notNull(content, "The content cannot be null.");
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      String hash = new BigInteger(1, digest.digest(content))
+          .toString(HEX_RADIX);
+
+      while (hash.length() < HASH_LENGTH) {
+        hash = "0" + hash;
+      }
+      return hash;
+    } catch (NoSuchAlgorithmException cause) {
+      throw new RuntimeException("Cannot compute fingerprint.", cause);
+    }
+  }
+}
@@ -1,15 +1,12 @@
 package com.github.seykron.webjars.maven;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
+import java.util.TreeMap;
 
 /** Writes a dependency graph using a JSON structure.
  * <p>
@@ -20,12 +17,28 @@ import org.json.JSONObject;
  *      name: 'jquery-ui',
  *      js: ['jquery.ui.js'],
  *      css: ['jquery.ui.css'],
+ *      assets: ['images/ui-icons.png'],
+ *      sizes: {'jquery.ui.js': 1024, 'jquery.ui.css': 512},
+ *      requires: {'jquery.ui.dialog.js': ['jquery.ui.js']},
  *      dependencies: ['org.webjars:jquery:jar:1.10.2']
  *    }
  *   </pre>
  * </p>
+ * <p>
+ * The index maps each JavaScript and CSS file to the dependency that
+ * contains it. Variants of those files that were not selected, i.e.
+ * <code>jquery.min.js</code>, are mapped to the same dependency.
+ * </p>
+ * <p>
+ * The graph is streamed to the writer through a {@link JsonStreamWriter}, so
+ * it's never held in memory as a JSON document. Keys are sorted, so the same
+ * graph is always written the same way.
+ * </p>
  */
-public class JsonDependencyGraphWriter extends DependencyGraphWriter {
+public class JsonDependencyGraphWriter extends TextDependencyGraphWriter {
+
+  /** Format version. */
+  static final int VERSION = 1;
 
   /** Constructs a dependency writer and sets the graph to write.
    *
@@ -36,8 +49,22 @@ public class JsonDependencyGraphWriter extends DependencyGraphWriter {
     super(theDependencyGraph);
   }
 
-  /** Converts the dependency to JSON according to the format specified in the
-   * class documentation.
+  /** {@inheritDoc}.
+   */
+  @Override
+  public String getFormatName() {
+    return DependenciesMojo.FORMAT_JSON;
+  }
+
+  /** {@inheritDoc}.
+   */
+  @Override
+  public int getFormatVersion() {
+    return VERSION;
+  }
+
+  /** Writes the dependency graph as JSON according to the format specified
+   * in the class documentation.
    * <p>
    * {@inheritDoc}
    * </p>
@@ -47,55 +74,91 @@ public class JsonDependencyGraphWriter extends DependencyGraphWriter {
       final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph,
       final Writer writer) throws IOException {
 
-    Iterator<Entry<DependencyInfo, List<DependencyInfo>>> it;
-    it = dependencyGraph.entrySet().iterator();
-
-    JSONObject index = new JSONObject();
-    JSONObject table = new JSONObject();
+    // Only references to the existing dependencies and file names are kept,
+    // sorted to write them in a deterministic order.
+    Map<String, Entry<DependencyInfo, List<DependencyInfo>>> table;
+    table = new TreeMap<String, Entry<DependencyInfo, List<DependencyInfo>>>();
+    Map<String, String> index = new TreeMap<String, String>();
 
-    while (it.hasNext()) {
-      Entry<DependencyInfo, List<DependencyInfo>> entry = it.next();
+    for (Entry<DependencyInfo, List<DependencyInfo>> entry
+        : dependencyGraph.entrySet()) {
       DependencyInfo dependency = entry.getKey();
 
-      List<String> files = new ArrayList<String>();
-      files.addAll(dependency.getJsFiles());
-      files.addAll(dependency.getCssFiles());
-
-      for (String file : files) {
+      for (String file : dependency.getJsFiles()) {
+        index.put(file, dependency.getId());
+      }
+      for (String file : dependency.getCssFiles()) {
         index.put(file, dependency.getId());
       }
+      table.put(dependency.getId(), entry);
+    }
+
+    // Unselected variants are served as the dependency they belong to.
+    for (DependencyInfo dependency : dependencyGraph.keySet()) {
+      for (String file : dependency.getVariantFiles()) {
+        if (!index.containsKey(file)) {
+          index.put(file, dependency.getId());
+        }
+      }
+    }
 
-      table.put(dependency.getId(), toJson(dependency, entry.getValue()));
+    JsonStreamWriter json = new JsonStreamWriter(new BufferedWriter(writer));
+    json.beginObject();
+    json.name("index").beginObject();
+
+    for (Entry<String, String> file : index.entrySet()) {
+      json.name(file.getKey()).value(file.getValue());
     }
-    JSONObject jsonDependencyGraph = new JSONObject();
-    jsonDependencyGraph.put("index", index);
-    jsonDependencyGraph.put("table", table);
+    json.endObject();
+    json.name("table").beginObject();
 
-    writer.write(jsonDependencyGraph.toString());
+    for (Entry<String, Entry<DependencyInfo, List<DependencyInfo>>> entry
+        : table.entrySet()) {
+      json.name(entry.getKey());
+      write(json, entry.getValue().getKey(), entry.getValue().getValue());
+    }
+    json.endObject();
+    json.endObject();
+    json.flush();
   }
 
-  /** Converts the specified dependency to JSON.
+  /** Writes the specified dependency as JSON, with sorted keys.
    *
-   * @param parent Dependency to convert. Cannot be null.
+   * @param json Writer to write the dependency to. Cannot be null.
+   * @param parent Dependency to write. Cannot be null.
    * @param dependencies List of immediate dependencies. Cannot be null.
-   * @return a valid JSON, never null or empty.
+   * @throws IOException if the dependency cannot be written.
    */
-  private JSONObject toJson(final DependencyInfo parent,
-      final List<DependencyInfo> dependencies) {
-    JSONObject jsonDependency = new JSONObject();
-
-    jsonDependency.put("id", parent.getId());
-    jsonDependency.put("name", parent.getName());
-    jsonDependency.put("version", parent.getVersion());
-    jsonDependency.put("css", new JSONArray(parent.getCssFiles()));
-    jsonDependency.put("js", new JSONArray(parent.getJsFiles()));
-
-    JSONArray jsonDependencies = new JSONArray();
+  private void write(final JsonStreamWriter json, final DependencyInfo parent,
+      final List<DependencyInfo> dependencies) throws IOException {
+    json.beginObject();
+    json.name("assets").array(parent.getAssetFiles());
+    json.name("css").array(parent.getCssFiles());
+    json.name("dependencies").beginArray();
 
     for (DependencyInfo dependency : dependencies) {
-      jsonDependencies.put(dependency.getId());
+      json.value(dependency.getId());
+    }
+    json.endArray();
+    json.name("id").value(parent.getId());
+    json.name("js").array(parent.getJsFiles());
+    json.name("name").value(parent.getName());
+    json.name("requires").beginObject();
+
+    for (Entry<String, List<String>> file
+        : new TreeMap<String, List<String>>(parent.getFileDependencies())
+          .entrySet()) {
+      json.name(file.getKey()).array(file.getValue());
+    }
+    json.endObject();
+    json.name("sizes").beginObject();
+
+    for (Entry<String, Long> file
+        : new TreeMap<String, Long>(parent.getFileSizes()).entrySet()) {
+      json.name(file.getKey()).value(file.getValue());
     }
-    jsonDependency.put("dependencies", jsonDependencies);
-    return jsonDependency;
+    json.endObject();
+    json.name("version").value(parent.getVersion());
+    json.endObject();
   }
 }
@@ -0,0 +1,274 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/** Writes JSON tokens straight to a {@link Writer}, without building the
+ * document in memory.
+ * <p>
+ * Separators are written as needed, so callers only open and close objects
+ * and arrays, and write names and values. Names are written in the order
+ * they're given; callers that need deterministic output must write them
+ * sorted. The structure is not validated beyond the nesting of objects and
+ * arrays.
+ * </p>
+ */
+public final class JsonStreamWriter {
+
+  /** Initial nesting depth supported without growing the state. */
+  private static final int INITIAL_DEPTH = 8;
+
+  /** Hex digits to write unicode escapes. */
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /** First character that is not a control character. */
+  private static final char FIRST_PRINTABLE = 0x20;
+
+  /** Shift of the first hex digit of a control character escape. */
+  private static final int HIGH_NIBBLE_SHIFT = 4;
+
+  /** Mask of a hex digit. */
+  private static final int NIBBLE_MASK = 0xF;
+
+  /** Unicode line separator, it ends JavaScript strings. */
+  private static final char LINE_SEPARATOR = '\u2028';
+
+  /** Unicode paragraph separator, it ends JavaScript strings. */
+  private static final char PARAGRAPH_SEPARATOR = '\u2029';
+
+  /** Writer to write tokens to, it's never null. */
+  private final Writer writer;
+
+  /** Whether each open object or array has no elements yet, by depth. It's
+   * never null. */
+  private boolean[] empty = new boolean[INITIAL_DEPTH];
+
+  /** Number of open objects and arrays. */
+  private int depth;
+
+  /** Whether a name was written and its value is pending. */
+  private boolean afterName;
+
+  /** Creates a JSON writer.
+   *
+   * @param theWriter Writer to write tokens to. It should be buffered, since
+   *    tokens are written one at a time. Cannot be null.
+   */
+  public JsonStreamWriter(final Writer theWriter) {
+    Validate.notNull(theWriter, "The writer cannot be null.");
+    writer = theWriter;
+  }
+
+  /** Opens an object.
+   *
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter beginObject() throws IOException {
+    return open('{');
+  }
+
+  /** Closes the current object.
+   *
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter endObject() throws IOException {
+    return close('}');
+  }
+
+  /** Opens an array.
+   *
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter beginArray() throws IOException {
+    return open('[');
+  }
+
+  /** Closes the current array.
+   *
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter endArray() throws IOException {
+    return close(']');
+  }
+
+  /** Writes the name of the next member of the current object.
+   *
+   * @param name Name to write. Cannot be null.
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter name(final String name) throws IOException {
+    Validate.notNull(name, "The name cannot be null.");
+    Validate.isTrue(depth > 0 && !afterName, "A name is not expected.");
+
+    separate();
+    writeString(name);
+    writer.write(':');
+    afterName = true;
+    return this;
+  }
+
+  /** Writes a string value.
+   *
+   * @param value Value to write. If it's null, writes null.
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter value(final String value) throws IOException {
+    separate();
+
+    if (value == null) {
+      writer.write("null");
+    } else {
+      writeString(value);
+    }
+    return this;
+  }
+
+  /** Writes a numeric value.
+   *
+   * @param value Value to write.
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  public JsonStreamWriter value(final long value) throws IOException {
+    separate();
+    writer.write(Long.toString(value));
+    return this;
+  }
+
+  /** Writes an array of strings.
+   *
+   * @param values Values to write, in order. Cannot be null.
+   * @return This writer, never null.
+   * @throws IOException if the tokens cannot be written.
+   */
+  public JsonStreamWriter array(final Iterable<String> values)
+      throws IOException {
+    Validate.notNull(values, "The values cannot be null.");
+
+    beginArray();
+
+    for (String value : values) {
+      value(value);
+    }
+    return endArray();
+  }
+
+  /** Flushes the underlying writer. All objects and arrays must be closed.
+   *
+   * @throws IOException if the writer cannot be flushed.
+   */
+  public void flush() throws IOException {
+    Validate.isTrue(depth == 0, "There are objects or arrays not closed.");
+    writer.flush();
+  }
+
+  /** Opens an object or an array.
+   *
+   * @param token Opening token.
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  private JsonStreamWriter open(final char token) throws IOException {
+    separate();
+    writer.write(token);
+
+    if (depth == empty.length) {
+      empty = Arrays.copyOf(empty, depth * 2);
+    }
+    empty[depth] = true;
+    depth += 1;
+    return this;
+  }
+
+  /** Closes the current object or array.
+   *
+   * @param token Closing token.
+   * @return This writer, never null.
+   * @throws IOException if the token cannot be written.
+   */
+  private JsonStreamWriter close(final char token) throws IOException {
+    Validate.isTrue(depth > 0 && !afterName,
+        "There is no object or array to close.");
+    depth -= 1;
+    writer.write(token);
+    return this;
+  }
+
+  /** Writes the separator before a value or a name, if needed.
+   *
+   * @throws IOException if the separator cannot be written.
+   */
+  private void separate() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (depth > 0) {
+      if (empty[depth - 1]) {
+        empty[depth - 1] = false;
+      } else {
+        writer.write(',');
+      }
+    }
+  }
+
+  /** Writes a quoted and escaped string.
+   * <p>
+   * Besides the escapes required by JSON, line and paragraph separators are
+   * escaped since they end JavaScript strings, and <code>&lt;/</code> is
+   * written as <code>&lt;\/</code> so the output can be embedded in a
+   * script element. It's the same escaping of <code>org.json</code>.
+   * </p>
+   *
+   * @param value String to write. Cannot be null.
+   * @throws IOException if the string cannot be written.
+   */
+  private void writeString(final String value) throws IOException {
+    writer.write('"');
+
+    int start = 0;
+    int length = value.length();
+
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      String escape = null;
+
+      if (c == '"') {
+        escape = "\\\"";
+      } else if (c == '\\') {
+        escape = "\\\\";
+      } else if (c == '\n') {
+        escape = "\\n";
+      } else if (c == '\r') {
+        escape = "\\r";
+      } else if (c == '\t') {
+        escape = "\\t";
+      } else if (c == '/' && i > 0 && value.charAt(i - 1) == '<') {
+        escape = "\\/";
+      } else if (c < FIRST_PRINTABLE) {
+        escape = "\\u00" + HEX[(c >> HIGH_NIBBLE_SHIFT) & NIBBLE_MASK]
+            + HEX[c & NIBBLE_MASK];
+      } else if (c == LINE_SEPARATOR) {
+        escape = "\\u2028";
+      } else if (c == PARAGRAPH_SEPARATOR) {
+        escape = "\\u2029";
+      }
+      if (escape != null) {
+        writer.write(value, start, i - start);
+        writer.write(escape);
+        start = i + 1;
+      }
+    }
+    writer.write(value, start, length - start);
+    writer.write('"');
+  }
+}
@@ -0,0 +1,351 @@
+package com.github.seykron.webjars.maven;
+
+import org.apache.commons.lang.Validate;
+
+/** Removes comments and whitespace from JavaScript and CSS files.
+ * <p>
+ * It's a conservative minifier: it never renames identifiers nor rewrites
+ * expressions, so the result behaves exactly as the original file. Strings,
+ * regular expressions and template literals are kept as they are. Line
+ * breaks that may end a JavaScript statement are kept, so automatic
+ * semicolon insertion works as in the original file. Comments starting with
+ * <code>/*!</code> are kept, since they usually have license notices, along
+ * with the line break that follows them, if any.
+ * </p>
+ */
+public final class Minifier {
+
+  /** Characters after which a slash starts a regular expression instead of
+   * a division. */
+  private static final String REGEXP_PREFIXES = "(,=:[!&|?{};+-*%<>~^";
+
+  /** Keywords after which a slash starts a regular expression. */
+  private static final String[] REGEXP_KEYWORDS = {"return", "typeof",
+    "case", "do", "else", "in", "of", "new", "delete", "void", "throw"};
+
+  /** Characters after which a JavaScript line break can be removed, since
+   * the statement cannot end there. */
+  private static final String LINE_CONTINUATIONS = "{;,([";
+
+  /** Characters that don't need whitespace around them in CSS. */
+  private static final String CSS_SEPARATORS = "{};,>";
+
+  /** Utility class, it cannot be instantiated.
+   */
+  private Minifier() {
+  }
+
+  /** Minifies a JavaScript file.
+   *
+   * @param source JavaScript source code. Cannot be null.
+   * @return The minified code, never null.
+   */
+  public static String minifyJs(final String source) {
+    Validate.notNull(source, "The source cannot be null.");
+
+    StringBuilder out = new StringBuilder(source.length());
+    boolean space = false;
+    boolean newLine = false;
+    // End of the last token in the output, kept comments are not tokens.
+    int codeEnd = 0;
+    int i = 0;
+
+    while (i < source.length()) {
+      char c = source.charAt(i);
+      char next = charAt(source, i + 1);
+
+      if (c == '/' && next == '*') {
+        int end = commentEnd(source, i);
+
+        if (charAt(source, i + 2) == '!') {
+          appendWhitespace(out, space, newLine);
+          out.append(source, i, end);
+          space = false;
+          newLine = false;
+        } else if (source.substring(i, end).indexOf('\n') >= 0) {
+          newLine = true;
+        } else {
+          space = true;
+        }
+        i = end;
+        continue;
+      }
+      if (c == '/' && next == '/') {
+        while (i < source.length() && source.charAt(i) != '\n') {
+          i += 1;
+        }
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        if (c == '\n' || c == '\r') {
+          newLine = true;
+        } else {
+          space = true;
+        }
+        i += 1;
+        continue;
+      }
+
+      appendSeparator(out, c, space, newLine);
+      space = false;
+      newLine = false;
+
+      if (c == '"' || c == '\'' || c == '`') {
+        i = copyString(source, i, out);
+      } else if (c == '/' && isRegExpStart(out, codeEnd)) {
+        i = copyRegExp(source, i, out);
+      } else {
+        out.append(c);
+        i += 1;
+      }
+      codeEnd = out.length();
+    }
+    return out.toString();
+  }
+
+  /** Minifies a CSS file.
+   *
+   * @param source CSS source code. Cannot be null.
+   * @return The minified code, never null.
+   */
+  public static String minifyCss(final String source) {
+    Validate.notNull(source, "The source cannot be null.");
+
+    StringBuilder out = new StringBuilder(source.length());
+    boolean space = false;
+    int i = 0;
+
+    while (i < source.length()) {
+      char c = source.charAt(i);
+
+      if (c == '/' && charAt(source, i + 1) == '*') {
+        int end = commentEnd(source, i);
+
+        if (charAt(source, i + 2) == '!') {
+          out.append(source, i, end).append('\n');
+        } else {
+          space = true;
+        }
+        i = end;
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        space = true;
+        i += 1;
+        continue;
+      }
+      if (c == '}' && out.length() > 0
+          && out.charAt(out.length() - 1) == ';') {
+        out.setLength(out.length() - 1);
+      }
+      if (space && out.length() > 0 && CSS_SEPARATORS.indexOf(c) < 0
+          && CSS_SEPARATORS.indexOf(out.charAt(out.length() - 1)) < 0
+          && out.charAt(out.length() - 1) != '\n') {
+        out.append(' ');
+      }
+      space = false;
+
+      if (c == '"' || c == '\'') {
+        i = copyString(source, i, out);
+      } else {
+        out.append(c);
+        i += 1;
+      }
+    }
+    return out.toString();
+  }
+
+  /** Appends the whitespace required between the output and the next
+   * JavaScript token.
+   *
+   * @param out Minified output. Cannot be null.
+   * @param c First character of the next token.
+   * @param space Whether there was whitespace before the token.
+   * @param newLine Whether there was a line break before the token.
+   */
+  private static void appendSeparator(final StringBuilder out, final char c,
+      final boolean space, final boolean newLine) {
+    if (out.length() == 0) {
+      return;
+    }
+
+    char last = out.charAt(out.length() - 1);
+
+    if (newLine && last != '\n' && LINE_CONTINUATIONS.indexOf(last) < 0) {
+      out.append('\n');
+    } else if ((space || newLine) && needsSpace(last, c)) {
+      out.append(' ');
+    }
+  }
+
+  /** Appends pending whitespace before a preserved comment.
+   *
+   * @param out Minified output. Cannot be null.
+   * @param space Whether there was whitespace before the comment.
+   * @param newLine Whether there was a line break before the comment.
+   */
+  private static void appendWhitespace(final StringBuilder out,
+      final boolean space, final boolean newLine) {
+    if (out.length() == 0 || out.charAt(out.length() - 1) == '\n') {
+      return;
+    }
+    if (newLine) {
+      out.append('\n');
+    } else if (space) {
+      out.append(' ');
+    }
+  }
+
+  /** Determines whether two JavaScript tokens must be separated by a space.
+   *
+   * @param last Last character of the previous token.
+   * @param next First character of the next token.
+   * @return true to keep a space between the tokens, false otherwise.
+   */
+  private static boolean needsSpace(final char last, final char next) {
+    return (isIdentifierPart(last) && isIdentifierPart(next))
+        || (last == '+' && next == '+') || (last == '-' && next == '-')
+        || (last == '/' && (next == '/' || next == '*'
+            || isIdentifierPart(next)))
+        || (next == '/' && last == '*')
+        || (Character.isDigit(last) && next == '.');
+  }
+
+  /** Determines whether a slash after the last token of the output starts
+   * a regular expression.
+   *
+   * @param out Minified output. Cannot be null.
+   * @param codeEnd End of the last token in the output.
+   * @return true if the slash starts a regular expression, false if it's a
+   *    division.
+   */
+  private static boolean isRegExpStart(final StringBuilder out,
+      final int codeEnd) {
+    int end = codeEnd;
+
+    while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+      end -= 1;
+    }
+    if (end == 0) {
+      return true;
+    }
+
+    char last = out.charAt(end - 1);
+
+    if (REGEXP_PREFIXES.indexOf(last) >= 0) {
+      return true;
+    }
+
+    int start = end;
+
+    while (start > 0 && isIdentifierPart(out.charAt(start - 1))) {
+      start -= 1;
+    }
+
+    String word = out.substring(start, end);
+
+    for (String keyword : REGEXP_KEYWORDS) {
+      if (keyword.equals(word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Copies a string or template literal as it is.
+   *
+   * @param source Source code. Cannot be null.
+   * @param start Position of the opening quote.
+   * @param out Output to copy the literal to. Cannot be null.
+   * @return The position after the closing quote.
+   */
+  private static int copyString(final String source, final int start,
+      final StringBuilder out) {
+    char quote = source.charAt(start);
+    int i = start + 1;
+
+    while (i < source.length() && source.charAt(i) != quote) {
+      if (source.charAt(i) == '\\') {
+        i += 1;
+      }
+      i += 1;
+    }
+
+    int end = Math.min(i + 1, source.length());
+    out.append(source, start, end);
+    return end;
+  }
+
+  /** Copies a regular expression literal as it is. Flags are copied as
+   * regular characters.
+   *
+   * @param source Source code. Cannot be null.
+   * @param start Position of the opening slash.
+   * @param out Output to copy the literal to. Cannot be null.
+   * @return The position after the closing slash.
+   */
+  private static int copyRegExp(final String source, final int start,
+      final StringBuilder out) {
+    boolean characterClass = false;
+    int i = start + 1;
+
+    while (i < source.length() && source.charAt(i) != '\n') {
+      char c = source.charAt(i);
+
+      if (c == '\\') {
+        i += 1;
+      } else if (c == '[') {
+        characterClass = true;
+      } else if (c == ']') {
+        characterClass = false;
+      } else if (c == '/' && !characterClass) {
+        break;
+      }
+      i += 1;
+    }
+
+    int end = Math.min(i + 1, source.length());
+    out.append(source, start, end);
+    return end;
+  }
+
+  /** Returns the position after the end of a block comment.
+   *
+   * @param source Source code. Cannot be null.
+   * @param start Position of the comment start.
+   * @return The position after the comment, or the source length if the
+   *    comment is not closed.
+   */
+  private static int commentEnd(final String source, final int start) {
+    int end = source.indexOf("*/", start + 2);
+
+    if (end < 0) {
+      return source.length();
+    }
+    return end + 2;
+  }
+
+  /** Returns a character of the source.
+   *
+   * @param source Source code. Cannot be null.
+   * @param index Position of the character.
+   * @return The character, or zero if the position is out of bounds.
+   */
+  private static char charAt(final String source, final int index) {
+    if (index < source.length()) {
+      return source.charAt(index);
+    }
+    return 0;
+  }
+
+  /** Determines whether a character may be part of an identifier, a number
+   * or a keyword.
+   *
+   * @param c Character to check.
+   * @return true if it's an identifier character, false otherwise.
+   */
+  private static boolean isIdentifierPart(final char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '\\'
+        || c > Byte.MAX_VALUE;
+  }
+}
@@ -0,0 +1,179 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.lang.Validate;
+import org.apache.maven.model.Dependency;
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** Keeps the scan results of webjars on disk, so unchanged jar files are not
+ * read again on the next build.
+ * <p>
+ * Each result is stored in its own file, named after the hash of the
+ * artifact coordinates and the signature of the {@link VariantPolicy}. The
+ * file also has the key of the result: the coordinates, the size and last
+ * modified time of the jar file, and the policy signature. The key is
+ * checked on read, so stale results are never used.
+ * </p>
+ * <p>
+ * There is no pruning: the result of a changed jar file replaces the
+ * previous one, but results of artifacts or policies no longer used are kept
+ * until the directory is deleted. It's safe to delete the directory at any
+ * time.
+ * </p>
+ * <p>
+ * The cache is best effort: results that cannot be read are scanned again,
+ * and results that cannot be written are discarded. Files are written to a
+ * temporary file and renamed, so the directory may be shared by several
+ * builds.
+ * </p>
+ */
+public class ScanCache {
+
+  /** Version of the cached results, it changes whenever the format or the
+   * content of the scan results change. */
+  private static final int VERSION = 3;
+
+  /** Charset of the cache files. */
+  private static final String CHARSET = "UTF-8";
+
+  /** Radix to print the key hashes. */
+  private static final int HEX_RADIX = 16;
+
+  /** Extension of the cache files. */
+  private static final String EXTENSION = ".json";
+
+  /** Directory the results are stored in, it's never null. */
+  private final File directory;
+
+  /** Policy the results were selected with, it's never null. */
+  private final VariantPolicy variantPolicy;
+
+  /** Creates a scan cache.
+   *
+   * @param theDirectory Directory to store the results in. It's created if it
+   *    does not exist. Cannot be null.
+   * @param theVariantPolicy Policy the cached results are selected with.
+   *    Cannot be null.
+   */
+  public ScanCache(final File theDirectory,
+      final VariantPolicy theVariantPolicy) {
+    Validate.notNull(theDirectory, "The directory cannot be null.");
+    Validate.notNull(theVariantPolicy, "The variant policy cannot be null.");
+    directory = theDirectory;
+    variantPolicy = theVariantPolicy;
+  }
+
+  /** Returns the cached scan result of a dependency. It does not read the
+   * jar file, it only reads its size and last modified time.
+   *
+   * @param dependency Dependency to get the result for. Cannot be null.
+   * @return The cached result, or null if the dependency was not scanned
+   *    before or its jar file changed.
+   */
+  public DependencyInfo get(final Dependency dependency) {
+    Validate.notNull(dependency, "The dependency cannot be null.");
+
+    String key = getKey(dependency);
+    File file = getFile(dependency);
+
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      JSONObject entry = new JSONObject(FileUtils.fileRead(file, CHARSET));
+
+      if (!key.equals(entry.optString("key"))) {
+        return null;
+      }
+      return new DependencyInfo(dependency, entry.getJSONObject("scan"));
+    } catch (IOException cause) {
+      return null;
+    } catch (JSONException cause) {
+      return null;
+    }
+  }
+
+  /** Stores the scan result of a dependency.
+   *
+   * @param dependency Dependency that was scanned. Cannot be null.
+   * @param dependencyInfo Scan result of the dependency. Cannot be null.
+   */
+  public void put(final Dependency dependency,
+      final DependencyInfo dependencyInfo) {
+    Validate.notNull(dependency, "The dependency cannot be null.");
+    Validate.notNull(dependencyInfo, "The dependency info cannot be null.");
+
+    String key = getKey(dependency);
+    JSONObject entry = new JSONObject();
+    entry.put("key", key);
+    entry.put("scan", dependencyInfo.toJson());
+
+    File file = getFile(dependency);
+    File tempFile = null;
+
+    try {
+      if (!directory.exists() && !directory.mkdirs()) {
+        return;
+      }
+
+      tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+      FileUtils.fileWrite(tempFile, CHARSET, entry.toString());
+
+      if (!tempFile.renameTo(file)) {
+        file.delete();
+        tempFile.renameTo(file);
+      }
+    } catch (IOException cause) {
+      // The result is discarded, it's scanned again on the next build.
+      return;
+    } finally {
+      if (tempFile != null && tempFile.exists()) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /** Returns the cache key of a dependency.
+   *
+   * @param dependency Dependency to get the key for. Cannot be null.
+   * @return A valid key, never null or empty.
+   */
+  private String getKey(final Dependency dependency) {
+    File jarFile = new File(dependency.getSystemPath());
+
+    return VERSION + ";" + dependency.getArtifactId() + ";"
+        + jarFile.length() + ";" + jarFile.lastModified() + ";"
+        + variantPolicy.getSignature();
+  }
+
+  /** Returns the cache file of a dependency. It does not depend on the jar
+   * file, so the result of a changed jar file replaces the previous one.
+   *
+   * @param dependency Dependency to get the file for. Cannot be null.
+   * @return A valid file within the cache directory, never null.
+   */
+  private File getFile(final Dependency dependency) {
+    String name = dependency.getArtifactId() + ";"
+        + variantPolicy.getSignature();
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      String hash = new BigInteger(1, digest.digest(name.getBytes(CHARSET)))
+          .toString(HEX_RADIX);
+
+      return new File(directory, hash + EXTENSION);
+    } catch (NoSuchAlgorithmException cause) {
+      throw new IllegalStateException("MD5 is not supported.", cause);
+    } catch (UnsupportedEncodingException cause) {
+      throw new IllegalStateException(CHARSET + " is not supported.", cause);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.Validate;
+import org.codehaus.plexus.util.IOUtil;
+
+/** Writes a dependency graph to a textual format.
+ * <p>
+ * The graph can be written to character streams, or to byte streams as
+ * UTF-8.
+ * </p>
+ */
+public abstract class TextDependencyGraphWriter extends DependencyGraphWriter {
+
+  /** Charset of textual formats. */
+  private static final String CHARSET = "UTF-8";
+
+  /** Constructs a dependency writer and sets the graph to write.
+   *
+   * @param theDependencyGraph Dependency graph to write. Cannot be null.
+   */
+  public TextDependencyGraphWriter(
+      final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph) {
+    super(theDependencyGraph);
+  }
+
+  /** Writes the dependency graph using the specified writer.
+   *
+   * @param theDependencyGraph Dependency graph to write. Cannot be null.
+   * @param writer Writer to write dependency. Cannot be null.
+   * @throws IOException if the graph cannot be written.
+   */
+  protected abstract void write(
+      final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph,
+      final Writer writer) throws IOException;
+
+  /** Writes the textual format as UTF-8.
+   * <p>
+   * {@inheritDoc}
+   * </p>
+   */
+  @Override
+  protected void write(
+      final Map<DependencyInfo, List<DependencyInfo>> theDependencyGraph,
+      final OutputStream out) throws IOException {
+    Writer writer = new OutputStreamWriter(out, CHARSET);
+    write(theDependencyGraph, writer);
+    writer.flush();
+  }
+
+  /** Writes the dependency graph using the specified writer. It closes the
+   * writer, even if the graph cannot be written.
+   *
+   * @param writer Writer to write the dependency graph. Cannot be null.
+   */
+  public void write(final Writer writer) {
+    Validate.notNull(writer, "The writer cannot be null.");
+
+    try {
+      write(getDependencyGraph(), writer);
+      writer.close();
+    } catch (Exception cause) {
+      throw new RuntimeException("Cannot write dependency graph.", cause);
+    } finally {
+      IOUtil.close(writer);
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package com.github.seykron.webjars.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
+
+/** Selects the JavaScript and CSS files of a webjar that are bundled.
+ * <p>
+ * Webjars usually have several variants of the same file, i.e.
+ * <code>jquery.js</code> and <code>jquery.min.js</code>. Files named
+ * <code>.min.js</code> or <code>-min.js</code> (and the CSS equivalents) are
+ * the minified variants of the file without the suffix. Exactly one variant
+ * of each file is selected: the minified one if minified files are preferred,
+ * and the regular one otherwise. If a file has a single variant, it's always
+ * selected.
+ * </p>
+ * <p>
+ * Files within excluded directories are never selected. By default, tests,
+ * sources and locales are excluded. Test files named <code>.test.js</code>
+ * or <code>.spec.js</code> are also excluded. Only the directories within
+ * the webjar version directory are checked, so a webjar name never excludes
+ * its own files.
+ * </p>
+ * <p>
+ * This class is immutable.
+ * </p>
+ */
+public class VariantPolicy {
+
+  /** Directories excluded by default. */
+  public static final List<String> DEFAULT_EXCLUDED_DIRECTORIES =
+      Collections.unmodifiableList(Arrays.asList("test", "tests", "spec",
+          "src", "locale", "locales", "i18n"));
+
+  /** Directory of the files served by webjars within the jar file. */
+  private static final String WEBJARS_DIR = "META-INF/resources/webjars/";
+
+  /** Number of path segments of the webjar version directory, i.e.
+   * META-INF/resources/webjars/foo/1.0. */
+  private static final int VERSION_DIR_SEGMENTS = 5;
+
+  /** Pattern of minified files. It has the logical name without the suffix,
+   * and the extension. */
+  private static final Pattern MINIFIED_PATTERN = Pattern.compile(
+      "^(.+)[.-]min(\\.(?:js|css))$", Pattern.CASE_INSENSITIVE);
+
+  /** Group of the logical name in a minified file name. */
+  private static final int NAME_GROUP = 1;
+
+  /** Group of the extension in a minified file name. */
+  private static final int EXTENSION_GROUP = 2;
+
+  /** Pattern of test files. */
+  private static final Pattern TEST_FILE_PATTERN = Pattern.compile(
+      "^.+[.-](?:test|spec)\\.js$", Pattern.CASE_INSENSITIVE);
+
+  /** Whether minified variants are selected. */
+  private final boolean preferMinified;
+
+  /** Lower case names of the excluded directories, it's never null. */
+  private final List<String> excludedDirectories = new ArrayList<String>();
+
+  /** Creates the default policy, which selects regular variants and excludes
+   * the {@link #DEFAULT_EXCLUDED_DIRECTORIES}.
+   */
+  public VariantPolicy() {
+    this(false, DEFAULT_EXCLUDED_DIRECTORIES);
+  }
+
+  /** Creates a policy.
+   *
+   * @param thePreferMinified Whether to select minified variants.
+   * @param theExcludedDirectories Names of the directories whose files are
+   *    never selected. Cannot be null.
+   */
+  public VariantPolicy(final boolean thePreferMinified,
+      final List<String> theExcludedDirectories) {
+    Validate.notNull(theExcludedDirectories,
+        "The excluded directories cannot be null.");
+    preferMinified = thePreferMinified;
+
+    for (String directory : theExcludedDirectories) {
+      excludedDirectories.add(directory.toLowerCase());
+    }
+  }
+
+  /** Selects the files to bundle.
+   *
+   * @param files Files of the same type, in the order they're found in the
+   *    jar. Cannot be null.
+   * @return The selected files, in the order their first variant was found.
+   *    Never null.
+   */
+  public List<String> select(final List<String> files) {
+    Validate.notNull(files, "The files cannot be null.");
+
+    Map<String, String> selected = new LinkedHashMap<String, String>();
+
+    for (String file : files) {
+      if (isExcluded(file)) {
+        continue;
+      }
+
+      String logicalName = getLogicalName(file);
+
+      if (!selected.containsKey(logicalName)
+          || isMinified(file) == preferMinified) {
+        selected.put(logicalName, file);
+      }
+    }
+    return new ArrayList<String>(selected.values());
+  }
+
+  /** Returns a text that describes this policy. Policies with the same
+   * signature select the same files.
+   *
+   * @return A valid signature, never null or empty.
+   */
+  String getSignature() {
+    return "preferMinified=" + preferMinified + ";excludedDirectories="
+        + StringUtils.join(excludedDirectories, ',');
+  }
+
+  /** Determines whether a file is never selected.
+   *
+   * @param file File to check. Cannot be null.
+   * @return true if it's a test file or it's within an excluded directory,
+   *    false otherwise.
+   */
+  boolean isExcluded(final String file) {
+    if (TEST_FILE_PATTERN.matcher(file).matches()) {
+      return true;
+    }
+
+    String[] segments = StringUtils.split(file, '/');
+    int first = 0;
+
+    if (file.startsWith(WEBJARS_DIR)) {
+      first = VERSION_DIR_SEGMENTS;
+    }
+    for (int i = first; i < segments.length - 1; i++) {
+      if (excludedDirectories.contains(segments[i].toLowerCase())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Determines whether a file is a minified variant.
+   *
+   * @param file File to check. Cannot be null.
+   * @return true if it's minified, false otherwise.
+   */
+  static boolean isMinified(final String file) {
+    return MINIFIED_PATTERN.matcher(file).matches();
+  }
+
+  /** Returns the name shared by all variants of a file.
+   *
+   * @param file File to get the name for. Cannot be null.
+   * @return The file name without the minified suffix, never null.
+   */
+  static String getLogicalName(final String file) {
+    Matcher matcher = MINIFIED_PATTERN.matcher(file);
+
+    if (matcher.matches()) {
+      return matcher.group(NAME_GROUP) + matcher.group(EXTENSION_GROUP);
+    }
+    return file;
+  }
+}
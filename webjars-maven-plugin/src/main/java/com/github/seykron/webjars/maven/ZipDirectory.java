@@ -0,0 +1,378 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import org.apache.commons.lang.Validate;
+
+/** Reads the entries of a zip or jar file from its central directory.
+ * <p>
+ * Unlike {@link java.util.jar.JarFile}, it doesn't read the manifest nor
+ * prepares signature verification, and it never reads the local headers or
+ * the entries content. Only the end of the file and the central directory are
+ * mapped into memory.
+ * </p>
+ * <p>
+ * It's a cursor: {@link #next()} moves to the next entry, and the other
+ * methods read the current entry straight from the buffer. Entries are
+ * classified by name without allocating objects, so names are decoded only
+ * for the entries that are kept, through {@link #getName()}.
+ * </p>
+ * <p>
+ * ZIP64 archives are not supported, they're never used for webjars.
+ * </p>
+ */
+public final class ZipDirectory {
+
+  /** Signature of the end of central directory record. */
+  private static final int END_SIGNATURE = 0x06054b50;
+
+  /** Signature of a central directory file header. */
+  private static final int HEADER_SIGNATURE = 0x02014b50;
+
+  /** Size of the end of central directory record, without the comment. */
+  private static final int END_SIZE = 22;
+
+  /** Maximum length of the zip file comment. */
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+  /** Offset of the number of entries in the end record. */
+  private static final int END_ENTRIES = 10;
+
+  /** Offset of the central directory size in the end record. */
+  private static final int END_DIRECTORY_SIZE = 12;
+
+  /** Offset of the central directory position in the end record. */
+  private static final int END_DIRECTORY_OFFSET = 16;
+
+  /** Size of a central directory file header, without variable fields. */
+  private static final int HEADER_SIZE = 46;
+
+  /** Offset of the CRC-32 in a file header. */
+  private static final int HEADER_CRC = 16;
+
+  /** Offset of the compressed size in a file header. */
+  private static final int HEADER_COMPRESSED_SIZE = 20;
+
+  /** Offset of the uncompressed size in a file header. */
+  private static final int HEADER_SIZE_FIELD = 24;
+
+  /** Offset of the name length in a file header. */
+  private static final int HEADER_NAME_LENGTH = 28;
+
+  /** Offset of the extra field length in a file header. */
+  private static final int HEADER_EXTRA_LENGTH = 30;
+
+  /** Offset of the comment length in a file header. */
+  private static final int HEADER_COMMENT_LENGTH = 32;
+
+  /** Value of 16 bits fields that moved to the ZIP64 record. */
+  private static final int ZIP64_SHORT = 0xFFFF;
+
+  /** Value of 32 bits fields that moved to the ZIP64 record. */
+  private static final long ZIP64_INT = 0xFFFFFFFFL;
+
+  /** Mask to read 16 bits fields as unsigned. */
+  private static final int SHORT_MASK = 0xFFFF;
+
+  /** Mask to read 32 bits fields as unsigned. */
+  private static final long INT_MASK = 0xFFFFFFFFL;
+
+  /** Charset of the entry names, the same {@link java.util.zip.ZipFile}
+   * uses by default. */
+  private static final Charset CHARSET = Charset.forName("UTF-8");
+
+  /** Central directory, little-endian. It's never null. */
+  private final ByteBuffer directory;
+
+  /** Number of entries not visited yet. */
+  private int remaining;
+
+  /** Position of the current entry header, or -1 before the first entry. */
+  private int entry = -1;
+
+  /** Position of the next entry header. */
+  private int nextEntry;
+
+  /** Position of the current entry name. */
+  private int nameStart;
+
+  /** Length in bytes of the current entry name. */
+  private int nameLength;
+
+  /** Creates a cursor over a central directory.
+   *
+   * @param theDirectory Central directory, little-endian and starting at
+   *    position zero. Cannot be null.
+   * @param entryCount Number of entries in the directory.
+   */
+  private ZipDirectory(final ByteBuffer theDirectory, final int entryCount) {
+    directory = theDirectory;
+    remaining = entryCount;
+  }
+
+  /** Reads the central directory of a zip file. The file is closed before
+   * this method returns.
+   *
+   * @param file Zip file to read. Cannot be null.
+   * @return A cursor before the first entry, never null.
+   * @throws IOException if the file cannot be read or it's not a valid zip
+   *    file.
+   */
+  public static ZipDirectory read(final File file) throws IOException {
+    Validate.notNull(file, "The file cannot be null.");
+
+    RandomAccessFile input = new RandomAccessFile(file, "r");
+
+    try {
+      FileChannel channel = input.getChannel();
+      long length = channel.size();
+      long tailStart = Math.max(0, length - END_SIZE - MAX_COMMENT_LENGTH);
+      ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, tailStart,
+          length - tailStart);
+      tail.order(ByteOrder.LITTLE_ENDIAN);
+
+      int end = findEnd(tail, file.getName());
+      int count = getEntryCount(tail, end);
+      long offset = tail.getInt(end + END_DIRECTORY_OFFSET) & INT_MASK;
+      long size = tail.getInt(end + END_DIRECTORY_SIZE) & INT_MASK;
+
+      if (offset + size > length) {
+        throw new IOException("Invalid central directory: " + file.getName());
+      }
+
+      ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY,
+          offset, size);
+      directory.order(ByteOrder.LITTLE_ENDIAN);
+
+      return new ZipDirectory(directory, count);
+    } finally {
+      input.close();
+    }
+  }
+
+  /** Reads the central directory of a zip file held in memory.
+   *
+   * @param zip Content of the zip file, from position zero to the limit. It's
+   *    not modified. Cannot be null.
+   * @return A cursor before the first entry, never null.
+   * @throws IOException if it's not a valid zip file.
+   */
+  public static ZipDirectory read(final ByteBuffer zip) throws IOException {
+    Validate.notNull(zip, "The zip file cannot be null.");
+
+    ByteBuffer buffer = zip.duplicate();
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    int end = findEnd(buffer, "buffer");
+    int count = getEntryCount(buffer, end);
+    int offset = buffer.getInt(end + END_DIRECTORY_OFFSET);
+    int size = buffer.getInt(end + END_DIRECTORY_SIZE);
+
+    if (offset < 0 || size < 0 || offset + size > end) {
+      throw new IOException("Invalid central directory.");
+    }
+
+    buffer.position(offset);
+    buffer.limit(offset + size);
+
+    ByteBuffer directory = buffer.slice();
+    directory.order(ByteOrder.LITTLE_ENDIAN);
+
+    return new ZipDirectory(directory, count);
+  }
+
+  /** Moves to the next entry.
+   *
+   * @return true if there is a next entry, false if all entries were
+   *    visited.
+   * @throws IOException if the central directory is corrupt.
+   */
+  public boolean next() throws IOException {
+    if (remaining == 0) {
+      return false;
+    }
+    if (nextEntry + HEADER_SIZE > directory.limit()
+        || directory.getInt(nextEntry) != HEADER_SIGNATURE) {
+      throw new IOException("Invalid central directory header at "
+          + nextEntry);
+    }
+
+    entry = nextEntry;
+    nameStart = entry + HEADER_SIZE;
+    nameLength = getShort(HEADER_NAME_LENGTH);
+    nextEntry = nameStart + nameLength + getShort(HEADER_EXTRA_LENGTH)
+        + getShort(HEADER_COMMENT_LENGTH);
+    remaining -= 1;
+
+    if (nextEntry > directory.limit()) {
+      throw new IOException("Invalid central directory header at " + entry);
+    }
+    return true;
+  }
+
+  /** Returns the name of the current entry. It's the only method that
+   * allocates memory.
+   *
+   * @return A valid name, never null.
+   */
+  public String getName() {
+    checkEntry();
+
+    byte[] name = new byte[nameLength];
+
+    for (int i = 0; i < nameLength; i++) {
+      name[i] = directory.get(nameStart + i);
+    }
+    return new String(name, CHARSET);
+  }
+
+  /** Determines whether the current entry is a directory.
+   *
+   * @return true if the name ends with a slash, false otherwise.
+   */
+  public boolean isDirectory() {
+    checkEntry();
+    return nameLength > 0 && directory.get(nameStart + nameLength - 1) == '/';
+  }
+
+  /** Determines whether the name of the current entry starts with a prefix.
+   *
+   * @param prefix ASCII prefix to check. Cannot be null.
+   * @return true if the name starts with the prefix, false otherwise.
+   */
+  public boolean nameStartsWith(final String prefix) {
+    checkEntry();
+    return regionMatches(0, prefix, false);
+  }
+
+  /** Determines whether the name of the current entry ends with a suffix.
+   *
+   * @param suffix ASCII suffix to check. Cannot be null.
+   * @param ignoreCase Whether to ignore case differences. The suffix must be
+   *    lower case to ignore case.
+   * @return true if the name ends with the suffix, false otherwise.
+   */
+  public boolean nameEndsWith(final String suffix, final boolean ignoreCase) {
+    checkEntry();
+    return regionMatches(nameLength - suffix.length(), suffix, ignoreCase);
+  }
+
+  /** Returns the uncompressed size of the current entry.
+   * @return The size in bytes.
+   */
+  public long getSize() {
+    checkEntry();
+    return getInt(HEADER_SIZE_FIELD);
+  }
+
+  /** Returns the compressed size of the current entry.
+   * @return The size in bytes.
+   */
+  public long getCompressedSize() {
+    checkEntry();
+    return getInt(HEADER_COMPRESSED_SIZE);
+  }
+
+  /** Returns the CRC-32 checksum of the current entry content.
+   * @return The checksum, as an unsigned 32 bits value.
+   */
+  public long getCrc() {
+    checkEntry();
+    return getInt(HEADER_CRC);
+  }
+
+  /** Compares a region of the current entry name with an ASCII string.
+   *
+   * @param offset Offset within the name. It may be out of bounds.
+   * @param value String to compare to. Cannot be null.
+   * @param ignoreCase Whether to convert the name to lower case.
+   * @return true if the region has the same characters as the string.
+   */
+  private boolean regionMatches(final int offset, final String value,
+      final boolean ignoreCase) {
+    if (offset < 0 || offset + value.length() > nameLength) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      int c = directory.get(nameStart + offset + i);
+
+      if (ignoreCase && c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      if (c != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Reads an unsigned 16 bits field of the current entry header.
+   *
+   * @param field Offset of the field within the header.
+   * @return The field value.
+   */
+  private int getShort(final int field) {
+    return directory.getShort(entry + field) & SHORT_MASK;
+  }
+
+  /** Reads an unsigned 32 bits field of the current entry header.
+   *
+   * @param field Offset of the field within the header.
+   * @return The field value.
+   */
+  private long getInt(final int field) {
+    return directory.getInt(entry + field) & INT_MASK;
+  }
+
+  /** Validates that the cursor is positioned on an entry.
+   */
+  private void checkEntry() {
+    Validate.isTrue(entry >= 0, "The cursor is not positioned on an entry.");
+  }
+
+  /** Finds the end of central directory record.
+   *
+   * @param buffer Little-endian buffer with the end of the zip file, up to
+   *    its limit. Cannot be null.
+   * @param name Name of the zip file, for error messages. Cannot be null.
+   * @return The position of the end record within the buffer.
+   * @throws IOException if it's not a zip file.
+   */
+  private static int findEnd(final ByteBuffer buffer, final String name)
+      throws IOException {
+    int last = buffer.limit() - END_SIZE;
+    int first = Math.max(0, last - MAX_COMMENT_LENGTH);
+
+    for (int position = last; position >= first; position--) {
+      if (buffer.getInt(position) == END_SIGNATURE) {
+        return position;
+      }
+    }
+    throw new IOException("Not a zip file: " + name);
+  }
+
+  /** Reads the number of entries from the end record.
+   *
+   * @param buffer Buffer with the end record. Cannot be null.
+   * @param end Position of the end record.
+   * @return The number of entries.
+   * @throws IOException if it's a ZIP64 archive.
+   */
+  private static int getEntryCount(final ByteBuffer buffer, final int end)
+      throws IOException {
+    int count = buffer.getShort(end + END_ENTRIES) & SHORT_MASK;
+
+    if (count == ZIP64_SHORT
+        || (buffer.getInt(end + END_DIRECTORY_OFFSET) & INT_MASK)
+          == ZIP64_INT) {
+      throw new IOException("ZIP64 archives are not supported.");
+    }
+    return count;
+  }
+}
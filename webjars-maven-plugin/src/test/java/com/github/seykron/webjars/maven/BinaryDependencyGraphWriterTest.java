@@ -0,0 +1,138 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.model.Dependency;
+import org.junit.Test;
+
+/** Tests the {@link BinaryDependencyGraphWriter} class.
+ */
+public class BinaryDependencyGraphWriterTest {
+
+  @Test
+  public void write() throws Exception {
+    DependencyInfo jquery = createDependencyInfo(
+        "org.webjars:jquery:jar:2.0", "jquery.js", "jquery.min.js");
+    DependencyInfo ui = createDependencyInfo(
+        "org.webjars:jquery-ui:jar:1.0", "ui.js", "ui.css");
+    ui.getFileDependencies().put("ui.js", Arrays.asList("jquery.js"));
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(ui, Arrays.asList(jquery));
+    dependencyGraph.put(jquery, new ArrayList<DependencyInfo>());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new BinaryDependencyGraphWriter(dependencyGraph).write(out);
+
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(out.toByteArray()));
+    assertThat(in.readInt(), is(BinaryDependencyGraphWriter.MAGIC));
+    assertThat(in.readInt(), is(BinaryDependencyGraphWriter.VERSION));
+
+    String[] strings = new String[in.readInt()];
+
+    for (int i = 0; i < strings.length; i++) {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      strings[i] = new String(bytes, "UTF-8");
+    }
+    assertThat(Arrays.asList(strings), is(Arrays.asList(
+        "org.webjars:jquery-ui:jar:1.0", "jquery-ui", "1.0", "ui.js",
+        "ui.css", "jquery.js", "org.webjars:jquery:jar:2.0", "jquery",
+        "2.0", "jquery.min.js")));
+
+    // Dependencies sorted by id.
+    assertThat(in.readInt(), is(2));
+    assertThat(readDependency(in, strings), is(
+        "org.webjars:jquery-ui:jar:1.0 jquery-ui 1.0 [ui.js] [ui.css] [] [1] "
+        + "{ui.js=5, ui.css=6} {ui.js=[jquery.js]}"));
+    assertThat(readDependency(in, strings), is(
+        "org.webjars:jquery:jar:2.0 jquery 2.0 [jquery.js] [] [] [] "
+        + "{jquery.js=9} {}"));
+
+    // Index sorted by path.
+    assertThat(in.readInt(), is(4));
+    assertThat(strings[in.readInt()] + "=" + in.readInt(), is("jquery.js=1"));
+    assertThat(strings[in.readInt()] + "=" + in.readInt(),
+        is("jquery.min.js=1"));
+    assertThat(strings[in.readInt()] + "=" + in.readInt(), is("ui.css=0"));
+    assertThat(strings[in.readInt()] + "=" + in.readInt(), is("ui.js=0"));
+    assertThat(in.read(), is(-1));
+  }
+
+  private String readDependency(final DataInputStream in,
+      final String[] strings) throws IOException {
+    StringBuilder dependency = new StringBuilder()
+      .append(strings[in.readInt()]).append(" ")
+      .append(strings[in.readInt()]).append(" ")
+      .append(strings[in.readInt()]).append(" ");
+
+    for (int list = 0; list < 3; list++) {
+      List<String> files = new ArrayList<String>();
+      int count = in.readInt();
+
+      for (int i = 0; i < count; i++) {
+        files.add(strings[in.readInt()]);
+      }
+      dependency.append(files).append(" ");
+    }
+
+    List<Integer> dependencies = new ArrayList<Integer>();
+    int count = in.readInt();
+
+    for (int i = 0; i < count; i++) {
+      dependencies.add(in.readInt());
+    }
+    dependency.append(dependencies).append(" ");
+
+    Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+    count = in.readInt();
+
+    for (int i = 0; i < count; i++) {
+      sizes.put(strings[in.readInt()], in.readLong());
+    }
+    dependency.append(sizes).append(" ");
+
+    Map<String, List<String>> fileDependencies =
+        new LinkedHashMap<String, List<String>>();
+    count = in.readInt();
+
+    for (int i = 0; i < count; i++) {
+      String file = strings[in.readInt()];
+      List<String> requiredFiles = new ArrayList<String>();
+      int requiredCount = in.readInt();
+
+      for (int j = 0; j < requiredCount; j++) {
+        requiredFiles.add(strings[in.readInt()]);
+      }
+      fileDependencies.put(file, requiredFiles);
+    }
+    return dependency.append(fileDependencies).toString();
+  }
+
+  private DependencyInfo createDependencyInfo(final String id,
+      final String... files) {
+    final MockJarFile mockJarFile = new MockJarFile(files);
+    Dependency dependency = new Dependency();
+    dependency.setArtifactId(id);
+
+    return new DependencyInfo(dependency) {
+      @Override
+      ZipDirectory getZipDirectory() throws IOException {
+        return mockJarFile.getZipDirectory();
+      }
+    };
+  }
+}
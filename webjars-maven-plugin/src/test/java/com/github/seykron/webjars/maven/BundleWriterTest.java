@@ -0,0 +1,194 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.maven.model.Dependency;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link BundleWriter} class.
+ */
+public class BundleWriterTest {
+
+  private File workDir;
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = File.createTempFile("bundles", "");
+    workDir.delete();
+    workDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(workDir);
+  }
+
+  @Test
+  public void write() throws Exception {
+    DependencyInfo jquery = TestDependencies.create(workDir,
+        "org.webjars:jquery:jar:2.0", "jquery.js", "jquery");
+    DependencyInfo ui = TestDependencies.create(workDir,
+        "org.webjars:jquery-ui:jar:1.0", "ui.js", "ui", "ui.css", "css");
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(ui, Arrays.asList(jquery));
+    dependencyGraph.put(jquery, new ArrayList<DependencyInfo>());
+
+    File outputDirectory = new File(workDir, "out");
+    Map<String, byte[]> bundles = new BundleWriter(dependencyGraph)
+        .write(outputDirectory);
+
+    assertThat(bundles.keySet(), is((Object) new LinkedHashSet<String>(
+        Arrays.asList("jquery-ui/1.0/bundle.js", "jquery-ui/1.0/bundle.css",
+            "jquery/2.0/bundle.js"))));
+    assertThat(read(new File(outputDirectory, "jquery-ui/1.0/bundle.js")),
+        is("jquery\nui\n"));
+    assertThat(read(new File(outputDirectory, "jquery-ui/1.0/bundle.css")),
+        is("css\n"));
+    assertThat(read(new File(outputDirectory, "jquery/2.0/bundle.js")),
+        is("jquery\n"));
+    assertThat(new File(outputDirectory, "jquery/2.0/bundle.css").exists(),
+        is(false));
+
+    InputStream in = new GZIPInputStream(new FileInputStream(
+        new File(outputDirectory, "jquery-ui/1.0/bundle.js.gz")));
+
+    try {
+      assertThat(IOUtil.toString(in, "UTF-8"), is("jquery\nui\n"));
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void write_minify() throws Exception {
+    DependencyInfo jquery = TestDependencies.create(workDir,
+        "org.webjars:jquery:jar:2.0", "jquery.js",
+        "/* jQuery */\nvar  jquery = 1;\n", "jquery.css",
+        ".a {\n  color: red;\n}\n");
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(jquery, new ArrayList<DependencyInfo>());
+
+    File outputDirectory = new File(workDir, "out");
+    Map<String, byte[]> bundles = new BundleWriter(dependencyGraph, true)
+        .write(outputDirectory);
+
+    assertThat(bundles.keySet(), is((Object) new LinkedHashSet<String>(
+        Arrays.asList("jquery/2.0/bundle.js", "jquery/2.0/bundle.min.js",
+            "jquery/2.0/bundle.css", "jquery/2.0/bundle.min.css"))));
+    assertThat(read(new File(outputDirectory, "jquery/2.0/bundle.js")),
+        is("/* jQuery */\nvar  jquery = 1;\n\n"));
+    assertThat(read(new File(outputDirectory, "jquery/2.0/bundle.min.js")),
+        is("var jquery=1;"));
+    assertThat(read(new File(outputDirectory, "jquery/2.0/bundle.min.css")),
+        is(".a{color: red}"));
+    assertThat(new File(outputDirectory, "jquery/2.0/bundle.min.js.gz")
+        .exists(), is(true));
+    assertThat(read(new File(outputDirectory, BundleWriter.REPORT_FILE)),
+        is("jquery/2.0/bundle.js 31 -> 13 bytes (41%)\n"
+            + "jquery/2.0/bundle.css 22 -> 14 bytes (63%)\n"));
+  }
+
+  @Test
+  public void build_css() throws Exception {
+    String base = "META-INF/resources/webjars/";
+    DependencyInfo theme = TestDependencies.create(workDir,
+        "org.webjars:theme:jar:1.0",
+        base + "theme/1.0/base/theme.css",
+        "@import 'reset.css';\n.theme { background: url(img/bg.png); }",
+        base + "theme/1.0/base/reset.css", ".reset {}");
+    DependencyInfo app = TestDependencies.create(workDir,
+        "org.webjars:app:jar:2.0",
+        base + "app/2.0/css/app.css", ".app { background: url(app.png); }");
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(app, Arrays.asList(theme));
+    dependencyGraph.put(theme, new ArrayList<DependencyInfo>());
+
+    assertThat(BundleWriter.getBundleDirectory(app),
+        is(base + "app/2.0/css/"));
+    assertThat(new String(new BundleWriter(dependencyGraph).build(app,
+        BundleWriter.FileType.CSS), "UTF-8"), is(".reset {}\n"
+        + ".theme { background: url(../../../theme/1.0/base/img/bg.png); }\n"
+        + "\n"
+        + ".app { background: url(app.png); }\n"));
+  }
+
+  @Test
+  public void write_opensJarOnce() throws Exception {
+    DependencyInfo scanned = TestDependencies.create(workDir,
+        "org.webjars:jquery-ui:jar:1.0", "ui.js", "ui", "ui.css", "css");
+    Dependency dependency = new Dependency();
+    dependency.setArtifactId(scanned.getId());
+    dependency.setSystemPath(new File(workDir,
+        "org.webjars_jquery-ui_jar_1.0.jar").getAbsolutePath());
+
+    final List<JarFile> openedJars = new ArrayList<JarFile>();
+    DependencyInfo ui = new DependencyInfo(dependency) {
+      @Override
+      JarFile getJarFile() throws IOException {
+        JarFile jarFile = super.getJarFile();
+        openedJars.add(jarFile);
+        return jarFile;
+      }
+    };
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(ui, new ArrayList<DependencyInfo>());
+
+    new BundleWriter(dependencyGraph, true).write(new File(workDir, "out"));
+
+    assertThat(openedJars.size(), is(1));
+
+    try {
+      openedJars.get(0).entries();
+      fail("The jar file must be closed.");
+    } catch (IllegalStateException expected) {
+      // The jar file was closed by the writer.
+      assertThat(expected.getMessage(), is(notNullValue()));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void write_circular() throws Exception {
+    DependencyInfo a = TestDependencies.create(workDir,
+        "org.webjars:a:jar:1.0", "a.js", "a");
+    DependencyInfo b = TestDependencies.create(workDir,
+        "org.webjars:b:jar:1.0", "b.js", "b");
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(a, Arrays.asList(b));
+    dependencyGraph.put(b, Arrays.asList(a));
+
+    new BundleWriter(dependencyGraph).write(workDir);
+  }
+
+  private String read(final File file) throws IOException {
+    return FileUtils.fileRead(file, "UTF-8");
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.seykron.webjars.maven;
+
+import static org.easymock.EasyMock.*;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.junit.Test;
+
+
+/** Tests the {@link BundlesMojo} class.
+ */
+public class BundlesMojoTest {
+
+  @Test
+  public void execute() throws Exception {
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new HashMap<DependencyInfo, List<DependencyInfo>>();
+
+    final DependencyGraphBuilder graphBuilder =
+        createMock(DependencyGraphBuilder.class);
+    expect(graphBuilder.create()).andReturn(dependencyGraph);
+    replay(graphBuilder);
+
+    File outputDirectory = new File("target/bundles");
+
+    final BundleWriter writer = createMock(BundleWriter.class);
+    expect(writer.write(outputDirectory))
+      .andReturn(new HashMap<String, byte[]>());
+    replay(writer);
+
+    BundlesMojo mojo = new BundlesMojo() {
+      @Override
+      DependencyGraphBuilder createGraphBuilder() {
+        return graphBuilder;
+      }
+
+      @Override
+      BundleWriter createWriter(
+          final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph) {
+        return writer;
+      }
+    };
+
+    ReflectionUtils.setVariableValueInObject(mojo, "outputDirectory",
+        outputDirectory);
+    mojo.execute();
+
+    verify(graphBuilder, writer);
+  }
+}
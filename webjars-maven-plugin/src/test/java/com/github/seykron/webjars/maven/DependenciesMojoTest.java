@@ -1,13 +1,16 @@
 package com.github.seykron.webjars.maven;
 
 import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.ReflectionUtils;
 import org.junit.Test;
 
@@ -28,9 +31,14 @@ public class DependenciesMojoTest {
 
     final DependencyGraphWriter writer =
         createMock(DependencyGraphWriter.class);
-    writer.write(isA(FileWriter.class));
+    writer.write(isA(OutputStream.class));
     replay(writer);
 
+    final FingerprintManifestWriter manifestWriter =
+        createMock(FingerprintManifestWriter.class);
+    manifestWriter.write(isA(OutputStream.class));
+    replay(manifestWriter);
+
     DependenciesMojo mojo = new DependenciesMojo() {
       @Override
       DependencyGraphBuilder createGraphBuilder() {
@@ -42,17 +50,111 @@ public class DependenciesMojoTest {
           final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph) {
         return writer;
       }
+
+      @Override
+      FingerprintManifestWriter createManifestWriter(
+          final Map<DependencyInfo, List<DependencyInfo>> dependencyGraph) {
+        return manifestWriter;
+      }
     };
 
     File outputFile = File.createTempFile("foo", "bar");
+    File manifestFile = new File(outputFile.getPath() + ".fingerprints");
     ReflectionUtils.setVariableValueInObject(mojo, "outputFile", outputFile);
 
     try {
       mojo.execute();
 
-      verify(graphBuilder, writer);
+      verify(graphBuilder, writer, manifestWriter);
+      assertThat(manifestFile.exists(), is(true));
     } finally {
       outputFile.delete();
+      manifestFile.delete();
     }
   }
+
+  @Test
+  public void execute_incremental() throws Exception {
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new HashMap<DependencyInfo, List<DependencyInfo>>();
+
+    final DependencyGraphBuilder graphBuilder =
+        createMock(DependencyGraphBuilder.class);
+    expect(graphBuilder.create()).andReturn(dependencyGraph).times(3);
+    replay(graphBuilder);
+
+    final String[] inputs = new String[] {"org.webjars:jquery:jar:2.0\n"};
+
+    DependenciesMojo mojo = new DependenciesMojo() {
+      @Override
+      DependencyGraphBuilder createGraphBuilder() {
+        return graphBuilder;
+      }
+
+      @Override
+      String describeInputs() {
+        return inputs[0];
+      }
+    };
+
+    File workDir = File.createTempFile("dependencies", "");
+    workDir.delete();
+    workDir.mkdirs();
+
+    File outputFile = new File(workDir, "deps.js");
+    ReflectionUtils.setVariableValueInObject(mojo, "outputFile", outputFile);
+    ReflectionUtils.setVariableValueInObject(mojo, "stateDirectory",
+        new File(workDir, "state"));
+
+    try {
+      mojo.execute();
+      assertThat(outputFile.exists(), is(true));
+
+      long lastModified = outputFile.lastModified() - 60000;
+      outputFile.setLastModified(lastModified);
+
+      // Same inputs, nothing is built.
+      mojo.execute();
+
+      // New inputs, same graph: the output file is not written.
+      inputs[0] = "org.webjars:jquery:jar:2.1\n";
+      mojo.execute();
+
+      assertThat(outputFile.lastModified(), is(lastModified));
+
+      // Same inputs, changed output: the graph is built again.
+      String content = FileUtils.fileRead(outputFile);
+      FileUtils.fileWrite(outputFile.getPath(), "changed");
+      mojo.execute();
+
+      verify(graphBuilder);
+      assertThat(FileUtils.fileRead(outputFile), is(content));
+      assertThat(new File(workDir, "deps.js.fingerprints").exists(),
+          is(true));
+      // Temporary files are always removed.
+      assertThat(workDir.list().length, is(3));
+    } finally {
+      FileUtils.deleteDirectory(workDir);
+    }
+  }
+
+  @Test
+  public void createWriter() throws Exception {
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new HashMap<DependencyInfo, List<DependencyInfo>>();
+    DependenciesMojo mojo = new DependenciesMojo();
+
+    DependencyGraphWriter writer = mojo.createWriter(dependencyGraph);
+    assertThat(writer, is(JsonDependencyGraphWriter.class));
+    assertThat(writer.getFormatName(), is("json"));
+    assertThat(writer.getFormatVersion(),
+        is(JsonDependencyGraphWriter.VERSION));
+
+    ReflectionUtils.setVariableValueInObject(mojo, "format", "binary");
+    writer = mojo.createWriter(dependencyGraph);
+    assertThat(writer, is(BinaryDependencyGraphWriter.class));
+    assertThat(writer.getFormatName(), is("binary"));
+    assertThat(writer.getFormatVersion(),
+        is(BinaryDependencyGraphWriter.VERSION));
+  }
 }
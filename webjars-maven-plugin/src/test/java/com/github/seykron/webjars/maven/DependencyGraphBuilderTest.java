@@ -8,19 +8,23 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarFile;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.metadata.ResolutionGroup;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.resolver.ArtifactResolutionResult;
 import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.artifact.resolver.filter.ArtifactFilter;
 import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.easymock.Capture;
 import org.junit.Test;
@@ -43,7 +47,7 @@ public class DependencyGraphBuilderTest {
       expect(artifactToResolve.getId())
         .andReturn("org.webjars:jasmine-jquery:jar:1.4.2");
       expect(artifactToResolve.getArtifactId())
-        .andReturn("org.webjars:jasmine-jquery:jar:1.4.2").times(4);
+        .andReturn("org.webjars:jasmine-jquery:jar:1.4.2");
       expect(artifactToResolve.getFile()).andReturn(artifactFile);
       expect(artifactToResolve.getDependencyFilter()).andReturn(filter);
       replay(artifactToResolve);
@@ -55,6 +59,8 @@ public class DependencyGraphBuilderTest {
         .andReturn(new HashSet<Artifact>(Arrays.asList(artifactToResolve)));
       expect(project.getRemoteArtifactRepositories()).andReturn(remoteRepos);
       expect(project.getArtifact()).andReturn(parentArtifact);
+      expect(project.getArtifacts()).andReturn(new HashSet<Artifact>())
+        .anyTimes();
       replay(project);
 
       ArtifactMetadataSource metadataSource =
@@ -65,7 +71,7 @@ public class DependencyGraphBuilderTest {
       expect(resolvedDependency.getId())
         .andReturn("org.webjars:jasmine:jar:1.3.1");
       expect(resolvedDependency.getArtifactId())
-        .andReturn("org.webjars:jasmine:jar:1.3.1").times(4);
+        .andReturn("org.webjars:jasmine:jar:1.3.1").times(2);
       expect(resolvedDependency.getFile()).andReturn(artifactFile);
       replay(resolvedDependency);
 
@@ -91,18 +97,301 @@ public class DependencyGraphBuilderTest {
         }
       };
 
+      String missingFile = "META-INF/resources/webjars/missing.js";
+      Map<String, List<String>> fileDependencies =
+          new HashMap<String, List<String>>();
+      fileDependencies.put(missingFile, Arrays.asList(
+          "META-INF/resources/webjars/jquery.js"));
+      graphBuilder.setFileDependencies(fileDependencies);
+
+      Log log = createMock(Log.class);
+      log.warn(contains(missingFile));
+      replay(log);
+      graphBuilder.setLog(log);
+
       Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
       dependencyGraph = graphBuilder.create();
 
       assertThat(dependencyGraph.size(), is(1));
 
       verify(artifactResolver, project, artifactToResolve, resolvedDependency,
-          resolutionResult);
+          resolutionResult, log);
+    } finally {
+      artifactFile.delete();
+    }
+  }
+
+  @Test
+  public void create_parallel() throws Exception {
+    File artifactFile = File.createTempFile("foo", "bar");
+
+    try {
+      Artifact jquery = createArtifact("org.webjars:jquery:jar:2.0",
+          artifactFile);
+      replay(jquery);
+
+      ArtifactResolver artifactResolver = createMock(ArtifactResolver.class);
+      Set<Artifact> directArtifacts = new HashSet<Artifact>();
+
+      for (String name : Arrays.asList("c", "a", "b")) {
+        Artifact artifact = createArtifact("org.webjars:" + name + ":jar:1.0",
+            artifactFile);
+        expect(artifact.getGroupId()).andReturn("org.webjars");
+        expect(artifact.getDependencyFilter()).andReturn(null);
+        replay(artifact);
+        directArtifacts.add(artifact);
+
+        ArtifactResolutionResult resolutionResult =
+            createMock(ArtifactResolutionResult.class);
+        expect(resolutionResult.getArtifacts()).andReturn(
+            new HashSet<Artifact>(Arrays.asList(artifact, jquery)));
+        replay(resolutionResult);
+
+        expect(artifactResolver.resolveTransitively(
+            eq(new HashSet<Artifact>(Arrays.asList(artifact))),
+            (Artifact) anyObject(), (ArtifactRepository) anyObject(),
+            (List<?>) anyObject(), (ArtifactMetadataSource) anyObject(),
+            (ArtifactFilter) isNull())).andReturn(resolutionResult);
+      }
+      replay(artifactResolver);
+
+      MavenProject project = createMock(MavenProject.class);
+      expect(project.getDependencyArtifacts()).andReturn(directArtifacts);
+      expect(project.getRemoteArtifactRepositories())
+        .andReturn(new ArrayList<String>()).anyTimes();
+      expect(project.getArtifact()).andReturn(null).anyTimes();
+      expect(project.getArtifacts()).andReturn(new HashSet<Artifact>())
+        .anyTimes();
+      replay(project);
+
+      final Set<String> scanned = Collections.synchronizedSet(
+          new HashSet<String>());
+
+      graphBuilder = new DependencyGraphBuilder(artifactResolver,
+          createMock(ArtifactMetadataSource.class),
+          createMock(ArtifactRepository.class), project) {
+        @Override
+        DependencyInfo createDependencyInfo(final Dependency dependency) {
+          assertThat(scanned.add(dependency.getArtifactId()), is(true));
+          return createMockDependencyInfo(dependency.getArtifactId());
+        }
+      };
+      graphBuilder.setScanThreads(3);
+
+      Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+      dependencyGraph = graphBuilder.create();
+
+      List<String> ids = new ArrayList<String>();
+
+      for (Map.Entry<DependencyInfo, List<DependencyInfo>> entry
+          : dependencyGraph.entrySet()) {
+        ids.add(entry.getKey().getId());
+        assertThat(entry.getValue().get(0).getId(),
+            is("org.webjars:jquery:jar:2.0"));
+      }
+      assertThat(ids, is(Arrays.asList("org.webjars:a:jar:1.0",
+          "org.webjars:b:jar:1.0", "org.webjars:c:jar:1.0")));
+      assertThat(scanned.size(), is(4));
+
+      verify(artifactResolver, project);
     } finally {
       artifactFile.delete();
     }
   }
 
+  @Test
+  public void create_resolvedTree() throws Exception {
+    File artifactFile = File.createTempFile("foo", "bar");
+
+    try {
+      // a -> ui -> jquery, b -> jquery; maven kept a single path to jquery
+      // 2.0, and ui declares an optional dependency on c.
+      Artifact a = createArtifact("org.webjars:a:jar:1.0", artifactFile);
+      Artifact b = createArtifact("org.webjars:b:jar:1.0", artifactFile);
+      Artifact c = createArtifact("org.webjars:c:jar:1.0", artifactFile);
+      Artifact ui = createArtifact("org.webjars:ui:jar:1.0", artifactFile);
+      Artifact jquery = createArtifact("org.webjars:jquery:jar:2.0",
+          artifactFile);
+      Artifact optionalC = createMock(Artifact.class);
+      expect(optionalC.getDependencyConflictId()).andReturn("org.webjars:c:jar")
+        .anyTimes();
+      expect(optionalC.isOptional()).andReturn(true).anyTimes();
+      expect(optionalC.getScope()).andReturn("compile").anyTimes();
+      replay(a, b, c, ui, jquery, optionalC);
+
+      Set<Artifact> directArtifacts = new HashSet<Artifact>();
+
+      for (Artifact resolved : Arrays.asList(a, b, c)) {
+        Artifact direct = createMock(Artifact.class);
+        expect(direct.getGroupId()).andReturn("org.webjars");
+        expect(direct.getDependencyConflictId())
+          .andReturn(resolved.getDependencyConflictId());
+        expect(direct.getDependencyFilter()).andReturn(null);
+        replay(direct);
+        directArtifacts.add(direct);
+      }
+
+      MavenProject project = createMock(MavenProject.class);
+      expect(project.getDependencyArtifacts()).andReturn(directArtifacts);
+      expect(project.getArtifacts()).andReturn(
+          new HashSet<Artifact>(Arrays.asList(a, b, c, ui, jquery)))
+          .anyTimes();
+      expect(project.getRemoteArtifactRepositories())
+        .andReturn(new ArrayList<String>()).anyTimes();
+      replay(project);
+
+      ArtifactMetadataSource metadataSource =
+          createMock(ArtifactMetadataSource.class);
+      expectDependencies(metadataSource, a, ui);
+      expectDependencies(metadataSource, b, jquery);
+      expectDependencies(metadataSource, c);
+      expectDependencies(metadataSource, ui, jquery, optionalC);
+      expectDependencies(metadataSource, jquery);
+      replay(metadataSource);
+
+      ArtifactResolver artifactResolver = createMock(ArtifactResolver.class);
+      replay(artifactResolver);
+
+      graphBuilder = new DependencyGraphBuilder(artifactResolver,
+          metadataSource, createMock(ArtifactRepository.class), project) {
+        @Override
+        DependencyInfo createDependencyInfo(final Dependency dependency) {
+          return createMockDependencyInfo(dependency.getArtifactId());
+        }
+      };
+
+      Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+      dependencyGraph = graphBuilder.create();
+
+      Map<String, List<String>> ids = new LinkedHashMap<String,
+          List<String>>();
+
+      for (Map.Entry<DependencyInfo, List<DependencyInfo>> entry
+          : dependencyGraph.entrySet()) {
+        List<String> dependencies = new ArrayList<String>();
+
+        for (DependencyInfo dependency : entry.getValue()) {
+          dependencies.add(dependency.getId());
+        }
+        ids.put(entry.getKey().getId(), dependencies);
+      }
+      assertThat(new ArrayList<String>(ids.keySet()), is(Arrays.asList(
+          "org.webjars:a:jar:1.0", "org.webjars:b:jar:1.0",
+          "org.webjars:c:jar:1.0")));
+      // jquery is loaded before ui, which requires it.
+      assertThat(ids.get("org.webjars:a:jar:1.0"), is(Arrays.asList(
+          "org.webjars:jquery:jar:2.0", "org.webjars:ui:jar:1.0")));
+      assertThat(ids.get("org.webjars:b:jar:1.0"), is(Arrays.asList(
+          "org.webjars:jquery:jar:2.0")));
+      assertThat(ids.get("org.webjars:c:jar:1.0").isEmpty(), is(true));
+
+      verify(artifactResolver, metadataSource);
+    } finally {
+      artifactFile.delete();
+    }
+  }
+
+  @Test
+  public void create_rootAndTransitive() throws Exception {
+    File artifactFile = File.createTempFile("foo", "bar");
+
+    try {
+      // jquery and bootstrap are direct dependencies, and bootstrap also
+      // depends on jquery.
+      Artifact bootstrap = createArtifact("org.webjars:bootstrap:jar:3.0",
+          artifactFile);
+      Artifact jquery = createArtifact("org.webjars:jquery:jar:2.0",
+          artifactFile);
+      replay(bootstrap, jquery);
+
+      Set<Artifact> directArtifacts = new HashSet<Artifact>();
+
+      for (Artifact resolved : Arrays.asList(bootstrap, jquery)) {
+        Artifact direct = createMock(Artifact.class);
+        expect(direct.getGroupId()).andReturn("org.webjars");
+        expect(direct.getDependencyConflictId())
+          .andReturn(resolved.getDependencyConflictId());
+        expect(direct.getDependencyFilter()).andReturn(null);
+        replay(direct);
+        directArtifacts.add(direct);
+      }
+
+      MavenProject project = createMock(MavenProject.class);
+      expect(project.getDependencyArtifacts()).andReturn(directArtifacts);
+      expect(project.getArtifacts()).andReturn(
+          new HashSet<Artifact>(Arrays.asList(bootstrap, jquery)))
+          .anyTimes();
+      expect(project.getRemoteArtifactRepositories())
+        .andReturn(new ArrayList<String>()).anyTimes();
+      replay(project);
+
+      // The metadata of each artifact is retrieved once.
+      ArtifactMetadataSource metadataSource =
+          createMock(ArtifactMetadataSource.class);
+      expectDependencies(metadataSource, bootstrap, jquery);
+      expectDependencies(metadataSource, jquery);
+      replay(metadataSource);
+
+      ArtifactResolver artifactResolver = createMock(ArtifactResolver.class);
+      replay(artifactResolver);
+
+      graphBuilder = new DependencyGraphBuilder(artifactResolver,
+          metadataSource, createMock(ArtifactRepository.class), project) {
+        @Override
+        DependencyInfo createDependencyInfo(final Dependency dependency) {
+          return createMockDependencyInfo(dependency.getArtifactId());
+        }
+      };
+
+      Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+      dependencyGraph = graphBuilder.create();
+
+      Map<String, List<String>> ids = new LinkedHashMap<String,
+          List<String>>();
+
+      for (Map.Entry<DependencyInfo, List<DependencyInfo>> entry
+          : dependencyGraph.entrySet()) {
+        List<String> dependencies = new ArrayList<String>();
+
+        for (DependencyInfo dependency : entry.getValue()) {
+          dependencies.add(dependency.getId());
+        }
+        ids.put(entry.getKey().getId(), dependencies);
+      }
+      assertThat(new ArrayList<String>(ids.keySet()), is(Arrays.asList(
+          "org.webjars:bootstrap:jar:3.0", "org.webjars:jquery:jar:2.0")));
+      assertThat(ids.get("org.webjars:bootstrap:jar:3.0"), is(Arrays.asList(
+          "org.webjars:jquery:jar:2.0")));
+      assertThat(ids.get("org.webjars:jquery:jar:2.0").isEmpty(), is(true));
+
+      verify(artifactResolver, metadataSource);
+    } finally {
+      artifactFile.delete();
+    }
+  }
+
+  private void expectDependencies(final ArtifactMetadataSource metadataSource,
+      final Artifact artifact, final Artifact... dependencies)
+      throws Exception {
+    expect(metadataSource.retrieve(same(artifact),
+        (ArtifactRepository) anyObject(), (List<?>) anyObject()))
+      .andReturn(new ResolutionGroup(artifact,
+          new HashSet<Artifact>(Arrays.asList(dependencies)),
+          new ArrayList<Object>()));
+  }
+
+  private Artifact createArtifact(final String id, final File file) {
+    Artifact artifact = createMock(Artifact.class);
+    expect(artifact.getId()).andReturn(id).anyTimes();
+    expect(artifact.getArtifactId()).andReturn(id).anyTimes();
+    expect(artifact.getFile()).andReturn(file).anyTimes();
+    expect(artifact.getDependencyConflictId())
+      .andReturn(id.substring(0, id.lastIndexOf(':'))).anyTimes();
+    expect(artifact.isOptional()).andReturn(false).anyTimes();
+    expect(artifact.getScope()).andReturn(null).anyTimes();
+    return artifact;
+  }
+
   private DependencyInfo createMockDependencyInfo(final String id) {
     final MockJarFile mockJarFile = new MockJarFile(new String[] {});
     Dependency dependency = new Dependency();
@@ -110,8 +399,8 @@ public class DependencyGraphBuilderTest {
 
     DependencyInfo dependencyInfo = new DependencyInfo(dependency) {
       @Override
-      JarFile getJarFile() throws IOException {
-        return mockJarFile.getJarFile();
+      ZipDirectory getZipDirectory() throws IOException {
+        return mockJarFile.getZipDirectory();
       }
     };
     return dependencyInfo;
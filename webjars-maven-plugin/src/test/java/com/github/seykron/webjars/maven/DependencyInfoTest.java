@@ -1,13 +1,15 @@
 package com.github.seykron.webjars.maven;
 
-import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.jar.JarFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
 
 import org.apache.maven.model.Dependency;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.Test;
 
 
@@ -22,14 +24,16 @@ public class DependencyInfoTest {
     Dependency dependency = new Dependency();
     dependency.setArtifactId("org.webjars:jquery:jar:1.6.2");
 
-    final String[] entries = new String[] { "foo.js", "foo.css", "foo.txt" };
+    final String[] entries = new String[] { "foo.js", "foo.css", "foo.txt",
+        "META-INF/resources/webjars/foo/1.6.2/foo.png",
+        "META-INF/resources/webjars/foo/1.6.2/images/" };
 
     mockJarFile = new MockJarFile(entries);
 
     DependencyInfo dependencyInfo = new DependencyInfo(dependency) {
       @Override
-      JarFile getJarFile() throws IOException {
-        return mockJarFile.getJarFile();
+      ZipDirectory getZipDirectory() throws IOException {
+        return mockJarFile.getZipDirectory();
       }
     };
 
@@ -40,7 +44,76 @@ public class DependencyInfoTest {
     assertThat(dependencyInfo.getCssFiles().get(0), is("foo.css"));
     assertThat(dependencyInfo.getJsFiles().size(), is(1));
     assertThat(dependencyInfo.getJsFiles().get(0), is("foo.js"));
+    assertThat(dependencyInfo.getAssetFiles().size(), is(1));
+    assertThat(dependencyInfo.getAssetFiles().get(0),
+        is("META-INF/resources/webjars/foo/1.6.2/foo.png"));
+    assertThat(dependencyInfo.getFileSizes().size(), is(3));
+    assertThat(dependencyInfo.getFileSizes().get("foo.js"), is(6L));
+    assertThat(dependencyInfo.getFileSizes().get("foo.css"), is(7L));
 
-    verify(mockJarFile.getJarFile());
+    CRC32 crc = new CRC32();
+    crc.update("foo.js".getBytes("UTF-8"));
+    assertThat(dependencyInfo.getFileChecksums().get("foo.js"),
+        is(crc.getValue()));
+    assertThat(dependencyInfo.getFileChecksums().keySet(),
+        is(dependencyInfo.getFileSizes().keySet()));
+    assertThat(dependencyInfo.getFileCompressedSizes().keySet(),
+        is(dependencyInfo.getFileSizes().keySet()));
+    assertThat(dependencyInfo.getFileCompressedSizes().get("foo.js") > 0,
+        is(true));
+  }
+
+  @Test
+  public void newInstance_fileDependencies() throws IOException {
+    File workDir = File.createTempFile("dependencies", "");
+    workDir.delete();
+    workDir.mkdirs();
+
+    try {
+      String dir = "META-INF/resources/webjars/ui/1.0/";
+      DependencyInfo dependencyInfo = TestDependencies.create(workDir,
+          "org.webjars:ui:jar:1.0", dir + "ui/dialog.js", "dialog",
+          dir + "ui/widget.js", "widget", dir + "file-dependencies.json",
+          "{'ui/dialog.js': ['ui/widget.js', '../../jquery/2.0/jquery.js'],"
+          + "'ui/widget.js': ['/META-INF/resources/webjars/jquery/2.0/a.js']}");
+
+      assertThat(dependencyInfo.getFileDependencies().size(), is(2));
+      assertThat(dependencyInfo.getFileDependencies().get(dir + "ui/dialog.js"),
+          is(Arrays.asList(dir + "ui/widget.js",
+              "META-INF/resources/webjars/jquery/2.0/jquery.js")));
+      assertThat(dependencyInfo.getFileDependencies().get(dir + "ui/widget.js"),
+          is(Arrays.asList("META-INF/resources/webjars/jquery/2.0/a.js")));
+      assertThat(dependencyInfo.getAssetFiles().isEmpty(), is(true));
+    } finally {
+      FileUtils.deleteDirectory(workDir);
+    }
+  }
+
+  @Test
+  public void newInstance_variants() throws IOException {
+    Dependency dependency = new Dependency();
+    dependency.setArtifactId("org.webjars:jquery:jar:1.6.2");
+
+    final String[] entries = new String[] { "jquery.js", "jquery.min.js",
+        "jquery.min.css", "test/jquery.js" };
+
+    mockJarFile = new MockJarFile(entries);
+
+    DependencyInfo dependencyInfo = new DependencyInfo(dependency,
+        new VariantPolicy(true, VariantPolicy.DEFAULT_EXCLUDED_DIRECTORIES)) {
+      @Override
+      ZipDirectory getZipDirectory() throws IOException {
+        return mockJarFile.getZipDirectory();
+      }
+    };
+
+    assertThat(dependencyInfo.getJsFiles().size(), is(1));
+    assertThat(dependencyInfo.getJsFiles().get(0), is("jquery.min.js"));
+    assertThat(dependencyInfo.getCssFiles().size(), is(1));
+    assertThat(dependencyInfo.getCssFiles().get(0), is("jquery.min.css"));
+    assertThat(dependencyInfo.getFileSizes().keySet().contains("jquery.js"),
+        is(false));
+    assertThat(dependencyInfo.getVariantFiles(),
+        is(Arrays.asList("jquery.js")));
   }
 }
@@ -0,0 +1,107 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link FingerprintManifestWriter} class.
+ */
+public class FingerprintManifestWriterTest {
+
+  private File workDir;
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = File.createTempFile("fingerprints", "");
+    workDir.delete();
+    workDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(workDir);
+  }
+
+  @Test
+  public void write() throws Exception {
+    DependencyInfo jquery = TestDependencies.create(workDir,
+        "org.webjars:jquery:jar:2.0", "jquery.js", "jquery");
+    DependencyInfo ui = TestDependencies.create(workDir,
+        "org.webjars:jquery-ui:jar:1.0", "ui.js", "ui", "ui.css", "css");
+
+    Map<DependencyInfo, List<DependencyInfo>> dependencyGraph;
+    dependencyGraph = new LinkedHashMap<DependencyInfo, List<DependencyInfo>>();
+    dependencyGraph.put(ui, Arrays.asList(jquery));
+    dependencyGraph.put(jquery, new ArrayList<DependencyInfo>());
+
+    StringWriter writer = new StringWriter();
+    new FingerprintManifestWriter(dependencyGraph).write(writer);
+
+    JSONObject manifest = new JSONObject(writer.toString());
+    JSONObject uiFingerprints = manifest.getJSONObject(
+        "org.webjars:jquery-ui:jar:1.0");
+    JSONObject jqueryFingerprints = manifest.getJSONObject(
+        "org.webjars:jquery:jar:2.0");
+
+    assertThat(uiFingerprints.getString("js"), is(
+        FingerprintManifestWriter.fingerprint("jquery\nui\n".getBytes())));
+    assertThat(uiFingerprints.getString("min.js"), is(
+        FingerprintManifestWriter.fingerprint(Minifier.minifyJs(
+            "jquery\nui\n").getBytes())));
+    assertThat(uiFingerprints.getString("css"), is(
+        FingerprintManifestWriter.fingerprint("css\n".getBytes())));
+    assertThat(jqueryFingerprints.getString("js"), is(
+        FingerprintManifestWriter.fingerprint("jquery\n".getBytes())));
+    assertThat(jqueryFingerprints.has("css"), is(false));
+  }
+
+  @Test
+  public void write_closesOnError() {
+    final boolean[] closed = new boolean[1];
+    Writer writer = new StringWriter() {
+      @Override
+      public void write(final String str) {
+        throw new IllegalStateException("Cannot write.");
+      }
+
+      @Override
+      public void close() {
+        closed[0] = true;
+      }
+    };
+
+    try {
+      new FingerprintManifestWriter(
+          new LinkedHashMap<DependencyInfo, List<DependencyInfo>>())
+          .write(writer);
+      fail("The manifest must not be written.");
+    } catch (RuntimeException expected) {
+      assertThat(closed[0], is(true));
+    }
+  }
+
+  @Test
+  public void fingerprint() {
+    assertThat(FingerprintManifestWriter.fingerprint("a".getBytes()),
+        is("0cc175b9c0f1b6a831c399e269772661"));
+    // MD5 starting with zero.
+    assertThat(FingerprintManifestWriter.fingerprint("jk8ssl".getBytes()),
+        is("0000000018e6137ac2caab16074784a6"));
+  }
+}
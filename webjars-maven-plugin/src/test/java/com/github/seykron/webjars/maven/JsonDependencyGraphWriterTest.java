@@ -9,10 +9,11 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarFile;
+import java.util.TreeMap;
 
 import org.apache.maven.model.Dependency;
 import org.json.JSONObject;
@@ -54,6 +55,9 @@ public class JsonDependencyGraphWriterTest {
     DependencyInfo jquery = createDependencyInfo("org.webjars:jquery:jar:1.6.2",
         entriesJquery);
 
+    jasmineJquery.getFileDependencies().put("/jasmine-jquery/foo.js",
+        Arrays.asList("/jquery/foo.js"));
+
     dependencyGraph = new HashMap<DependencyInfo, List<DependencyInfo>>();
     dependencyGraph.put(jasmine, new ArrayList<DependencyInfo>());
     dependencyGraph.put(jasmineReporters, Arrays.asList(jasmine));
@@ -84,6 +88,12 @@ public class JsonDependencyGraphWriterTest {
         is("1.4.2"));
     assertThat(jsonDependency.getJSONArray("js").length(), is(1));
     assertThat(jsonDependency.getJSONArray("css").length(), is(1));
+    assertThat(jsonDependency.getJSONArray("assets").length(), is(0));
+    assertThat(jsonDependency.getJSONObject("sizes")
+        .getLong("/jasmine-jquery/foo.js"), is(22L));
+    assertThat(jsonDependency.getJSONObject("requires")
+        .getJSONArray("/jasmine-jquery/foo.js").getString(0),
+        is("/jquery/foo.js"));
     assertThat(jsonDependency.getJSONArray("dependencies").length(), is(2));
     assertThat(jsonDependency.getJSONArray("dependencies").getString(0),
         is("org.webjars:jasmine:jar:1.3.1"));
@@ -94,6 +104,36 @@ public class JsonDependencyGraphWriterTest {
         is("org.webjars:jquery:jar:1.6.2"));
   }
 
+  @Test
+  public void write_sorted() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonDependencyGraphWriter(dependencyGraph).write(out);
+
+    Map<DependencyInfo, List<DependencyInfo>> reversedGraph =
+        new TreeMap<DependencyInfo, List<DependencyInfo>>(
+            new Comparator<DependencyInfo>() {
+              public int compare(final DependencyInfo a,
+                  final DependencyInfo b) {
+                return b.getId().compareTo(a.getId());
+              }
+            });
+    reversedGraph.putAll(dependencyGraph);
+
+    ByteArrayOutputStream reversedOut = new ByteArrayOutputStream();
+    new JsonDependencyGraphWriter(reversedGraph).write(reversedOut);
+
+    String json = out.toString("UTF-8");
+
+    assertThat(reversedOut.toString("UTF-8"), is(json));
+    assertThat(json.startsWith("{\"index\":{\"/jasmine-jquery/foo.css\":"),
+        is(true));
+    assertThat(json.indexOf("\"org.webjars:jasmine-jquery:jar:1.4.2\":{")
+        < json.indexOf("\"org.webjars:jquery:jar:1.6.2\":{"), is(true));
+    assertThat(json.contains("{\"assets\":[],\"css\":[\"/jasmine/foo.css\"],"
+        + "\"dependencies\":[],\"id\":\"org.webjars:jasmine:jar:1.3.1\","),
+        is(true));
+  }
+
   private DependencyInfo createDependencyInfo(final String id,
       final String[] entries) {
     final MockJarFile mockJarFile = new MockJarFile(entries);
@@ -102,8 +142,8 @@ public class JsonDependencyGraphWriterTest {
 
     DependencyInfo dependencyInfo = new DependencyInfo(dependency) {
       @Override
-      JarFile getJarFile() throws IOException {
-        return mockJarFile.getJarFile();
+      ZipDirectory getZipDirectory() throws IOException {
+        return mockJarFile.getZipDirectory();
       }
     };
     return dependencyInfo;
@@ -0,0 +1,78 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+/** Tests the {@link JsonStreamWriter} class.
+ */
+public class JsonStreamWriterTest {
+
+  @Test
+  public void write() throws IOException {
+    StringWriter out = new StringWriter();
+    JsonStreamWriter json = new JsonStreamWriter(out);
+
+    json.beginObject();
+    json.name("a").value("x\"y\\z\n\u0001");
+    json.name("b").value(42L);
+    json.name("c").array(Arrays.asList("1", null));
+    json.name("d").array(new ArrayList<String>());
+    json.name("e").beginObject().name("f").beginArray().beginObject()
+      .endObject().endArray().endObject();
+    json.endObject();
+    json.flush();
+
+    assertThat(out.toString(), is("{\"a\":\"x\\\"y\\\\z\\n\\u0001\","
+        + "\"b\":42,\"c\":[\"1\",null],\"d\":[],\"e\":{\"f\":[{}]}}"));
+
+    JSONObject result = new JSONObject(out.toString());
+    assertThat(result.getString("a"), is("x\"y\\z\n\u0001"));
+  }
+
+  @Test
+  public void write_scriptSafe() throws IOException {
+    StringWriter out = new StringWriter();
+    String value = "</script>\u2028\u2029/";
+    new JsonStreamWriter(out).value(value).flush();
+
+    assertThat(out.toString(), is(JSONObject.quote(value)));
+    assertThat(out.toString(),
+        is("\"<\\/script>\\u2028\\u2029/\""));
+  }
+
+  @Test
+  public void write_nested() throws IOException {
+    StringWriter out = new StringWriter();
+    JsonStreamWriter json = new JsonStreamWriter(out);
+
+    for (int i = 0; i < 20; i++) {
+      json.beginArray();
+    }
+    for (int i = 0; i < 20; i++) {
+      json.endArray();
+    }
+    json.flush();
+
+    assertThat(out.toString().length(), is(40));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void flush_notClosed() throws IOException {
+    JsonStreamWriter json = new JsonStreamWriter(new StringWriter());
+    json.beginObject();
+    json.flush();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void name_outsideObject() throws IOException {
+    new JsonStreamWriter(new StringWriter()).name("a");
+  }
+}
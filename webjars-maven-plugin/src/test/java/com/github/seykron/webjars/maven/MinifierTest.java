@@ -0,0 +1,68 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/** Tests the {@link Minifier} class.
+ */
+public class MinifierTest {
+
+  @Test
+  public void minifyJs() {
+    assertThat(Minifier.minifyJs("/*! License */\n"
+        + "// Comment\n"
+        + "function foo ( a, b ) {\n"
+        + "  /* block */ return a + +b;\n"
+        + "}\n"
+        + "var s = \"a  // b\" + 'c /* d */';\n"
+        + "var r = /[/]  \\/x/g.test(s) , x = 1 / 2 / 3;\n"
+        + "a\n"
+        + "++b\n"),
+        is("/*! License */\n"
+            + "function foo(a,b){return a+ +b;}\n"
+            + "var s=\"a  // b\"+'c /* d */';"
+            + "var r=/[/]  \\/x/g.test(s),x=1/ 2/ 3;a\n"
+            + "++b"));
+  }
+
+  @Test
+  public void minifyJs_keptComment() {
+    assertThat(Minifier.minifyJs("function f(b) {\n"
+        + "  return /*! x */ b;\n"
+        + "}\n"
+        + "var r = /*! y */ /a/g;\n"
+        + "var c = 1 /*! z */\n"
+        + "c\n"),
+        is("function f(b){return /*! x */ b;}\n"
+            + "var r= /*! y */ /a/g;var c=1 /*! z */\n"
+            + "c"));
+  }
+
+  @Test
+  public void minifyJs_regExpAfterKeyword() {
+    assertThat(Minifier.minifyJs("return  /a  b/ in x;"),
+        is("return/a  b/ in x;"));
+  }
+
+  @Test
+  public void minifyJs_keepsTemplateLiterals() {
+    assertThat(Minifier.minifyJs("var t = `a  ${b}\n  c`;"),
+        is("var t=`a  ${b}\n  c`;"));
+  }
+
+  @Test
+  public void minifyCss() {
+    assertThat(Minifier.minifyCss("/* comment */\n"
+        + "a:hover ,  b > c {\n"
+        + "  content: \"a  b\";\n"
+        + "  margin: 0  auto;\n"
+        + "}\n"
+        + "@media screen and (max-width: 100px) {\n"
+        + "  .a .b { color: red; }\n"
+        + "}\n"),
+        is("a:hover,b>c{content: \"a  b\";margin: 0 auto}"
+            + "@media screen and (max-width: 100px){.a .b{color: red}}"));
+  }
+}
@@ -1,55 +1,52 @@
 package com.github.seykron.webjars.maven;
 
-import static org.easymock.EasyMock.createMock;
-import static org.easymock.EasyMock.expect;
-import static org.easymock.EasyMock.replay;
-
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Enumeration;
+import java.nio.ByteBuffer;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
 
-/** Mocks a {@link JarFile}.
+/** Builds an in-memory jar file with the specified entries.
  */
 public class MockJarFile {
 
-  /** Mocked jar file, it's never null. */
-  private JarFile jarFile;
+  /** Content of the jar file, it's never null. */
+  private final byte[] content;
 
   /** Creates a mock jar file and sets the list of existing entries in the
-   * file.
+   * file. The content of each entry is its name, so the size of each entry is
+   * the length of its name.
    * @param entries List of entries names. Cannot be null.
    */
   public MockJarFile(final String[] entries) {
-    Enumeration<JarEntry> jarEntries = new Enumeration<JarEntry>() {
-      private int index = -1;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
 
-      @Override
-      public JarEntry nextElement() {
-        index += 1;
-        return new JarEntry(entries[index]);
-      }
+    try {
+      JarOutputStream jar = new JarOutputStream(out);
 
-      @Override
-      public boolean hasMoreElements() {
-        return index < entries.length - 1;
-      }
-    };
-    jarFile = createMock(JarFile.class);
-    expect(jarFile.entries()).andReturn(jarEntries);
+      for (String entry : entries) {
+        jar.putNextEntry(new JarEntry(entry));
 
-    try {
-      jarFile.close();
+        if (!entry.endsWith("/")) {
+          jar.write(entry.getBytes("UTF-8"));
+        }
+        jar.closeEntry();
+      }
+      jar.close();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-    replay(jarFile);
+    content = out.toByteArray();
   }
 
-  /** Returns the mocked jar file.
-   * @return a valid mock, never null.
+  /** Returns the central directory of the jar file.
+   * @return a cursor before the first entry, never null.
    */
-  public JarFile getJarFile() {
-    return jarFile;
+  public ZipDirectory getZipDirectory() {
+    try {
+      return ZipDirectory.read(ByteBuffer.wrap(content));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 }
@@ -0,0 +1,126 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.maven.model.Dependency;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the {@link ScanCache} class.
+ */
+public class ScanCacheTest {
+
+  private static final String DIR = "META-INF/resources/webjars/ui/1.0/";
+
+  private File workDir;
+
+  private File cacheDir;
+
+  private DependencyInfo dependencyInfo;
+
+  private Dependency dependency;
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = File.createTempFile("scan-cache", "");
+    workDir.delete();
+    workDir.mkdirs();
+    cacheDir = new File(workDir, "cache");
+
+    dependencyInfo = TestDependencies.create(workDir, "org.webjars:ui:jar:1.0",
+        DIR + "ui.js", "var ui;", DIR + "ui.min.js", "var a;",
+        DIR + "ui.css", "body {}", DIR + "ui.png", "png",
+        DIR + "file-dependencies.json", "{'ui.js': ['ui.css']}");
+
+    dependency = new Dependency();
+    dependency.setArtifactId("org.webjars:ui:jar:1.0");
+    dependency.setSystemPath(new File(workDir, "org.webjars_ui_jar_1.0.jar")
+        .getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(workDir);
+  }
+
+  @Test
+  public void get() {
+    ScanCache scanCache = new ScanCache(cacheDir, new VariantPolicy());
+
+    assertThat(scanCache.get(dependency), is(nullValue()));
+
+    scanCache.put(dependency, dependencyInfo);
+
+    DependencyInfo cached = new ScanCache(cacheDir, new VariantPolicy())
+        .get(dependency);
+
+    assertThat(cached.getId(), is(dependencyInfo.getId()));
+    assertThat(cached.getName(), is("ui"));
+    assertThat(cached.getVersion(), is("1.0"));
+    assertThat(cached.getJsFiles(), is(Arrays.asList(DIR + "ui.js")));
+    assertThat(cached.getCssFiles(), is(dependencyInfo.getCssFiles()));
+    assertThat(cached.getAssetFiles(), is(dependencyInfo.getAssetFiles()));
+    assertThat(cached.getVariantFiles(),
+        is(Arrays.asList(DIR + "ui.min.js")));
+    assertThat(cached.getFileSizes(), is(dependencyInfo.getFileSizes()));
+    assertThat(new ArrayList<String>(cached.getFileSizes().keySet()),
+        is(new ArrayList<String>(dependencyInfo.getFileSizes().keySet())));
+    assertThat(cached.getFileChecksums(),
+        is(dependencyInfo.getFileChecksums()));
+    assertThat(cached.getFileCompressedSizes(),
+        is(dependencyInfo.getFileCompressedSizes()));
+    assertThat(cached.getFileDependencies(),
+        is(dependencyInfo.getFileDependencies()));
+    assertThat(cached.getFileDependencies().get(DIR + "ui.js"),
+        is(Arrays.asList(DIR + "ui.css")));
+  }
+
+  @Test
+  public void get_changed() {
+    new ScanCache(cacheDir, new VariantPolicy()).put(dependency,
+        dependencyInfo);
+
+    assertThat(new ScanCache(cacheDir, new VariantPolicy(true,
+        VariantPolicy.DEFAULT_EXCLUDED_DIRECTORIES)).get(dependency),
+        is(nullValue()));
+
+    File jar = new File(dependency.getSystemPath());
+    jar.setLastModified(jar.lastModified() - 10000);
+
+    assertThat(new ScanCache(cacheDir, new VariantPolicy()).get(dependency),
+        is(nullValue()));
+  }
+
+  @Test
+  public void put_changed() {
+    ScanCache scanCache = new ScanCache(cacheDir, new VariantPolicy());
+    scanCache.put(dependency, dependencyInfo);
+
+    File jar = new File(dependency.getSystemPath());
+    jar.setLastModified(jar.lastModified() - 10000);
+    scanCache.put(dependency, dependencyInfo);
+
+    // The previous result is replaced, and no temporary file is left.
+    assertThat(cacheDir.list().length, is(1));
+    assertThat(scanCache.get(dependency).getId(), is(dependencyInfo.getId()));
+  }
+
+  @Test
+  public void get_corrupt() throws IOException {
+    ScanCache scanCache = new ScanCache(cacheDir, new VariantPolicy());
+    scanCache.put(dependency, dependencyInfo);
+
+    for (File file : cacheDir.listFiles()) {
+      FileUtils.fileWrite(file.getAbsolutePath(), "{'key':");
+    }
+    assertThat(scanCache.get(dependency), is(nullValue()));
+  }
+}
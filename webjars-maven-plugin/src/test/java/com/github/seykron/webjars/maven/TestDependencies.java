@@ -0,0 +1,49 @@
+package com.github.seykron.webjars.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.maven.model.Dependency;
+
+/** Creates dependencies backed by real jar files.
+ */
+public final class TestDependencies {
+
+  /** Utility class, do not instantiate.
+   */
+  private TestDependencies() {
+  }
+
+  /** Creates a dependency backed by a jar file with the specified entries.
+   *
+   * @param directory Directory to write the jar file to. Cannot be null.
+   * @param id Dependency id. Cannot be null.
+   * @param entries Pairs of entry name and content. Cannot be null.
+   * @return A valid dependency, never null.
+   * @throws IOException if the jar file cannot be written.
+   */
+  public static DependencyInfo create(final File directory, final String id,
+      final String... entries) throws IOException {
+    File jar = new File(directory, id.replace(':', '_') + ".jar");
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+
+    try {
+      for (int i = 0; i < entries.length; i += 2) {
+        out.putNextEntry(new JarEntry(entries[i]));
+        out.write(entries[i + 1].getBytes("UTF-8"));
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+    }
+
+    Dependency dependency = new Dependency();
+    dependency.setArtifactId(id);
+    dependency.setSystemPath(jar.getAbsolutePath());
+
+    return new DependencyInfo(dependency);
+  }
+}
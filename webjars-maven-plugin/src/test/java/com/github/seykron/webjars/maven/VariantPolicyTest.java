@@ -0,0 +1,58 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/** Tests the {@link VariantPolicy} class.
+ */
+public class VariantPolicyTest {
+
+  private static final String DIR = "META-INF/resources/webjars/jquery/2.0/";
+
+  private final List<String> files = Arrays.asList(DIR + "jquery.js",
+      DIR + "jquery.min.js", DIR + "ui/widget-min.js", DIR + "ui/widget.js",
+      DIR + "ui/dialog.js", DIR + "tests/core.js", DIR + "src/core.js",
+      DIR + "i18n/jquery.ui.datepicker-es.js", DIR + "jquery.spec.js");
+
+  @Test
+  public void select() {
+    assertThat(new VariantPolicy().select(files), is(Arrays.asList(
+        DIR + "jquery.js", DIR + "ui/widget.js", DIR + "ui/dialog.js")));
+  }
+
+  @Test
+  public void select_minified() {
+    assertThat(new VariantPolicy(true,
+        VariantPolicy.DEFAULT_EXCLUDED_DIRECTORIES).select(files),
+        is(Arrays.asList(DIR + "jquery.min.js", DIR + "ui/widget-min.js",
+            DIR + "ui/dialog.js")));
+  }
+
+  @Test
+  public void select_excludedDirectories() {
+    assertThat(new VariantPolicy(false, Arrays.asList("I18N")).select(files),
+        is(Arrays.asList(DIR + "jquery.js", DIR + "ui/widget.js",
+            DIR + "ui/dialog.js", DIR + "tests/core.js", DIR + "src/core.js")));
+  }
+
+  @Test
+  public void isExcluded_webjarName() {
+    VariantPolicy policy = new VariantPolicy();
+
+    assertThat(policy.isExcluded(
+        "META-INF/resources/webjars/src/1.0/src.js"), is(false));
+    assertThat(policy.isExcluded("test/foo.js"), is(true));
+  }
+
+  @Test
+  public void getLogicalName() {
+    assertThat(VariantPolicy.getLogicalName("a/b.min.css"), is("a/b.css"));
+    assertThat(VariantPolicy.getLogicalName("a/b-MIN.js"), is("a/b.js"));
+    assertThat(VariantPolicy.getLogicalName("a/admin.js"), is("a/admin.js"));
+  }
+}
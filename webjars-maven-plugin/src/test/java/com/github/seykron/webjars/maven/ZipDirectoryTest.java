@@ -0,0 +1,81 @@
+package com.github.seykron.webjars.maven;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+
+/** Tests the {@link ZipDirectory} class.
+ */
+public class ZipDirectoryTest {
+
+  @Test
+  public void read() throws IOException {
+    File jar = File.createTempFile("directory", ".jar");
+
+    try {
+      JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+      out.setComment("webjar");
+      out.putNextEntry(new JarEntry("META-INF/resources/webjars/"));
+      out.closeEntry();
+      out.putNextEntry(new JarEntry("META-INF/resources/webjars/Foo.JS"));
+      out.write("var foo = 'foo foo foo foo foo foo foo';".getBytes("UTF-8"));
+      out.closeEntry();
+      out.close();
+
+      JarFile jarFile = new JarFile(jar);
+      JarEntry expected = jarFile.getJarEntry(
+          "META-INF/resources/webjars/Foo.JS");
+      jarFile.close();
+
+      ZipDirectory directory = ZipDirectory.read(jar);
+
+      assertThat(directory.next(), is(true));
+      assertThat(directory.isDirectory(), is(true));
+      assertThat(directory.getName(), is("META-INF/resources/webjars/"));
+
+      assertThat(directory.next(), is(true));
+      assertThat(directory.isDirectory(), is(false));
+      assertThat(directory.getName(), is("META-INF/resources/webjars/Foo.JS"));
+      assertThat(directory.nameStartsWith("META-INF/resources/"), is(true));
+      assertThat(directory.nameStartsWith("webjars/"), is(false));
+      assertThat(directory.nameEndsWith(".js", true), is(true));
+      assertThat(directory.nameEndsWith(".js", false), is(false));
+      assertThat(directory.nameEndsWith(".css", true), is(false));
+      assertThat(directory.getSize(), is(expected.getSize()));
+      assertThat(directory.getCompressedSize(),
+          is(expected.getCompressedSize()));
+      assertThat(directory.getCrc(), is(expected.getCrc()));
+
+      assertThat(directory.next(), is(false));
+    } finally {
+      jar.delete();
+    }
+  }
+
+  @Test
+  public void read_buffer() throws IOException {
+    ZipDirectory directory = new MockJarFile(new String[] {"a.js", "b.css"})
+        .getZipDirectory();
+
+    assertThat(directory.next(), is(true));
+    assertThat(directory.getName(), is("a.js"));
+    assertThat(directory.getSize(), is(4L));
+    assertThat(directory.next(), is(true));
+    assertThat(directory.getName(), is("b.css"));
+    assertThat(directory.next(), is(false));
+  }
+
+  @Test(expected = IOException.class)
+  public void read_notZip() throws IOException {
+    ZipDirectory.read(ByteBuffer.wrap("not a zip file".getBytes("UTF-8")));
+  }
+}